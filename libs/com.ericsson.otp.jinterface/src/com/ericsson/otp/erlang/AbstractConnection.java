@@ -22,7 +22,15 @@ package com.ericsson.otp.erlang;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Maintains a connection between a Java process and a remote Erlang, Java or C
@@ -84,6 +92,32 @@ public abstract class AbstractConnection extends Thread {
     protected static final int ChallengeAck = 'a';
     protected static final int ChallengeStatus = 's';
 
+    private static final byte[] tock = { 0, 0, 0, 0 };
+
+    // payloads up to this size are copied into the header buffer when sending
+    private static final int mergeLimit = 16 * 1024;
+
+    // larger messages are sent in fragments of this size, if the peer
+    // supports it, so that they don't hold up the messages sent after them
+    private static final int fragmentSize = 64 * 1024;
+
+    // distribution header atom cache, one for each direction
+    private final OtpAtomCache sendAtomCache = new OtpAtomCache();
+    private final OtpAtomCache receiveAtomCache = new OtpAtomCache();
+
+    // the last fragmented message sent, and those being received
+    private long fragmentSequence = 0;
+    private final HashMap<Long, Fragments> receivedFragments = new HashMap<Long, Fragments>();
+
+    // frames sent by a thread that has corked the connection are queued in its
+    // batch and written together once they add up to corkLimit bytes,
+    // corkDelay after the first of them was queued, or when uncorked. The
+    // frames of other threads are not held back.
+    private static final int corkLimit = 64 * 1024;
+    private static final long corkDelay = 2; // ms
+    private static ScheduledExecutorService corkTimer = null;
+    private final ThreadLocal<Batch> batches = new ThreadLocal<Batch>();
+
     private volatile boolean done = false;
 
     protected boolean connected = false; // connection status
@@ -211,6 +245,63 @@ public abstract class AbstractConnection extends Thread {
      */
     public abstract void deliver(OtpMsg msg);
 
+    /*
+     * Whether both nodes agreed on using the distribution header atom cache.
+     */
+    private boolean useAtomCache() {
+        return (peer.flags & localNode.flags
+                & AbstractNode.dFlagDistHdrAtomCache) != 0;
+    }
+
+    /*
+     * Whether both nodes support fragmented messages. Only used together with
+     * the atom cache, as fragments need the distribution header.
+     */
+    private boolean useFragments() {
+        return (peer.flags & localNode.flags & AbstractNode.dFlagFragments) != 0;
+    }
+
+    /*
+     * Encode a message to send on this connection. With the atom cache in use,
+     * the atoms in the message are written as cache references. The buffer is
+     * taken from the send buffer pool and given back by do_send.
+     */
+    protected OtpOutputStream encodePayload(final OtpErlangObject msg) {
+        final OtpOutputStream payload = OtpOutputStreamPool.acquire();
+        if (useAtomCache()) {
+            payload.setAtomCacheRefs(new OtpAtomCacheRefs());
+        }
+        payload.write_any(msg);
+        return payload;
+    }
+
+    /*
+     * Create a header buffer starting with the preamble: 4 byte length +
+     * "passthrough" tag + version. With the atom cache in use, the preamble is
+     * only the length; the distribution header follows it and is added by
+     * do_send, since cache slots must be assigned in the order messages are
+     * sent. The header shares the atom cache references of the payload.
+     * Like payloads, headers are pooled and given back by do_send.
+     */
+    private OtpOutputStream newHeader(final OtpOutputStream payload) {
+        final OtpOutputStream header = OtpOutputStreamPool.acquire();
+        header.write4BE(0); // reserve space for length
+        if (useAtomCache()) {
+            OtpAtomCacheRefs refs = null;
+            if (payload != null) {
+                refs = payload.getAtomCacheRefs();
+            }
+            if (refs == null) {
+                refs = new OtpAtomCacheRefs();
+            }
+            header.setAtomCacheRefs(refs);
+        } else {
+            header.write1(passThrough);
+            header.write1(version);
+        }
+        return header;
+    }
+
     /**
      * Send a pre-encoded message to a named process on a remote node.
      *
@@ -229,12 +320,7 @@ public abstract class AbstractConnection extends Thread {
             throw new IOException("Not connected");
         }
         @SuppressWarnings("resource")
-        final OtpOutputStream header = new OtpOutputStream(headerLen);
-
-        // preamble: 4 byte length + "passthrough" tag + version
-        header.write4BE(0); // reserve space for length
-        header.write1(passThrough);
-        header.write1(version);
+        final OtpOutputStream header = newHeader(payload);
 
         // header info
         header.write_tuple_head(4);
@@ -247,8 +333,10 @@ public abstract class AbstractConnection extends Thread {
         }
         header.write_atom(dest);
 
-        // version for payload
-        header.write1(version);
+        // version for payload, not used after a distribution header
+        if (header.getAtomCacheRefs() == null) {
+            header.write1(version);
+        }
 
         // fix up length in preamble
         header.poke4BE(0, header.size() + payload.size() - 4);
@@ -274,12 +362,7 @@ public abstract class AbstractConnection extends Thread {
             throw new IOException("Not connected");
         }
         @SuppressWarnings("resource")
-        final OtpOutputStream header = new OtpOutputStream(headerLen);
-
-        // preamble: 4 byte length + "passthrough" tag + version
-        header.write4BE(0); // reserve space for length
-        header.write1(passThrough);
-        header.write1(version);
+        final OtpOutputStream header = newHeader(payload);
 
         // header info
         header.write_tuple_head(3);
@@ -291,8 +374,10 @@ public abstract class AbstractConnection extends Thread {
         }
         header.write_any(dest);
 
-        // version for payload
-        header.write1(version);
+        // version for payload, not used after a distribution header
+        if (header.getAtomCacheRefs() == null) {
+            header.write1(version);
+        }
 
         // fix up length in preamble
         header.poke4BE(0, header.size() + payload.size() - 4);
@@ -309,12 +394,7 @@ public abstract class AbstractConnection extends Thread {
             final OtpErlangAtom cookie) throws OtpAuthException {
         try {
             @SuppressWarnings("resource")
-            final OtpOutputStream header = new OtpOutputStream(headerLen);
-
-            // preamble: 4 byte length + "passthrough" tag + version
-            header.write4BE(0); // reserve space for length
-            header.write1(passThrough);
-            header.write1(version);
+            final OtpOutputStream header = newHeader(null);
 
             header.write_tuple_head(4);
             header.write_long(regSendTag);
@@ -323,8 +403,10 @@ public abstract class AbstractConnection extends Thread {
             // not mine...
             header.write_atom("auth");
 
-            // version for payload
-            header.write1(version);
+            // version for payload, not used after a distribution header
+            if (header.getAtomCacheRefs() == null) {
+                header.write1(version);
+            }
 
             // the payload
 
@@ -381,12 +463,7 @@ public abstract class AbstractConnection extends Thread {
             throw new IOException("Not connected");
         }
         @SuppressWarnings("resource")
-        final OtpOutputStream header = new OtpOutputStream(headerLen);
-
-        // preamble: 4 byte length + "passthrough" tag
-        header.write4BE(0); // reserve space for length
-        header.write1(passThrough);
-        header.write1(version);
+        final OtpOutputStream header = newHeader(null);
 
         // header
         header.write_tuple_head(3);
@@ -418,12 +495,7 @@ public abstract class AbstractConnection extends Thread {
             throw new IOException("Not connected");
         }
         @SuppressWarnings("resource")
-        final OtpOutputStream header = new OtpOutputStream(headerLen);
-
-        // preamble: 4 byte length + "passthrough" tag
-        header.write4BE(0); // reserve space for length
-        header.write1(passThrough);
-        header.write1(version);
+        final OtpOutputStream header = newHeader(null);
 
         if ((peer.flags & AbstractNode.dFlagUnlinkId) != 0) {
             // header
@@ -473,12 +545,7 @@ public abstract class AbstractConnection extends Thread {
         }
         if ((peer.flags & AbstractNode.dFlagUnlinkId) != 0) {
             @SuppressWarnings("resource")
-            final OtpOutputStream header = new OtpOutputStream(headerLen);
-
-            // preamble: 4 byte length + "passthrough" tag
-            header.write4BE(0); // reserve space for length
-            header.write1(passThrough);
-            header.write1(version);
+            final OtpOutputStream header = newHeader(null);
 
             // header
             header.write_tuple_head(4);
@@ -524,12 +591,7 @@ public abstract class AbstractConnection extends Thread {
             throw new IOException("Not connected");
         }
         @SuppressWarnings("resource")
-        final OtpOutputStream header = new OtpOutputStream(headerLen);
-
-        // preamble: 4 byte length + "passthrough" tag
-        header.write4BE(0); // reserve space for length
-        header.write1(passThrough);
-        header.write1(version);
+        final OtpOutputStream header = newHeader(null);
 
         // header
         header.write_tuple_head(4);
@@ -554,9 +616,7 @@ public abstract class AbstractConnection extends Thread {
 
         final byte[] lbuf = new byte[4];
         OtpInputStream ibuf;
-        OtpErlangObject traceobj;
         int len;
-        final byte[] tock = { 0, 0, 0, 0 };
 
         try {
             receive_loop: while (!done) {
@@ -572,16 +632,7 @@ public abstract class AbstractConnection extends Thread {
 
                     // received tick? send tock!
                     if (len == 0) {
-                        synchronized (this) {
-                            if (socket == null) {
-                                // protect from a potential thin race when the
-                                // connection to the remote node is closed
-                                throw new IOException("socket was closed");
-                            }
-                            OutputStream out = socket.getOutputStream();
-                            out.write(tock);
-                            out.flush();
-                        }
+                        sendTock();
                     }
 
                 } while (len == 0); // tick_loop
@@ -593,216 +644,360 @@ public abstract class AbstractConnection extends Thread {
                 ibuf.close();
                 ibuf = new OtpInputStream(tmpbuf, flags);
 
-                if (ibuf.read1() != passThrough) {
+                if (!processFrame(ibuf)) {
                     break receive_loop;
                 }
+            } // end receive_loop
 
-                // got a real message (really)
-                OtpErlangObject reason = null;
-                OtpErlangAtom cookie = null;
-                OtpErlangObject tmp = null;
-                OtpErlangTuple head = null;
-                OtpErlangAtom toName;
-                OtpErlangPid to;
-                OtpErlangPid from;
-                int tag;
-
-                // decode the header
-                tmp = ibuf.read_any();
-                if (!(tmp instanceof OtpErlangTuple)) {
-                    break receive_loop;
-                }
+            // this section reachable only with break
+            // we have received garbage from peer
+            deliver(new OtpErlangExit("Remote is sending garbage"));
 
-                head = (OtpErlangTuple) tmp;
-                if (!(head.elementAt(0) instanceof OtpErlangLong)) {
-                    break receive_loop;
-                }
+        } // try
 
-                // lets see what kind of message this is
-                tag = (int) ((OtpErlangLong) head.elementAt(0)).longValue();
-
-                switch (tag) {
-                case sendTag: // { SEND, Cookie, ToPid }
-                case sendTTTag: // { SEND, Cookie, ToPid, TraceToken }
-                    if (!cookieOk) {
-                        // we only check this once, he can send us bad cookies
-                        // later if he likes
-                        if (!(head.elementAt(1) instanceof OtpErlangAtom)) {
-                            break receive_loop;
-                        }
-                        cookie = (OtpErlangAtom) head.elementAt(1);
-                        if (sendCookie) {
-                            if (!cookie.atomValue().equals(localNode.cookie())) {
-                                cookieError(localNode, cookie);
-                            }
-                        } else {
-                            if (!cookie.atomValue().equals("")) {
-                                cookieError(localNode, cookie);
-                            }
-                        }
-                        cookieOk = true;
-                    }
+        catch (final OtpAuthException e) {
+            deliver(e);
+        } catch (final OtpErlangDecodeException e) {
+            deliver(new OtpErlangExit("Remote is sending garbage"));
+        } catch (final IOException e) {
+            deliver(new OtpErlangExit("Remote has closed connection"));
+        } finally {
+            close();
+        }
+    }
+
+    /*
+     * Start delivering incoming messages. Connections whose transport is
+     * multiplexed by a selector (see OtpNioTransportFactory) are handed over to
+     * the selector pool, all others get a dedicated receive thread.
+     */
+    protected void startReceiving() throws IOException {
+        if (socket instanceof OtpNioSocketTransport) {
+            ((OtpNioSocketTransport) socket).startReceiving(this);
+        } else {
+            start();
+        }
+    }
+
+    /*
+     * Answer a tick from the peer.
+     */
+    protected void sendTock() throws IOException {
+        synchronized (this) {
+            if (socket == null) {
+                // protect from a potential thin race when the
+                // connection to the remote node is closed
+                throw new IOException("socket was closed");
+            }
+            final OutputStream out = socket.getOutputStream();
+            out.write(tock);
+            out.flush();
+        }
+    }
 
-                    if (traceLevel >= sendThreshold) {
-                        System.out.println("<- " + headerType(head) + " "
-                                + head);
+    /*
+     * Called by the selector pool with a complete frame (without the length
+     * prefix). Errors are handled the same way as in run().
+     */
+    void receiveFrame(final byte[] frame) {
+        if (done) {
+            return;
+        }
+        try {
+            if (!processFrame(new OtpInputStream(frame, flags))) {
+                deliver(new OtpErlangExit("Remote is sending garbage"));
+                close();
+            }
+        } catch (final OtpAuthException e) {
+            deliver(e);
+            close();
+        } catch (final OtpErlangDecodeException e) {
+            deliver(new OtpErlangExit("Remote is sending garbage"));
+            close();
+        } catch (final IOException e) {
+            deliver(new OtpErlangExit("Remote has closed connection"));
+            close();
+        }
+    }
 
-                        /* show received payload too */
-                        ibuf.mark(0);
-                        traceobj = ibuf.read_any();
+    /*
+     * Called by the selector pool when the channel failed or was closed.
+     */
+    void receiveFailed() {
+        deliver(new OtpErlangExit("Remote has closed connection"));
+        close();
+    }
 
-                        if (traceobj != null) {
-                            System.out.println("   " + traceobj);
-                        } else {
-                            System.out.println("   (null)");
-                        }
-                        ibuf.reset();
-                    }
+    /*
+     * Decode the header of a received frame and deliver the message it
+     * carries. Returns false if the peer sent something we don't understand.
+     */
+    protected boolean processFrame(final OtpInputStream ibuf)
+            throws IOException, OtpAuthException, OtpErlangDecodeException {
+        final int type = ibuf.read1();
+        if (type == OtpExternal.versionTag && useAtomCache()) {
+            final int tag = ibuf.read1();
+            switch (tag) {
+            case OtpExternal.distHeaderTag:
+                ibuf.setAtomCacheRefs(receiveAtomCache.readHeader(ibuf));
+                break;
 
-                    to = (OtpErlangPid) head.elementAt(2);
+            case OtpExternal.distFragHeaderTag:
+            case OtpExternal.distFragContTag:
+                final OtpInputStream msg = receiveFragment(ibuf, tag);
+                if (msg == null) {
+                    // more fragments to come
+                    return true;
+                }
+                return processMessage(msg);
 
-                    deliver(new OtpMsg(to, ibuf));
-                    break;
+            default:
+                return false;
+            }
+        } else if (type != passThrough) {
+            return false;
+        }
 
-                case regSendTag: // { REG_SEND, FromPid, Cookie, ToName }
-                case regSendTTTag: // { REG_SEND, FromPid, Cookie, ToName,
-                    // TraceToken }
-                    if (!cookieOk) {
-                        // we only check this once, he can send us bad cookies
-                        // later if he likes
-                        if (!(head.elementAt(2) instanceof OtpErlangAtom)) {
-                            break receive_loop;
-                        }
-                        cookie = (OtpErlangAtom) head.elementAt(2);
-                        if (sendCookie) {
-                            if (!cookie.atomValue().equals(localNode.cookie())) {
-                                cookieError(localNode, cookie);
-                            }
-                        } else {
-                            if (!cookie.atomValue().equals("")) {
-                                cookieError(localNode, cookie);
-                            }
-                        }
-                        cookieOk = true;
-                    }
+        return processMessage(ibuf);
+    }
 
-                    if (traceLevel >= sendThreshold) {
-                        System.out.println("<- " + headerType(head) + " "
-                                + head);
+    /*
+     * Collect the fragments of a fragmented message. Fragment ids count down,
+     * the first fragment carries the distribution header and the last one has
+     * id 1. Returns the complete message (control message and payload), or null
+     * if more fragments are needed.
+     */
+    private OtpInputStream receiveFragment(final OtpInputStream ibuf,
+            final int tag) throws OtpErlangDecodeException {
+        final long sequenceId = ibuf.read8BE();
+        final long fragmentId = ibuf.read8BE();
+        Fragments fragments;
+        if (tag == OtpExternal.distFragHeaderTag) {
+            final String[] atoms = receiveAtomCache.readHeader(ibuf);
+            if (fragmentId == 1) {
+                ibuf.setAtomCacheRefs(atoms);
+                return ibuf;
+            }
+            fragments = new Fragments(atoms, fragmentId);
+            receivedFragments.put(sequenceId, fragments);
+        } else {
+            fragments = receivedFragments.get(sequenceId);
+        }
+        if (fragments == null || fragmentId < 1
+                || fragmentId != fragments.next) {
+            throw new OtpErlangDecodeException("Unexpected fragment "
+                    + fragmentId + " of message " + sequenceId);
+        }
+        fragments.data.write(ibuf.getBuffer(), ibuf.getPos(),
+                ibuf.available());
+        fragments.next = fragmentId - 1;
+        if (fragmentId > 1) {
+            return null;
+        }
+        receivedFragments.remove(sequenceId);
+        final OtpInputStream msg = new OtpInputStream(
+                fragments.data.toByteArray(), flags);
+        msg.setAtomCacheRefs(fragments.atoms);
+        return msg;
+    }
 
-                        /* show received payload too */
-                        ibuf.mark(0);
-                        traceobj = ibuf.read_any();
+    /*
+     * Decode the control message of a received message and deliver it.
+     */
+    private boolean processMessage(final OtpInputStream ibuf)
+            throws IOException, OtpAuthException, OtpErlangDecodeException {
+        OtpErlangObject traceobj;
 
-                        if (traceobj != null) {
-                            System.out.println("   " + traceobj);
-                        } else {
-                            System.out.println("   (null)");
-                        }
-                        ibuf.reset();
-                    }
+        // got a real message (really)
+        OtpErlangObject reason = null;
+        OtpErlangAtom cookie = null;
+        OtpErlangObject tmp = null;
+        OtpErlangTuple head = null;
+        OtpErlangAtom toName;
+        OtpErlangPid to;
+        OtpErlangPid from;
+        int tag;
+
+        // decode the header
+        tmp = ibuf.read_any();
+        if (!(tmp instanceof OtpErlangTuple)) {
+            return false;
+        }
 
-                    from = (OtpErlangPid) head.elementAt(1);
-                    toName = (OtpErlangAtom) head.elementAt(3);
+        head = (OtpErlangTuple) tmp;
+        if (!(head.elementAt(0) instanceof OtpErlangLong)) {
+            return false;
+        }
 
-                    deliver(new OtpMsg(from, toName.atomValue(), ibuf));
-                    break;
+        // lets see what kind of message this is
+        tag = (int) ((OtpErlangLong) head.elementAt(0)).longValue();
 
-                case exitTag: // { EXIT, FromPid, ToPid, Reason }
-                case exit2Tag: // { EXIT2, FromPid, ToPid, Reason }
-                    if (head.elementAt(3) == null) {
-                        break receive_loop;
+        switch (tag) {
+        case sendTag: // { SEND, Cookie, ToPid }
+        case sendTTTag: // { SEND, Cookie, ToPid, TraceToken }
+            if (!cookieOk) {
+                // we only check this once, he can send us bad cookies
+                // later if he likes
+                if (!(head.elementAt(1) instanceof OtpErlangAtom)) {
+                    return false;
+                }
+                cookie = (OtpErlangAtom) head.elementAt(1);
+                if (sendCookie) {
+                    if (!cookie.atomValue().equals(localNode.cookie())) {
+                        cookieError(localNode, cookie);
                     }
-                    if (traceLevel >= ctrlThreshold) {
-                        System.out.println("<- " + headerType(head) + " "
-                                + head);
+                } else {
+                    if (!cookie.atomValue().equals("")) {
+                        cookieError(localNode, cookie);
                     }
+                }
+                cookieOk = true;
+            }
+
+            if (traceLevel >= sendThreshold) {
+                System.out.println("<- " + headerType(head) + " "
+                        + head);
+
+                /* show received payload too */
+                ibuf.mark(0);
+                traceobj = ibuf.read_any();
+
+                if (traceobj != null) {
+                    System.out.println("   " + traceobj);
+                } else {
+                    System.out.println("   (null)");
+                }
+                ibuf.reset();
+            }
 
-                    from = (OtpErlangPid) head.elementAt(1);
-                    to = (OtpErlangPid) head.elementAt(2);
-                    reason = head.elementAt(3);
+            to = (OtpErlangPid) head.elementAt(2);
 
-                    deliver(new OtpMsg(tag, from, to, reason));
-                    break;
+            deliver(new OtpMsg(to, ibuf));
+            break;
 
-                case exitTTTag: // { EXIT, FromPid, ToPid, TraceToken, Reason }
-                case exit2TTTag: // { EXIT2, FromPid, ToPid, TraceToken,
-                    // Reason
-                    // }
-                    // as above, but bifferent element number
-                    if (head.elementAt(4) == null) {
-                        break receive_loop;
+        case regSendTag: // { REG_SEND, FromPid, Cookie, ToName }
+        case regSendTTTag: // { REG_SEND, FromPid, Cookie, ToName,
+            // TraceToken }
+            if (!cookieOk) {
+                // we only check this once, he can send us bad cookies
+                // later if he likes
+                if (!(head.elementAt(2) instanceof OtpErlangAtom)) {
+                    return false;
+                }
+                cookie = (OtpErlangAtom) head.elementAt(2);
+                if (sendCookie) {
+                    if (!cookie.atomValue().equals(localNode.cookie())) {
+                        cookieError(localNode, cookie);
                     }
-                    if (traceLevel >= ctrlThreshold) {
-                        System.out.println("<- " + headerType(head) + " "
-                                + head);
+                } else {
+                    if (!cookie.atomValue().equals("")) {
+                        cookieError(localNode, cookie);
                     }
+                }
+                cookieOk = true;
+            }
 
-                    from = (OtpErlangPid) head.elementAt(1);
-                    to = (OtpErlangPid) head.elementAt(2);
-                    reason = head.elementAt(4);
+            if (traceLevel >= sendThreshold) {
+                System.out.println("<- " + headerType(head) + " "
+                        + head);
 
-                    deliver(new OtpMsg(tag, from, to, reason));
-                    break;
+                /* show received payload too */
+                ibuf.mark(0);
+                traceobj = ibuf.read_any();
 
-                case linkTag: // { LINK, FromPid, ToPid}
-                case unlinkTag: // { UNLINK, FromPid, ToPid}
-                    if (traceLevel >= ctrlThreshold) {
-                        System.out.println("<- " + headerType(head) + " "
-                                + head);
-                    }
+                if (traceobj != null) {
+                    System.out.println("   " + traceobj);
+                } else {
+                    System.out.println("   (null)");
+                }
+                ibuf.reset();
+            }
 
-                    from = (OtpErlangPid) head.elementAt(1);
-                    to = (OtpErlangPid) head.elementAt(2);
+            from = (OtpErlangPid) head.elementAt(1);
+            toName = (OtpErlangAtom) head.elementAt(3);
 
-                    deliver(new OtpMsg(tag, from, to, 0));
-                    break;
+            deliver(new OtpMsg(from, toName.atomValue(), ibuf));
+            break;
 
-                case unlinkIdTag: // { UNLINK_ID, UnlinkId, FromPid, ToPid}
-                case unlinkIdAckTag: // { UNLINK_ID_Ack, UnlinkId, FromPid, ToPid}
-                    if (traceLevel >= ctrlThreshold) {
-                        System.out.println("<- " + headerType(head) + " "
-                                + head);
-                    }
+        case exitTag: // { EXIT, FromPid, ToPid, Reason }
+        case exit2Tag: // { EXIT2, FromPid, ToPid, Reason }
+            if (head.elementAt(3) == null) {
+                return false;
+            }
+            if (traceLevel >= ctrlThreshold) {
+                System.out.println("<- " + headerType(head) + " "
+                        + head);
+            }
 
-                    long unlink_id = ((OtpErlangLong) head.elementAt(1)).longValue();
-                    from = (OtpErlangPid) head.elementAt(2);
-                    to = (OtpErlangPid) head.elementAt(3);
+            from = (OtpErlangPid) head.elementAt(1);
+            to = (OtpErlangPid) head.elementAt(2);
+            reason = head.elementAt(3);
 
-                    deliver(new OtpMsg(tag, from, to, unlink_id));
-                    break;
+            deliver(new OtpMsg(tag, from, to, reason));
+            break;
 
-                // absolutely no idea what to do with these, so we ignore
-                // them...
-                case groupLeaderTag: // { GROUPLEADER, FromPid, ToPid}
-                    // (just show trace)
-                    if (traceLevel >= ctrlThreshold) {
-                        System.out.println("<- " + headerType(head) + " "
-                                + head);
-                    }
-                    break;
+        case exitTTTag: // { EXIT, FromPid, ToPid, TraceToken, Reason }
+        case exit2TTTag: // { EXIT2, FromPid, ToPid, TraceToken,
+            // Reason
+            // }
+            // as above, but bifferent element number
+            if (head.elementAt(4) == null) {
+                return false;
+            }
+            if (traceLevel >= ctrlThreshold) {
+                System.out.println("<- " + headerType(head) + " "
+                        + head);
+            }
 
-                default:
-                    // garbage?
-                    break receive_loop;
-                }
-            } // end receive_loop
+            from = (OtpErlangPid) head.elementAt(1);
+            to = (OtpErlangPid) head.elementAt(2);
+            reason = head.elementAt(4);
 
-            // this section reachable only with break
-            // we have received garbage from peer
-            deliver(new OtpErlangExit("Remote is sending garbage"));
+            deliver(new OtpMsg(tag, from, to, reason));
+            break;
 
-        } // try
+        case linkTag: // { LINK, FromPid, ToPid}
+        case unlinkTag: // { UNLINK, FromPid, ToPid}
+            if (traceLevel >= ctrlThreshold) {
+                System.out.println("<- " + headerType(head) + " "
+                        + head);
+            }
 
-        catch (final OtpAuthException e) {
-            deliver(e);
-        } catch (final OtpErlangDecodeException e) {
-            deliver(new OtpErlangExit("Remote is sending garbage"));
-        } catch (final IOException e) {
-            deliver(new OtpErlangExit("Remote has closed connection"));
-        } finally {
-            close();
+            from = (OtpErlangPid) head.elementAt(1);
+            to = (OtpErlangPid) head.elementAt(2);
+
+            deliver(new OtpMsg(tag, from, to, 0));
+            break;
+
+        case unlinkIdTag: // { UNLINK_ID, UnlinkId, FromPid, ToPid}
+        case unlinkIdAckTag: // { UNLINK_ID_Ack, UnlinkId, FromPid, ToPid}
+            if (traceLevel >= ctrlThreshold) {
+                System.out.println("<- " + headerType(head) + " "
+                        + head);
+            }
+
+            long unlink_id = ((OtpErlangLong) head.elementAt(1)).longValue();
+            from = (OtpErlangPid) head.elementAt(2);
+            to = (OtpErlangPid) head.elementAt(3);
+
+            deliver(new OtpMsg(tag, from, to, unlink_id));
+            break;
+
+        // absolutely no idea what to do with these, so we ignore
+        // them...
+        case groupLeaderTag: // { GROUPLEADER, FromPid, ToPid}
+            // (just show trace)
+            if (traceLevel >= ctrlThreshold) {
+                System.out.println("<- " + headerType(head) + " "
+                        + head);
+            }
+            break;
+
+        default:
+            // garbage?
+            return false;
         }
+        return true;
     }
 
     /**
@@ -886,20 +1081,223 @@ public abstract class AbstractConnection extends Thread {
         return connected;
     }
 
+    /**
+     * Hold back the messages the calling thread sends on this connection until
+     * it calls {@link #uncork()}, so that a burst of small messages goes out in
+     * few socket writes instead of one write each. Messages sent by other
+     * threads are not held back. The queued messages are also written when
+     * they add up to 64 kB, and a couple of milliseconds after the first of
+     * them was queued.
+     *
+     * <p>
+     * Calls can be nested, the messages are written when the outermost scope
+     * ends. Every call to cork must be matched by a call to uncork by the same
+     * thread, preferably in a finally block.
+     * </p>
+     */
+    public void cork() {
+        final Batch batch = batches.get();
+        if (batch != null) {
+            batch.depth++;
+        } else {
+            batches.set(new Batch());
+        }
+    }
+
+    /**
+     * End a scope started with {@link #cork()}, writing the messages held back
+     * if it was the outermost one.
+     *
+     * @exception java.io.IOException
+     *                if the connection is not active or a communication
+     *                error occurs, also when writing messages held back
+     *                earlier.
+     */
+    public void uncork() throws IOException {
+        final Batch batch = batches.get();
+        if (batch == null || --batch.depth > 0) {
+            return;
+        }
+        batches.remove();
+        batch.flush();
+    }
+
+    private static synchronized ScheduledExecutorService corkTimer() {
+        if (corkTimer == null) {
+            final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(
+                    1, new ThreadFactory() {
+                        public Thread newThread(final Runnable r) {
+                            final Thread thread = new Thread(r, "OtpCorkTimer");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            timer.setRemoveOnCancelPolicy(true);
+            corkTimer = timer;
+        }
+        return corkTimer;
+    }
+
+    /*
+     * The frames sent by one thread while it has corked the connection, as
+     * pairs of header and payload (null for control messages). The
+     * distribution headers are only built when the frames are written, so
+     * that atom cache slots are assigned in the order frames go out, even
+     * when other threads send in between. Filled by its thread and flushed by
+     * it or by the cork timer.
+     */
+    private final class Batch implements Runnable {
+        int depth = 1; // only used by the corking thread
+        private final ArrayList<OtpOutputStream> frames =
+                new ArrayList<OtpOutputStream>();
+        private int size = 0;
+        private ScheduledFuture<?> timer = null;
+        private IOException failure = null;
+
+        /*
+         * Queue a frame. The buffers are given back to the pool once written,
+         * also when this fails.
+         */
+        synchronized void add(final OtpOutputStream header,
+                final OtpOutputStream payload) throws IOException {
+            frames.add(header);
+            frames.add(payload);
+            size += header.size() + (payload == null ? 0 : payload.size());
+            if (failure != null || size >= corkLimit) {
+                flush();
+            } else if (timer == null) {
+                timer = corkTimer().schedule(this, corkDelay,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+
+        public void run() {
+            try {
+                flush();
+            } catch (final IOException e) {
+                // kept in failure, thrown to the corking thread
+            }
+        }
+
+        synchronized void flush() throws IOException {
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+            try {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (!frames.isEmpty()) {
+                    writeBatch(frames);
+                }
+            } catch (final IOException e) {
+                failure = e;
+                close();
+                throw e;
+            } finally {
+                for (final OtpOutputStream frame : frames) {
+                    OtpOutputStreamPool.release(frame);
+                }
+                frames.clear();
+                size = 0;
+            }
+        }
+    }
+
+    /*
+     * Write queued frames with as few writes as possible. Messages that are
+     * large enough to be sent in fragments are written as such, in order.
+     */
+    private void writeBatch(final ArrayList<OtpOutputStream> frames)
+            throws IOException {
+        final OtpOutputStream out = OtpOutputStreamPool.acquire();
+        try {
+            synchronized (this) {
+                for (int i = 0; i < frames.size(); i += 2) {
+                    final OtpOutputStream header = frames.get(i);
+                    final OtpOutputStream payload = frames.get(i + 1);
+                    if (payload != null && header.getAtomCacheRefs() != null
+                            && useFragments()
+                            && header.size() - 4 + payload.size() > fragmentSize) {
+                        writeBuffer(out);
+                        writeFragments(header, payload);
+                        continue;
+                    }
+                    appendFrame(out, header, payload);
+                    if (out.size() >= corkLimit) {
+                        writeBuffer(out);
+                    }
+                }
+                writeBuffer(out);
+            }
+        } finally {
+            OtpOutputStreamPool.release(out);
+        }
+    }
+
+    /*
+     * Write and empty a buffer of complete frames. Must hold the send lock.
+     */
+    private void writeBuffer(final OtpOutputStream buf) throws IOException {
+        if (buf.size() == 0) {
+            return;
+        }
+        if (socket == null) {
+            throw new IOException("socket was closed");
+        }
+        try {
+            if (socket instanceof OtpNioSocketTransport) {
+                ((OtpNioSocketTransport) socket)
+                        .write(new ByteBuffer[] { buf.toByteBuffer(0) });
+            } else {
+                final OutputStream out = socket.getOutputStream();
+                buf.writeTo(out);
+                out.flush();
+            }
+        } finally {
+            buf.recycle();
+        }
+    }
+
+    /*
+     * Append a frame to a buffer, building the distribution header the same
+     * way as writeFrame. Must hold the send lock.
+     */
+    private void appendFrame(final OtpOutputStream buf,
+            final OtpOutputStream header, final OtpOutputStream payload)
+            throws IOException {
+        final OtpAtomCacheRefs refs = header.getAtomCacheRefs();
+        final int start = buf.size();
+        if (refs != null) {
+            buf.write4BE(0); // reserve space for length
+            sendAtomCache.writeHeader(buf, refs);
+            header.writeTo(buf, 4);
+        } else {
+            header.writeTo(buf, 0);
+        }
+        if (payload != null) {
+            payload.writeTo(buf, 0);
+        }
+        if (refs != null) {
+            buf.poke4BE(start, buf.size() - start - 4);
+        }
+    }
+
     // used by send and send_reg (message types with payload)
-    protected synchronized void do_send(final OtpOutputStream header,
+    protected void do_send(final OtpOutputStream header,
             final OtpOutputStream payload) throws IOException {
+        boolean queued = false;
         try {
             if (traceLevel >= sendThreshold) {
                 // Need to decode header and output buffer to show trace
                 // message!
                 // First make OtpInputStream, then decode.
                 try {
-                    final OtpErlangObject h = header.getOtpInputStream(5)
-                            .read_any();
+                    final OtpErlangObject h = traceInput(header, true).read_any();
                     System.out.println("-> " + headerType(h) + " " + h);
 
-                    OtpErlangObject o = payload.getOtpInputStream(0).read_any();
+                    OtpErlangObject o = traceInput(payload, false).read_any();
                     System.out.println("   " + o);
                     o = null;
                 } catch (final OtpErlangDecodeException e) {
@@ -908,36 +1306,215 @@ public abstract class AbstractConnection extends Thread {
                 }
             }
 
-            // group flush op in favour of possible ssh-tunneled stream
-            OutputStream out = socket.getOutputStream();
-            header.writeTo(out);
-            payload.writeTo(out);
-            out.flush();
+            final Batch batch = batches.get();
+            if (batch != null) {
+                queued = true;
+                batch.add(header, payload);
+            } else if (header.getAtomCacheRefs() != null && useFragments()
+                    && header.size() - 4 + payload.size() > fragmentSize) {
+                writeFragments(header, payload);
+            } else {
+                synchronized (this) {
+                    writeFrame(header, payload);
+                }
+            }
         } catch (final IOException e) {
             close();
             throw e;
+        } finally {
+            if (!queued) {
+                OtpOutputStreamPool.release(header);
+                OtpOutputStreamPool.release(payload);
+            }
         }
     }
 
     // used by the other message types
-    protected synchronized void do_send(final OtpOutputStream header)
-            throws IOException {
+    protected void do_send(final OtpOutputStream header) throws IOException {
+        boolean queued = false;
         try {
             if (traceLevel >= ctrlThreshold) {
                 try {
-                    final OtpErlangObject h = header.getOtpInputStream(5)
-                            .read_any();
+                    final OtpErlangObject h = traceInput(header, true).read_any();
                     System.out.println("-> " + headerType(h) + " " + h);
                 } catch (final OtpErlangDecodeException e) {
                     System.out.println("   " + "can't decode output buffer: "
                             + e);
                 }
             }
-            header.writeToAndFlush(socket.getOutputStream());
+            final Batch batch = batches.get();
+            if (batch != null) {
+                queued = true;
+                batch.add(header, null);
+            } else {
+                synchronized (this) {
+                    writeFrame(header, null);
+                }
+            }
         } catch (final IOException e) {
             close();
             throw e;
+        } finally {
+            if (!queued) {
+                OtpOutputStreamPool.release(header);
+            }
+        }
+    }
+
+    /*
+     * Write a frame with one write to the transport when possible: a gathering
+     * write for channel based transports, and for stream based ones by copying
+     * small payloads behind the header (in favour of possible ssh-tunneled
+     * streams).
+     *
+     * With the atom cache in use, the distribution header is built here, while
+     * holding the send lock, and inserted between the length and the control
+     * message. The length is fixed up accordingly.
+     */
+    private void writeFrame(final OtpOutputStream header,
+            final OtpOutputStream payload) throws IOException {
+        final OtpAtomCacheRefs refs = header.getAtomCacheRefs();
+        final int payloadSize = payload == null ? 0 : payload.size();
+        OtpOutputStream frame = header;
+        int headerOffset = 0;
+        if (refs != null) {
+            frame = OtpOutputStreamPool.acquire();
+            frame.write4BE(0); // reserve space for length
+            sendAtomCache.writeHeader(frame, refs);
+            frame.poke4BE(0, frame.size() + header.size() - 8 + payloadSize);
+            headerOffset = 4;
+        }
+        try {
+            if (socket instanceof OtpNioSocketTransport) {
+                final ByteBuffer[] buffers = new ByteBuffer[(frame == header ? 1
+                        : 2) + (payload == null ? 0 : 1)];
+                int i = 0;
+                if (frame != header) {
+                    buffers[i++] = frame.toByteBuffer(0);
+                }
+                buffers[i++] = header.toByteBuffer(headerOffset);
+                if (payload != null) {
+                    buffers[i++] = payload.toByteBuffer(0);
+                }
+                ((OtpNioSocketTransport) socket).write(buffers);
+                return;
+            }
+            final OutputStream out = socket.getOutputStream();
+            if (frame != header) {
+                header.writeTo(frame, headerOffset);
+            }
+            if (payload != null && payloadSize <= mergeLimit) {
+                payload.writeTo(frame, 0);
+                frame.writeTo(out);
+            } else {
+                frame.writeTo(out);
+                if (payload != null) {
+                    payload.writeTo(out);
+                }
+            }
+            out.flush();
+        } finally {
+            if (frame != header) {
+                OtpOutputStreamPool.release(frame);
+            }
+        }
+    }
+
+    /*
+     * Send a large message in fragments, taking the send lock for each fragment
+     * only, so that other messages can go out in between. The first fragment
+     * carries the distribution header, so its atom cache slots are assigned in
+     * wire order like for other messages.
+     */
+    private void writeFragments(final OtpOutputStream header,
+            final OtpOutputStream payload) throws IOException {
+        final OtpAtomCacheRefs refs = header.getAtomCacheRefs();
+        final int total = header.size() - 4 + payload.size();
+        final long count = (total + fragmentSize - 1) / fragmentSize;
+        long sequenceId = 0;
+        int from = 0;
+        for (long fragmentId = count; fragmentId > 0; fragmentId--) {
+            final int length = Math.min(fragmentSize, total - from);
+            final OtpOutputStream frame = OtpOutputStreamPool.acquire();
+            try {
+                frame.write4BE(0); // reserve space for length
+                synchronized (this) {
+                    if (fragmentId == count) {
+                        sequenceId = ++fragmentSequence;
+                        sendAtomCache.writeFragmentHeader(frame, refs,
+                                sequenceId, fragmentId);
+                    } else {
+                        frame.write1(OtpExternal.versionTag);
+                        frame.write1(OtpExternal.distFragContTag);
+                        frame.write8BE(sequenceId);
+                        frame.write8BE(fragmentId);
+                    }
+                    frame.poke4BE(0, frame.size() - 4 + length);
+                    writeFragment(frame, header, payload, from, length);
+                }
+            } finally {
+                OtpOutputStreamPool.release(frame);
+            }
+            from += length;
+        }
+    }
+
+    /*
+     * Write one fragment: its header, already in frame, followed by the given
+     * range of the control message and payload.
+     */
+    private void writeFragment(final OtpOutputStream frame,
+            final OtpOutputStream header, final OtpOutputStream payload,
+            final int from, final int length) throws IOException {
+        if (socket == null) {
+            // closed while sending the previous fragments
+            throw new IOException("socket was closed");
         }
+        final int controlSize = header.size() - 4;
+        final int inHeader = Math.max(0, Math.min(length, controlSize - from));
+        final int inPayload = length - inHeader;
+        final int payloadFrom = Math.max(0, from - controlSize);
+        if (socket instanceof OtpNioSocketTransport) {
+            final ByteBuffer[] buffers = new ByteBuffer[1
+                    + (inHeader > 0 ? 1 : 0) + (inPayload > 0 ? 1 : 0)];
+            int i = 0;
+            buffers[i++] = frame.toByteBuffer(0);
+            if (inHeader > 0) {
+                buffers[i++] = header.toByteBuffer(4 + from, inHeader);
+            }
+            if (inPayload > 0) {
+                buffers[i++] = payload.toByteBuffer(payloadFrom, inPayload);
+            }
+            ((OtpNioSocketTransport) socket).write(buffers);
+            return;
+        }
+        if (inHeader > 0) {
+            header.writeTo(frame, 4 + from, inHeader);
+        }
+        if (inPayload > 0) {
+            payload.writeTo(frame, payloadFrom, inPayload);
+        }
+        final OutputStream out = socket.getOutputStream();
+        frame.writeTo(out);
+        out.flush();
+    }
+
+    /*
+     * Get an outgoing buffer as input, for tracing. The preamble of a header
+     * is skipped.
+     */
+    private static OtpInputStream traceInput(final OtpOutputStream buf,
+            final boolean isHeader) {
+        final OtpAtomCacheRefs refs = buf.getAtomCacheRefs();
+        int offset = 0;
+        if (isHeader) {
+            offset = refs == null ? 5 : 4;
+        }
+        final OtpInputStream in = buf.getOtpInputStream(offset);
+        if (refs != null) {
+            in.setAtomCacheRefs(refs.atoms());
+        }
+        return in;
     }
 
     protected String headerType(final OtpErlangObject h) {
@@ -1496,4 +2073,18 @@ public abstract class AbstractConnection extends Thread {
     public int getFlags() {
         return flags;
     }
+
+    /*
+     * A fragmented message being received.
+     */
+    private static final class Fragments {
+        final String[] atoms;
+        final OtpOutputStream data = new OtpOutputStream();
+        long next; // the id of the next fragment
+
+        Fragments(final String[] atoms, final long first) {
+            this.atoms = atoms;
+            next = first;
+        }
+    }
 }
@@ -90,9 +90,11 @@ public class AbstractNode implements OtpTransportFactory {
     static final int dFlagBitBinaries = 0x400;
     static final int dFlagNewFloats = 0x800;
     static final int dFlagUnicodeIo = 0x1000;
+    static final int dFlagDistHdrAtomCache = 0x2000;
     static final int dFlagUtf8Atoms = 0x10000;
     static final int dFlagMapTag = 0x20000;
     static final int dFlagBigCreation = 0x40000;
+    static final int dFlagFragments = 0x800000;
     static final int dFlagHandshake23 = 0x1000000;
     static final int dFlagUnlinkId = 0x2000000;
     static final int dFlagMandatory25Digest = 0x4000000;
@@ -115,6 +117,13 @@ public class AbstractNode implements OtpTransportFactory {
        DFLAG_DIST_MANDATORY in erts/emulator/beam/dist.h. */
     static final long mandatoryFlags = mandatoryFlags25;
 
+    /*
+     * The distribution header atom cache can be turned off for debugging.
+     * Fragmented messages need the distribution header, so they go with it.
+     */
+    static final boolean useAtomCache = !Boolean
+        .getBoolean("OtpConnection.noAtomCache");
+
     int ntype = NTYPE_R6;
     int proto = 0; // tcp/ip
     int distHigh = 6;
@@ -123,7 +132,8 @@ public class AbstractNode implements OtpTransportFactory {
     long flags = mandatoryFlags
         | dFlagUnlinkId
         | dFlagV4PidsRefs
-        | dFlagMandatory25Digest;
+        | dFlagMandatory25Digest
+        | (useAtomCache ? dFlagDistHdrAtomCache | dFlagFragments : 0);
 
     /* initialize hostname and default cookie */
     static {
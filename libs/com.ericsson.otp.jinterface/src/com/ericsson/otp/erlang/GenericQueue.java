@@ -155,6 +155,11 @@ public class GenericQueue {
         return o;
     }
 
+    // look at the queue head without removing it
+    public synchronized Object peek() {
+        return head == null ? null : head.getContents();
+    }
+
     public synchronized int getCount() {
         return count;
     }
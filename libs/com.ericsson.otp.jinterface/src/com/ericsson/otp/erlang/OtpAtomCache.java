@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ericsson.otp.erlang;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * <p>
+ * One direction of the distribution header atom cache of a connection. The
+ * cache has 2048 slots in 8 segments. A distribution header lists the atoms
+ * used by the message that follows it, either as a slot index only or as a
+ * slot index with the atom text, in which case the slot is (re)filled.
+ * </p>
+ *
+ * <p>
+ * The sending side must be used by one thread at a time, in the order the
+ * messages are written to the wire. The receiving side is only used by the
+ * thread reading from the connection.
+ * </p>
+ */
+final class OtpAtomCache {
+    static final int size = 2048;
+
+    private static final int newEntryFlag = 8;
+    private static final int longAtomsFlag = 1;
+
+    private final String[] slots = new String[size];
+
+    private static int slotFor(final String atom) {
+        return (atom.hashCode() & 0x7fffffff) % size;
+    }
+
+    /**
+     * Write the distribution header for a message using the given atom
+     * references, updating the cache as the receiver will.
+     */
+    void writeHeader(final OtpOutputStream out, final OtpAtomCacheRefs refs) {
+        out.write1(OtpExternal.versionTag);
+        out.write1(OtpExternal.distHeaderTag);
+        writeRefs(out, refs);
+    }
+
+    /**
+     * Write the header of the first fragment of a fragmented message, see
+     * {@link #writeHeader(OtpOutputStream, OtpAtomCacheRefs)}.
+     */
+    void writeFragmentHeader(final OtpOutputStream out,
+            final OtpAtomCacheRefs refs, final long sequenceId,
+            final long fragmentId) {
+        out.write1(OtpExternal.versionTag);
+        out.write1(OtpExternal.distFragHeaderTag);
+        out.write8BE(sequenceId);
+        out.write8BE(fragmentId);
+        writeRefs(out, refs);
+    }
+
+    private void writeRefs(final OtpOutputStream out,
+            final OtpAtomCacheRefs refs) {
+        final int n = refs.size();
+        out.write1(n);
+        if (n == 0) {
+            return;
+        }
+        final int[] slot = new int[n];
+        final boolean[] isNew = new boolean[n];
+        // one flag nibble per reference, plus one for the header itself
+        final byte[] flags = new byte[n / 2 + 1];
+        for (int i = 0; i < n; i++) {
+            final String atom = refs.atom(i);
+            slot[i] = slotFor(atom);
+            isNew[i] = !atom.equals(slots[slot[i]]);
+            if (isNew[i]) {
+                slots[slot[i]] = atom;
+            }
+            final int nibble = (isNew[i] ? newEntryFlag : 0) | slot[i] >> 8;
+            flags[i >> 1] |= nibble << ((i & 1) * 4);
+        }
+        out.writeN(flags);
+        for (int i = 0; i < n; i++) {
+            out.write1(slot[i] & 0xff);
+            if (isNew[i]) {
+                final byte[] text = refs.text(i);
+                out.write1(text.length);
+                out.writeN(text);
+            }
+        }
+    }
+
+    /**
+     * Read a distribution header, after the version and header tags (and the
+     * sequence and fragment ids of a first fragment), updating
+     * the cache.
+     *
+     * @return the atoms referenced by the message, in reference order, or
+     *         null if there are none.
+     */
+    String[] readHeader(final OtpInputStream in)
+            throws OtpErlangDecodeException {
+        final int n = in.read1();
+        if (n == 0) {
+            return null;
+        }
+        final byte[] flags = new byte[n / 2 + 1];
+        in.readN(flags);
+        final boolean longAtoms = (flags[n >> 1] >> ((n & 1) * 4)
+                & longAtomsFlag) != 0;
+        final String[] atoms = new String[n];
+        for (int i = 0; i < n; i++) {
+            final int nibble = flags[i >> 1] >> ((i & 1) * 4) & 0xf;
+            final int slot = (nibble & 7) << 8 | in.read1();
+            if ((nibble & newEntryFlag) != 0) {
+                final int len = longAtoms ? in.read2BE() : in.read1();
+                final byte[] text = new byte[len];
+                in.readN(text);
+                try {
+                    slots[slot] = new String(text, "UTF-8");
+                } catch (final UnsupportedEncodingException e) {
+                    throw new OtpErlangDecodeException(
+                            "Failed to decode UTF-8 atom");
+                }
+            } else if (slots[slot] == null) {
+                throw new OtpErlangDecodeException(
+                        "Reference to empty atom cache slot " + slot);
+            }
+            atoms[i] = slots[slot];
+        }
+        return atoms;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ericsson.otp.erlang;
+
+import java.util.HashMap;
+
+/**
+ * The atoms referenced from the distribution header of one outgoing message.
+ * An {@link OtpOutputStream} with references attached writes each atom once
+ * here and only an index into this table in the encoded term.
+ */
+final class OtpAtomCacheRefs {
+    // the reference count in the distribution header is a single byte
+    static final int maxRefs = 255;
+
+    private String[] atoms = new String[16];
+    private byte[][] texts = new byte[16][];
+    private final HashMap<String, Integer> index = new HashMap<String, Integer>();
+    private int count = 0;
+
+    /**
+     * Get the reference index for an atom, adding it if it is not there yet.
+     *
+     * @return the index, or -1 if the table is full.
+     */
+    int refFor(final String atom, final byte[] utf8) {
+        final Integer i = index.get(atom);
+        if (i != null) {
+            return i.intValue();
+        }
+        if (count == maxRefs) {
+            return -1;
+        }
+        if (count == atoms.length) {
+            final int size = Math.min(maxRefs, count * 2);
+            final String[] newAtoms = new String[size];
+            final byte[][] newTexts = new byte[size][];
+            System.arraycopy(atoms, 0, newAtoms, 0, count);
+            System.arraycopy(texts, 0, newTexts, 0, count);
+            atoms = newAtoms;
+            texts = newTexts;
+        }
+        atoms[count] = atom;
+        texts[count] = utf8;
+        index.put(atom, Integer.valueOf(count));
+        return count++;
+    }
+
+    int size() {
+        return count;
+    }
+
+    String atom(final int i) {
+        return atoms[i];
+    }
+
+    byte[] text(final int i) {
+        return texts[i];
+    }
+
+    /*
+     * The atoms in reference order, as the receiver will see them.
+     */
+    String[] atoms() {
+        final String[] result = new String[count];
+        System.arraycopy(atoms, 0, result, 0, count);
+        return result;
+    }
+}
@@ -70,7 +70,7 @@ public class OtpConnection extends AbstractConnection {
         super(self, s);
         this.self = self;
         queue = new GenericQueue();
-        start();
+        startReceiving();
     }
 
     /*
@@ -88,7 +88,7 @@ public class OtpConnection extends AbstractConnection {
         super(self, other);
         this.self = self;
         queue = new GenericQueue();
-        start();
+        startReceiving();
     }
 
     @Override
@@ -411,7 +411,7 @@ public class OtpConnection extends AbstractConnection {
     public void send(final OtpErlangPid dest, final OtpErlangObject msg)
             throws IOException {
         // encode and send the message
-        super.sendBuf(self.pid(), dest, new OtpOutputStream(msg));
+        super.sendBuf(self.pid(), dest, encodePayload(msg));
     }
 
     /**
@@ -430,7 +430,7 @@ public class OtpConnection extends AbstractConnection {
     public void send(final String dest, final OtpErlangObject msg)
             throws IOException {
         // encode and send the message
-        super.sendBuf(self.pid(), dest, new OtpOutputStream(msg));
+        super.sendBuf(self.pid(), dest, encodePayload(msg));
     }
 
     /**
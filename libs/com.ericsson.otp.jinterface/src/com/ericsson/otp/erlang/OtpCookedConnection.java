@@ -83,7 +83,7 @@ public class OtpCookedConnection extends AbstractConnection {
         super(self, s);
         this.self = self;
         links = new Links(25);
-        start();
+        startReceiving();
     }
 
     /*
@@ -101,7 +101,7 @@ public class OtpCookedConnection extends AbstractConnection {
         super(self, other);
         this.self = self;
         links = new Links(25);
-        start();
+        startReceiving();
     }
 
     // pass the error to the node
@@ -139,24 +139,31 @@ public class OtpCookedConnection extends AbstractConnection {
     }
 
     /*
-     * send to pid
+     * send to pid, returns the size of the encoded message
      */
     @SuppressWarnings("resource")
-    void send(final OtpErlangPid from, final OtpErlangPid dest,
+    int send(final OtpErlangPid from, final OtpErlangPid dest,
             final OtpErlangObject msg) throws IOException {
         // encode and send the message
-        sendBuf(from, dest, new OtpOutputStream(msg));
+        final OtpOutputStream payload = encodePayload(msg);
+        final int size = payload.size();
+        sendBuf(from, dest, payload);
+        return size;
     }
 
     /*
      * send to remote name dest is recipient's registered name, the nodename is
-     * implied by the choice of connection.
+     * implied by the choice of connection. Returns the size of the encoded
+     * message.
      */
     @SuppressWarnings("resource")
-    void send(final OtpErlangPid from, final String dest,
+    int send(final OtpErlangPid from, final String dest,
             final OtpErlangObject msg) throws IOException {
         // encode and send the message
-        sendBuf(from, dest, new OtpOutputStream(msg));
+        final OtpOutputStream payload = encodePayload(msg);
+        final int size = payload.size();
+        sendBuf(from, dest, payload);
+        return size;
     }
 
     @Override
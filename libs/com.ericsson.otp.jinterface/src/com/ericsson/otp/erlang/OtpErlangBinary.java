@@ -19,6 +19,8 @@
  */
 package com.ericsson.otp.erlang;
 
+import java.nio.ByteBuffer;
+
 /**
  * Provides a Java representation of Erlang binaries. Anything that can be
  * represented as a sequence of bytes can be made into an Erlang binary.
@@ -37,6 +39,11 @@ public class OtpErlangBinary extends OtpErlangBitstr {
         super(bin);
     }
 
+    // for subclasses that provide the bytes themselves
+    OtpErlangBinary() {
+        super();
+    }
+
     /**
      * Create a binary from a stream containing a binary encoded in Erlang
      * external format.
@@ -78,6 +85,15 @@ public class OtpErlangBinary extends OtpErlangBitstr {
         buf.write_binary(bin);
     }
 
+    /**
+     * Get the contents of this binary as a read-only buffer, without copying.
+     *
+     * @return a buffer positioned at the first byte of the binary.
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(bin).asReadOnlyBuffer();
+    }
+
     @Override
     public Object clone() {
         final OtpErlangBinary that = (OtpErlangBinary) super.clone();
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ericsson.otp.erlang;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A binary decoded as a view of the buffer it was received in, see
+ * {@link OtpInputStream#DECODE_BINARIES_AS_SLICES}. Receive buffers are not
+ * reused, so the view stays valid, but it keeps the whole buffer reachable.
+ * </p>
+ *
+ * <p>
+ * {@link #asByteBuffer()}, {@link #size()} and encoding use the view directly.
+ * Anything that needs a byte array of its own ({@link #binaryValue()},
+ * hashing, cloning, serialization) copies the bytes once and lets go of the
+ * buffer.
+ * </p>
+ */
+final class OtpErlangBinarySlice extends OtpErlangBinary {
+    private static final long serialVersionUID = 1L;
+
+    private transient byte[] frame;
+    private final int offset;
+    private final int length;
+
+    OtpErlangBinarySlice(final byte[] frame, final int offset, final int length) {
+        super();
+        this.frame = frame;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    // copy on escape
+    private synchronized byte[] bytes() {
+        if (bin == null) {
+            bin = Arrays.copyOfRange(frame, offset, offset + length);
+            frame = null;
+        }
+        return bin;
+    }
+
+    @Override
+    public synchronized ByteBuffer asByteBuffer() {
+        if (bin != null) {
+            return super.asByteBuffer();
+        }
+        return ByteBuffer.wrap(frame, offset, length).slice()
+                .asReadOnlyBuffer();
+    }
+
+    @Override
+    public byte[] binaryValue() {
+        return bytes();
+    }
+
+    @Override
+    public int size() {
+        return length;
+    }
+
+    @Override
+    public Object getObject() {
+        bytes();
+        return super.getObject();
+    }
+
+    @Override
+    public String toString() {
+        return "#Bin<" + length + ">";
+    }
+
+    @Override
+    public synchronized void encode(final OtpOutputStream buf) {
+        if (bin != null) {
+            buf.write_binary(bin);
+        } else {
+            buf.write_binary(frame, offset, length);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (!(o instanceof OtpErlangBitstr)) {
+            return false;
+        }
+        final OtpErlangBitstr that = (OtpErlangBitstr) o;
+        if (that.pad_bits != 0) {
+            return false;
+        }
+        return asByteBuffer().equals(ByteBuffer.wrap(that.binaryValue()));
+    }
+
+    @Override
+    protected int doHashCode() {
+        bytes();
+        return super.doHashCode();
+    }
+
+    @Override
+    public Object clone() {
+        bytes();
+        return super.clone();
+    }
+
+    private Object writeReplace() {
+        return new OtpErlangBinary(bytes());
+    }
+}
@@ -34,6 +34,10 @@ public class OtpErlangBitstr extends OtpErlangObject {
     protected byte[] bin;
     protected int pad_bits;
 
+    // for subclasses that provide the bytes themselves
+    OtpErlangBitstr() {
+    }
+
     /**
      * Create a bitstr from a byte array
      *
@@ -252,13 +256,15 @@ public class OtpErlangBitstr extends OtpErlangObject {
             return false;
         }
 
+        // binaryValue(), since that may be a view that has no array yet
+        final byte[] thatBin = that.binaryValue();
         final int len = bin.length;
-        if (len != that.bin.length) {
+        if (len != thatBin.length) {
             return false;
         }
 
         for (int i = 0; i < len; i++) {
-            if (bin[i] != that.bin[i]) {
+            if (bin[i] != thatBin[i]) {
                 return false; // early exit
             }
         }
@@ -0,0 +1,158 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ericsson.otp.erlang;
+
+/**
+ * <p>
+ * A list decoded with {@link OtpInputStream#DECODE_LAZILY}. Decoding only
+ * checks the structure of the list and remembers where it is; the elements and
+ * the tail are decoded the first time they are accessed, and
+ * {@link OtpTermReader} can go through them without keeping them. Encoding
+ * copies the original bytes unless they contain atom cache references, which
+ * are only valid for the message they came in.
+ * </p>
+ *
+ * <p>
+ * An element that fails to decode when accessed throws
+ * {@link IllegalStateException}.
+ * </p>
+ */
+final class OtpErlangLazyList extends OtpErlangList {
+    private static final long serialVersionUID = 1L;
+
+    private final transient OtpInputStream source;
+    private final int head;
+    private final int arity;
+    private final int tailStart;
+    private final boolean proper;
+    private final int end;
+    // element offsets and decoded elements, set up on first access
+    private transient int[] offsets;
+    private transient OtpErlangObject[] decoded;
+    private transient OtpErlangObject tail;
+
+    OtpErlangLazyList(final OtpInputStream buf)
+            throws OtpErlangDecodeException {
+        super();
+        head = buf.getPos();
+        arity = buf.read_list_head();
+        for (int i = 0; i < arity; i++) {
+            buf.skip_any();
+        }
+        tailStart = buf.getPos();
+        proper = arity == 0 || buf.peek1() == OtpExternal.nilTag;
+        if (arity > 0) {
+            buf.skip_any();
+        }
+        end = buf.getPos();
+        source = buf;
+    }
+
+    /*
+     * A reader going through the elements from the original bytes.
+     */
+    OtpTermReader reader() throws OtpErlangDecodeException {
+        return new OtpTermReader(source.subStream(head, end - head));
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public synchronized OtpErlangObject elementAt(final int i) {
+        if (i >= arity() || i < 0) {
+            return null;
+        }
+        if (decoded == null) {
+            decoded = new OtpErlangObject[arity];
+        }
+        if (decoded[i] == null) {
+            decoded[i] = decode(offset(i));
+        }
+        return decoded[i];
+    }
+
+    private synchronized int offset(final int i) {
+        if (offsets == null) {
+            final int[] res = new int[arity];
+            final OtpInputStream buf = source.subStream(head, end - head);
+            try {
+                buf.read_list_head();
+                for (int j = 0; j < arity; j++) {
+                    res[j] = buf.getPos();
+                    buf.skip_any();
+                }
+            } catch (final OtpErlangDecodeException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+            offsets = res;
+        }
+        return offsets[i];
+    }
+
+    @Override
+    public OtpErlangObject[] elements() {
+        final OtpErlangObject[] res = new OtpErlangObject[arity()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = elementAt(i);
+        }
+        return res;
+    }
+
+    @Override
+    public boolean isProper() {
+        return proper;
+    }
+
+    @Override
+    public synchronized OtpErlangObject getLastTail() {
+        if (!proper && tail == null) {
+            tail = decode(tailStart);
+        }
+        return tail;
+    }
+
+    @Override
+    protected void encode(final OtpOutputStream buf, final int start) {
+        if (source.getAtomCacheRefs() != null) {
+            super.encode(buf, start);
+            return;
+        }
+        final int arity = arity() - start;
+        if (arity > 0) {
+            buf.write_list_head(arity);
+        }
+        final int from = arity > 0 ? offset(start) : tailStart;
+        if (from == end) {
+            buf.write_nil();
+        } else {
+            buf.write(source.getBuffer(), from, end - from);
+        }
+    }
+
+    private OtpErlangObject decode(final int offset) {
+        try {
+            return source.subStream(offset, end - offset).read_any();
+        } catch (final OtpErlangDecodeException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private Object writeReplace() {
+        return clone();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ericsson.otp.erlang;
+
+/**
+ * <p>
+ * A tuple decoded with {@link OtpInputStream#DECODE_LAZILY}. Decoding only
+ * records where each element starts; an element is decoded the first time it
+ * is accessed, and {@link OtpTermReader} can go through the elements without
+ * keeping them. Encoding copies the original bytes unless they contain atom
+ * cache references, which are only valid for the message they came in.
+ * </p>
+ *
+ * <p>
+ * The structure of the elements is checked when the tuple is decoded, their
+ * content is not. An element that fails to decode when accessed throws
+ * {@link IllegalStateException}.
+ * </p>
+ */
+final class OtpErlangLazyTuple extends OtpErlangTuple {
+    private static final long serialVersionUID = 1L;
+
+    private final transient OtpInputStream source;
+    private final int head;
+    private final int[] offsets;
+    private final int end;
+    // set up on first access
+    private transient OtpErlangObject[] decoded;
+
+    OtpErlangLazyTuple(final OtpInputStream buf)
+            throws OtpErlangDecodeException {
+        super();
+        head = buf.getPos();
+        final int arity = buf.read_tuple_head();
+        offsets = new int[arity];
+        for (int i = 0; i < arity; i++) {
+            offsets[i] = buf.getPos();
+            buf.skip_any();
+        }
+        end = buf.getPos();
+        source = buf;
+    }
+
+    /*
+     * A reader going through the elements from the original bytes.
+     */
+    OtpTermReader reader() throws OtpErlangDecodeException {
+        return new OtpTermReader(source.subStream(head, end - head));
+    }
+
+    @Override
+    public int arity() {
+        return offsets.length;
+    }
+
+    @Override
+    public synchronized OtpErlangObject elementAt(final int i) {
+        if (i >= arity() || i < 0) {
+            return null;
+        }
+        if (decoded == null) {
+            decoded = new OtpErlangObject[arity()];
+        }
+        if (decoded[i] == null) {
+            decoded[i] = decode(offsets[i]);
+        }
+        return decoded[i];
+    }
+
+    @Override
+    public OtpErlangObject[] elements() {
+        final OtpErlangObject[] res = new OtpErlangObject[arity()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = elementAt(i);
+        }
+        return res;
+    }
+
+    @Override
+    public void encode(final OtpOutputStream buf) {
+        if (source.getAtomCacheRefs() != null) {
+            super.encode(buf);
+            return;
+        }
+        buf.write_tuple_head(arity());
+        final int start = arity() > 0 ? offsets[0] : end;
+        buf.write(source.getBuffer(), start, end - start);
+    }
+
+    private OtpErlangObject decode(final int offset) {
+        try {
+            return source.subStream(offset, end - offset).read_any();
+        } catch (final OtpErlangDecodeException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object clone() {
+        return new OtpErlangTuple(elements());
+    }
+
+    private Object writeReplace() {
+        return new OtpErlangTuple(elements());
+    }
+}
@@ -212,10 +212,11 @@ public class OtpErlangList extends OtpErlangObject implements
             if (i > start) {
                 s.append(",");
             }
-            s.append(elems[i].toString());
+            s.append(elementAt(i).toString());
         }
-        if (lastTail != null) {
-            s.append("|").append(lastTail.toString());
+        final OtpErlangObject tail = getLastTail();
+        if (tail != null) {
+            s.append("|").append(tail.toString());
         }
         s.append("]");
 
@@ -244,13 +245,14 @@ public class OtpErlangList extends OtpErlangObject implements
             buf.write_list_head(arity);
 
             for (int i = start; i < arity + start; i++) {
-                buf.write_any(elems[i]);
+                buf.write_any(elementAt(i));
             }
         }
-        if (lastTail == null) {
+        final OtpErlangObject tail = getLastTail();
+        if (tail == null) {
             buf.write_nil();
         } else {
-            buf.write_any(lastTail);
+            buf.write_any(tail);
         }
     }
 
@@ -389,12 +391,12 @@ public class OtpErlangList extends OtpErlangObject implements
      * @return true if the list is proper, i.e. the last tail is nil
      */
     public boolean isProper() {
-        return lastTail == null;
+        return getLastTail() == null;
     }
 
     public OtpErlangObject getHead() {
         if (arity() > 0) {
-            return elems[0];
+            return elementAt(0);
         }
         return null;
     }
@@ -406,8 +408,9 @@ public class OtpErlangList extends OtpErlangObject implements
     public OtpErlangObject getNthTail(final int n) {
         final int arity = arity();
         if (arity >= n) {
-            if (arity == n && lastTail != null) {
-                return lastTail;
+            final OtpErlangObject tail = getLastTail();
+            if (arity == n && tail != null) {
+                return tail;
             }
             return new SubList(this, n);
         }
@@ -530,15 +533,14 @@ public class OtpErlangList extends OtpErlangObject implements
         }
 
         public boolean hasNext() {
-            return cursor < elems.length;
+            return cursor < arity();
         }
 
         public OtpErlangObject next() {
-            try {
-                return elems[cursor++];
-            } catch (final IndexOutOfBoundsException e) {
+            if (cursor >= arity()) {
                 throw new NoSuchElementException();
             }
+            return elementAt(cursor++);
         }
 
         public void remove() {
@@ -36,6 +36,13 @@ public class OtpErlangTuple extends OtpErlangObject {
 
     private OtpErlangObject[] elems = NO_ELEMENTS;
 
+    /*
+     * For subclasses that keep their elements elsewhere, see
+     * OtpErlangLazyTuple.
+     */
+    OtpErlangTuple() {
+    }
+
     /**
      * Create a unary tuple containing the given element.
      *
@@ -171,7 +178,7 @@ public class OtpErlangTuple extends OtpErlangObject {
     public String toString() {
         int i;
         final StringBuffer s = new StringBuffer();
-        final int arity = elems.length;
+        final int arity = arity();
 
         s.append("{");
 
@@ -179,7 +186,7 @@ public class OtpErlangTuple extends OtpErlangObject {
             if (i > 0) {
                 s.append(",");
             }
-            s.append(elems[i].toString());
+            s.append(elementAt(i).toString());
         }
 
         s.append("}");
@@ -195,12 +202,12 @@ public class OtpErlangTuple extends OtpErlangObject {
      */
     @Override
     public void encode(final OtpOutputStream buf) {
-        final int arity = elems.length;
+        final int arity = arity();
 
         buf.write_tuple_head(arity);
 
         for (int i = 0; i < arity; i++) {
-            buf.write_any(elems[i]);
+            buf.write_any(elementAt(i));
         }
     }
 
@@ -228,7 +235,7 @@ public class OtpErlangTuple extends OtpErlangObject {
         }
 
         for (int i = 0; i < a; i++) {
-            if (!elems[i].equals(t.elems[i])) {
+            if (!elementAt(i).equals(t.elementAt(i))) {
                 return false; // early exit
             }
         }
@@ -242,12 +249,12 @@ public class OtpErlangTuple extends OtpErlangObject {
             return false;
         }
         final OtpErlangTuple t = (OtpErlangTuple) term;
-        final int a = elems.length;
-        if (a != t.elems.length) {
+        final int a = arity();
+        if (a != t.arity()) {
             return false;
         }
         for (int i = 0; i < a; i++) {
-            if (!elems[i].match(t.elems[i], bindings)) {
+            if (!elementAt(i).match(t.elementAt(i), bindings)) {
                 return false;
             }
         }
@@ -271,7 +278,7 @@ public class OtpErlangTuple extends OtpErlangObject {
         final int a = arity();
         hash.combine(a);
         for (int i = 0; i < a; i++) {
-            hash.combine(elems[i].hashCode());
+            hash.combine(elementAt(i).hashCode());
         }
         return hash.valueOf();
     }
@@ -105,6 +105,18 @@ public class OtpExternal {
     /** The tag used for compressed terms */
     public static final int compressedTag = 80;
 
+    /** The tag used for references to the distribution header atom cache */
+    public static final int atomCacheRefTag = 82;
+
+    /** The tag used for distribution headers */
+    public static final int distHeaderTag = 68;
+
+    /** The tag used for the distribution header of a first fragment */
+    public static final int distFragHeaderTag = 69;
+
+    /** The tag used for the header of the following fragments */
+    public static final int distFragContTag = 70;
+
     /** The version number used to mark serialized Erlang terms */
     public static final int versionTag = 131;
 
@@ -35,8 +35,35 @@ public class OtpInputStream extends ByteArrayInputStream {
 
     public static int DECODE_INT_LISTS_AS_STRINGS = 1;
 
+    /**
+     * Decode binaries as read-only views of the stream's buffer instead of
+     * copying them. Calling {@link OtpErlangBinary#binaryValue()} on such a
+     * binary makes a copy; {@link OtpErlangBinary#asByteBuffer()} does not.
+     */
+    public static int DECODE_BINARIES_AS_SLICES = 2;
+
+    /**
+     * Decode tuples and lists lazily: their elements (and the tail of an
+     * improper list) are only decoded when first accessed, and encoding such a
+     * term copies its original bytes instead of re-encoding it.
+     *
+     * <p>
+     * This pays off for terms of which only a small part is read. Reading all
+     * of a nested term costs more than decoding it eagerly (each level skips
+     * over its elements again), the terms are subclasses of OtpErlangTuple and
+     * OtpErlangList, and errors in the content of an element are only found
+     * when it is accessed, as {@link IllegalStateException}. So it is meant
+     * for single streams or messages, see {@link OtpMsg#getMsg(int)}, rather
+     * than for all the messages of a node.
+     * </p>
+     */
+    public static int DECODE_LAZILY = 4;
+
     private final int flags;
 
+    // atoms referenced from the distribution header, if any
+    private String[] atomCacheRefs;
+
     /**
      * @param buf
      */
@@ -66,6 +93,50 @@ public class OtpInputStream extends ByteArrayInputStream {
         this.flags = flags;
     }
 
+    /*
+     * Set the atoms that atom cache references in this stream refer to. Used by
+     * AbstractConnection for messages with a distribution header.
+     */
+    void setAtomCacheRefs(final String[] atoms) {
+        atomCacheRefs = atoms;
+    }
+
+    /*
+     * The atoms set by setAtomCacheRefs, or null. Terms containing atom cache
+     * references can't be copied to another stream as they are.
+     */
+    String[] getAtomCacheRefs() {
+        return atomCacheRefs;
+    }
+
+    /*
+     * The buffer this stream reads from.
+     */
+    byte[] getBuffer() {
+        return super.buf;
+    }
+
+    /*
+     * A stream over the rest of this one, decoding with additional flags.
+     */
+    OtpInputStream withFlags(final int moreFlags) {
+        final OtpInputStream ois = new OtpInputStream(super.buf, super.pos,
+                super.count - super.pos, flags | moreFlags);
+        ois.setAtomCacheRefs(atomCacheRefs);
+        return ois;
+    }
+
+    /*
+     * A stream over a part of this stream's buffer, decoding with the same
+     * flags and atom cache references.
+     */
+    OtpInputStream subStream(final int offset, final int length) {
+        final OtpInputStream ois = new OtpInputStream(super.buf, offset,
+                length, flags);
+        ois.setAtomCacheRefs(atomCacheRefs);
+        return ois;
+    }
+
     /**
      * Get the current position in the stream.
      *
@@ -372,6 +443,15 @@ public class OtpInputStream extends ByteArrayInputStream {
 
         switch (tag) {
 
+        case OtpExternal.atomCacheRefTag:
+            final int ref = read1();
+            if (atomCacheRefs == null || ref >= atomCacheRefs.length) {
+                throw new OtpErlangDecodeException(
+                        "Unknown atom cache reference " + ref);
+            }
+            atom = atomCacheRefs[ref];
+            break;
+
         case OtpExternal.atomTag:
             len = read2BE();
             strbuf = new byte[len];
@@ -455,6 +535,29 @@ public class OtpInputStream extends ByteArrayInputStream {
         return bin;
     }
 
+    /*
+     * Read an Erlang binary as a view of the stream's buffer, without copying.
+     */
+    private OtpErlangBinary read_binary_slice()
+            throws OtpErlangDecodeException {
+        final int tag = read1skip_version();
+
+        if (tag != OtpExternal.binTag) {
+            throw new OtpErlangDecodeException(
+                    "Wrong tag encountered, expected " + OtpExternal.binTag
+                            + ", got " + tag);
+        }
+
+        final int len = read4BE();
+        if (len < 0 || len > super.count - super.pos) {
+            throw new OtpErlangDecodeException("Cannot read from input stream");
+        }
+        final OtpErlangBinary bin = new OtpErlangBinarySlice(super.buf,
+                super.pos, len);
+        super.pos += len;
+        return bin;
+    }
+
     /**
      * Read an Erlang bitstr from the stream.
      *
@@ -1205,6 +1308,7 @@ public class OtpInputStream extends ByteArrayInputStream {
 
         @SuppressWarnings("resource")
         final OtpInputStream ois = new OtpInputStream(abuf, flags);
+        ois.setAtomCacheRefs(atomCacheRefs);
         return ois.read_any();
     }
 
@@ -1231,6 +1335,7 @@ public class OtpInputStream extends ByteArrayInputStream {
         case OtpExternal.atomTag:
         case OtpExternal.smallAtomUtf8Tag:
         case OtpExternal.atomUtf8Tag:
+        case OtpExternal.atomCacheRefTag:
             return new OtpErlangAtom(this);
 
         case OtpExternal.floatTag:
@@ -1267,13 +1372,22 @@ public class OtpInputStream extends ByteArrayInputStream {
                 }
                 setPos(savePos);
             }
+            if ((flags & DECODE_LAZILY) != 0 && tag == OtpExternal.listTag) {
+                return new OtpErlangLazyList(this);
+            }
             return new OtpErlangList(this);
 
         case OtpExternal.smallTupleTag:
         case OtpExternal.largeTupleTag:
+            if ((flags & DECODE_LAZILY) != 0) {
+                return new OtpErlangLazyTuple(this);
+            }
             return new OtpErlangTuple(this);
 
         case OtpExternal.binTag:
+            if ((flags & DECODE_BINARIES_AS_SLICES) != 0) {
+                return read_binary_slice();
+            }
             return new OtpErlangBinary(this);
 
         case OtpExternal.bitBinTag:
@@ -1294,6 +1408,188 @@ public class OtpInputStream extends ByteArrayInputStream {
         }
     }
 
+    /**
+     * Skip over the next Erlang term in the stream without decoding it.
+     *
+     * @exception OtpErlangDecodeException
+     *                if the stream does not contain a known Erlang type at the
+     *                next position, or if the term is truncated.
+     */
+    public void skip_any() throws OtpErlangDecodeException {
+        final int tag = read1skip_version();
+        int n;
+
+        switch (tag) {
+        case OtpExternal.smallIntTag:
+        case OtpExternal.atomCacheRefTag:
+            skipN(1);
+            break;
+
+        case OtpExternal.intTag:
+            skipN(4);
+            break;
+
+        case OtpExternal.smallBigTag:
+            skipN(read1() + 1);
+            break;
+
+        case OtpExternal.largeBigTag:
+            skipN(read4BE() + 1);
+            break;
+
+        case OtpExternal.floatTag:
+            skipN(31);
+            break;
+
+        case OtpExternal.newFloatTag:
+            skipN(8);
+            break;
+
+        case OtpExternal.atomTag:
+        case OtpExternal.atomUtf8Tag:
+        case OtpExternal.stringTag:
+            skipN(read2BE());
+            break;
+
+        case OtpExternal.smallAtomUtf8Tag:
+            skipN(read1());
+            break;
+
+        case OtpExternal.binTag:
+            skipN(read4BE());
+            break;
+
+        case OtpExternal.bitBinTag:
+            skipN(read4BE() + 1);
+            break;
+
+        case OtpExternal.nilTag:
+            break;
+
+        case OtpExternal.refTag:
+            skip_any();
+            skipN(5);
+            break;
+
+        case OtpExternal.newRefTag:
+        case OtpExternal.newerRefTag:
+            n = read2BE();
+            skip_any();
+            skipN((tag == OtpExternal.newRefTag ? 1 : 4) + 4 * n);
+            break;
+
+        case OtpExternal.portTag:
+            skip_any();
+            skipN(5);
+            break;
+
+        case OtpExternal.newPortTag:
+            skip_any();
+            skipN(8);
+            break;
+
+        case OtpExternal.v4PortTag:
+            skip_any();
+            skipN(12);
+            break;
+
+        case OtpExternal.pidTag:
+            skip_any();
+            skipN(9);
+            break;
+
+        case OtpExternal.newPidTag:
+            skip_any();
+            skipN(12);
+            break;
+
+        case OtpExternal.smallTupleTag:
+            skipTerms(read1());
+            break;
+
+        case OtpExternal.largeTupleTag:
+            skipTerms(read4BE());
+            break;
+
+        case OtpExternal.listTag:
+            // elements and tail
+            skipTerms(read4BE() + 1);
+            break;
+
+        case OtpExternal.mapTag:
+            skipTerms(2 * read4BE());
+            break;
+
+        case OtpExternal.newFunTag:
+            // the size includes the size field itself
+            skipN(read4BE() - 4);
+            break;
+
+        case OtpExternal.funTag:
+            n = read4BE();
+            // pid, module, index, uniq and the free variables
+            skipTerms(n + 4);
+            break;
+
+        case OtpExternal.externalFunTag:
+            skipTerms(3);
+            break;
+
+        case OtpExternal.compressedTag:
+            skip_compressed();
+            break;
+
+        default:
+            throw new OtpErlangDecodeException("Unknown data type: " + tag);
+        }
+    }
+
+    private void skipTerms(final int n) throws OtpErlangDecodeException {
+        if (n < 0) {
+            throw new OtpErlangDecodeException("Cannot read from input stream");
+        }
+        for (int i = 0; i < n; i++) {
+            skip_any();
+        }
+    }
+
+    private void skipN(final int n) throws OtpErlangDecodeException {
+        if (n < 0 || n > super.count - super.pos) {
+            throw new OtpErlangDecodeException("Cannot read from input stream");
+        }
+        super.pos += n;
+    }
+
+    /*
+     * The compressed length is not part of the encoding, so the data has to be
+     * inflated to find where it ends.
+     */
+    private void skip_compressed() throws OtpErlangDecodeException {
+        final int size = read4BE();
+        final java.util.zip.Inflater inflater = new java.util.zip.Inflater();
+        try {
+            inflater.setInput(super.buf, super.pos, super.count - super.pos);
+            final byte[] abuf = new byte[Math.min(Math.max(size, 1), 8192)];
+            int total = 0;
+            while (!inflater.finished()) {
+                final int n = inflater.inflate(abuf);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                total += n;
+            }
+            if (!inflater.finished() || total != size) {
+                throw new OtpErlangDecodeException("Decompression gave "
+                        + total + " bytes, not " + size);
+            }
+            super.pos += (int) inflater.getBytesRead();
+        } catch (final java.util.zip.DataFormatException e) {
+            throw new OtpErlangDecodeException("Cannot read from input stream");
+        } finally {
+            inflater.end();
+        }
+    }
+
     public int read_map_head() throws OtpErlangDecodeException {
         int arity = 0;
         final int tag = read1skip_version();
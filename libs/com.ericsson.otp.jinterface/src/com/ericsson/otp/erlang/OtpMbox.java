@@ -19,6 +19,12 @@
  */
 package com.ericsson.otp.erlang;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * <p>
  * Provides a simple mechanism for exchanging messages with Erlang processes or
@@ -79,6 +85,10 @@ package com.ericsson.otp.erlang;
  *
  */
 public class OtpMbox {
+    // -DOtpMbox.queue=generic selects the synchronized GenericQueue
+    private static final boolean useGenericQueue = "generic".equals(System
+            .getProperty("OtpMbox.queue"));
+
     OtpNode home;
     OtpErlangPid self;
     GenericQueue queue;
@@ -86,6 +96,13 @@ public class OtpMbox {
     Links links;
     private long unlink_id;
 
+    static GenericQueue newQueue() {
+        if (useGenericQueue) {
+            return new GenericQueue();
+        }
+        return new OtpMpscQueue();
+    }
+
     // package constructor: called by OtpNode:createMbox(name)
     // to create a named mbox
     OtpMbox(final OtpNode home, final OtpErlangPid self, final String name) {
@@ -93,7 +110,7 @@ public class OtpMbox {
         this.home = home;
         this.name = name;
         this.unlink_id = 1;
-        queue = new GenericQueue();
+        queue = newQueue();
         links = new Links(10);
     }
 
@@ -321,6 +338,57 @@ public class OtpMbox {
         }
     }
 
+    /**
+     * Wait for a message to arrive for this mailbox, then take it along with
+     * the messages that are already waiting behind it, so that a burst of
+     * messages is received with a single wakeup.
+     *
+     * @param into
+     *            the collection the {@link OtpMsg messages} are added to, in
+     *            the order they arrived.
+     *
+     * @param timeout
+     *            the time, in milliseconds, to wait for the first message.
+     *
+     * @param max
+     *            the maximum number of messages to take.
+     *
+     * @return the number of messages added, 0 if none arrived in time.
+     *
+     * @exception OtpErlangExit
+     *                if a linked {@link OtpErlangPid pid} has exited or has
+     *                sent an exit signal to this mailbox before the first
+     *                message. An exit signal that comes after other messages
+     *                ends the batch and is raised by the next receive.
+     */
+    public int receiveMsgs(final Collection<OtpMsg> into, final long timeout,
+            final int max) throws OtpErlangExit {
+        final OtpMsg first;
+        try {
+            first = receiveMsg(timeout);
+        } catch (final InterruptedException e) {
+            return 0;
+        }
+        if (first == null) {
+            return 0;
+        }
+        into.add(first);
+        int n = 1;
+        synchronized (queue) {
+            while (n < max) {
+                final OtpMsg m = (OtpMsg) queue.peek();
+                if (m == null || m.type() == OtpMsg.exitTag
+                        || m.type() == OtpMsg.exit2Tag) {
+                    break;
+                }
+                queue.tryGet();
+                into.add(m);
+                n++;
+            }
+        }
+        return n;
+    }
+
     /**
      * Send a message to a remote {@link OtpErlangPid pid}, representing either
      * another {@link OtpMbox mailbox} or an Erlang process.
@@ -380,6 +448,29 @@ public class OtpMbox {
      */
     public void send(final String aname, final String node,
             final OtpErlangObject msg) {
+        sendSized(aname, node, msg);
+    }
+
+    /**
+     * Send a message to a named mailbox created from another node, as
+     * {@link #send(String, String, OtpErlangObject)} does, and tell how large
+     * the message was on the wire.
+     *
+     * @param aname
+     *            the registered name of recipient mailbox.
+     *
+     * @param node
+     *            the name of the remote node where the recipient mailbox is
+     *            registered.
+     *
+     * @param msg
+     *            the body of the message to send.
+     *
+     * @return the size in bytes of the encoded message, 0 if the recipient is
+     *         on the local node and -1 if the message could not be sent.
+     */
+    public int sendSized(final String aname, final String node,
+            final OtpErlangObject msg) {
         try {
             final String currentNode = home.node();
             if (node.equals(currentNode)) {
@@ -392,12 +483,168 @@ public class OtpMbox {
                 // other node
                 final OtpCookedConnection conn = home.getConnection(node);
                 if (conn == null) {
-                    return;
+                    return -1;
                 }
-                conn.send(self, aname, msg);
+                return conn.send(self, aname, msg);
             }
+            return 0;
         } catch (final Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Send several messages to a {@link OtpErlangPid pid}. The messages are
+     * delivered in order, as with repeated calls to
+     * {@link #send(OtpErlangPid, OtpErlangObject)}, but a remote recipient gets
+     * them with as few socket writes as possible.
+     *
+     * @param to
+     *            the {@link OtpErlangPid pid} identifying the intended
+     *            recipient of the messages.
+     *
+     * @param msgs
+     *            the bodies of the messages to send.
+     *
+     * @exception java.io.IOException
+     *                if the node of the recipient can't be reached or a
+     *                communication error occurs.
+     *
+     * @see AbstractConnection#cork()
+     */
+    public void sendBatch(final OtpErlangPid to, final OtpErlangObject[] msgs)
+            throws IOException {
+        final OtpErlangPid[] pids = new OtpErlangPid[msgs.length];
+        Arrays.fill(pids, to);
+        sendBatch(pids, msgs);
+    }
+
+    /**
+     * Send several messages, each to its own {@link OtpErlangPid pid}. The
+     * messages are sent in order, and the ones for the same remote node are
+     * written with as few socket writes as possible.
+     *
+     * @param to
+     *            the recipients, one for each message.
+     *
+     * @param msgs
+     *            the bodies of the messages to send.
+     *
+     * @exception java.io.IOException
+     *                if the node of a recipient can't be reached or a
+     *                communication error occurs. The messages to other nodes
+     *                are still sent.
+     *
+     * @see AbstractConnection#cork()
+     */
+    public void sendBatch(final OtpErlangPid[] to, final OtpErlangObject[] msgs)
+            throws IOException {
+        final Map<String, OtpCookedConnection> corked =
+                new HashMap<String, OtpCookedConnection>();
+        IOException failure = null;
+        try {
+            for (int i = 0; i < msgs.length; i++) {
+                final String node = to[i].node();
+                if (node.equals(home.node())) {
+                    send(to[i], msgs[i]);
+                    continue;
+                }
+                try {
+                    corked(corked, node).send(self, to[i], msgs[i]);
+                } catch (final IOException e) {
+                    failure = e;
+                }
+            }
+        } finally {
+            failure = uncork(corked, failure);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Send several messages to a named mailbox created from another node. The
+     * messages are delivered in order, with as few socket writes as possible.
+     *
+     * @param aname
+     *            the registered name of recipient mailbox.
+     *
+     * @param node
+     *            the name of the remote node where the recipient mailbox is
+     *            registered.
+     *
+     * @param msgs
+     *            the bodies of the messages to send.
+     *
+     * @exception java.io.IOException
+     *                if the node can't be reached or a communication error
+     *                occurs.
+     *
+     * @see #sendBatch(OtpErlangPid, OtpErlangObject[])
+     */
+    public void sendBatch(final String aname, final String node,
+            final OtpErlangObject[] msgs) throws IOException {
+        final String currentNode = home.node();
+        if (node.equals(currentNode) || node.indexOf('@', 0) < 0
+                && node.equals(currentNode.substring(0,
+                        currentNode.indexOf('@', 0)))) {
+            for (final OtpErlangObject msg : msgs) {
+                send(aname, msg);
+            }
+            return;
+        }
+        final Map<String, OtpCookedConnection> corked =
+                new HashMap<String, OtpCookedConnection>();
+        IOException failure = null;
+        try {
+            final OtpCookedConnection conn = corked(corked, node);
+            for (final OtpErlangObject msg : msgs) {
+                conn.send(self, aname, msg);
+            }
+        } catch (final IOException e) {
+            failure = e;
+        } finally {
+            failure = uncork(corked, failure);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /*
+     * Get the connection to a node, corked by the calling thread.
+     */
+    private OtpCookedConnection corked(
+            final Map<String, OtpCookedConnection> corked, final String node)
+            throws IOException {
+        OtpCookedConnection conn = corked.get(node);
+        if (conn == null) {
+            conn = home.getConnection(node);
+            if (conn == null) {
+                throw new IOException("Cannot connect to " + node);
+            }
+            conn.cork();
+            corked.put(node, conn);
+        }
+        return conn;
+    }
+
+    /*
+     * Uncork connections, returning the first failure.
+     */
+    private static IOException uncork(
+            final Map<String, OtpCookedConnection> corked, IOException failure) {
+        for (final OtpCookedConnection conn : corked.values()) {
+            try {
+                conn.uncork();
+            } catch (final IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
         }
+        return failure;
     }
 
     /**
@@ -0,0 +1,200 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ericsson.otp.erlang;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * An unbounded FIFO queue for many producers and a single consumer. Adding
+ * items never blocks or takes a lock: producers swap themselves in as the new
+ * tail and link the previous one. A waiting consumer is parked, and woken by
+ * the producer that adds the next item.
+ * </p>
+ *
+ * <p>
+ * This is the default queue of {@link OtpMbox mailboxes}, which are read by
+ * one thread. The consumer side ({@link #get()}, {@link #get(long)},
+ * {@link #tryGet()}, {@link #peek()} and {@link #flush()}) takes no locks
+ * either, so it must only be used by one thread at a time; use
+ * {@link GenericQueue} when several threads read.
+ * </p>
+ *
+ * <p>
+ * As with GenericQueue, a closed queue can still be emptied, but
+ * {@link #get(long)} then returns null instead of waiting for more items.
+ * </p>
+ */
+public class OtpMpscQueue extends GenericQueue {
+
+    private static final class Node {
+        volatile Node next;
+        Object contents;
+
+        Node(final Object contents) {
+            this.contents = contents;
+        }
+    }
+
+    // producers only touch the tail, the consumer only the head
+    private final AtomicReference<Node> tail;
+    private Node head;
+    private final AtomicInteger count = new AtomicInteger();
+    private volatile Thread waiter;
+    private volatile boolean closed = false;
+
+    /** Create an empty queue */
+    public OtpMpscQueue() {
+        final Node stub = new Node(null);
+        head = stub;
+        tail = new AtomicReference<Node>(stub);
+    }
+
+    /** Clear a queue */
+    @Override
+    public void flush() {
+        while (tryGet() != null) {
+        }
+    }
+
+    /**
+     * Close the queue: once it is empty, {@link #get(long)} returns null
+     * immediately. A consumer waiting in get(long) is woken.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        final Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+    }
+
+    /**
+     * Add an object to the tail of the queue.
+     *
+     * @param o
+     *            Object to insert in the queue
+     */
+    @Override
+    public void put(final Object o) {
+        final Node node = new Node(o);
+        count.incrementAndGet();
+        final Node prev = tail.getAndSet(node);
+        prev.next = node;
+
+        // wake up the consumer, if it is waiting
+        final Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+    }
+
+    /**
+     * Retrieve an object from the head of the queue, or block until one
+     * arrives.
+     *
+     * @return The object at the head of the queue.
+     */
+    @Override
+    public Object get() {
+        Object o;
+        while ((o = tryGet()) == null) {
+            waiter = Thread.currentThread();
+            try {
+                // a producer may have linked an item before seeing us waiting
+                if ((o = tryGet()) != null) {
+                    return o;
+                }
+                LockSupport.park(this);
+            } finally {
+                waiter = null;
+            }
+            // like GenericQueue, ignore interrupts (and don't spin on them)
+            Thread.interrupted();
+        }
+        return o;
+    }
+
+    /**
+     * Retrieve an object from the head of the queue, blocking until one arrives
+     * or until timeout occurs.
+     *
+     * @param timeout
+     *            Maximum time to block on queue, in ms. Use 0 to poll the
+     *            queue.
+     *
+     * @exception InterruptedException
+     *                if the operation times out.
+     *
+     * @return The object at the head of the queue, or null if the queue is
+     *         closed and empty.
+     */
+    @Override
+    public Object get(final long timeout) throws InterruptedException {
+        final long stopTime = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(timeout);
+        Object o;
+        while ((o = tryGet()) == null) {
+            if (closed) {
+                return null;
+            }
+            final long left = stopTime - System.nanoTime();
+            if (left <= 0) {
+                throw new InterruptedException("Get operation timed out");
+            }
+            waiter = Thread.currentThread();
+            try {
+                if ((o = tryGet()) != null || closed) {
+                    return o;
+                }
+                LockSupport.parkNanos(this, left);
+            } finally {
+                waiter = null;
+            }
+            Thread.interrupted();
+        }
+        return o;
+    }
+
+    // attempt to retrieve message from queue head; consumer side only
+    @Override
+    public Object tryGet() {
+        final Node next = head.next;
+        if (next == null) {
+            return null;
+        }
+        final Object o = next.contents;
+        next.contents = null;
+        head = next;
+        count.decrementAndGet();
+        return o;
+    }
+
+    // look at the queue head without removing it; consumer side only
+    @Override
+    public Object peek() {
+        final Node next = head.next;
+        return next == null ? null : next.contents;
+    }
+
+    @Override
+    public int getCount() {
+        return Math.max(0, count.get());
+    }
+}
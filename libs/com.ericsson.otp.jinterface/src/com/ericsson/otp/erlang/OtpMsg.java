@@ -64,6 +64,7 @@ public class OtpMsg {
     protected int tag; // what type of message is this (send, link, exit etc)
     protected OtpInputStream paybuf;
     protected OtpErlangObject payload;
+    protected int size;
 
     protected OtpErlangPid from;
     protected OtpErlangPid to;
@@ -78,6 +79,7 @@ public class OtpMsg {
         toName = null;
         this.paybuf = paybuf;
         payload = null;
+        size = paybuf.available();
         this.unlink_id = 0;
     }
 
@@ -101,6 +103,7 @@ public class OtpMsg {
         to = null;
         this.paybuf = paybuf;
         payload = null;
+        size = paybuf.available();
         this.unlink_id = 0;
     }
 
@@ -194,6 +197,16 @@ public class OtpMsg {
         return paybuf;
     }
 
+    /**
+     * Get the size of the encoded payload of this message, as it was received.
+     *
+     * @return the size in bytes, or 0 if the message was sent from the local
+     *         node and never encoded.
+     */
+    public int size() {
+        return size;
+    }
+
     /**
      * <p>
      * Get the type marker from this message. The type marker identifies the
@@ -259,6 +272,33 @@ public class OtpMsg {
         return payload;
     }
 
+    /**
+     * <p>
+     * Like {@link #getMsg()}, but decoding with the given flags in addition
+     * to those of the node, for example {@link OtpInputStream#DECODE_LAZILY}
+     * when only a small part of the message will be looked at.
+     * </p>
+     *
+     * <p>
+     * The flags are only used the first time the message is decoded.
+     * </p>
+     *
+     * @param flags
+     *            the additional {@link OtpInputStream} decoding flags.
+     *
+     * @return an Erlang term.
+     *
+     * @exception OtpErlangDecodeException
+     *                if the byte stream could not be deserialized.
+     */
+    public OtpErlangObject getMsg(final int flags)
+            throws OtpErlangDecodeException {
+        if (payload == null) {
+            payload = paybuf.withFlags(flags).read_any();
+        }
+        return payload;
+    }
+
     /**
      * <p>
      * Get the name of the recipient for this message.
@@ -0,0 +1,294 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ericsson.otp.erlang;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed set of selector threads reading distribution frames for any number
+ * of connections. Each connection is bound to one selector for its lifetime,
+ * so its frames are delivered in order.
+ *
+ * Selector threads never write: a write can block until the peer reads, and
+ * then all connections of that selector would stall. Ticks are answered from
+ * a separate thread instead, with at most one tock pending per connection.
+ */
+class OtpNioSelectorPool {
+    // upper limit for consecutive reads from one channel in a select round
+    private static final int maxReadsPerRound = 16;
+    private static final int readBufferSize = 64 * 1024;
+
+    private final Loop[] loops;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ExecutorService tocks;
+    private volatile boolean closed = false;
+
+    OtpNioSelectorPool(final int size) {
+        loops = new Loop[Math.max(1, size)];
+        tocks = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "OtpNioTock-"
+                        + count.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    Registration register(final OtpNioSocketTransport transport,
+            final AbstractConnection conn) throws IOException {
+        final Loop loop = nextLoop();
+        final Registration r = new Registration(transport, conn, loop);
+        loop.execute(new Runnable() {
+            public void run() {
+                try {
+                    r.key = transport.channel().register(loop.selector,
+                            SelectionKey.OP_READ, r);
+                } catch (final IOException e) {
+                    loop.fail(r);
+                }
+            }
+        });
+        return r;
+    }
+
+    synchronized void close() {
+        closed = true;
+        for (final Loop loop : loops) {
+            if (loop != null) {
+                loop.quit();
+            }
+        }
+        tocks.shutdown();
+    }
+
+    private synchronized Loop nextLoop() throws IOException {
+        if (closed) {
+            throw new IOException("selector pool was closed");
+        }
+        final int i = (next.getAndIncrement() & Integer.MAX_VALUE)
+                % loops.length;
+        if (loops[i] == null) {
+            loops[i] = new Loop(i, tocks);
+        }
+        return loops[i];
+    }
+
+    /*
+     * Per connection read state: the length prefix being read, or the frame
+     * being filled.
+     */
+    static final class Registration {
+        final OtpNioSocketTransport transport;
+        final AbstractConnection conn;
+        final Loop loop;
+        final ByteBuffer header = ByteBuffer.allocate(4);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        final AtomicBoolean tockPending = new AtomicBoolean(false);
+        SelectionKey key;
+        byte[] frame;
+        int got;
+
+        Registration(final OtpNioSocketTransport transport,
+                final AbstractConnection conn, final Loop loop) {
+            this.transport = transport;
+            this.conn = conn;
+            this.loop = loop;
+        }
+
+        // the channel was closed locally, let the connection know (once)
+        void closed() {
+            loop.execute(new Runnable() {
+                public void run() {
+                    loop.fail(Registration.this);
+                }
+            });
+        }
+    }
+
+    static final class Loop implements Runnable {
+        final Selector selector;
+        private final ExecutorService tocks;
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        private final ByteBuffer readBuf = ByteBuffer
+                .allocateDirect(readBufferSize);
+        private volatile boolean done = false;
+
+        Loop(final int index, final ExecutorService tocks) throws IOException {
+            this.tocks = tocks;
+            selector = Selector.open();
+            final Thread t = new Thread(this, "OtpNioSelector-" + index);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        void execute(final Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void quit() {
+            done = true;
+            selector.wakeup();
+        }
+
+        public void run() {
+            try {
+                while (!done) {
+                    selector.select();
+                    runTasks();
+                    final Iterator<SelectionKey> it = selector.selectedKeys()
+                            .iterator();
+                    while (it.hasNext()) {
+                        final SelectionKey key = it.next();
+                        it.remove();
+                        final Registration r = (Registration) key.attachment();
+                        if (key.isValid() && key.isReadable()) {
+                            read(r);
+                        }
+                    }
+                }
+            } catch (final IOException e) {
+                // selector broken, nothing more we can do
+            } finally {
+                for (final SelectionKey key : selector.keys()) {
+                    fail((Registration) key.attachment());
+                }
+                runTasks();
+                try {
+                    selector.close();
+                } catch (final IOException e) {
+                }
+            }
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        void fail(final Registration r) {
+            if (r.failed.compareAndSet(false, true)) {
+                if (r.key != null) {
+                    r.key.cancel();
+                }
+                r.conn.receiveFailed();
+            }
+        }
+
+        private void read(final Registration r) {
+            try {
+                for (int i = 0; i < maxReadsPerRound; i++) {
+                    readBuf.clear();
+                    final int n = r.transport.channel().read(readBuf);
+                    if (n < 0) {
+                        throw new IOException("EOF");
+                    }
+                    if (n == 0) {
+                        return;
+                    }
+                    readBuf.flip();
+                    consume(r);
+                    if (r.failed.get()) {
+                        return;
+                    }
+                }
+            } catch (final IOException e) {
+                fail(r);
+            } catch (final RuntimeException e) {
+                fail(r);
+            }
+        }
+
+        /*
+         * Answer a tick without blocking this thread. A tock already waiting
+         * to be written answers this tick too.
+         */
+        private void sendTock(final Registration r) {
+            if (!r.tockPending.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                tocks.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            r.conn.sendTock();
+                        } catch (final IOException e) {
+                            execute(new Runnable() {
+                                public void run() {
+                                    fail(r);
+                                }
+                            });
+                        } finally {
+                            r.tockPending.set(false);
+                        }
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                // the pool is closing
+                r.tockPending.set(false);
+            }
+        }
+
+        private void consume(final Registration r) throws IOException {
+            while (readBuf.hasRemaining()) {
+                if (r.frame == null) {
+                    while (r.header.hasRemaining() && readBuf.hasRemaining()) {
+                        r.header.put(readBuf.get());
+                    }
+                    if (r.header.hasRemaining()) {
+                        return;
+                    }
+                    final int len = r.header.getInt(0);
+                    r.header.clear();
+                    if (len == 0) {
+                        // received tick? send tock!
+                        sendTock(r);
+                    } else if (len < 0) {
+                        throw new IOException("Bad frame length " + len);
+                    } else {
+                        r.frame = new byte[len];
+                        r.got = 0;
+                    }
+                } else {
+                    final int n = Math.min(readBuf.remaining(), r.frame.length
+                            - r.got);
+                    readBuf.get(r.frame, r.got, n);
+                    r.got += n;
+                    if (r.got == r.frame.length) {
+                        final byte[] frame = r.frame;
+                        r.frame = null;
+                        r.conn.receiveFrame(frame);
+                    }
+                }
+            }
+        }
+    }
+}
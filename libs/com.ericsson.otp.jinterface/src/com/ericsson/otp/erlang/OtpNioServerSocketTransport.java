@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ericsson.otp.erlang;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Server transport creating {@link OtpNioSocketTransport selector driven}
+ * connections. Accepting is still done by the node's acceptor thread.
+ */
+public class OtpNioServerSocketTransport implements OtpServerTransport {
+
+    private final ServerSocketChannel channel;
+    private final OtpNioSelectorPool pool;
+    private final boolean tcp;
+
+    OtpNioServerSocketTransport(final int port, final OtpNioSelectorPool pool)
+            throws IOException {
+        this(ServerSocketChannel.open(), pool, true);
+        channel.socket().bind(new InetSocketAddress(port));
+    }
+
+    /*
+     * Accept connections on a bound channel, which need not be a TCP one (see
+     * OtpUdsTransportFactory).
+     */
+    OtpNioServerSocketTransport(final ServerSocketChannel channel,
+            final OtpNioSelectorPool pool, final boolean tcp) {
+        this.channel = channel;
+        this.pool = pool;
+        this.tcp = tcp;
+    }
+
+    /**
+     * @see java.net.ServerSocket#getLocalPort()
+     */
+    public int getLocalPort() {
+        return tcp ? channel.socket().getLocalPort() : 0;
+    }
+
+    /**
+     * @see ServerSocketChannel#accept()
+     */
+    public OtpTransport accept() throws IOException {
+        final SocketChannel sock = channel.accept();
+        if (tcp) {
+            sock.socket().setTcpNoDelay(true);
+        }
+        return new OtpNioSocketTransport(sock, pool);
+    }
+
+    /**
+     * @see ServerSocketChannel#close()
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+}
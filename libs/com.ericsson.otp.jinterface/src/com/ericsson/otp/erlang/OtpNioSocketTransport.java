@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ericsson.otp.erlang;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * <p>
+ * Client transport based on a {@link SocketChannel}, created by
+ * {@link OtpNioTransportFactory}.
+ * </p>
+ *
+ * <p>
+ * The streams returned by this transport are only used while handshaking. When
+ * the connection is up, the channel is put in non-blocking mode and reading is
+ * taken over by a selector thread. The output stream keeps working in
+ * non-blocking mode, waiting for the channel to become writable when the
+ * socket buffer is full.
+ * </p>
+ */
+public class OtpNioSocketTransport implements OtpTransport {
+
+    private final SocketChannel channel;
+    private final OtpNioSelectorPool pool;
+    private final InputStream in;
+    private final ChannelOutputStream out;
+    private volatile OtpNioSelectorPool.Registration registration;
+
+    OtpNioSocketTransport(final SocketChannel channel,
+            final OtpNioSelectorPool pool) {
+        this.channel = channel;
+        this.pool = pool;
+        in = Channels.newInputStream(channel);
+        out = new ChannelOutputStream();
+    }
+
+    /**
+     * Returns a stream that can only be used before the connection is handed
+     * over to the selector.
+     */
+    public InputStream getInputStream() throws IOException {
+        return in;
+    }
+
+    public OutputStream getOutputStream() throws IOException {
+        return out;
+    }
+
+    public void close() throws IOException {
+        try {
+            channel.close();
+            out.closeSelector();
+        } finally {
+            final OtpNioSelectorPool.Registration r = registration;
+            if (r != null) {
+                r.closed();
+            }
+        }
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    /*
+     * Write all the given buffers with gathering writes. Callers serialize
+     * writes (see AbstractConnection.do_send).
+     */
+    void write(final ByteBuffer[] srcs) throws IOException {
+        final ByteBuffer last = srcs[srcs.length - 1];
+        while (last.hasRemaining()) {
+            if (channel.write(srcs) == 0) {
+                out.awaitWritable();
+            }
+        }
+    }
+
+    void startReceiving(final AbstractConnection conn) throws IOException {
+        channel.configureBlocking(false);
+        registration = pool.register(this, conn);
+    }
+
+    /*
+     * Writes everything it is given, waiting for the channel to drain when it
+     * is in non-blocking mode. Callers serialize writes (see
+     * AbstractConnection.do_send), so no locking is needed here.
+     */
+    private class ChannelOutputStream extends OutputStream {
+        private final byte[] one = new byte[1];
+        private Selector writeSelector;
+
+        @Override
+        public void write(final int b) throws IOException {
+            one[0] = (byte) b;
+            write(one, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len)
+                throws IOException {
+            final ByteBuffer bb = ByteBuffer.wrap(b, off, len);
+            while (bb.hasRemaining()) {
+                if (channel.write(bb) == 0) {
+                    awaitWritable();
+                }
+            }
+        }
+
+        void awaitWritable() throws IOException {
+            if (writeSelector == null) {
+                writeSelector = Selector.open();
+                channel.register(writeSelector, SelectionKey.OP_WRITE);
+            }
+            writeSelector.select(1000);
+            writeSelector.selectedKeys().clear();
+            if (!channel.isOpen()) {
+                throw new IOException("socket was closed");
+            }
+        }
+
+        void closeSelector() throws IOException {
+            if (writeSelector != null) {
+                writeSelector.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ericsson.otp.erlang;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+
+/**
+ * <p>
+ * Transport factory that multiplexes all connections created through it on a
+ * small pool of selector threads, instead of dedicating one receive thread to
+ * each connection.
+ * </p>
+ *
+ * <p>
+ * The connection handshake is still done in blocking mode. Once a connection
+ * is established its channel is switched to non-blocking mode and registered
+ * with one of the selectors, which reads complete frames into buffers and
+ * hands them to the connection for decoding and delivery to the mailboxes.
+ * Message delivery thus happens on the selector threads, so mailbox owners
+ * should not expect to be called back on a connection specific thread.
+ * </p>
+ *
+ * <p>
+ * A single factory instance can (and should) be shared between several
+ * {@link OtpNode nodes}, all their connections will then use the same
+ * selectors.
+ * </p>
+ */
+public class OtpNioTransportFactory implements OtpTransportFactory {
+
+    private final OtpNioSelectorPool pool;
+
+    /**
+     * Create a factory using two selector threads.
+     */
+    public OtpNioTransportFactory() {
+        this(2);
+    }
+
+    /**
+     * Create a factory using the given number of selector threads.
+     *
+     * @param selectors
+     *            the number of selector threads, at least 1.
+     */
+    public OtpNioTransportFactory(final int selectors) {
+        pool = new OtpNioSelectorPool(selectors);
+    }
+
+    /**
+     * @see OtpTransportFactory#createTransport(String, int)
+     */
+    public OtpTransport createTransport(final String addr, final int port)
+            throws IOException {
+        // like java.net.Socket, a null address means the loopback interface
+        return connect(new InetSocketAddress(InetAddress.getByName(addr), port));
+    }
+
+    /**
+     * @see OtpTransportFactory#createTransport(InetAddress, int)
+     */
+    public OtpTransport createTransport(final InetAddress addr, final int port)
+            throws IOException {
+        return connect(new InetSocketAddress(addr, port));
+    }
+
+    /**
+     * @see OtpTransportFactory#createServerTransport(int)
+     */
+    public OtpServerTransport createServerTransport(final int port)
+            throws IOException {
+        return new OtpNioServerSocketTransport(port, pool);
+    }
+
+    /**
+     * Stop the selector threads. Connections created by this factory stop
+     * receiving messages.
+     */
+    public void close() {
+        pool.close();
+    }
+
+    private OtpTransport connect(final InetSocketAddress addr)
+            throws IOException {
+        final SocketChannel channel = SocketChannel.open();
+        try {
+            channel.connect(addr);
+            channel.socket().setTcpNoDelay(true);
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new OtpNioSocketTransport(channel, pool);
+    }
+}
@@ -26,6 +26,7 @@ import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.text.DecimalFormat;
 import java.util.zip.Deflater;
 
@@ -58,6 +59,12 @@ public class OtpOutputStream extends ByteArrayOutputStream {
 
     private int fixedSize = Integer.MAX_VALUE;
 
+    // when set, atoms are written as distribution header atom cache references
+    private OtpAtomCacheRefs atomCacheRefs;
+
+    // owned by OtpOutputStreamPool
+    private boolean pooled = false;
+
     /**
      * Create a stream with the default initial size (2048 bytes).
      */
@@ -96,6 +103,62 @@ public class OtpOutputStream extends ByteArrayOutputStream {
         return new OtpInputStream(super.buf, offset, super.count - offset, 0);
     }
 
+    /*
+     * Write atoms as references to the distribution header atom cache, see
+     * AbstractConnection.
+     */
+    void setAtomCacheRefs(final OtpAtomCacheRefs refs) {
+        atomCacheRefs = refs;
+    }
+
+    OtpAtomCacheRefs getAtomCacheRefs() {
+        return atomCacheRefs;
+    }
+
+    /*
+     * Write the contents of the stream from the given offset.
+     */
+    void writeTo(final OutputStream out, final int offset) throws IOException {
+        writeTo(out, offset, super.count - offset);
+    }
+
+    void writeTo(final OutputStream out, final int offset, final int length)
+            throws IOException {
+        out.write(super.buf, offset, length);
+    }
+
+    /*
+     * Get the contents of the stream from the given offset, without copying.
+     */
+    ByteBuffer toByteBuffer(final int offset) {
+        return toByteBuffer(offset, super.count - offset);
+    }
+
+    ByteBuffer toByteBuffer(final int offset, final int length) {
+        return ByteBuffer.wrap(super.buf, offset, length);
+    }
+
+    int capacity() {
+        return super.buf.length;
+    }
+
+    boolean isPooled() {
+        return pooled;
+    }
+
+    void setPooled(final boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    /*
+     * Empty the stream for reuse, keeping the buffer.
+     */
+    void recycle() {
+        super.count = 0;
+        fixedSize = Integer.MAX_VALUE;
+        atomCacheRefs = null;
+    }
+
     /**
      * Get the current position in the stream.
      *
@@ -418,6 +481,14 @@ public class OtpOutputStream extends ByteArrayOutputStream {
         try {
             bytes = enc_atom.getBytes("UTF-8");
             final int length = bytes.length;
+            if (atomCacheRefs != null && length < 256) {
+                final int ref = atomCacheRefs.refFor(enc_atom, bytes);
+                if (ref >= 0) {
+                    write1(OtpExternal.atomCacheRefTag);
+                    write1(ref);
+                    return;
+                }
+            }
             if (length < 256) {
                 write1(OtpExternal.smallAtomUtf8Tag);
                 write1(length);
@@ -451,6 +522,13 @@ public class OtpOutputStream extends ByteArrayOutputStream {
         writeN(bin);
     }
 
+    // write a part of an array as a binary, for binaries that are slices
+    void write_binary(final byte[] bin, final int offset, final int length) {
+        write1(OtpExternal.binTag);
+        write4BE(length);
+        write(bin, offset, length);
+    }
+
     /**
      * Write an array of bytes to the stream as an Erlang bitstr.
      *
@@ -0,0 +1,69 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ericsson.otp.erlang;
+
+import java.util.ArrayDeque;
+
+/**
+ * Per thread pool of encode buffers for the send path of connections. A send
+ * needs at most a few buffers at a time (header, payload and distribution
+ * header), so each thread keeps a handful. Buffers that have grown large are
+ * left to the garbage collector instead of being kept around.
+ */
+final class OtpOutputStreamPool {
+    private static final int maxPooled = 4;
+    private static final int maxRetainedCapacity = 64 * 1024;
+
+    private static final ThreadLocal<ArrayDeque<OtpOutputStream>> pool = new ThreadLocal<ArrayDeque<OtpOutputStream>>() {
+        @Override
+        protected ArrayDeque<OtpOutputStream> initialValue() {
+            return new ArrayDeque<OtpOutputStream>(maxPooled);
+        }
+    };
+
+    private OtpOutputStreamPool() {
+    }
+
+    /**
+     * Get an empty buffer, to be handed back with {@link #release}.
+     */
+    static OtpOutputStream acquire() {
+        OtpOutputStream buf = pool.get().poll();
+        if (buf == null) {
+            buf = new OtpOutputStream();
+        }
+        buf.setPooled(true);
+        return buf;
+    }
+
+    /**
+     * Give back a buffer. Buffers that were not acquired from the pool are
+     * ignored, so callers don't need to know where a buffer came from.
+     */
+    static void release(final OtpOutputStream buf) {
+        if (buf == null || !buf.isPooled()) {
+            return;
+        }
+        buf.setPooled(false);
+        if (buf.capacity() > maxRetainedCapacity) {
+            return;
+        }
+        final ArrayDeque<OtpOutputStream> free = pool.get();
+        if (free.size() < maxPooled) {
+            buf.recycle();
+            free.push(buf);
+        }
+    }
+}
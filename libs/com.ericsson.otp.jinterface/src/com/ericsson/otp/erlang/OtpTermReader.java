@@ -0,0 +1,256 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ericsson.otp.erlang;
+
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Reads the elements of an encoded list or tuple one at a time, so that very
+ * large lists can be processed without building an array of all their
+ * elements first.
+ * </p>
+ *
+ * <p>
+ * A reader can be created directly on a stream positioned at a list or tuple,
+ * or with {@link #of(OtpErlangObject)} for a term that was already received.
+ * Terms decoded with {@link OtpInputStream#DECODE_LAZILY} are then read from
+ * their original bytes, and elements that were not accessed before are never
+ * kept. Other terms are read from their elements.
+ * </p>
+ *
+ * <p>
+ * Note that this class is not synchronized, if you need synchronization you
+ * must provide it yourself.
+ * </p>
+ */
+public class OtpTermReader {
+    private final OtpInputStream buf;
+    // when reading a term that is already decoded
+    private final OtpErlangObject[] elems;
+    private final boolean list;
+    private final int arity;
+    private int next;
+    private OtpErlangObject lastTail;
+
+    /**
+     * Create a reader for the list or tuple at the current position of a
+     * stream. The stream is read as elements are requested and should not be
+     * used for anything else until the reader is done.
+     *
+     * @param buf
+     *            the stream containing the encoded list or tuple.
+     *
+     * @exception OtpErlangDecodeException
+     *                if the next term in the stream is not a list or a tuple.
+     */
+    public OtpTermReader(final OtpInputStream buf)
+            throws OtpErlangDecodeException {
+        final int tag = buf.peek1skip_version();
+
+        switch (tag) {
+        case OtpExternal.smallTupleTag:
+        case OtpExternal.largeTupleTag:
+            this.buf = buf;
+            elems = null;
+            list = false;
+            arity = buf.read_tuple_head();
+            break;
+
+        case OtpExternal.nilTag:
+        case OtpExternal.listTag:
+            this.buf = buf;
+            elems = null;
+            list = true;
+            arity = buf.read_list_head();
+            break;
+
+        case OtpExternal.stringTag:
+            // a list of small integers, encoded as bytes
+            this.buf = null;
+            elems = new OtpErlangList(buf.read_string()).elements();
+            list = true;
+            arity = elems.length;
+            break;
+
+        default:
+            throw new OtpErlangDecodeException("Not valid list or tuple tag: "
+                    + tag);
+        }
+    }
+
+    private OtpTermReader(final OtpErlangObject[] elems,
+            final OtpErlangObject lastTail, final boolean list) {
+        buf = null;
+        this.elems = elems;
+        this.lastTail = lastTail;
+        this.list = list;
+        arity = elems.length;
+    }
+
+    /**
+     * Create a reader for the elements of a list or a tuple.
+     *
+     * @param term
+     *            the list or tuple to read.
+     *
+     * @exception OtpErlangDecodeException
+     *                if the original bytes of a lazily decoded term can't be
+     *                read.
+     * @exception IllegalArgumentException
+     *                if the term is not a list or a tuple.
+     */
+    public static OtpTermReader of(final OtpErlangObject term)
+            throws OtpErlangDecodeException {
+        if (term instanceof OtpErlangLazyList) {
+            return ((OtpErlangLazyList) term).reader();
+        }
+        if (term instanceof OtpErlangLazyTuple) {
+            return ((OtpErlangLazyTuple) term).reader();
+        }
+        if (term instanceof OtpErlangList) {
+            final OtpErlangList l = (OtpErlangList) term;
+            return new OtpTermReader(l.elements(), l.getLastTail(), true);
+        }
+        if (term instanceof OtpErlangTuple) {
+            return new OtpTermReader(((OtpErlangTuple) term).elements(), null,
+                    false);
+        }
+        if (term instanceof OtpErlangString) {
+            final String s = ((OtpErlangString) term).stringValue();
+            return new OtpTermReader(new OtpErlangList(s).elements(), null,
+                    true);
+        }
+        throw new IllegalArgumentException("Not a list or tuple: " + term);
+    }
+
+    /**
+     * @return true if the reader reads a list, false if it reads a tuple.
+     */
+    public boolean isList() {
+        return list;
+    }
+
+    /**
+     * @return the number of elements in the list or tuple.
+     */
+    public int arity() {
+        return arity;
+    }
+
+    /**
+     * @return true if there are elements left to read.
+     */
+    public boolean hasNext() {
+        return next < arity;
+    }
+
+    /**
+     * Read the next element.
+     *
+     * @return the next element.
+     *
+     * @exception OtpErlangDecodeException
+     *                if the element can't be decoded.
+     * @exception NoSuchElementException
+     *                if all elements have been read.
+     */
+    public OtpErlangObject nextElement() throws OtpErlangDecodeException {
+        checkNext();
+        final OtpErlangObject res = buf == null ? elems[next] : buf.read_any();
+        advance();
+        return res;
+    }
+
+    /**
+     * Skip the next element without decoding it.
+     *
+     * @exception OtpErlangDecodeException
+     *                if the element can't be skipped.
+     * @exception NoSuchElementException
+     *                if all elements have been read.
+     */
+    public void skipElement() throws OtpErlangDecodeException {
+        checkNext();
+        if (buf != null) {
+            buf.skip_any();
+        }
+        advance();
+    }
+
+    /**
+     * Get a reader for the next element, which must be a list or a tuple,
+     * instead of decoding it.
+     *
+     * @return a reader for the elements of the next element.
+     *
+     * @exception OtpErlangDecodeException
+     *                if the next element is not a list or a tuple.
+     * @exception NoSuchElementException
+     *                if all elements have been read.
+     */
+    public OtpTermReader nextReader() throws OtpErlangDecodeException {
+        checkNext();
+        final OtpTermReader res;
+        if (buf == null) {
+            try {
+                res = of(elems[next]);
+            } catch (final IllegalArgumentException e) {
+                throw new OtpErlangDecodeException(e.getMessage());
+            }
+        } else {
+            final int start = buf.getPos();
+            buf.skip_any();
+            res = new OtpTermReader(buf.subStream(start, buf.getPos() - start));
+        }
+        advance();
+        return res;
+    }
+
+    /**
+     * Get the tail of an improper list. Only available once all elements have
+     * been read.
+     *
+     * @return the tail of the list, or null if the list is proper or the term
+     *         is a tuple.
+     *
+     * @exception IllegalStateException
+     *                if there are elements left to read.
+     */
+    public OtpErlangObject getLastTail() {
+        if (hasNext()) {
+            throw new IllegalStateException("List elements left to read");
+        }
+        return lastTail;
+    }
+
+    private void checkNext() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    private void advance() throws OtpErlangDecodeException {
+        next++;
+        if (list && buf != null && next == arity) {
+            /* discard the terminating nil (empty list) or read tail */
+            if (buf.peek1() == OtpExternal.nilTag) {
+                buf.read_nil();
+            } else {
+                lastTail = buf.read_any();
+            }
+        }
+    }
+}
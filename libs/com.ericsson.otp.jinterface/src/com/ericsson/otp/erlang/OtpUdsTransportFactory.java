@@ -0,0 +1,222 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ericsson.otp.erlang;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * <p>
+ * Transport factory connecting nodes on the same machine through Unix domain
+ * sockets instead of TCP loopback. Each node listens on a socket file named
+ * after the node in a common directory, so there are no ports and no Epmd
+ * lookups. All nodes a node talks to must use the same directory, so this is
+ * meant for Java nodes using this factory. Erlang nodes would have to run a
+ * Unix domain socket distribution module (like the erl_uds_dist example in
+ * OTP) with the matching socket path.
+ * </p>
+ *
+ * <p>
+ * Connections are multiplexed on selector threads, like those of
+ * {@link OtpNioTransportFactory}. Unix domain socket channels need Java 16 or
+ * later; see {@link #isSupported()}.
+ * </p>
+ */
+public class OtpUdsTransportFactory extends OtpGenericTransportFactory {
+
+    // Java 16 API, looked up at runtime
+    private static final ProtocolFamily unix;
+    private static final Method openChannel;
+    private static final Method openServerChannel;
+    private static final Method addressOf;
+
+    static {
+        ProtocolFamily family = null;
+        Method open = null;
+        Method openServer = null;
+        Method of = null;
+        try {
+            family = StandardProtocolFamily.valueOf("UNIX");
+            open = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+            openServer = ServerSocketChannel.class.getMethod("open",
+                    ProtocolFamily.class);
+            of = Class.forName("java.net.UnixDomainSocketAddress").getMethod(
+                    "of", String.class);
+        } catch (final Exception e) {
+            of = null; // not supported by this Java version
+        }
+        unix = family;
+        openChannel = open;
+        openServerChannel = openServer;
+        addressOf = of;
+    }
+
+    private final File directory;
+    private final OtpNioSelectorPool pool;
+
+    /**
+     * Create a factory using two selector threads.
+     *
+     * @param directory
+     *            the directory containing the socket files of the nodes.
+     *
+     * @exception IOException
+     *                if Unix domain sockets are not supported.
+     */
+    public OtpUdsTransportFactory(final String directory) throws IOException {
+        this(directory, 2);
+    }
+
+    /**
+     * Create a factory using the given number of selector threads.
+     *
+     * @param directory
+     *            the directory containing the socket files of the nodes.
+     * @param selectors
+     *            the number of selector threads, at least 1.
+     *
+     * @exception IOException
+     *                if Unix domain sockets are not supported.
+     */
+    public OtpUdsTransportFactory(final String directory, final int selectors)
+            throws IOException {
+        if (!isSupported()) {
+            throw new IOException(
+                    "Unix domain sockets need Java 16 or later");
+        }
+        this.directory = new File(directory);
+        pool = new OtpNioSelectorPool(selectors);
+    }
+
+    /**
+     * @return true if this Java version supports Unix domain socket channels.
+     */
+    public static boolean isSupported() {
+        return addressOf != null;
+    }
+
+    /**
+     * Get the socket file a node listens on.
+     *
+     * @param node
+     *            the node.
+     * @return the socket file of the node.
+     */
+    public File socketFile(final AbstractNode node) {
+        return new File(directory, node.node());
+    }
+
+    /**
+     * @see OtpGenericTransportFactory#createTransport(OtpPeer)
+     */
+    @Override
+    public OtpTransport createTransport(final OtpPeer peer) throws IOException {
+        final SocketChannel channel = (SocketChannel) invoke(openChannel, unix);
+        try {
+            channel.connect(address(socketFile(peer)));
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new OtpNioSocketTransport(channel, pool);
+    }
+
+    /**
+     * @see OtpGenericTransportFactory#createServerTransport(OtpLocalNode)
+     */
+    @Override
+    public OtpServerTransport createServerTransport(final OtpLocalNode node)
+            throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        final File file = socketFile(node);
+        // left behind by a node that wasn't closed
+        file.delete();
+        final ServerSocketChannel channel = (ServerSocketChannel) invoke(
+                openServerChannel, unix);
+        try {
+            channel.bind(address(file));
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new ServerTransport(new OtpNioServerSocketTransport(channel,
+                pool, false), file);
+    }
+
+    /**
+     * Stop the selector threads. Connections created by this factory stop
+     * receiving messages.
+     */
+    public void close() {
+        pool.close();
+    }
+
+    private static SocketAddress address(final File file) throws IOException {
+        return (SocketAddress) invoke(addressOf, file.getPath());
+    }
+
+    // static methods only
+    private static Object invoke(final Method method, final Object arg)
+            throws IOException {
+        try {
+            return method.invoke(null, arg);
+        } catch (final InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (final IllegalAccessException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /*
+     * Removes the socket file when closed.
+     */
+    private static final class ServerTransport implements OtpServerTransport {
+        private final OtpServerTransport transport;
+        private final File file;
+
+        ServerTransport(final OtpServerTransport transport, final File file) {
+            this.transport = transport;
+            this.file = file;
+        }
+
+        public int getLocalPort() {
+            return transport.getLocalPort();
+        }
+
+        public OtpTransport accept() throws IOException {
+            return transport.accept();
+        }
+
+        public void close() throws IOException {
+            try {
+                transport.close();
+            } finally {
+                file.delete();
+            }
+        }
+    }
+}
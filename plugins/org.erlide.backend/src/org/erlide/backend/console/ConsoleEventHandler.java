@@ -13,8 +13,6 @@ import org.erlide.runtime.events.ErlangEventHandler;
 import org.erlide.runtime.shell.IBackendShell;
 import org.erlide.util.ErlLogger;
 
-import com.google.common.eventbus.Subscribe;
-
 public class ConsoleEventHandler extends ErlangEventHandler {
 
     private final IBackendShell shell;
@@ -24,12 +22,8 @@ public class ConsoleEventHandler extends ErlangEventHandler {
         shell = backendShell;
     }
 
-    @Subscribe
+    @Override
     public void handleEvent(final ErlEvent event) {
-        if (!event.getTopic().equals(getTopic())) {
-            return;
-        }
-
         try {
             shell.add(event.getEvent());
         } catch (final Exception e) {
@@ -21,6 +21,8 @@ import org.erlide.engine.model.ErlModelException;
 import org.erlide.engine.model.IErlElement;
 import org.erlide.engine.model.erlang.IErlFunctionClause;
 import org.erlide.engine.model.root.IErlModule;
+import org.erlide.runtime.rpc.RpcBatch;
+import org.erlide.runtime.rpc.RpcException;
 import org.erlide.util.ErlLogger;
 
 public class ErlangLineBreakpoint extends LineBreakpoint implements IErlangBreakpoint {
@@ -84,19 +86,45 @@ public class ErlangLineBreakpoint extends LineBreakpoint implements IErlangBreak
         }
     }
 
+    /**
+     * Adds the request to install this breakpoint to batch, to be executed with
+     * {@link ErlideDebug#addLineBreakpoints(IBackend, RpcBatch)}.
+     *
+     * @param theTarget
+     *            debug target
+     */
+    public void install(final ErlangDebugTarget theTarget, final RpcBatch batch) {
+        target = theTarget;
+        final int line = getLine();
+        if (line != -1) {
+            try {
+                ErlideDebug.addLineBreakpoint(batch, getModulePath(), line);
+            } catch (final RpcException e) {
+                ErlLogger.warn(e);
+            }
+        }
+    }
+
     private void createRequest(final int request) {
         final IBackend b = target.getBackend();
-        int line = -1;
+        final int line = getLine();
+        if (line != -1) {
+            ErlideDebug.addDeleteLineBreakpoint(b, getModulePath(), line, request);
+        }
+    }
+
+    private int getLine() {
         try {
-            line = getLineNumber();
+            return getLineNumber();
         } catch (final CoreException e) {
             ErlLogger.warn(e);
+            return -1;
         }
+    }
+
+    private String getModulePath() {
         final IResource r = getMarker().getResource();
-        final String module = r.getLocation().toPortableString();
-        if (line != -1) {
-            ErlideDebug.addDeleteLineBreakpoint(b, module, line, request);
-        }
+        return r.getLocation().toPortableString();
     }
 
     public String getModule() {
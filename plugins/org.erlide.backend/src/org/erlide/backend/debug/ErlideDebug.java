@@ -10,7 +10,9 @@ import org.erlide.backend.BackendUtils;
 import org.erlide.backend.api.IBackend;
 import org.erlide.backend.internal.BackendActivator;
 import org.erlide.runtime.rpc.IOtpRpc;
+import org.erlide.runtime.rpc.RpcBatch;
 import org.erlide.runtime.rpc.RpcException;
+import org.erlide.runtime.rpc.RpcResult;
 import org.erlide.runtime.rpc.RpcTimeoutException;
 import org.erlide.util.ErlLogger;
 import org.erlide.util.Util;
@@ -141,6 +143,33 @@ public class ErlideDebug {
         return false;
     }
 
+    @SuppressWarnings("boxing")
+    public static void addLineBreakpoint(final RpcBatch batch, final String module,
+            final int line) throws RpcException {
+        batch.add(ErlideDebug.ERLIDE_DEBUG, "line_breakpoint", "sia", module, line,
+                "add");
+    }
+
+    /**
+     * Add the line breakpoints collected in batch with
+     * {@link #addLineBreakpoint(RpcBatch, String, int)}, in one round trip.
+     */
+    public static void addLineBreakpoints(final IBackend backend, final RpcBatch batch) {
+        try {
+            for (final RpcResult result : batch.execute()) {
+                if (!result.isOk()) {
+                    ErlLogger.warn("Could not add breakpoint: %s", result.getValue());
+                }
+            }
+        } catch (final RpcTimeoutException e) {
+            if (backend.isRunning()) {
+                ErlLogger.warn(e);
+            }
+        } catch (final RpcException e) {
+            ErlLogger.warn(e);
+        }
+    }
+
     @SuppressWarnings("boxing")
     public static void addDeleteLineBreakpoint(final IBackend backend,
             final String module, final int line, final int action) {
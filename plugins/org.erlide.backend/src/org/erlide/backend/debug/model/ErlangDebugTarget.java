@@ -50,6 +50,7 @@ import org.erlide.engine.ErlangEngine;
 import org.erlide.engine.model.root.ErlangProjectProperties;
 import org.erlide.engine.model.root.IErlModel;
 import org.erlide.runtime.api.ErlDebugFlags;
+import org.erlide.runtime.rpc.RpcBatch;
 import org.erlide.util.ErlLogger;
 import org.erlide.util.IDisposable;
 import org.erlide.util.erlang.OtpErlang;
@@ -228,9 +229,12 @@ public class ErlangDebugTarget extends ErlangDebugElement
     public void installDeferredBreakpoints() {
         final IBreakpoint[] breakpoints = DebugPlugin.getDefault().getBreakpointManager()
                 .getBreakpoints(getModelIdentifier());
+        // in one round trip instead of one call each
+        final RpcBatch batch = backend.getOtpRpc().batch();
         for (final IBreakpoint breakpoint : breakpoints) {
-            breakpointAdded(breakpoint);
+            addBreakpoint(breakpoint, batch);
         }
+        ErlideDebug.addLineBreakpoints(backend, batch);
     }
 
     @Override
@@ -258,6 +262,13 @@ public class ErlangDebugTarget extends ErlangDebugElement
 
     @Override
     public void breakpointAdded(final IBreakpoint breakpoint) {
+        addBreakpoint(breakpoint, null);
+    }
+
+    /*
+     * Install the breakpoint right away, or add it to batch if not null.
+     */
+    private void addBreakpoint(final IBreakpoint breakpoint, final RpcBatch batch) {
         try {
             ErlLogger.debug("breakpointAdded " + breakpoint.getMarker().toString()
                     + breakpoint.getMarker().getAttribute(IMarker.LINE_NUMBER));
@@ -269,7 +280,11 @@ public class ErlangDebugTarget extends ErlangDebugElement
                         && DebugPlugin.getDefault().getBreakpointManager().isEnabled()
                         || !breakpoint.isRegistered()) {
                     final ErlangLineBreakpoint erlangLineBreakpoint = (ErlangLineBreakpoint) breakpoint;
-                    erlangLineBreakpoint.install(this);
+                    if (batch != null) {
+                        erlangLineBreakpoint.install(this, batch);
+                    } else {
+                        erlangLineBreakpoint.install(this);
+                    }
                 }
             } catch (final CoreException e) {
                 ErlLogger.error(e);
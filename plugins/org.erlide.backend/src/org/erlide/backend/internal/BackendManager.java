@@ -75,6 +75,7 @@ public final class BackendManager implements IBackendManager {
         buildBackends = Maps.newHashMap();
         allBackends = Sets.newHashSet();
         listeners = Lists.newArrayList();
+        listeners.add(new RpcResultCacheListener());
         codeBundles = Maps.newHashMap();
 
         loadCodepathExtensions();
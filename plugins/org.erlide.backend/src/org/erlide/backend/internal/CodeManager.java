@@ -11,7 +11,9 @@ package org.erlide.backend.internal;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.erlide.backend.BackendUtils;
@@ -90,29 +92,28 @@ public class CodeManager {
         unloadCodeForBundle(context, bundle);
     }
 
-    private boolean loadBeam(final String moduleName, final URL beamPath) {
-        final OtpErlangBinary bin = BeamUtil.getBeamBinary(moduleName, beamPath);
-        if (bin == null) {
-            return false;
-        }
-        return BeamLoader.loadBeam(site, moduleName, bin);
-    }
-
     private void loadCodeForBundle(final CodeContext context, final ICodeBundle bundle,
             final String ebinDir2) {
         final Collection<URL> beams = bundle.getEbinBeamURLs(context);
         if (beams == null) {
             return;
         }
+        final Map<String, OtpErlangBinary> bins = new LinkedHashMap<>();
         for (final URL beam : beams) {
             final String beamModuleName = BackendUtils.getBeamModuleName(beam.getPath());
             if (beamModuleName != null) {
                 // ErlLogger.debug(" load " + beamModuleName);
-                if (!loadBeam(beamModuleName, beam)) {
+                final OtpErlangBinary bin = BeamUtil.getBeamBinary(beamModuleName, beam);
+                if (bin == null) {
                     ErlLogger.error("Could not load %s", beamModuleName);
+                } else {
+                    bins.put(beamModuleName, bin);
                 }
             }
         }
+        for (final String failed : BeamLoader.loadBeams(site, bins)) {
+            ErlLogger.error("Could not load %s", failed);
+        }
     }
 
     private void unloadCodeForBundle(final CodeContext context,
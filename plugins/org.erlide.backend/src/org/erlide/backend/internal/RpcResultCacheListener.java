@@ -0,0 +1,29 @@
+package org.erlide.backend.internal;
+
+import org.eclipse.core.resources.IProject;
+import org.erlide.backend.api.IBackend;
+import org.erlide.backend.api.IBackendListener;
+import org.erlide.runtime.rpc.RpcResultCache;
+
+/**
+ * Keeps the cached rpc results in step with the code loaded in the backends.
+ */
+public class RpcResultCacheListener implements IBackendListener {
+
+    @Override
+    public void runtimeAdded(final IBackend backend) {
+    }
+
+    @Override
+    public void runtimeRemoved(final IBackend backend) {
+        // a runtime that never started would make getOtpRpc() wait forever
+        RpcResultCache.invalidate(backend.getRuntime().tryGetOtpRpc());
+    }
+
+    @Override
+    public void moduleLoaded(final IBackend backend, final IProject project,
+            final String moduleName) {
+        RpcResultCache.invalidateModule(moduleName);
+    }
+
+}
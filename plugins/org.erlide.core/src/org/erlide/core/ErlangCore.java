@@ -25,6 +25,7 @@ import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.erlide.backend.debug.ErlangDebugOptionsManager;
 import org.erlide.core.internal.ErlangCoreLogger;
 import org.erlide.core.util.EncodingUtils;
+import org.erlide.runtime.rpc.RpcMetrics;
 import org.erlide.runtime.rpc.RpcMonitor;
 import org.erlide.util.ErlLogger;
 import org.erlide.util.SystemConfiguration;
@@ -88,6 +89,10 @@ public final class ErlangCore {
         RpcMonitor.cleanupOldLogs(location, "rpc_monitor");
         ErlLogger.getInstance().dispose();
         RpcMonitor.dump(ErlLogger.getInstance().getLogFile());
+        final String metricsFile = System.getProperty("erlide.rpcmetrics");
+        if (metricsFile != null) {
+            RpcMetrics.export(metricsFile);
+        }
     }
 
     public IWorkspace getWorkspace() {
@@ -621,7 +621,7 @@ public final class BuilderHelper {
 
     public static OtpErlangList getCodeClashes(final IOtpRpc b) throws RpcException {
         final OtpErlangList res = (OtpErlangList) b.call(BuilderHelper.ERLIDE_BUILDER,
-                "code_clash", null);
+                "code_clash", "");
         return res;
     }
 
@@ -20,7 +20,6 @@ import com.ericsson.otp.erlang.OtpErlangAtom;
 import com.ericsson.otp.erlang.OtpErlangList;
 import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangTuple;
-import com.google.common.eventbus.Subscribe;
 
 /**
  * Handler for coverage events
@@ -44,11 +43,8 @@ public class CoverEventHandler extends ErlangEventHandler {
         log = Activator.getDefault();
     }
 
-    @Subscribe
+    @Override
     public void handleEvent(final ErlEvent event) {
-        if (!event.getTopic().equals(getTopic())) {
-            return;
-        }
         OtpErlangTuple tuple = null;
 
         final OtpErlangObject data = event.getEvent();
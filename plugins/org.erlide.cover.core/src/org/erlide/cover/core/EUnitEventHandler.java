@@ -8,7 +8,6 @@ import org.erlide.runtime.events.ErlangEventHandler;
 import com.ericsson.otp.erlang.OtpErlangAtom;
 import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangTuple;
-import com.google.common.eventbus.Subscribe;
 
 /**
  * Handler for eunit events
@@ -44,11 +43,8 @@ public class EUnitEventHandler extends ErlangEventHandler {
         log = Activator.getDefault();
     }
 
-    @Subscribe
+    @Override
     public void handleEvent(final ErlEvent event) {
-        if (!event.getTopic().equals(getTopic())) {
-            return;
-        }
         final OtpErlangObject data = event.getEvent();
 
         if (!(data instanceof OtpErlangTuple)
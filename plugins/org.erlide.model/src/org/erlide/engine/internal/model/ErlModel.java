@@ -40,6 +40,7 @@ import org.eclipse.xtext.xbase.lib.IterableExtensions;
 import org.erlide.engine.ErlangEngine;
 import org.erlide.engine.ModelPlugin;
 import org.erlide.engine.internal.model.cache.ErlModelCache;
+import org.erlide.engine.internal.model.cache.ModuleIndex;
 import org.erlide.engine.internal.model.root.ErlElementDelta;
 import org.erlide.engine.internal.model.root.ErlFolder;
 import org.erlide.engine.internal.model.root.ErlModule;
@@ -1037,90 +1038,58 @@ public class ErlModel extends Openable implements IErlModel {
                 return module;
             }
         }
-        final List<IErlModule> allModules = Lists.newArrayList();
-        final Set<String> paths = Sets.newHashSet();
-        try {
-            for (int i = 0; i < 2; ++i) {
-                final boolean externalModules = i > 0;
-                if (externalModules && !checkExternals) {
-                    break;
-                }
-                if (project != null) {
-                    final IErlModule module = tryFindModule(Sets.newHashSet(project),
-                            moduleName, modulePath, allModules, paths, externalModules);
-                    if (module != null) {
-                        return module;
-                    }
+        for (int i = 0; i < 2; ++i) {
+            final boolean externalModules = i > 0;
+            if (externalModules && !checkExternals) {
+                break;
+            }
+            if (project != null) {
+                final IErlModule module = tryFindModule(Sets.newHashSet(project),
+                        moduleName, modulePath, externalModules);
+                if (module != null) {
+                    return module;
                 }
-                if ((scope == Scope.REFERENCED_PROJECTS || scope == Scope.ALL_PROJECTS)
-                        && project != null) {
-                    final Collection<IErlProject> projects = project
-                            .getReferencedProjects();
-                    final IErlModule module = tryFindModule(projects, moduleName,
-                            modulePath, allModules, paths, externalModules);
-                    if (module != null) {
-                        return module;
-                    }
+            }
+            if ((scope == Scope.REFERENCED_PROJECTS || scope == Scope.ALL_PROJECTS)
+                    && project != null) {
+                final Collection<IErlProject> projects = project.getReferencedProjects();
+                final IErlModule module = tryFindModule(projects, moduleName, modulePath,
+                        externalModules);
+                if (module != null) {
+                    return module;
                 }
+            }
 
-                if (scope == Scope.ALL_PROJECTS) {
-                    final Collection<IErlProject> projects = getErlangProjects();
-                    final IErlModule module = tryFindModule(projects, moduleName,
-                            modulePath, allModules, paths, externalModules);
-                    if (module != null) {
-                        return module;
-                    }
+            if (scope == Scope.ALL_PROJECTS) {
+                final Collection<IErlProject> projects = getErlangProjects();
+                final IErlModule module = tryFindModule(projects, moduleName, modulePath,
+                        externalModules);
+                if (module != null) {
+                    return module;
                 }
             }
-            return null;
-        } finally {
-            ErlModelCache.getDefault().putModules(allModules);
         }
+        return null;
     }
 
     private IErlModule tryFindModule(final Collection<IErlProject> projects,
             final String moduleName, final String modulePath,
-            final List<IErlModule> allModules, final Set<String> paths,
             final boolean externalModules) throws ErlModelException {
-        IErlModule module;
+        final ErlModelCache cache = ErlModelCache.getDefault();
         for (final IErlProject project : projects) {
-            final Collection<IErlModule> modules = Lists.newArrayList();
-            final Collection<IErlModule> modulesOrExternals = externalModules
-                    ? project.getExternalModules()
-                    : project.getModules();
-            ErlModel.getAllModulesAux(modulesOrExternals, modules, paths);
-            allModules.addAll(modules);
-            module = findModule(modules, moduleName, modulePath);
+            final ModuleIndex index = cache.getModuleIndex(project, externalModules);
+            final IErlModule module = index != null
+                    ? index.find(moduleName, modulePath)
+                    : ModuleIndex.find(externalModules ? project.getExternalModules()
+                            : project.getModules(), moduleName, modulePath);
             if (module != null) {
+                cache.putModule(module);
                 return module;
             }
         }
         return null;
     }
 
-    private IErlModule findModule(final Collection<IErlModule> modules,
-            final String moduleName, final String modulePath) {
-        if (modulePath != null) {
-            for (final IErlModule module : modules) {
-                final String path = module.getFilePath();
-                if (path != null && ResourceUtil.samePath(modulePath, path)) {
-                    return module;
-                }
-            }
-        }
-        if (moduleName != null) {
-            final boolean hasExtension = SystemConfiguration.hasExtension(moduleName);
-            for (final IErlModule module : modules) {
-                final String name = hasExtension ? module.getName()
-                        : module.getModuleName();
-                if (moduleName.equals(name)) {
-                    return module;
-                }
-            }
-        }
-        return null;
-    }
-
     @Override
     public IErlModule findIncludeFromModule(final IErlModule module,
             final String includeName, final String includePath,
@@ -5,10 +5,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.xtext.xbase.lib.Pair;
 import org.erlide.engine.ErlangEngine;
+import org.erlide.engine.model.ErlModelException;
 import org.erlide.engine.model.IErlElement;
 import org.erlide.engine.model.root.IErlModelChangeListener;
 import org.erlide.engine.model.root.IErlModule;
@@ -39,6 +42,11 @@ public class ErlModelCache implements IDisposable {
     private final ModelChangeListener modelChangeListener;
     private final Cache<IErlProject, List<IErlModule>> projectModuleCache;
     private final Cache<IErlProject, List<IErlModule>> projectIncludeCache;
+    // not evicted, they follow the project's modules or are dropped
+    private final Map<IErlProject, ModuleIndex> projectModuleIndex;
+    private final Map<IErlProject, ModuleIndex> projectExternalModuleIndex;
+    // bumped on every change to the indexed modules, before the indexes are touched
+    private final AtomicLong moduleIndexGeneration = new AtomicLong();
 
     public static ErlModelCache getDefault() {
         if (ErlModelCache.fgInstance == null) {
@@ -78,6 +86,8 @@ public class ErlModelCache implements IDisposable {
         externalTreeCache = ErlModelCache.newCache();
         projectModuleCache = ErlModelCache.newCache();
         projectIncludeCache = ErlModelCache.newCache();
+        projectModuleIndex = new ConcurrentHashMap<>();
+        projectExternalModuleIndex = new ConcurrentHashMap<>();
 
         modelChangeListener = new ModelChangeListener();
         ErlangEngine.getInstance().getModel().addModelChangeListener(modelChangeListener);
@@ -220,8 +230,89 @@ public class ErlModelCache implements IDisposable {
         projectIncludeCache.put(project, Lists.newArrayList(includes));
     }
 
+    /**
+     * The index of a project's modules or external modules, built on first use. Null
+     * if indexes aren't kept.
+     */
+    public ModuleIndex getModuleIndex(final IErlProject project,
+            final boolean externalModules) throws ErlModelException {
+        final Map<IErlProject, ModuleIndex> indexes = externalModules
+                ? projectExternalModuleIndex
+                : projectModuleIndex;
+        final ModuleIndex index = indexes.get(project);
+        if (index != null) {
+            return index;
+        }
+        final long generation = moduleIndexGeneration.get();
+        final ModuleIndex result = new ModuleIndex(
+                externalModules ? project.getExternalModules() : project.getModules());
+        indexes.put(project, result);
+        // the modules changed while we read them, the index may have missed it
+        if (moduleIndexGeneration.get() != generation) {
+            indexes.remove(project, result);
+        }
+        return result;
+    }
+
+    /**
+     * A module was added to one of the project's source folders.
+     */
+    public void moduleAdded(final IErlProject project, final IErlModule module) {
+        if (project == null) {
+            return;
+        }
+        clearProject(project);
+        moduleIndexGeneration.incrementAndGet();
+        final ModuleIndex index = projectModuleIndex.get(project);
+        if (index != null) {
+            index.add(module);
+        }
+    }
+
+    /**
+     * A module was removed from one of the project's source folders.
+     */
+    public void moduleRemoved(final IErlProject project, final IErlModule module) {
+        if (project == null) {
+            return;
+        }
+        clearProject(project);
+        moduleIndexGeneration.incrementAndGet();
+        final ModuleIndex index = projectModuleIndex.get(project);
+        if (index != null) {
+            index.remove(module);
+        }
+    }
+
+    /**
+     * Forget the external modules of the project, for when they are reloaded.
+     */
+    public void removeExternalModules(final IErlProject project) {
+        if (project != null) {
+            moduleIndexGeneration.incrementAndGet();
+            projectExternalModuleIndex.remove(project);
+        }
+    }
+
     public void removeProject(final IErlProject project) {
         // ErlLogger.debug("removeForProject %s", project.getName());
+        if (project == null) {
+            return;
+        }
+        clearProject(project);
+        moduleIndexGeneration.incrementAndGet();
+        projectModuleIndex.remove(project);
+        projectExternalModuleIndex.remove(project);
+    }
+
+    /**
+     * Forget the project's module and include lists, but keep its module indexes, for
+     * changes that update them one module at a time.
+     */
+    public void clearProject(final IErlProject project) {
+        if (project == null) {
+            return;
+        }
         final List<IErlModule> includes = projectIncludeCache.getIfPresent(project);
         if (includes != null) {
             for (final IErlModule module : includes) {
@@ -272,6 +363,9 @@ public class ErlModelCache implements IDisposable {
         // nameToModuleCache.clear();
         projectModuleCache.invalidateAll();
         projectIncludeCache.invalidateAll();
+        moduleIndexGeneration.incrementAndGet();
+        projectModuleIndex.clear();
+        projectExternalModuleIndex.clear();
     }
 
     static class DisabledErlModelCache extends ErlModelCache {
@@ -307,5 +401,11 @@ public class ErlModelCache implements IDisposable {
                 final List<IErlModule> modules) {
         }
 
+        @Override
+        public ModuleIndex getModuleIndex(final IErlProject project,
+                final boolean externalModules) {
+            return null;
+        }
+
     }
 }
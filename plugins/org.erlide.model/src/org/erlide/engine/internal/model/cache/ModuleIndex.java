@@ -0,0 +1,138 @@
+package org.erlide.engine.internal.model.cache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.filesystem.EFS;
+import org.erlide.engine.model.root.IErlModule;
+import org.erlide.util.SystemConfiguration;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The modules of a project (or its external modules) by path, by file name and by
+ * module name, so that finding a module doesn't have to look at all of them. Where
+ * several modules have the same key, the first one wins, as it would in a linear
+ * search; modules added later come after the ones already there.
+ *
+ * Modules can be added and removed while others look modules up.
+ */
+public final class ModuleIndex {
+
+    private static final boolean CASE_SENSITIVE = EFS.getLocalFileSystem()
+            .isCaseSensitive();
+
+    private final Map<String, List<IErlModule>> byPath = new ConcurrentHashMap<>();
+    private final Map<String, List<IErlModule>> byFileName = new ConcurrentHashMap<>();
+    private final Map<String, List<IErlModule>> byModuleName = new ConcurrentHashMap<>();
+    // the path a module was indexed by, a deleted module may not have one anymore
+    private final Map<IErlModule, String> paths = new ConcurrentHashMap<>();
+
+    public ModuleIndex(final Collection<IErlModule> modules) {
+        for (final IErlModule module : modules) {
+            add(module);
+        }
+    }
+
+    public void add(final IErlModule module) {
+        final String path = module.getFilePath();
+        if (path != null) {
+            final String key = ModuleIndex.pathKey(path);
+            if (paths.putIfAbsent(module, key) == null) {
+                ModuleIndex.add(byPath, key, module);
+            }
+        }
+        ModuleIndex.add(byFileName, module.getName(), module);
+        ModuleIndex.add(byModuleName, module.getModuleName(), module);
+    }
+
+    public void remove(final IErlModule module) {
+        final String path = paths.remove(module);
+        if (path != null) {
+            ModuleIndex.remove(byPath, path, module);
+        }
+        ModuleIndex.remove(byFileName, module.getName(), module);
+        ModuleIndex.remove(byModuleName, module.getModuleName(), module);
+    }
+
+    /**
+     * Find a module by path or, failing that, by name. The name is a file name if it
+     * has an extension, a module name otherwise.
+     */
+    public IErlModule find(final String moduleName, final String modulePath) {
+        if (modulePath != null) {
+            final IErlModule module = ModuleIndex.first(byPath,
+                    ModuleIndex.pathKey(modulePath));
+            if (module != null) {
+                return module;
+            }
+        }
+        if (moduleName != null) {
+            return ModuleIndex.first(SystemConfiguration.hasExtension(moduleName)
+                    ? byFileName
+                    : byModuleName, moduleName);
+        }
+        return null;
+    }
+
+    /**
+     * Find a module the same way, without an index, for when indexes aren't kept.
+     */
+    public static IErlModule find(final Collection<IErlModule> modules,
+            final String moduleName, final String modulePath) {
+        if (modulePath != null) {
+            final String key = ModuleIndex.pathKey(modulePath);
+            for (final IErlModule module : modules) {
+                final String path = module.getFilePath();
+                if (path != null && key.equals(ModuleIndex.pathKey(path))) {
+                    return module;
+                }
+            }
+        }
+        if (moduleName != null) {
+            final boolean hasExtension = SystemConfiguration.hasExtension(moduleName);
+            for (final IErlModule module : modules) {
+                final String name = hasExtension ? module.getName()
+                        : module.getModuleName();
+                if (moduleName.equals(name)) {
+                    return module;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void add(final Map<String, List<IErlModule>> map, final String key,
+            final IErlModule module) {
+        map.merge(key, ImmutableList.of(module), (old, added) -> old.contains(module)
+                ? old
+                : ImmutableList.<IErlModule> builder().addAll(old).add(module).build());
+    }
+
+    private static void remove(final Map<String, List<IErlModule>> map,
+            final String key, final IErlModule module) {
+        map.computeIfPresent(key, (k, old) -> {
+            final ImmutableList.Builder<IErlModule> rest = ImmutableList.builder();
+            for (final IErlModule m : old) {
+                if (!m.equals(module)) {
+                    rest.add(m);
+                }
+            }
+            final List<IErlModule> result = rest.build();
+            return result.isEmpty() ? null : result;
+        });
+    }
+
+    private static IErlModule first(final Map<String, List<IErlModule>> map,
+            final String key) {
+        final List<IErlModule> modules = map.get(key);
+        return modules == null ? null : modules.get(0);
+    }
+
+    private static String pathKey(final String path) {
+        return ModuleIndex.CASE_SENSITIVE ? path : path.toLowerCase(Locale.ROOT);
+    }
+}
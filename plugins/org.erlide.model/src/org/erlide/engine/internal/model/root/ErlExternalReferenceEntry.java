@@ -7,6 +7,7 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.erlide.engine.ErlangEngine;
+import org.erlide.engine.internal.model.cache.ErlModelCache;
 import org.erlide.engine.model.ErlElementKind;
 import org.erlide.engine.model.ErlModelException;
 import org.erlide.engine.model.IParent;
@@ -64,6 +65,7 @@ public class ErlExternalReferenceEntry extends Openable implements IErlExternal
                 }
             }
             setChildren(children);
+            ErlModelCache.getDefault().removeExternalModules(project);
             return true;
         }
         return false;
@@ -90,6 +90,7 @@ public class ErlExternalReferenceEntryList extends Openable implements IErlExter
                 cache.putExternalTree(externalIncludes, project, externalIncludeTree);
             }
         }
+        cache.removeExternalModules(project);
         return true;
     }
 
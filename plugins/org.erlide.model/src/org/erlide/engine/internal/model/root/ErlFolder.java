@@ -133,10 +133,39 @@ public class ErlFolder extends Openable implements IErlFolder {
         super.setChildren(c);
     }
 
+    @Override
+    public void addChild(final IErlElement child) {
+        super.addChild(child);
+        if (isIndexedModule(child)) {
+            ErlModelCache.getDefault().moduleAdded(modelUtilService.getProject(this),
+                    (IErlModule) child);
+        }
+    }
+
+    @Override
+    public void removeChild(final IErlElement child) {
+        super.removeChild(child);
+        if (isIndexedModule(child)) {
+            ErlModelCache.getDefault().moduleRemoved(modelUtilService.getProject(this),
+                    (IErlModule) child);
+        }
+    }
+
+    /**
+     * Modules (not includes) directly in a source folder are the project's modules,
+     * which are indexed by the model cache.
+     */
+    private boolean isIndexedModule(final IErlElement child) {
+        return child instanceof IErlModule
+                && SourceKind.nameToModuleKind(child.getName()) != SourceKind.HRL
+                && isOnSourcePath();
+    }
+
     @Override
     public void clearCaches() {
+        // adding or removing a child updates the module index, setChildren drops it
         if (isOnIncludePath() || isOnSourcePath()) {
-            ErlModelCache.getDefault().removeProject(modelUtilService.getProject(this));
+            ErlModelCache.getDefault().clearProject(modelUtilService.getProject(this));
         }
         super.clearCaches();
     }
@@ -54,6 +54,7 @@ import org.erlide.engine.model.root.ProjectConfiguratorFactory;
 import org.erlide.engine.util.CommonUtils;
 import org.erlide.engine.util.NatureUtil;
 import org.erlide.runtime.api.RuntimeCore;
+import org.erlide.runtime.rpc.RpcResultCache;
 import org.erlide.runtime.runtimeinfo.RuntimeInfo;
 import org.erlide.runtime.runtimeinfo.RuntimeVersion;
 import org.erlide.util.ErlLogger;
@@ -630,12 +631,17 @@ public class ErlProject extends Openable
         if (configuring || storing) {
             return;
         }
+        final ErlangProjectProperties old = properties;
         try {
             configuring = true;
             loadAllProperties();
         } finally {
             configuring = false;
         }
+        if (old != null && !old.equals(properties)) {
+            // paths may have changed
+            RpcResultCache.invalidateAll();
+        }
     }
 
     private void loadAllProperties() {
@@ -657,6 +663,8 @@ public class ErlProject extends Openable
         } finally {
             storing = false;
         }
+        // paths may have changed
+        RpcResultCache.invalidateAll();
     }
 
     private void loadBuilderProperties() {
@@ -13,6 +13,7 @@ import org.erlide.runtime.rpc.RpcException;
 import org.erlide.runtime.rpc.RpcTimeoutException;
 import org.erlide.util.ErlLogger;
 import org.erlide.util.Util;
+import org.erlide.util.erlang.RpcSignature;
 
 import com.ericsson.otp.erlang.OtpErlangBinary;
 import com.ericsson.otp.erlang.OtpErlangObject;
@@ -23,6 +24,11 @@ public class ErlideScanner implements SimpleScannerService, InternalScanner {
     private static final Object ENCODING = System.getProperty("erlide.encoding.__test__",
             "latin1");
     private static final boolean USE_CACHE = true;
+    // called for each edit in an Erlang editor
+    private static final RpcSignature GET_TOKEN_AT = RpcSignature.of("ai");
+    private static final RpcSignature REPLACE_TEXT = RpcSignature.of("aiis");
+    private static final RpcSignature LIGHT_SCAN_STRING = RpcSignature.of("ba");
+    private static final RpcSignature CHECK_ALL = RpcSignature.of("aso");
 
     private final IOtpRpc backend;
 
@@ -79,8 +85,8 @@ public class ErlideScanner implements SimpleScannerService, InternalScanner {
     public ErlToken getTokenAt(final String module, final int offset) {
         OtpErlangObject r1 = null;
         try {
-            r1 = backend.call(ErlideScanner.ERLIDE_SCANNER, "get_token_at", "ai", module,
-                    offset);
+            r1 = backend.call(ErlideScanner.ERLIDE_SCANNER, "get_token_at",
+                    ErlideScanner.GET_TOKEN_AT, module, offset);
         } catch (final Exception e) {
             ErlLogger.debug(e);
             return null;
@@ -104,7 +110,8 @@ public class ErlideScanner implements SimpleScannerService, InternalScanner {
             final String newText) {
         try {
             final OtpErlangObject r = backend.call(ErlideScanner.ERLIDE_SCANNER,
-                    "replace_text", "aiis", module, offset, removeLength, newText);
+                    "replace_text", ErlideScanner.REPLACE_TEXT, module, offset,
+                    removeLength, newText);
             if (r instanceof OtpErlangTuple) {
                 ErlLogger.error("replace_text %s @ %d GOT:: %s", module, offset,
                         r.toString());
@@ -121,8 +128,8 @@ public class ErlideScanner implements SimpleScannerService, InternalScanner {
             throws ScannerException {
         OtpErlangObject r1 = null;
         try {
-            r1 = backend.call("erlide_scanner", "light_scan_string", "ba", string,
-                    ErlideScanner.ENCODING);
+            r1 = backend.call("erlide_scanner", "light_scan_string",
+                    ErlideScanner.LIGHT_SCAN_STRING, string, ErlideScanner.ENCODING);
         } catch (final Exception e) {
             throw new ScannerException(
                     "Could not parse string \"" + string + "\": " + e.getMessage());
@@ -163,7 +170,7 @@ public class ErlideScanner implements SimpleScannerService, InternalScanner {
         }
         try {
             final OtpErlangObject o = backend.call(ErlideScanner.ERLIDE_SCANNER,
-                    "check_all", "aso", module, text, getTokens);
+                    "check_all", ErlideScanner.CHECK_ALL, module, text, getTokens);
             return o;
         } catch (final RpcException e) {
             ErlLogger.warn(e);
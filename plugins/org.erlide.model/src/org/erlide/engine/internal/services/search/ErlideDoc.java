@@ -7,6 +7,7 @@ import org.erlide.engine.ErlangEngine;
 import org.erlide.engine.services.search.OtpDocService;
 import org.erlide.runtime.rpc.IOtpRpc;
 import org.erlide.runtime.rpc.RpcException;
+import org.erlide.runtime.rpc.RpcResultCache;
 import org.erlide.util.ErlLogger;
 import org.erlide.util.ErlangFunctionCall;
 
@@ -20,6 +21,13 @@ import com.ericsson.otp.erlang.OtpErlangTuple;
 public class ErlideDoc implements OtpDocService {
 
     private static final String ERLIDE_OTP_DOC = "erlide_otp_doc";
+
+    static {
+        RpcResultCache.declare(ErlideDoc.ERLIDE_OTP_DOC, "get_proposals", "get_doc");
+        RpcResultCache.declareDependingOnAllModules(ErlideDoc.ERLIDE_OTP_DOC,
+                "get_modules");
+    }
+
     private final IOtpRpc backend;
     private final String stateDir;
 
@@ -33,8 +41,8 @@ public class ErlideDoc implements OtpDocService {
             final String prefix) {
         OtpErlangObject res = null;
         try {
-            res = b.call(ErlideDoc.ERLIDE_OTP_DOC, "get_proposals", "ass", mod, prefix,
-                    stateDir);
+            res = RpcResultCache.call(b, ErlideDoc.ERLIDE_OTP_DOC, "get_proposals", "ass",
+                    mod, prefix, stateDir);
         } catch (final RpcException e) {
             ErlLogger.warn(e);
         }
@@ -47,8 +55,8 @@ public class ErlideDoc implements OtpDocService {
         OtpErlangObject res = null;
         try {
             final String what = includes ? "includes" : "modules";
-            res = b.call(ErlideDoc.ERLIDE_OTP_DOC, "get_modules", "slsa", prefix,
-                    projectModules, what);
+            res = RpcResultCache.call(b, ErlideDoc.ERLIDE_OTP_DOC, "get_modules", "slsa",
+                    prefix, projectModules, what);
         } catch (final RpcException e) {
             ErlLogger.warn(e);
         }
@@ -65,7 +73,7 @@ public class ErlideDoc implements OtpDocService {
                 new OtpErlangAtom(functionCall.getName()),
                 new OtpErlangInt(functionCall.getArity()), new OtpErlangString("") });
         try {
-            res = b.call(ErlideDoc.ERLIDE_OTP_DOC, "get_doc", "sxs",
+            res = RpcResultCache.call(b, ErlideDoc.ERLIDE_OTP_DOC, "get_doc", "sxs",
                     functionCall.getModule(), input, stateDir);
         } catch (final RpcException e) {
             ErlLogger.warn(e);
@@ -83,8 +91,8 @@ public class ErlideDoc implements OtpDocService {
             final OtpErlangObject input = backend.call("erlide_open", "open", "aix",
                     module, offset, ErlangEngine.getInstance().getOpenService()
                             .mkContext(externalModules, null, pathVars, null, imports));
-            res = b.call(ErlideDoc.ERLIDE_OTP_DOC, "get_doc", "sxs", module, input,
-                    stateDir);
+            res = RpcResultCache.call(b, ErlideDoc.ERLIDE_OTP_DOC, "get_doc", "sxs",
+                    module, input, stateDir);
         } catch (final RpcException e) {
             ErlLogger.warn(e);
         }
@@ -12,6 +12,7 @@ import org.erlide.engine.services.search.OpenResult;
 import org.erlide.engine.services.search.OpenService;
 import org.erlide.runtime.rpc.IOtpRpc;
 import org.erlide.runtime.rpc.RpcException;
+import org.erlide.runtime.rpc.RpcResultCache;
 import org.erlide.util.ErlLogger;
 import org.erlide.util.Util;
 import org.erlide.util.erlang.OtpErlang;
@@ -28,6 +29,11 @@ public class ErlideOpen implements OpenService {
 
     private static final String ERLIDE_OPEN = "erlide_open";
 
+    static {
+        RpcResultCache.declare(ErlideOpen.ERLIDE_OPEN, "get_otp_lib_structure",
+                "get_lib_files");
+    }
+
     private final IOtpRpc ideBackend;
     private final String stateDir;
 
@@ -160,8 +166,8 @@ public class ErlideOpen implements OpenService {
     @Override
     public OtpErlangList getOtpLibStructure(final IOtpRpc backend) {
         try {
-            final OtpErlangObject res = backend.call(ErlideOpen.ERLIDE_OPEN,
-                    "get_otp_lib_structure", "s", stateDir);
+            final OtpErlangObject res = RpcResultCache.call(backend,
+                    ErlideOpen.ERLIDE_OPEN, "get_otp_lib_structure", "s", stateDir);
             if (Util.isOk(res)) {
                 final OtpErlangTuple tres = (OtpErlangTuple) res;
                 final OtpErlangList lot = (OtpErlangList) tres.elementAt(1);
@@ -177,8 +183,8 @@ public class ErlideOpen implements OpenService {
     @Override
     public List<String> getLibFiles(final String entry) {
         try {
-            final OtpErlangObject res = ideBackend.call(ErlideOpen.ERLIDE_OPEN,
-                    "get_lib_files", "ss", entry, stateDir);
+            final OtpErlangObject res = RpcResultCache.call(ideBackend,
+                    ErlideOpen.ERLIDE_OPEN, "get_lib_files", "ss", entry, stateDir);
             if (Util.isOk(res)) {
                 final OtpErlangTuple t = (OtpErlangTuple) res;
                 final OtpErlangList l = (OtpErlangList) t.elementAt(1);
@@ -1,9 +1,14 @@
 package org.erlide.runtime.api;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.erlide.runtime.rpc.IOtpRpc;
+import org.erlide.runtime.rpc.RpcBatch;
+import org.erlide.runtime.rpc.RpcException;
+import org.erlide.runtime.rpc.RpcResult;
 import org.erlide.util.ErlLogger;
 
 import com.ericsson.otp.erlang.OtpErlangAtom;
@@ -11,6 +16,7 @@ import com.ericsson.otp.erlang.OtpErlangBinary;
 import com.ericsson.otp.erlang.OtpErlangList;
 import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.google.common.collect.Lists;
 
 public class BeamLoader {
 
@@ -30,14 +36,112 @@ public class BeamLoader {
         } catch (final Exception e) {
             ErlLogger.warn(e);
         }
+        if (isLoaded(r)) {
+            return true;
+        }
+        // binary couldn't be extracted
+        ErlLogger.error("Could not load " + moduleName + ": " + r);
+        return false;
+    }
+
+    // calls and beam bytes per batch, so that each batch is done well within the
+    // default rpc timeout
+    private static final int MAX_BATCH_CALLS = 100;
+    private static final int MAX_BATCH_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Load several beams in few round trips: batches finding out which modules are
+     * sticky, then batches loading the others.
+     *
+     * @return the names of the modules that couldn't be loaded
+     */
+    public static List<String> loadBeams(final IOtpRpc backend,
+            final Map<String, OtpErlangBinary> beams) {
+        final List<String> failed = new ArrayList<>();
+        try {
+            final List<String> toLoad = new ArrayList<>();
+            for (final List<String> names : Lists.partition(
+                    new ArrayList<>(beams.keySet()), BeamLoader.MAX_BATCH_CALLS)) {
+                final RpcBatch sticky = backend.batch();
+                for (final String moduleName : names) {
+                    sticky.add("code", "is_sticky", "a", moduleName);
+                }
+                final List<RpcResult> results = BeamLoader.execute(sticky, names,
+                        failed);
+                for (int i = 0; i < results.size(); i++) {
+                    final String moduleName = names.get(i);
+                    final RpcResult r = results.get(i);
+                    if (!r.isOk()) {
+                        ErlLogger.error("Could not load " + moduleName + ": "
+                                + r.getValue());
+                        failed.add(moduleName);
+                    } else if (r.getValue() instanceof OtpErlangAtom
+                            && !((OtpErlangAtom) r.getValue()).booleanValue()) {
+                        toLoad.add(moduleName);
+                    } else {
+                        ErlLogger.warn("sticky:: %s", moduleName);
+                        failed.add(moduleName);
+                    }
+                }
+            }
+            RpcBatch load = backend.batch();
+            List<String> names = new ArrayList<>();
+            int bytes = 0;
+            for (final String moduleName : toLoad) {
+                final OtpErlangBinary bin = beams.get(moduleName);
+                if (!names.isEmpty() && (names.size() >= BeamLoader.MAX_BATCH_CALLS
+                        || bytes + bin.size() > BeamLoader.MAX_BATCH_BYTES)) {
+                    BeamLoader.load(load, names, failed);
+                    load = backend.batch();
+                    names = new ArrayList<>();
+                    bytes = 0;
+                }
+                load.add("code", "load_binary", "asb", moduleName, moduleName + ".erl",
+                        bin);
+                names.add(moduleName);
+                bytes += bin.size();
+            }
+            BeamLoader.load(load, names, failed);
+        } catch (final RpcException e) {
+            ErlLogger.warn(e);
+            return new ArrayList<>(beams.keySet());
+        }
+        return failed;
+    }
+
+    private static void load(final RpcBatch load, final List<String> names,
+            final List<String> failed) {
+        final List<RpcResult> results = BeamLoader.execute(load, names, failed);
+        for (int i = 0; i < results.size(); i++) {
+            final RpcResult r = results.get(i);
+            if (!r.isOk() || !BeamLoader.isLoaded(r.getValue())) {
+                ErlLogger.error("Could not load " + names.get(i) + ": " + r.getValue());
+                failed.add(names.get(i));
+            }
+        }
+    }
+
+    /*
+     * Execute a batch with a call for each of names; if it fails, all of them fail.
+     */
+    private static List<RpcResult> execute(final RpcBatch batch, final List<String> names,
+            final List<String> failed) {
+        try {
+            return batch.execute();
+        } catch (final RpcException e) {
+            ErlLogger.warn(e);
+            failed.addAll(names);
+            return Collections.emptyList();
+        }
+    }
+
+    private static boolean isLoaded(final OtpErlangObject r) {
         if (r instanceof OtpErlangTuple) {
             final OtpErlangTuple t = (OtpErlangTuple) r;
             if (((OtpErlangAtom) t.elementAt(0)).atomValue().compareTo("module") == 0) {
                 return true;
             }
         }
-        // binary couldn't be extracted
-        ErlLogger.error("Could not load " + moduleName + ": " + r);
         return false;
     }
 
@@ -55,10 +159,12 @@ public class BeamLoader {
                     mine.add(mod);
                 }
             }
+            final RpcBatch reload = backend.batch();
             for (final OtpErlangAtom mod : mine) {
                 // ErlLogger.debug(">>> reload " + mod);
-                backend.call("c", "l", "x", mod);
+                reload.add("c", "l", "x", mod);
             }
+            reload.execute();
         } catch (final Exception e) {
             ErlLogger.error(e);
         }
@@ -8,8 +8,10 @@
  *******************************************************************************/
 package org.erlide.runtime.api;
 
+import java.util.Map;
 import java.util.concurrent.Executor;
 
+import org.erlide.runtime.events.ErlangEventHandler;
 import org.erlide.runtime.rpc.IOtpRpc;
 import org.erlide.runtime.runtimeinfo.RuntimeVersion;
 import org.erlide.util.IDisposable;
@@ -32,15 +34,35 @@ public interface IOtpNodeProxy extends IDisposable {
 
     String getOtpHome();
 
+    /**
+     * Return the rpc of the runtime, waiting for it to be running if it is not yet, or
+     * null if it is stopping or stopped.
+     */
     IOtpRpc getOtpRpc();
 
+    /**
+     * Return the rpc of the runtime if it is running and null otherwise, without ever
+     * blocking.
+     */
+    IOtpRpc tryGetOtpRpc();
+
     OtpMbox createMbox(String string);
 
     OtpMbox createMbox();
 
     OtpErlangPid getEventPid();
 
-    void registerEventListener(Object handler);
+    /**
+     * Deliver the events of the handler's topic to it, on a thread of its own.
+     */
+    void registerEventListener(ErlangEventHandler handler);
+
+    void unregisterEventListener(ErlangEventHandler handler);
+
+    /**
+     * The number of events waiting to be handled, per topic and handler.
+     */
+    Map<String, Integer> getEventQueueDepths();
 
     void addRuntimeListener(Listener listener, Executor executor);
 
@@ -0,0 +1,189 @@
+package org.erlide.runtime.events;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.erlide.util.ErlLogger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Delivers the events coming from a runtime to the handlers registered for their topic.
+ *
+ * Each handler has its own bounded queue and gets its events in order, in batches of
+ * what has accumulated since it was last called, on its executor (by default a shared
+ * pool), so a slow handler only delays its own events as long as its queue has room.
+ * No event is ever dropped: when a handler's queue is full, posting waits for it, which
+ * holds back the thread reading all events from the runtime, and a warning is logged
+ * each time that goes on for a while.
+ */
+public class ErlEventDispatcher {
+
+    private static final int QUEUE_SIZE = Integer.getInteger("erlide.events.queue",
+            1024);
+    private static final int BATCH_SIZE = 256;
+    private static final long STALL_WARNING_SECONDS = 5;
+
+    private static final ExecutorService SHARED_EXECUTOR = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("events-%d").build());
+
+    private final String name;
+    private final ConcurrentMap<String, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    public ErlEventDispatcher(final String name) {
+        this.name = name;
+    }
+
+    public void register(final ErlangEventHandler handler) {
+        register(handler, ErlEventDispatcher.SHARED_EXECUTOR);
+    }
+
+    public void register(final ErlangEventHandler handler, final Executor executor) {
+        subscribers.computeIfAbsent(handler.getTopic(), t -> new CopyOnWriteArrayList<>())
+                .add(new Subscriber(handler, executor));
+    }
+
+    public void unregister(final ErlangEventHandler handler) {
+        final List<Subscriber> list = subscribers.get(handler.getTopic());
+        if (list != null) {
+            list.removeIf(s -> s.handler == handler);
+        }
+    }
+
+    /**
+     * Queue the event for the handlers of its topic.
+     *
+     * @return false if there is no handler for the topic
+     */
+    public boolean post(final ErlEvent event) {
+        final List<Subscriber> list = subscribers.get(event.getTopic());
+        if (list == null || list.isEmpty()) {
+            return false;
+        }
+        for (final Subscriber s : list) {
+            s.enqueue(event);
+            s.schedule();
+        }
+        return true;
+    }
+
+    /**
+     * Queue a batch of events, waking up each interested handler once. Events for
+     * which there is no handler are logged.
+     */
+    public void post(final List<ErlEvent> events) {
+        final Set<Subscriber> touched = new LinkedHashSet<>();
+        for (final ErlEvent event : events) {
+            final List<Subscriber> list = subscribers.get(event.getTopic());
+            if (list == null || list.isEmpty()) {
+                ErlLogger.warn("Dead event: " + event.getTopic() + " in runtime " + name);
+                continue;
+            }
+            for (final Subscriber s : list) {
+                s.enqueue(event);
+                touched.add(s);
+            }
+        }
+        for (final Subscriber s : touched) {
+            s.schedule();
+        }
+    }
+
+    /**
+     * The number of events waiting for each handler, keyed by "topic/handler class".
+     */
+    public Map<String, Integer> queueDepths() {
+        final Map<String, Integer> result = new LinkedHashMap<>();
+        for (final List<Subscriber> list : subscribers.values()) {
+            for (final Subscriber s : list) {
+                result.put(s.toString(), s.queue.size());
+            }
+        }
+        return result;
+    }
+
+    public void dispose() {
+        subscribers.clear();
+    }
+
+    private class Subscriber implements Runnable {
+        final ErlangEventHandler handler;
+        private final Executor executor;
+        final BlockingQueue<ErlEvent> queue = new ArrayBlockingQueue<>(
+                ErlEventDispatcher.QUEUE_SIZE);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // set while posting waits for room, so that catching up is logged
+        private final AtomicBoolean stalled = new AtomicBoolean();
+
+        Subscriber(final ErlangEventHandler handler, final Executor executor) {
+            this.handler = handler;
+            this.executor = executor;
+        }
+
+        void enqueue(final ErlEvent event) {
+            if (queue.offer(event)) {
+                return;
+            }
+            // a batch is only scheduled once it is queued, it must run to make room
+            schedule();
+            try {
+                while (!queue.offer(event, ErlEventDispatcher.STALL_WARNING_SECONDS,
+                        TimeUnit.SECONDS)) {
+                    stalled.set(true);
+                    ErlLogger.warn("%s: event queue of %s is still full, waiting", name,
+                            this);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                ErlLogger.error("%s: interrupted, event for %s lost: %s", name, this,
+                        event.getEvent());
+            }
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            final List<ErlEvent> batch = new ArrayList<>();
+            while (queue.drainTo(batch, ErlEventDispatcher.BATCH_SIZE) > 0) {
+                try {
+                    handler.handleEvents(batch);
+                } catch (final Exception e) {
+                    ErlLogger.error(e);
+                }
+                batch.clear();
+            }
+            if (stalled.compareAndSet(true, false)) {
+                ErlLogger.warn("%s: %s caught up", name, this);
+            }
+            scheduled.set(false);
+            // an event may have arrived after the last poll but before the reset
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return handler.getTopic() + "/" + handler.getClass().getName();
+        }
+    }
+}
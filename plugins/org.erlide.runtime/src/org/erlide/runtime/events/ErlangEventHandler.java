@@ -1,5 +1,8 @@
 package org.erlide.runtime.events;
 
+import java.util.List;
+
+import org.erlide.util.ErlLogger;
 import org.erlide.util.IDisposable;
 
 public abstract class ErlangEventHandler implements IDisposable {
@@ -9,6 +12,26 @@ public abstract class ErlangEventHandler implements IDisposable {
         this.topic = topic;
     }
 
+    /**
+     * Called for each event of the handler's topic, one at a time, in the order they
+     * were sent.
+     */
+    public abstract void handleEvent(ErlEvent event);
+
+    /**
+     * Called with the events that arrived since the last call, in order. Handlers that
+     * can process a burst of events more cheaply than one by one override this.
+     */
+    public void handleEvents(final List<ErlEvent> events) {
+        for (final ErlEvent event : events) {
+            try {
+                handleEvent(event);
+            } catch (final Exception e) {
+                ErlLogger.error(e);
+            }
+        }
+    }
+
     @Override
     public void dispose() {
     }
@@ -6,7 +6,6 @@ import org.erlide.util.erlang.OtpErlang;
 
 import com.ericsson.otp.erlang.OtpErlangAtom;
 import com.ericsson.otp.erlang.OtpErlangObject;
-import com.google.common.eventbus.Subscribe;
 
 public class LogEventHandler extends ErlangEventHandler {
 
@@ -14,11 +13,8 @@ public class LogEventHandler extends ErlangEventHandler {
         super("log");
     }
 
-    @Subscribe
+    @Override
     public void handleEvent(final ErlEvent event) {
-        if (!event.getTopic().equals(getTopic())) {
-            return;
-        }
         final OtpErlangObject data = event.getEvent();
         try {
             final OtpBindings b = OtpErlang.match("{K:a,M}", data);
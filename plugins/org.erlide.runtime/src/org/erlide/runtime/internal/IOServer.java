@@ -8,12 +8,14 @@
  *******************************************************************************/
 package org.erlide.runtime.internal;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import org.erlide.util.ErlLogger;
-import org.erlide.util.erlang.OtpBindings;
+import org.erlide.util.erlang.CompiledPattern;
 import org.erlide.util.erlang.OtpErlang;
-import org.erlide.util.erlang.OtpParserException;
 
 import com.ericsson.otp.erlang.OtpErlangAtom;
 import com.ericsson.otp.erlang.OtpErlangException;
@@ -22,15 +24,46 @@ import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangPid;
 import com.ericsson.otp.erlang.OtpErlangTuple;
 import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpMsg;
 
 /**
  * An Erlang io_server.
  */
 public class IOServer implements Runnable {
 
+    private static final CompiledPattern PUT_CHARS = CompiledPattern
+            .of("{put_chars, Chars}");
+    private static final CompiledPattern PUT_CHARS_ENC = CompiledPattern
+            .of("{put_chars, Enc:a, Chars}");
+    private static final CompiledPattern PUT_CHARS_MFA = CompiledPattern
+            .of("{put_chars, M:a, F:a, A}");
+    private static final CompiledPattern PUT_CHARS_ENC_MFA = CompiledPattern
+            .of("{put_chars, Enc:a, M:a, F:a, A}");
+    private static final CompiledPattern GET_UNTIL = CompiledPattern
+            .of("{get_until, Prompt}");
+    private static final CompiledPattern GET_UNTIL_N = CompiledPattern
+            .of("{get_until, Prompt, N:i}");
+    private static final CompiledPattern GET_UNTIL_ENC = CompiledPattern
+            .of("{get_until, Enc:a, Prompt}");
+    private static final CompiledPattern GET_UNTIL_ENC_N = CompiledPattern
+            .of("{get_until, Enc:a, Prompt, N:i}");
+    private static final CompiledPattern GET_UNTIL_MFA = CompiledPattern
+            .of("{get_until, Prompt, M:a, F:a, A}");
+    private static final CompiledPattern GET_UNTIL_ENC_MFA = CompiledPattern
+            .of("{get_until, Enc: a, Prompt, M:a, F:a, A}");
+    private static final CompiledPattern REQUESTS = CompiledPattern
+            .of("{requests, Reqs:lx}");
+    private static final CompiledPattern SETOPTS = CompiledPattern
+            .of("{setopts, Opts:lx}");
+
+    // requests handled together, their replies are sent in one batch
+    private static final int MAX_BATCH = 100;
+
     private final IOCallback callback;
     private final OtpMbox mbox;
     private volatile boolean stopped;
+    // only used by the server thread
+    private final CompiledPattern.Bindings bindings = new CompiledPattern.Bindings();
 
     public IOServer(final OtpMbox box, final IOCallback callback) {
         this.callback = callback;
@@ -46,21 +79,33 @@ public class IOServer implements Runnable {
     @Override
     public void run() {
         boolean done = false;
+        final List<OtpMsg> msgs = new ArrayList<>();
+        final List<OtpErlangPid> replyTo = new ArrayList<>();
+        final List<OtpErlangObject> replies = new ArrayList<>();
         do {
-            OtpErlangObject msg;
             try {
-                msg = mbox.receive(3000);
-                if (msg != null) {
+                msgs.clear();
+                replyTo.clear();
+                replies.clear();
+                mbox.receiveMsgs(msgs, 3000, IOServer.MAX_BATCH);
+                for (final OtpMsg m : msgs) {
+                    // a bad request doesn't lose the replies to the others
+                    try {
+                        final OtpErlangObject msg = m.getMsg();
 
-                    ErlLogger.debug(
-                            "IOS " + Thread.currentThread().getName() + " : " + msg);
+                        ErlLogger.debug("IOS %s : %s", Thread.currentThread().getName(),
+                                msg);
 
-                    if (msg instanceof OtpErlangTuple) {
-                        handleMessage(msg);
-                    } else {
-                        ErlLogger.debug("IOServer: unknown message " + msg);
+                        if (msg instanceof OtpErlangTuple) {
+                            handleMessage(msg, replyTo, replies);
+                        } else {
+                            ErlLogger.debug("IOServer: unknown message %s", msg);
+                        }
+                    } catch (final Exception e) {
+                        ErlLogger.error(e);
                     }
                 }
+                sendReplies(replyTo, replies);
             } catch (final OtpErlangExit e) {
                 done = true;
             } catch (final Exception e) {
@@ -72,7 +117,16 @@ public class IOServer implements Runnable {
         }
     }
 
-    private void handleMessage(final OtpErlangObject msg) {
+    private void sendReplies(final List<OtpErlangPid> replyTo,
+            final List<OtpErlangObject> replies) throws IOException {
+        if (!replies.isEmpty()) {
+            mbox.sendBatch(replyTo.toArray(new OtpErlangPid[replyTo.size()]),
+                    replies.toArray(new OtpErlangObject[replies.size()]));
+        }
+    }
+
+    private void handleMessage(final OtpErlangObject msg,
+            final List<OtpErlangPid> replyTo, final List<OtpErlangObject> replies) {
         final OtpErlangTuple tuple = (OtpErlangTuple) msg;
         final String tag = ((OtpErlangAtom) tuple.elementAt(0)).atomValue();
         if ("io_request".equals(tag)) {
@@ -82,7 +136,8 @@ public class IOServer implements Runnable {
             final OtpErlangObject reply = processRequest(from, request);
             final OtpErlangTuple replyMsg = OtpErlang
                     .mkTuple(new OtpErlangAtom("io_reply"), replyAs, reply);
-            mbox.send(from, replyMsg);
+            replyTo.add(from);
+            replies.add(replyMsg);
         } else {
             ErlLogger.warn("IOServer: unknown message " + msg);
         }
@@ -96,34 +151,30 @@ public class IOServer implements Runnable {
         if (callback == null) {
             return error;
         }
-        OtpBindings b;
+        final CompiledPattern.Bindings b = bindings;
         try {
             if (arequest instanceof OtpErlangTuple) {
                 final OtpErlangTuple request = (OtpErlangTuple) arequest;
                 final String tag = ((OtpErlangAtom) request.elementAt(0)).atomValue();
                 if ("put_chars".equals(tag)) {
-                    b = OtpErlang.match("{put_chars, Chars}", request);
-                    if (b != null) {
+                    if (IOServer.PUT_CHARS.match(request, b)) {
                         return callback.putChars(from, IOEncoding.latin1, b.get("Chars"));
                     }
 
-                    b = OtpErlang.match("{put_chars, Enc:a, Chars}", request);
-                    if (b != null) {
+                    if (IOServer.PUT_CHARS_ENC.match(request, b)) {
                         final String enc = b.getAtom("Enc");
                         return callback.putChars(from, IOEncoding.valueOf(enc),
                                 b.get("Chars"));
                     }
 
-                    b = OtpErlang.match("{put_chars, M:a, F:a, A}", request);
-                    if (b != null) {
+                    if (IOServer.PUT_CHARS_MFA.match(request, b)) {
                         final String m = b.getAtom("M");
                         final String f = b.getAtom("F");
                         final Collection<OtpErlangObject> a = b.getList("A");
                         return callback.putChars(from, IOEncoding.latin1, m, f, a);
                     }
 
-                    b = OtpErlang.match("{put_chars, Enc:a, M:a, F:a, A}", request);
-                    if (b != null) {
+                    if (IOServer.PUT_CHARS_ENC_MFA.match(request, b)) {
                         final String enc = b.getAtom("Enc");
                         final String m = b.getAtom("M");
                         final String f = b.getAtom("F");
@@ -132,39 +183,32 @@ public class IOServer implements Runnable {
                     }
                     return error;
                 } else if ("get_until".equals(tag)) {
-                    b = OtpErlang.match("{get_until, Prompt}", request);
-                    if (b != null) {
+                    if (IOServer.GET_UNTIL.match(request, b)) {
                         return callback.getUntil(IOEncoding.latin1, b.get("Prompt"));
                     }
-                    b = OtpErlang.match("{get_until, Prompt, N:i}", request);
-                    if (b != null) {
+                    if (IOServer.GET_UNTIL_N.match(request, b)) {
                         final long n = b.getLong("N");
                         return callback.getUntil(IOEncoding.latin1, b.get("Prompt"), n);
                     }
-                    b = OtpErlang.match("{get_until, Enc:a, Prompt}", request);
-                    if (b != null) {
+                    if (IOServer.GET_UNTIL_ENC.match(request, b)) {
                         final String enc = b.getAtom("Enc");
                         return callback.getUntil(IOEncoding.valueOf(enc),
                                 b.get("Prompt"));
                     }
-                    b = OtpErlang.match("{get_until, Enc:a, Prompt, N:i}", request);
-                    if (b != null) {
+                    if (IOServer.GET_UNTIL_ENC_N.match(request, b)) {
                         final String enc = b.getAtom("Enc");
                         final long n = b.getLong("N");
                         return callback.getUntil(IOEncoding.valueOf(enc), b.get("Prompt"),
                                 n);
                     }
-                    b = OtpErlang.match("{get_until, Prompt, M:a, F:a, A}", request);
-                    if (b != null) {
+                    if (IOServer.GET_UNTIL_MFA.match(request, b)) {
                         final String m = b.getAtom("M");
                         final String f = b.getAtom("F");
                         final Collection<OtpErlangObject> a = b.getList("A");
                         return callback.getUntil(IOEncoding.latin1, b.get("Prompt"), m, f,
                                 a);
                     }
-                    b = OtpErlang.match("{get_until, Enc: a, Prompt, M:a, F:a, A}",
-                            request);
-                    if (b != null) {
+                    if (IOServer.GET_UNTIL_ENC_MFA.match(request, b)) {
                         final String enc = b.getAtom("Enc");
                         final String m = b.getAtom("M");
                         final String f = b.getAtom("F");
@@ -173,8 +217,7 @@ public class IOServer implements Runnable {
                                 m, f, a);
                     }
                 } else if ("requests".equals(tag)) {
-                    b = OtpErlang.match("{requests, Reqs:lx}", request);
-                    if (b != null) {
+                    if (IOServer.REQUESTS.match(request, b)) {
                         final Collection<OtpErlangObject> reqs = b.getList("Reqs");
                         OtpErlangObject val = null;
                         for (final OtpErlangObject r : reqs) {
@@ -186,8 +229,7 @@ public class IOServer implements Runnable {
                         return val == null ? error : val;
                     }
                 } else if ("setopts".equals(tag)) {
-                    b = OtpErlang.match("{setopts, Opts:lx}", request);
-                    if (b != null) {
+                    if (IOServer.SETOPTS.match(request, b)) {
                         final Collection<OtpErlangObject> opts = b.getList("Opts");
                         return callback.setOpts(opts);
                     }
@@ -206,8 +248,6 @@ public class IOServer implements Runnable {
             } else {
                 return error;
             }
-        } catch (final OtpParserException e) {
-            ErlLogger.error(e);
         } catch (final OtpErlangException e) {
             ErlLogger.error(e);
         }
@@ -3,11 +3,39 @@ package org.erlide.runtime.internal;
 import org.eclipse.xtext.xbase.lib.Exceptions;
 import org.erlide.util.HostnameChecker;
 
+import com.ericsson.otp.erlang.OtpInputStream;
+import com.ericsson.otp.erlang.OtpNioTransportFactory;
 import com.ericsson.otp.erlang.OtpNode;
+import com.ericsson.otp.erlang.OtpTransportFactory;
 import com.google.common.base.Strings;
 
 @SuppressWarnings("all")
 public class LocalNodeCreator {
+    private static final boolean USE_NIO = Boolean.getBoolean("erlide.otp.nio");
+
+    private static OtpTransportFactory transportFactory;
+
+    /**
+     * The transport factory for the local nodes, or null for the default one.
+     */
+    private static synchronized OtpTransportFactory getTransportFactory() {
+        if (LocalNodeCreator.transportFactory == null) {
+            if (LocalNodeCreator.USE_NIO) {
+                LocalNodeCreator.transportFactory = new OtpNioTransportFactory();
+            }
+        }
+        return LocalNodeCreator.transportFactory;
+    }
+
+    /**
+     * Make the local nodes with the given transport factory, or with the default one
+     * if null. For connecting to runtimes that are not registered with Epmd.
+     */
+    public static synchronized void setTransportFactory(
+            final OtpTransportFactory factory) {
+        LocalNodeCreator.transportFactory = factory;
+    }
+
     public static OtpNode createOtpNode(final String cookie, final boolean longName) {
         try {
             OtpNode _xblockexpression = null;
@@ -18,10 +46,20 @@ public class LocalNodeCreator {
                 final boolean _isNullOrEmpty = Strings.isNullOrEmpty(cookie);
                 if (_isNullOrEmpty) {
                     final String _create = NodeNameCreator.create(hostName);
-                    _xifexpression = new OtpNode(_create);
+                    if (LocalNodeCreator.getTransportFactory() != null) {
+                        _xifexpression = new OtpNode(_create,
+                                LocalNodeCreator.getTransportFactory());
+                    } else {
+                        _xifexpression = new OtpNode(_create);
+                    }
                 } else {
                     final String _create_1 = NodeNameCreator.create(hostName);
-                    _xifexpression = new OtpNode(_create_1, cookie);
+                    if (LocalNodeCreator.getTransportFactory() != null) {
+                        _xifexpression = new OtpNode(_create_1, cookie,
+                                LocalNodeCreator.getTransportFactory());
+                    } else {
+                        _xifexpression = new OtpNode(_create_1, cookie);
+                    }
                 }
                 _xblockexpression = _xifexpression;
             }
@@ -35,6 +73,7 @@ public class LocalNodeCreator {
             final boolean hasLongName) {
         LocalNodeCreator.wait_for_epmd();
         final OtpNode lNode = LocalNodeCreator.createOtpNode(cookie, hasLongName);
+        lNode.setFlags(OtpInputStream.DECODE_BINARIES_AS_SLICES);
         final ErlideNodeStatus statusWatcher = new ErlideNodeStatus(runtime);
         lNode.registerStatusHandler(statusWatcher);
         return lNode;
@@ -10,15 +10,17 @@ package org.erlide.runtime.internal;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 import org.erlide.runtime.api.IOtpNodeProxy;
 import org.erlide.runtime.api.RuntimeData;
 import org.erlide.runtime.events.ErlEvent;
+import org.erlide.runtime.events.ErlEventDispatcher;
+import org.erlide.runtime.events.ErlangEventHandler;
 import org.erlide.runtime.events.ErlangLogEventHandler;
 import org.erlide.runtime.events.LogEventHandler;
 import org.erlide.runtime.internal.rpc.OtpRpc;
@@ -36,11 +38,10 @@ import com.ericsson.otp.erlang.OtpErlangDecodeException;
 import com.ericsson.otp.erlang.OtpErlangExit;
 import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangPid;
+import com.ericsson.otp.erlang.OtpInputStream;
 import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpMsg;
 import com.ericsson.otp.erlang.OtpNode;
-import com.google.common.eventbus.DeadEvent;
-import com.google.common.eventbus.EventBus;
-import com.google.common.eventbus.Subscribe;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.Service;
@@ -61,14 +62,20 @@ public class OtpNodeProxy implements IOtpNodeProxy {
     final ErlRuntimeReporter reporter;
     private OtpMbox eventMBox;
     private IOtpRpc otpRpc;
-    private final EventBus eventBus;
+    private final ErlEventDispatcher eventDispatcher;
     private final EventParser eventHelper;
     private Process process;
     private volatile int exitCode = -1;
+    /**
+     * Mirrors the service state, updated by our own listener, so that looking up the
+     * rpc of a running runtime is a volatile read.
+     */
+    private volatile State lifecycle = State.NEW;
 
     static final boolean DEBUG = Boolean
             .parseBoolean(System.getProperty("erlide.event.daemon"));
     public static final long POLL_INTERVAL = 100;
+    private static final int EVENT_BATCH_SIZE = 1000;
 
     public OtpNodeProxy(final RuntimeData data) {
         this.data = data;
@@ -76,8 +83,7 @@ public class OtpNodeProxy implements IOtpNodeProxy {
 
         eventHelper = new EventParser();
         final String nodeName = getNodeName();
-        eventBus = new EventBus(nodeName);
-        eventBus.register(this);
+        eventDispatcher = new ErlEventDispatcher(nodeName);
         registerEventListener(new LogEventHandler());
         registerEventListener(new ErlangLogEventHandler());
 
@@ -94,24 +100,41 @@ public class OtpNodeProxy implements IOtpNodeProxy {
         service.addListener(new ErlRuntimeListener(), MoreExecutors.directExecutor());
     }
 
-    private void receiveEventMessage(final OtpMbox eventBox) throws OtpErlangExit {
-        OtpErlangObject msg = null;
+    /*
+     * Wait for an event, then take all events that are already waiting and dispatch
+     * them together.
+     */
+    private void receiveEventMessages(final OtpMbox eventBox) throws OtpErlangExit {
+        final List<OtpMsg> msgs = new ArrayList<>();
         try {
-            msg = eventBox.receive(OtpNodeProxy.POLL_INTERVAL);
-            final ErlEvent busEvent = eventHelper.parse(msg, this);
-            if (busEvent != null) {
-                if (OtpNodeProxy.DEBUG) {
-                    ErlLogger.debug("MSG: %s", "[" + busEvent.getSender() + "::"
-                            + busEvent.getTopic() + ": " + busEvent.getEvent() + "]");
-                }
-                eventBus.post(busEvent);
-            }
+            eventBox.receiveMsgs(msgs, OtpNodeProxy.POLL_INTERVAL,
+                    OtpNodeProxy.EVENT_BATCH_SIZE);
         } catch (final OtpErlangExit e) {
             ErlLogger.error(e);
             throw e;
-        } catch (final OtpErlangDecodeException e) {
-            ErlLogger.error(e);
         }
+        if (msgs.isEmpty()) {
+            return;
+        }
+        final List<ErlEvent> events = new ArrayList<>(msgs.size());
+        for (final OtpMsg msg : msgs) {
+            try {
+                // most events are only looked at by topic and sender
+                final ErlEvent busEvent = eventHelper
+                        .parse(msg.getMsg(OtpInputStream.DECODE_LAZILY), this);
+                if (busEvent != null) {
+                    if (OtpNodeProxy.DEBUG) {
+                        ErlLogger.debug("MSG: [%s::%s: %s]", busEvent.getSender(),
+                                busEvent.getTopic(), busEvent.getEvent());
+                    }
+                    events.add(busEvent);
+                }
+            } catch (final OtpErlangDecodeException | IllegalStateException e) {
+                // a lazily decoded element fails when it is accessed
+                ErlLogger.error(e);
+            }
+        }
+        eventDispatcher.post(events);
     }
 
     @Override
@@ -181,13 +204,24 @@ public class OtpNodeProxy implements IOtpNodeProxy {
 
     @Override
     public IOtpRpc getOtpRpc() {
-        try {
-            service.awaitTerminated(20, TimeUnit.MILLISECONDS);
+        final State state = lifecycle;
+        if (state == State.RUNNING) {
+            return otpRpc;
+        }
+        if (state != State.NEW && state != State.STARTING) {
             return null;
-        } catch (final TimeoutException e) {
+        }
+        try {
             service.awaitRunning();
-            return otpRpc;
+        } catch (final IllegalStateException e) {
+            return null;
         }
+        return otpRpc;
+    }
+
+    @Override
+    public IOtpRpc tryGetOtpRpc() {
+        return lifecycle == State.RUNNING ? otpRpc : null;
     }
 
     @Override
@@ -197,8 +231,18 @@ public class OtpNodeProxy implements IOtpNodeProxy {
     }
 
     @Override
-    public void registerEventListener(final Object handler) {
-        eventBus.register(handler);
+    public void registerEventListener(final ErlangEventHandler handler) {
+        eventDispatcher.register(handler);
+    }
+
+    @Override
+    public void unregisterEventListener(final ErlangEventHandler handler) {
+        eventDispatcher.unregister(handler);
+    }
+
+    @Override
+    public Map<String, Integer> getEventQueueDepths() {
+        return eventDispatcher.queueDepths();
     }
 
     private void connect() throws Exception {
@@ -253,15 +297,11 @@ public class OtpNodeProxy implements IOtpNodeProxy {
         }
     }
 
-    @Subscribe
-    public void deadEventHandler(final DeadEvent dead) {
-        ErlLogger.warn("Dead event: " + dead + " in runtime " + getNodeName());
-    }
-
     private class ErlRuntimeListener extends Listener {
 
         @Override
         public void terminated(final State from) {
+            lifecycle = State.TERMINATED;
             ErlLogger.debug(String.format("Runtime %s terminated", getNodeName()));
             dispose();
             if (from != State.STOPPING) {
@@ -271,6 +311,7 @@ public class OtpNodeProxy implements IOtpNodeProxy {
 
         @Override
         public void failed(final State from, final Throwable failure) {
+            lifecycle = State.FAILED;
             final String nodeName = getNodeName();
             final int myExitCode = getExitCode();
             ErlLogger.warn(String.format("Runtime %s crashed, exit code: %d.", nodeName,
@@ -296,16 +337,19 @@ public class OtpNodeProxy implements IOtpNodeProxy {
 
         @Override
         public void starting() {
+            lifecycle = State.STARTING;
             ErlLogger.debug("Runtime %s starting", getNodeName());
         }
 
         @Override
         public void running() {
+            lifecycle = State.RUNNING;
             ErlLogger.debug("Runtime %s running", getNodeName());
         }
 
         @Override
         public void stopping(final State from) {
+            lifecycle = State.STOPPING;
             ErlLogger.debug("Runtime %s stopping", getNodeName());
         }
     }
@@ -390,7 +434,7 @@ public class OtpNodeProxy implements IOtpNodeProxy {
             final OtpMbox eventBox = eventMBox;
             int theCode = -1;
             do {
-                receiveEventMessage(eventBox);
+                receiveEventMessages(eventBox);
                 if (managed) {
                     try {
                         final int code = process.exitValue();
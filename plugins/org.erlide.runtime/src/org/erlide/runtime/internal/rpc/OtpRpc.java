@@ -1,21 +1,26 @@
 package org.erlide.runtime.internal.rpc;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import org.erlide.runtime.rpc.IOtpRpc;
 import org.erlide.runtime.rpc.IRpcCallback;
 import org.erlide.runtime.rpc.IRpcResultCallback;
+import org.erlide.runtime.rpc.RpcBatch;
 import org.erlide.runtime.rpc.RpcException;
 import org.erlide.runtime.rpc.RpcFuture;
+import org.erlide.runtime.rpc.RpcMetrics;
 import org.erlide.runtime.rpc.RpcMonitor;
 import org.erlide.runtime.rpc.RpcResult;
 import org.erlide.runtime.rpc.RpcTimeoutException;
 import org.erlide.util.ErlLogger;
 import org.erlide.util.erlang.OtpErlang;
-import org.erlide.util.erlang.Signature;
+import org.erlide.util.erlang.RpcSignature;
 import org.erlide.util.erlang.SignatureException;
 import org.erlide.util.erlang.TypeConverter;
 
@@ -40,6 +45,10 @@ public class OtpRpc implements IOtpRpc {
     // use this for debugging
     public static final boolean CHECK_RPC = Boolean.getBoolean("erlide.checkrpc");
 
+    // receive each reply in its own mailbox, instead of a shared one
+    private static final boolean MBOX_PER_CALL = Boolean
+            .getBoolean("erlide.rpc.mboxPerCall");
+
     public static long DEFAULT_TIMEOUT;
     static {
         OtpRpc.setDefaultTimeout();
@@ -49,10 +58,18 @@ public class OtpRpc implements IOtpRpc {
             .setDaemon(true).setNameFormat("rpc-%d").build();
     private static final ExecutorService threadPool = Executors
             .newCachedThreadPool(OtpRpc.threadFactory);
+    // fails callAsync futures whose reply doesn't come in time
+    private static final ScheduledThreadPoolExecutor timeouts = new ScheduledThreadPoolExecutor(
+            1, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("rpc-timeouts")
+                    .build());
+    static {
+        OtpRpc.timeouts.setRemoveOnCancelPolicy(true);
+    }
 
     private final String nodeName;
     private final OtpNode localNode;
     private volatile boolean connected;
+    private volatile RpcReplyMailbox replies;
 
     public OtpRpc(final OtpNode localNode, final String nodeName) {
         this.localNode = localNode;
@@ -63,6 +80,29 @@ public class OtpRpc implements IOtpRpc {
     @Override
     public void setConnected(final boolean connected) {
         this.connected = connected;
+        if (!connected) {
+            closeReplyMailbox();
+        }
+    }
+
+    private RpcReplyMailbox getReplyMailbox() {
+        final RpcReplyMailbox mbox = replies;
+        if (mbox != null) {
+            return mbox;
+        }
+        synchronized (this) {
+            if (replies == null) {
+                replies = new RpcReplyMailbox(localNode, nodeName);
+            }
+            return replies;
+        }
+    }
+
+    private synchronized void closeReplyMailbox() {
+        if (replies != null) {
+            replies.close();
+            replies = null;
+        }
     }
 
     @Override
@@ -75,8 +115,9 @@ public class OtpRpc implements IOtpRpc {
             System.arraycopy(args, 0, args1, 1, args.length);
             final OtpMbox mbox = localNode.createMbox();
             args1[0] = mbox.self();
-            new RpcResultReceiver(mbox, cb);
-            rpcCast(localNode, nodeName, false, gleader, m, f, signature, args1);
+            OtpRpc.threadPool.execute(new RpcResultReceiver(mbox, cb));
+            rpcCast(localNode, nodeName, false, gleader, m, f,
+                    OtpRpc.compile(signature), args1);
         } catch (final SignatureException e) {
             throw new RpcException(e);
         }
@@ -86,6 +127,13 @@ public class OtpRpc implements IOtpRpc {
     public RpcFuture async_call(final OtpErlangObject gleader, final String module,
             final String fun, final String signature, final Object... args0)
             throws RpcException {
+        return async_call(gleader, module, fun, OtpRpc.compile(signature), args0);
+    }
+
+    @Override
+    public RpcFuture async_call(final OtpErlangObject gleader, final String module,
+            final String fun, final RpcSignature signature, final Object... args0)
+            throws RpcException {
         checkConnected();
         try {
             return sendRpcCall(localNode, nodeName, false, gleader, module, fun,
@@ -101,6 +149,12 @@ public class OtpRpc implements IOtpRpc {
         return async_call(OtpRpc.USER_ATOM, module, fun, signature, args0);
     }
 
+    @Override
+    public RpcFuture async_call(final String module, final String fun,
+            final RpcSignature signature, final Object... args0) throws RpcException {
+        return async_call(OtpRpc.USER_ATOM, module, fun, signature, args0);
+    }
+
     @Override
     public void async_call_cb(final IRpcCallback cb, final long timeout,
             final String module, final String fun, final String signature,
@@ -112,32 +166,140 @@ public class OtpRpc implements IOtpRpc {
     public void async_call_cb(final IRpcCallback cb, final long timeout,
             final OtpErlangObject gleader, final String module, final String fun,
             final String signature, final Object... args) throws RpcException {
-        checkConnected();
+        // callbacks run on the pool, so that they don't hold up other replies
+        sendAsync(timeout, gleader, module, fun, OtpRpc.compile(signature), args)
+                .whenCompleteAsync((result, e) -> {
+                    if (e == null) {
+                        cb.onSuccess(result);
+                    } else {
+                        ErlLogger.error("Could not execute RPC " + module + ":" + fun
+                                + " : " + e.getMessage());
+                        cb.onFailure(e);
+                    }
+                }, OtpRpc.threadPool);
+    }
+
+    @Override
+    public CompletableFuture<OtpErlangObject> callAsync(final long timeout,
+            final OtpErlangObject gleader, final String module, final String fun,
+            final String signature, final Object... args) {
         try {
-            final RpcFuture future = sendRpcCall(localNode, nodeName, false, gleader,
-                    module, fun, signature, args);
-            final Runnable target = () -> {
-                OtpErlangObject result;
+            return callAsync(timeout, gleader, module, fun, OtpRpc.compile(signature),
+                    args);
+        } catch (final RpcException e) {
+            final CompletableFuture<OtpErlangObject> result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+            return result;
+        }
+    }
+
+    @Override
+    public CompletableFuture<OtpErlangObject> callAsync(final long timeout,
+            final OtpErlangObject gleader, final String module, final String fun,
+            final RpcSignature signature, final Object... args) {
+        final CompletableFuture<OtpErlangObject> result = new CompletableFuture<>();
+        try {
+            // completed on the pool, so that the stages depending on it don't run on
+            // (and can't block) the thread receiving all replies or the timer
+            sendAsync(timeout, gleader, module, fun, signature, args)
+                    .whenCompleteAsync((r, e) -> {
+                        if (e != null) {
+                            result.completeExceptionally(e);
+                        } else if (OtpRpc.isBadRpc(r)) {
+                            result.completeExceptionally(
+                                    new RpcException("Bad RPC: " + r));
+                        } else {
+                            result.complete(r);
+                        }
+                    }, OtpRpc.threadPool);
+        } catch (final RpcException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<OtpErlangObject> callAsync(final long timeout,
+            final String module, final String fun, final String signature,
+            final Object... args) {
+        return callAsync(timeout, OtpRpc.USER_ATOM, module, fun, signature, args);
+    }
+
+    @Override
+    public CompletableFuture<OtpErlangObject> callAsync(final long timeout,
+            final String module, final String fun, final RpcSignature signature,
+            final Object... args) {
+        return callAsync(timeout, OtpRpc.USER_ATOM, module, fun, signature, args);
+    }
+
+    @Override
+    public CompletableFuture<OtpErlangObject> callAsync(final String module,
+            final String fun, final String signature, final Object... args) {
+        return callAsync(OtpRpc.DEFAULT_TIMEOUT, OtpRpc.USER_ATOM, module, fun,
+                signature, args);
+    }
+
+    @Override
+    public CompletableFuture<OtpErlangObject> callAsync(final String module,
+            final String fun, final RpcSignature signature, final Object... args) {
+        return callAsync(OtpRpc.DEFAULT_TIMEOUT, OtpRpc.USER_ATOM, module, fun,
+                signature, args);
+    }
+
+    @Override
+    public RpcBatch batch() {
+        return new RpcBatch(this, nodeName);
+    }
+
+    /*
+     * Send a call and get a future for its raw result, that fails if the result
+     * doesn't arrive within timeout ms. No thread waits for the reply, unless mailboxes
+     * are created per call.
+     */
+    private CompletableFuture<OtpErlangObject> sendAsync(final long timeout,
+            final OtpErlangObject gleader, final String module, final String fun,
+            final RpcSignature signature, final Object... args) throws RpcException {
+        checkConnected();
+        if (OtpRpc.MBOX_PER_CALL) {
+            final RpcFuture future = async_call(gleader, module, fun, signature, args);
+            final CompletableFuture<OtpErlangObject> result = new CompletableFuture<>();
+            OtpRpc.threadPool.execute(() -> {
                 try {
-                    result = future.checkedGet(timeout, TimeUnit.MILLISECONDS);
-                    cb.onSuccess(result);
-                } catch (final Exception e) {
-                    ErlLogger.error("Could not execute RPC " + module + ":" + fun + " : "
-                            + e.getMessage());
-                    cb.onFailure(e);
+                    result.complete(future.checkedGet(timeout, TimeUnit.MILLISECONDS));
+                } catch (final RpcException e) {
+                    result.completeExceptionally(e);
                 }
-            };
-            // We can't use jobs here, it's an Eclipse dependency
-            OtpRpc.threadPool.execute(target);
+            });
+            return result;
+        }
+        final CompletableFuture<OtpErlangObject> reply;
+        try {
+            reply = sendSharedRpcCall(localNode, nodeName, false, gleader, module, fun,
+                    RpcSignature.convert(signature, args));
         } catch (final SignatureException e) {
             throw new RpcException(e);
         }
+        if (timeout != OtpRpc.INFINITY) {
+            final String env = module + ":" + fun + "/" + args.length;
+            final ScheduledFuture<?> timer = OtpRpc.timeouts.schedule(
+                    () -> reply.completeExceptionally(new RpcTimeoutException(env)),
+                    timeout, TimeUnit.MILLISECONDS);
+            reply.whenComplete((r, e) -> timer.cancel(false));
+        }
+        return reply;
     }
 
     @Override
     public OtpErlangObject call(final long timeout, final OtpErlangObject gleader,
             final String module, final String fun, final String signature,
             final Object... args0) throws RpcException {
+        return call(timeout, gleader, module, fun, OtpRpc.compile(signature), args0);
+    }
+
+    @Override
+    public OtpErlangObject call(final long timeout, final OtpErlangObject gleader,
+            final String module, final String fun, final RpcSignature signature,
+            final Object... args0) throws RpcException {
         checkConnected();
         OtpErlangObject result = null;
         try {
@@ -145,9 +307,9 @@ public class OtpRpc implements IOtpRpc {
                     module, fun, signature, args0);
             result = future.checkedGet(timeout, TimeUnit.MILLISECONDS);
             if (OtpRpc.CHECK_RPC) {
-                ErlLogger.debug("RPC result:: " + result);
+                ErlLogger.debug("RPC result:: %s", result);
             }
-            if (isBadRpc(result)) {
+            if (OtpRpc.isBadRpc(result)) {
                 throw new RpcException("Bad RPC: " + result);
             }
         } catch (final SignatureException e) {
@@ -162,9 +324,21 @@ public class OtpRpc implements IOtpRpc {
         return call(timeout, OtpRpc.USER_ATOM, module, fun, signature, args0);
     }
 
+    @Override
+    public OtpErlangObject call(final long timeout, final String module, final String fun,
+            final RpcSignature signature, final Object... args0) throws RpcException {
+        return call(timeout, OtpRpc.USER_ATOM, module, fun, signature, args0);
+    }
+
     @Override
     public void cast(final OtpErlangObject gleader, final String module, final String fun,
             final String signature, final Object... args0) throws RpcException {
+        cast(gleader, module, fun, OtpRpc.compile(signature), args0);
+    }
+
+    @Override
+    public void cast(final OtpErlangObject gleader, final String module, final String fun,
+            final RpcSignature signature, final Object... args0) throws RpcException {
         checkConnected();
         try {
             rpcCast(localNode, nodeName, false, gleader, module, fun, signature, args0);
@@ -179,6 +353,12 @@ public class OtpRpc implements IOtpRpc {
         cast(OtpRpc.USER_ATOM, module, fun, signature, args0);
     }
 
+    @Override
+    public void cast(final String module, final String fun, final RpcSignature signature,
+            final Object... args0) throws RpcException {
+        cast(OtpRpc.USER_ATOM, module, fun, signature, args0);
+    }
+
     @Override
     public void send(final OtpErlangPid pid, final Object msg) {
         try {
@@ -187,7 +367,7 @@ public class OtpRpc implements IOtpRpc {
             try {
                 if (mbox != null) {
                     if (OtpRpc.CHECK_RPC) {
-                        ErlLogger.debug("SEND " + pid + "-> " + msg);
+                        ErlLogger.debug("SEND %s-> %s", pid, msg);
                     }
                     mbox.send(pid, TypeConverter.java2erlang(msg, "x"));
                 }
@@ -213,6 +393,12 @@ public class OtpRpc implements IOtpRpc {
         return call_noexception(OtpRpc.DEFAULT_TIMEOUT, m, f, signature, args);
     }
 
+    @Override
+    public RpcResult call_noexception(final String m, final String f,
+            final RpcSignature signature, final Object... args) {
+        return call_noexception(OtpRpc.DEFAULT_TIMEOUT, m, f, signature, args);
+    }
+
     @Override
     public RpcResult call_noexception(final long timeout, final String m, final String f,
             final String signature, final Object... args) {
@@ -224,6 +410,17 @@ public class OtpRpc implements IOtpRpc {
         }
     }
 
+    @Override
+    public RpcResult call_noexception(final long timeout, final String m, final String f,
+            final RpcSignature signature, final Object... args) {
+        try {
+            final OtpErlangObject result = call(timeout, m, f, signature, args);
+            return new RpcResult(result);
+        } catch (final RpcException e) {
+            return RpcResult.error(e.getMessage());
+        }
+    }
+
     @Override
     public void async_call_cb(final IRpcCallback cb, final String m, final String f,
             final String signature, final Object... args) throws RpcException {
@@ -236,6 +433,12 @@ public class OtpRpc implements IOtpRpc {
         return call(OtpRpc.DEFAULT_TIMEOUT, m, f, signature, a);
     }
 
+    @Override
+    public OtpErlangObject call(final String m, final String f,
+            final RpcSignature signature, final Object... a) throws RpcException {
+        return call(OtpRpc.DEFAULT_TIMEOUT, m, f, signature, a);
+    }
+
     @Override
     public void send(final String name, final Object msg) {
         try {
@@ -274,7 +477,7 @@ public class OtpRpc implements IOtpRpc {
         try {
             if (mbox != null) {
                 if (OtpRpc.CHECK_RPC) {
-                    ErlLogger.debug("SEND " + name + "-> " + msg);
+                    ErlLogger.debug("SEND %s-> %s", name, msg);
                 }
                 mbox.send(name, peer, TypeConverter.java2erlang(msg, "x"));
             }
@@ -283,7 +486,10 @@ public class OtpRpc implements IOtpRpc {
         }
     }
 
-    private boolean isBadRpc(final OtpErlangObject result) {
+    /**
+     * Whether result is {badrpc, Reason}, what rex replies when the call crashed.
+     */
+    public static boolean isBadRpc(final OtpErlangObject result) {
         if (result instanceof OtpErlangTuple) {
             final OtpErlangTuple t = (OtpErlangTuple) result;
             if (t.elementAt(0) instanceof OtpErlangAtom) {
@@ -294,11 +500,20 @@ public class OtpRpc implements IOtpRpc {
         return false;
     }
 
-    private synchronized RpcFuture sendRpcCall(final OtpNode node, final String peer,
+    /*
+     * Not synchronized: argument conversion and encoding run in the calling thread,
+     * only the socket write is serialized, by the connection.
+     */
+    private RpcFuture sendRpcCall(final OtpNode node, final String peer,
             final boolean logCalls, final OtpErlangObject gleader, final String module,
-            final String fun, final String signature, final Object... args0)
+            final String fun, final RpcSignature signature, final Object... args0)
             throws SignatureException {
-        final OtpErlangObject[] args = convertArgs(signature, args0);
+        final OtpErlangObject[] args = RpcSignature.convert(signature, args0);
+        if (!OtpRpc.MBOX_PER_CALL) {
+            return new RpcFuture(
+                    sendSharedRpcCall(node, peer, logCalls, gleader, module, fun, args),
+                    module + ":" + fun + "/" + args0.length);
+        }
 
         OtpErlangObject res;
         final OtpMbox mbox = node.createMbox();
@@ -308,15 +523,57 @@ public class OtpRpc implements IOtpRpc {
             ErlLogger.debug("call -> %s:%s(%s)", args01);
         }
         //
-        final OtpErlangRef ref = RpcMonitor.recordRequest(node, peer, module, fun, args,
-                OtpErlang.sizeOf(res));
+        final RpcMetrics.Call metrics = RpcMetrics.start(module, fun);
+        final OtpErlangRef ref = RpcMonitor.recordRequest(node, peer, module, fun, args);
         //
-        mbox.send("rex", peer, res);
+        metrics.sent(mbox.sendSized("rex", peer, res));
+        if (OtpRpc.CHECK_RPC) {
+            ErlLogger.debug("RPC %d=> %s", mbox.hashCode(), res);
+        }
+        final RpcFuture future = new RpcFuture(ref, mbox,
+                module + ":" + fun + "/" + args0.length, logCalls, this, metrics);
+        // nobody ends the call if the future is dropped without getting the result
+        RpcMetrics.endWhenCollected(future, metrics);
+        return future;
+    }
+
+    /*
+     * Send the call as a gen_server call to rex, so that the reply is tagged with our
+     * reference and can be picked out of the shared reply mailbox.
+     */
+    private CompletableFuture<OtpErlangObject> sendSharedRpcCall(final OtpNode node,
+            final String peer, final boolean logCalls, final OtpErlangObject gleader,
+            final String module, final String fun, final OtpErlangObject[] args) {
+        final RpcReplyMailbox mbox = getReplyMailbox();
+        final OtpErlangRef tag = mbox.newRef();
+        final OtpErlangObject res = buildGenCall(mbox.self(), tag, gleader, module, fun,
+                args);
+        if (logCalls) {
+            final Object[] args01 = { module, fun, argString(args) };
+            ErlLogger.debug("call -> %s:%s(%s)", args01);
+        }
+        //
+        final RpcMetrics.Call metrics = RpcMetrics.start(module, fun);
+        final OtpErlangRef ref = RpcMonitor.recordRequest(node, peer, module, fun, args);
+        //
+        final CompletableFuture<OtpErlangObject> reply = mbox.expect(tag, metrics);
+        reply.whenComplete((result, e) -> {
+            if (e != null) {
+                metrics.end(e);
+                return;
+            }
+            metrics.replied(result);
+            RpcMonitor.recordResponse(ref, result, metrics.bytesOut(), metrics.bytesIn());
+            if (logCalls) {
+                final Object[] args0 = { result };
+                ErlLogger.debug("call <- %s", args0);
+            }
+        });
+        metrics.sent(mbox.send(peer, "rex", res));
         if (OtpRpc.CHECK_RPC) {
-            ErlLogger.debug("RPC " + mbox.hashCode() + "=> " + res);
+            ErlLogger.debug("RPC %s=> %s", tag, res);
         }
-        return new RpcFuture(ref, mbox, module + ":" + fun + "/" + args0.length, logCalls,
-                this);
+        return reply;
     }
 
     private static final String SEP = ", ";
@@ -355,7 +612,7 @@ public class OtpRpc implements IOtpRpc {
                     res = mbox.receive(timeout);
                 }
                 if (OtpRpc.CHECK_RPC) {
-                    ErlLogger.debug("RPC " + mbox.hashCode() + "<= " + res);
+                    ErlLogger.debug("RPC %d<= %s", mbox.hashCode(), res);
                 }
             } finally {
                 if (res != null) {
@@ -393,10 +650,22 @@ public class OtpRpc implements IOtpRpc {
                 OtpErlang.mkTuple(new OtpErlangAtom("call"), m, f, a, gleader));
     }
 
+    private OtpErlangObject buildGenCall(final OtpErlangPid pid, final OtpErlangRef tag,
+            final OtpErlangObject gleader, final String module, final String fun,
+            final OtpErlangObject[] args) {
+        final OtpErlangObject m = new OtpErlangAtom(module);
+        final OtpErlangObject f = new OtpErlangAtom(fun);
+        final OtpErlangObject a = new OtpErlangList(args);
+        return OtpErlang.mkTuple(new OtpErlangAtom("$gen_call"),
+                OtpErlang.mkTuple(pid, tag),
+                OtpErlang.mkTuple(new OtpErlangAtom("call"), m, f, a, gleader));
+    }
+
     private void rpcCast(final OtpNode node, final String peer, final boolean logCalls,
             final OtpErlangObject gleader, final String module, final String fun,
-            final String signature, final Object... args0) throws SignatureException {
-        final OtpErlangObject[] args = convertArgs(signature, args0);
+            final RpcSignature signature, final Object... args0)
+            throws SignatureException {
+        final OtpErlangObject[] args = RpcSignature.convert(signature, args0);
 
         OtpErlangObject msg;
         msg = buildRpcCastMsg(gleader, module, fun, args);
@@ -406,31 +675,20 @@ public class OtpRpc implements IOtpRpc {
         }
         send(node, peer, "rex", msg);
         if (OtpRpc.CHECK_RPC) {
-            ErlLogger.debug("RPC _cast_" + "=> " + msg);
+            ErlLogger.debug("RPC _cast_=> %s", msg);
         }
     }
 
-    private OtpErlangObject[] convertArgs(final String signature, final Object... args)
-            throws SignatureException {
-        final Object[] args0 = args == null ? new OtpErlangObject[] {} : args;
-
-        Signature[] type;
-        type = Signature.parse(signature);
-        if (type == null) {
-            type = new Signature[args0.length];
-            for (int i = 0; i < args0.length; i++) {
-                type[i] = new Signature('x');
-            }
-        }
-        if (type.length != args0.length) {
-            throw new SignatureException("Signature doesn't match parameter number: "
-                    + type.length + "/" + args0.length);
-        }
-        final OtpErlangObject[] args1 = new OtpErlangObject[args0.length];
-        for (int i = 0; i < args1.length; i++) {
-            args1[i] = TypeConverter.java2erlang(args0[i], type[i]);
+    /*
+     * Signatures are parsed once and cached, a call site that has its signature in a
+     * constant avoids even that lookup.
+     */
+    private static RpcSignature compile(final String signature) throws RpcException {
+        try {
+            return signature == null ? null : RpcSignature.parse(signature);
+        } catch (final SignatureException e) {
+            throw new RpcException(e);
         }
-        return args1;
     }
 
     private OtpErlangObject buildRpcCastMsg(final OtpErlangObject gleader,
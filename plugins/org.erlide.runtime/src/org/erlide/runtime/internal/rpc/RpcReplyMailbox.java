@@ -0,0 +1,135 @@
+package org.erlide.runtime.internal.rpc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.erlide.runtime.rpc.RpcException;
+import org.erlide.runtime.rpc.RpcMetrics;
+import org.erlide.util.ErlLogger;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangPid;
+import com.ericsson.otp.erlang.OtpErlangRef;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpMsg;
+import com.ericsson.otp.erlang.OtpNode;
+
+/**
+ * A long lived mailbox that receives the replies to all calls made by an OtpRpc, so
+ * that calls don't have to create and close a mailbox each.
+ *
+ * Calls are sent to rex as gen_server calls tagged with a fresh reference; rex replies
+ * with {Ref, Result} and the result is handed to the future registered for Ref.
+ */
+public class RpcReplyMailbox implements Runnable {
+
+    private final OtpNode node;
+    private final OtpMbox mbox;
+    private final ConcurrentMap<OtpErlangRef, Expected> pending = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public RpcReplyMailbox(final OtpNode node, final String peer) {
+        this.node = node;
+        mbox = node.createMbox();
+        final Thread thread = new Thread(this, "rpc-replies-" + peer);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public OtpErlangPid self() {
+        return mbox.self();
+    }
+
+    /**
+     * Create a reference to tag a call with.
+     */
+    public OtpErlangRef newRef() {
+        return node.createRef();
+    }
+
+    /**
+     * Register a call. The returned future is completed by the receiving thread when
+     * the reply arrives, after the reply's size is recorded in metrics; if it is
+     * completed otherwise (timed out, cancelled), the call is forgotten. The receiving
+     * thread serves all calls, so only quick, non-blocking stages may depend directly
+     * on the future; others must be handed to an executor.
+     */
+    public CompletableFuture<OtpErlangObject> expect(final OtpErlangRef ref,
+            final RpcMetrics.Call metrics) {
+        final Expected expected = new Expected(metrics);
+        pending.put(ref, expected);
+        expected.reply.whenComplete((result, e) -> pending.remove(ref, expected));
+        if (closed) {
+            fail(expected.reply);
+        }
+        return expected.reply;
+    }
+
+    /**
+     * @return the size of the encoded message, or -1 if it couldn't be sent
+     */
+    public int send(final String peer, final String name, final OtpErlangObject msg) {
+        return mbox.sendSized(name, peer, msg);
+    }
+
+    /**
+     * Stop receiving; calls still waiting for a reply fail.
+     */
+    public void close() {
+        closed = true;
+        // wake up the receiving thread
+        mbox.send(mbox.self(), new OtpErlangAtom("close"));
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!closed) {
+                final OtpMsg msg = mbox.receiveMsg();
+                if (OtpRpc.CHECK_RPC) {
+                    ErlLogger.debug("RPC %d<= %s", mbox.hashCode(), msg.getMsg());
+                }
+                dispatch(msg.getMsg(), msg.size());
+            }
+        } catch (final Exception e) {
+            ErlLogger.error(e);
+        } finally {
+            closed = true;
+            mbox.close();
+            for (final Expected expected : pending.values()) {
+                fail(expected.reply);
+            }
+        }
+    }
+
+    private void dispatch(final OtpErlangObject msg, final int size) {
+        if (!(msg instanceof OtpErlangTuple)) {
+            return;
+        }
+        final OtpErlangTuple t = (OtpErlangTuple) msg;
+        if (t.arity() != 2 || !(t.elementAt(0) instanceof OtpErlangRef)) {
+            return;
+        }
+        final Expected expected = pending.remove(t.elementAt(0));
+        if (expected != null) {
+            expected.metrics.received(size);
+            expected.reply.complete(t.elementAt(1));
+        }
+    }
+
+    private static class Expected {
+        final CompletableFuture<OtpErlangObject> reply = new CompletableFuture<>();
+        final RpcMetrics.Call metrics;
+
+        Expected(final RpcMetrics.Call metrics) {
+            this.metrics = metrics;
+        }
+    }
+
+    private static void fail(final CompletableFuture<OtpErlangObject> reply) {
+        reply.completeExceptionally(new RpcException("rpc reply mailbox closed"));
+    }
+}
@@ -17,7 +17,7 @@ import com.ericsson.otp.erlang.OtpErlangTuple;
 import com.ericsson.otp.erlang.OtpMbox;
 
 /**
- * This is a thread driven by a mailbox, that waits for rpc results and dispatches them to
+ * This is a task driven by a mailbox, that waits for rpc results and dispatches them to
  * registered callback.
  *
  * Protocol:
@@ -37,7 +37,6 @@ public class RpcResultReceiver implements Runnable {
     public RpcResultReceiver(final OtpMbox box, final IRpcResultCallback callback) {
         this.callback = callback;
         mbox = box;
-        new Thread(this, "rpc").start();
     }
 
     @Override
@@ -66,5 +65,6 @@ public class RpcResultReceiver implements Runnable {
                 ErlLogger.error(e);
             }
         } while (!done || Thread.interrupted());
+        mbox.close();
     }
 }
@@ -1,9 +1,18 @@
 package org.erlide.runtime.rpc;
 
+import java.util.concurrent.CompletableFuture;
+
+import org.erlide.util.erlang.RpcSignature;
+
 import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangPid;
 import com.ericsson.otp.erlang.OtpMbox;
 
+/**
+ * Calls take the signature of their arguments either as a string or compiled, as an
+ * {@link RpcSignature}. Call sites that are hit often should keep the latter in a
+ * constant.
+ */
 public interface IOtpRpc {
 
     // y
@@ -14,6 +23,12 @@ public interface IOtpRpc {
     RpcResult call_noexception(final long timeout, final String m, final String f,
             final String signature, final Object... args);
 
+    RpcResult call_noexception(final String m, final String f,
+            final RpcSignature signature, final Object... a);
+
+    RpcResult call_noexception(final long timeout, final String m, final String f,
+            final RpcSignature signature, final Object... args);
+
     // y
     RpcFuture async_call(final String m, final String f, final String signature,
             final Object... args) throws RpcException;
@@ -21,6 +36,12 @@ public interface IOtpRpc {
     RpcFuture async_call(final OtpErlangObject gleader, final String m, final String f,
             final String signature, final Object... args) throws RpcException;
 
+    RpcFuture async_call(final String m, final String f, final RpcSignature signature,
+            final Object... args) throws RpcException;
+
+    RpcFuture async_call(final OtpErlangObject gleader, final String m, final String f,
+            final RpcSignature signature, final Object... args) throws RpcException;
+
     // n
     void async_call_cb(final IRpcCallback cb, final String m, final String f,
             final String signature, final Object... args) throws RpcException;
@@ -46,6 +67,18 @@ public interface IOtpRpc {
     void cast(final OtpErlangObject gleader, final String m, final String f,
             final String signature, final Object... args) throws RpcException;
 
+    /**
+     * Make a RPC but don't wait for any result.
+     */
+    void cast(final String m, final String f, final RpcSignature signature,
+            final Object... args) throws RpcException;
+
+    /**
+     * Make a RPC but don't wait for any result.
+     */
+    void cast(final OtpErlangObject gleader, final String m, final String f,
+            final RpcSignature signature, final Object... args) throws RpcException;
+
     /**
      * Make a regular RPC to the given node, with the given arguments.
      */
@@ -67,6 +100,64 @@ public interface IOtpRpc {
             final String m, final String f, final String signature, final Object... a)
             throws RpcException;
 
+    /**
+     * Make a regular RPC to the given node, with the given arguments.
+     */
+    OtpErlangObject call(final String m, final String f, final RpcSignature signature,
+            final Object... a) throws RpcException;
+
+    /**
+     * Make a regular RPC to the given node, with the given arguments.
+     */
+    OtpErlangObject call(final long timeout, final String m, final String f,
+            final RpcSignature signature, final Object... a) throws RpcException;
+
+    /**
+     * Make a regular RPC to the given node, with the given arguments.
+     */
+    OtpErlangObject call(final long timeout, final OtpErlangObject gleader,
+            final String m, final String f, final RpcSignature signature,
+            final Object... a) throws RpcException;
+
+    /**
+     * Make a regular RPC without waiting for the result. The future fails with
+     * RpcTimeoutException if the result doesn't arrive within timeout ms, and with
+     * RpcException if the call can't be made or returns a badrpc. No thread is blocked
+     * while waiting. The future is completed on a pool thread, where its dependent
+     * stages run unless attached with the async variants of the CompletableFuture
+     * methods.
+     */
+    CompletableFuture<OtpErlangObject> callAsync(final long timeout,
+            final OtpErlangObject gleader, final String m, final String f,
+            final String signature, final Object... args);
+
+    /**
+     * Make a regular RPC without waiting for the result.
+     */
+    CompletableFuture<OtpErlangObject> callAsync(final long timeout, final String m,
+            final String f, final String signature, final Object... args);
+
+    /**
+     * Make a regular RPC without waiting for the result, with the default timeout.
+     */
+    CompletableFuture<OtpErlangObject> callAsync(final String m, final String f,
+            final String signature, final Object... args);
+
+    CompletableFuture<OtpErlangObject> callAsync(final long timeout,
+            final OtpErlangObject gleader, final String m, final String f,
+            final RpcSignature signature, final Object... args);
+
+    CompletableFuture<OtpErlangObject> callAsync(final long timeout, final String m,
+            final String f, final RpcSignature signature, final Object... args);
+
+    CompletableFuture<OtpErlangObject> callAsync(final String m, final String f,
+            final RpcSignature signature, final Object... args);
+
+    /**
+     * Start a batch of calls that are made in one round trip.
+     */
+    RpcBatch batch();
+
     /**
      * Calls a function that supports sending progress reports back. The first argument is
      * implicit and is the pid where the reports are to be sent.
@@ -0,0 +1,94 @@
+package org.erlide.runtime.rpc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.erlide.runtime.internal.rpc.OtpRpc;
+import org.erlide.util.erlang.OtpErlang;
+import org.erlide.util.erlang.RpcSignature;
+import org.erlide.util.erlang.SignatureException;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangExternalFun;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+
+/**
+ * A number of calls that are made in a single round trip. They are sent as one rpc to
+ * lists:zipwith(fun erlang:apply/2, Funs, Args), that applies rpc:call/4 to each of
+ * them. rpc:call/4 to the local node catches errors, so a failing call doesn't affect
+ * the others. No erlide code is needed on the remote node.
+ *
+ * <pre>
+ * final List&lt;RpcResult&gt; results = rpc.batch().add("code", "is_sticky", "a", m1)
+ *         .add("code", "is_sticky", "a", m2).execute();
+ * </pre>
+ *
+ * Results are in the same order as the calls; a call that failed has isOk() false.
+ */
+public class RpcBatch {
+
+    private static final OtpErlangExternalFun APPLY = new OtpErlangExternalFun("erlang",
+            "apply", 2);
+    private static final OtpErlangExternalFun RPC_CALL = new OtpErlangExternalFun("rpc",
+            "call", 4);
+
+    private static final RpcSignature XXX = RpcSignature.of("xxx");
+
+    private final IOtpRpc rpc;
+    private final OtpErlangAtom node;
+    private final List<OtpErlangObject> calls = new ArrayList<>();
+
+    public RpcBatch(final IOtpRpc rpc, final String node) {
+        this.rpc = rpc;
+        this.node = new OtpErlangAtom(node);
+    }
+
+    /**
+     * Add a call. The arguments are converted right away, so that a bad signature is
+     * reported here.
+     */
+    public RpcBatch add(final String m, final String f, final String signature,
+            final Object... args) throws RpcException {
+        try {
+            calls.add(OtpErlang.mkList(node, new OtpErlangAtom(m), new OtpErlangAtom(f),
+                    new OtpErlangList(RpcSignature.convert(signature, args))));
+        } catch (final SignatureException e) {
+            throw new RpcException(e);
+        }
+        return this;
+    }
+
+    public int size() {
+        return calls.size();
+    }
+
+    public List<RpcResult> execute() throws RpcException {
+        return execute(OtpRpc.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Make all calls, waiting at most timeout ms for all of them to finish.
+     */
+    public List<RpcResult> execute(final long timeout) throws RpcException {
+        if (calls.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final OtpErlangObject[] funs = new OtpErlangObject[calls.size()];
+        for (int i = 0; i < funs.length; i++) {
+            funs[i] = RpcBatch.RPC_CALL;
+        }
+        final OtpErlangObject res = rpc.call(timeout, "lists", "zipwith", RpcBatch.XXX,
+                RpcBatch.APPLY, new OtpErlangList(funs), OtpErlang.mkList(calls));
+        if (!(res instanceof OtpErlangList)
+                || ((OtpErlangList) res).arity() != calls.size()) {
+            throw new RpcException("Bad batch result: " + res);
+        }
+        final List<RpcResult> results = new ArrayList<>(calls.size());
+        for (final OtpErlangObject r : (OtpErlangList) res) {
+            results.add(new RpcResult(r));
+        }
+        return results;
+    }
+}
@@ -8,8 +8,12 @@
  *******************************************************************************/
 package org.erlide.runtime.rpc;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.erlide.runtime.internal.rpc.OtpRpc;
 import org.erlide.util.ErlLogger;
@@ -22,23 +26,42 @@ import com.google.common.util.concurrent.ListenableFuture;
 public class RpcFuture implements ListenableFuture<OtpErlangObject> {
 
     private final OtpMbox mbox;
+    private final CompletableFuture<OtpErlangObject> reply;
     private OtpErlangObject result;
     private final String env;
     private final boolean logCalls;
 
     private final IOtpRpc rpc;
     private final OtpErlangRef ref;
+    private final RpcMetrics.Call metrics;
 
     public RpcFuture(final OtpErlangRef ref, final OtpMbox mbox, final String env,
-            final boolean logCalls, final IOtpRpc rpc) {
+            final boolean logCalls, final IOtpRpc rpc, final RpcMetrics.Call metrics) {
         this.ref = ref;
+        this.metrics = metrics;
 
         this.mbox = mbox;
+        reply = null;
         this.env = env;
         this.logCalls = logCalls;
         this.rpc = rpc;
     }
 
+    /**
+     * A future for a call whose reply is delivered to a shared mailbox, that completes
+     * reply. Monitoring and logging of the result is done by OtpRpc.
+     */
+    public RpcFuture(final CompletableFuture<OtpErlangObject> reply, final String env) {
+        ref = null;
+        metrics = null;
+
+        mbox = null;
+        this.reply = reply;
+        this.env = env;
+        logCalls = false;
+        rpc = null;
+    }
+
     @Override
     public OtpErlangObject get() {
         try {
@@ -59,21 +82,27 @@ public class RpcFuture implements ListenableFuture<OtpErlangObject> {
 
     @Override
     public boolean isDone() {
+        if (reply != null) {
+            return reply.isDone();
+        }
         return result != null;
     }
 
     @Override
     public void addListener(final Runnable listener, final Executor executor) {
+        if (reply != null) {
+            reply.whenCompleteAsync((r, e) -> listener.run(), executor);
+        }
     }
 
     @Override
     public boolean cancel(final boolean mayInterruptIfRunning) {
-        return false;
+        return reply != null && reply.cancel(mayInterruptIfRunning);
     }
 
     @Override
     public boolean isCancelled() {
-        return false;
+        return reply != null && reply.isCancelled();
     }
 
     public OtpErlangObject checkedGet() throws RpcException {
@@ -86,10 +115,21 @@ public class RpcFuture implements ListenableFuture<OtpErlangObject> {
 
     public OtpErlangObject checkedGet(final long timeout, final TimeUnit unit)
             throws RpcException {
-        result = rpc.getRpcResult(mbox, TimeUnit.MILLISECONDS.convert(timeout, unit),
-                env);
+        if (reply != null) {
+            result = getReply(TimeUnit.MILLISECONDS.convert(timeout, unit));
+            return result;
+        }
+        try {
+            result = rpc.getRpcResult(mbox, TimeUnit.MILLISECONDS.convert(timeout, unit),
+                    env);
+        } catch (final RpcException e) {
+            metrics.end(e);
+            throw e;
+        }
         if (isDone()) {
-            RpcMonitor.recordResponse(ref, result);
+            metrics.replied(result);
+            RpcMonitor.recordResponse(ref, result, metrics.bytesOut(),
+                    metrics.bytesIn());
             if (logCalls) {
                 final Object[] args0 = { result };
                 ErlLogger.debug("call <- %s", args0);
@@ -98,4 +138,30 @@ public class RpcFuture implements ListenableFuture<OtpErlangObject> {
         return result;
     }
 
+    private OtpErlangObject getReply(final long timeout) throws RpcException {
+        try {
+            if (timeout == OtpRpc.INFINITY) {
+                return reply.get();
+            }
+            return reply.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+            final RpcTimeoutException timedOut = new RpcTimeoutException(
+                    env != null ? env : "??");
+            // forget the call, nobody will wait for it any more
+            reply.completeExceptionally(timedOut);
+            throw timedOut;
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RpcException) {
+                throw (RpcException) cause;
+            }
+            throw new RpcException(e);
+        } catch (final CancellationException e) {
+            throw new RpcException(e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RpcException(e);
+        }
+    }
+
 }
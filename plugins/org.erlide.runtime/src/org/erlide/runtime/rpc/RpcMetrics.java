@@ -0,0 +1,334 @@
+package org.erlide.runtime.rpc;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.erlide.runtime.internal.rpc.OtpRpc;
+import org.erlide.util.ErlLogger;
+
+import com.ericsson.otp.erlang.OtpErlangObject;
+
+/**
+ * Always-on statistics about the rpc calls made to the backends, per module:fun.
+ *
+ * Recording a call costs a few uncontended counter updates; arguments and results are
+ * not kept. Sizes are those of the messages as they were sent and received, not
+ * re-encoded. Latencies go into a histogram with power-of-two buckets (in
+ * microseconds), so percentiles are approximate, within a factor of two.
+ */
+public final class RpcMetrics {
+
+    private static final int BUCKETS = 32;
+
+    private static final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<>();
+    private static final LongAdder inFlight = new LongAdder();
+
+    // calls whose owner was collected before they ended
+    private static final ReferenceQueue<Object> abandoned = new ReferenceQueue<>();
+    private static final Set<Owner> owners = ConcurrentHashMap.newKeySet();
+
+    private RpcMetrics() {
+    }
+
+    /**
+     * Start recording a call. The returned handle must be ended exactly once, when the
+     * call completes, fails or times out; further ends are ignored.
+     */
+    public static Call start(final String module, final String fun) {
+        final String key = module + ":" + fun;
+        Stats s = RpcMetrics.stats.get(key);
+        if (s == null) {
+            s = RpcMetrics.stats.computeIfAbsent(key, k -> new Stats(module, fun));
+        }
+        RpcMetrics.endAbandoned();
+        RpcMetrics.inFlight.increment();
+        return new Call(s);
+    }
+
+    /**
+     * The number of calls started and not yet ended.
+     */
+    public static long inFlight() {
+        RpcMetrics.endAbandoned();
+        return RpcMetrics.inFlight.sum();
+    }
+
+    /**
+     * Make sure that call is no longer counted as in flight once owner, which is the
+     * only one that can end it, is garbage collected. Such calls are not counted
+     * otherwise, their outcome is unknown.
+     */
+    public static void endWhenCollected(final Object owner, final Call call) {
+        final Owner ref = new Owner(owner, call);
+        call.owner = ref;
+        RpcMetrics.owners.add(ref);
+        if (call.ended.get()) {
+            RpcMetrics.owners.remove(ref);
+        }
+    }
+
+    private static void endAbandoned() {
+        Reference<?> ref;
+        while ((ref = RpcMetrics.abandoned.poll()) != null) {
+            final Owner owner = (Owner) ref;
+            RpcMetrics.owners.remove(owner);
+            if (owner.call.ended.compareAndSet(false, true)) {
+                RpcMetrics.inFlight.decrement();
+            }
+        }
+    }
+
+    private static final class Owner extends PhantomReference<Object> {
+        final Call call;
+
+        Owner(final Object owner, final Call call) {
+            super(owner, RpcMetrics.abandoned);
+            this.call = call;
+        }
+    }
+
+    /**
+     * The current values of all counters, sorted by total time spent, largest first.
+     */
+    public static List<Entry> snapshot() {
+        final List<Entry> result = new ArrayList<>();
+        for (final Stats s : RpcMetrics.stats.values()) {
+            result.add(s.snapshot());
+        }
+        Collections.sort(result,
+                (e1, e2) -> Long.compare(e2.totalMicros, e1.totalMicros));
+        return result;
+    }
+
+    /**
+     * Forget all counters, e.g. before a measurement. Calls in flight are still
+     * counted as such.
+     */
+    public static void reset() {
+        RpcMetrics.stats.clear();
+    }
+
+    public static String toCsv() {
+        final StringBuilder out = new StringBuilder();
+        out.append("module,fun,calls,failures,timeouts,bytes_out,bytes_in,"
+                + "total_us,max_us,p50_us,p90_us,p99_us\n");
+        for (final Entry e : RpcMetrics.snapshot()) {
+            out.append(String.format(Locale.ROOT,
+                    "%s,%s,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d%n", e.module, e.fun, e.calls,
+                    e.failures, e.timeouts, e.bytesOut, e.bytesIn, e.totalMicros,
+                    e.maxMicros, e.percentile(50), e.percentile(90),
+                    e.percentile(99)));
+        }
+        return out.toString();
+    }
+
+    public static String toJson() {
+        final StringBuilder out = new StringBuilder();
+        out.append("{\"in_flight\":").append(RpcMetrics.inFlight()).append(",\"calls\":[");
+        String sep = "";
+        for (final Entry e : RpcMetrics.snapshot()) {
+            out.append(sep);
+            out.append(String.format(Locale.ROOT,
+                    "{\"module\":\"%s\",\"fun\":\"%s\",\"calls\":%d,\"failures\":%d,"
+                            + "\"timeouts\":%d,\"bytes_out\":%d,\"bytes_in\":%d,"
+                            + "\"total_us\":%d,\"max_us\":%d,\"p50_us\":%d,"
+                            + "\"p90_us\":%d,\"p99_us\":%d}",
+                    RpcMetrics.jsonEscape(e.module), RpcMetrics.jsonEscape(e.fun),
+                    e.calls, e.failures, e.timeouts, e.bytesOut, e.bytesIn,
+                    e.totalMicros, e.maxMicros, e.percentile(50), e.percentile(90),
+                    e.percentile(99)));
+            sep = ",";
+        }
+        out.append("]}\n");
+        return out.toString();
+    }
+
+    /**
+     * Write the metrics to a file, as CSV if its name ends with ".csv" and as JSON
+     * otherwise.
+     */
+    public static void export(final String fileName) {
+        try (final Writer out = new FileWriter(fileName)) {
+            out.write(fileName.endsWith(".csv") ? RpcMetrics.toCsv()
+                    : RpcMetrics.toJson());
+        } catch (final IOException e) {
+            ErlLogger.error(e);
+        }
+    }
+
+    private static String jsonEscape(final String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * A call being recorded.
+     */
+    public static final class Call {
+        private final Stats stats;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean ended = new AtomicBoolean();
+        private volatile int bytesOut;
+        private volatile int bytesIn;
+        private volatile Owner owner;
+
+        Call(final Stats stats) {
+            this.stats = stats;
+        }
+
+        /**
+         * Record the size of the request; negative sizes (unknown) are ignored.
+         */
+        public void sent(final int size) {
+            if (size > 0) {
+                bytesOut = size;
+                stats.bytesOut.add(size);
+            }
+        }
+
+        /**
+         * Record the size of the reply; negative sizes (unknown) are ignored.
+         */
+        public void received(final int size) {
+            if (size > 0) {
+                bytesIn = size;
+                stats.bytesIn.add(size);
+            }
+        }
+
+        public int bytesOut() {
+            return bytesOut;
+        }
+
+        public int bytesIn() {
+            return bytesIn;
+        }
+
+        /**
+         * End the call with the result that was received; a badrpc is a failure.
+         */
+        public void replied(final OtpErlangObject result) {
+            end(OtpRpc.isBadRpc(result) ? new RpcException("Bad RPC: " + result)
+                    : null);
+        }
+
+        /**
+         * End the call, successfully if error is null.
+         */
+        public void end(final Throwable error) {
+            if (!ended.compareAndSet(false, true)) {
+                return;
+            }
+            final Owner ref = owner;
+            if (ref != null) {
+                RpcMetrics.owners.remove(ref);
+            }
+            RpcMetrics.inFlight.decrement();
+            final long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            stats.calls.increment();
+            stats.totalMicros.add(micros);
+            stats.maxMicros.accumulate(micros);
+            stats.histogram[Math.min(RpcMetrics.BUCKETS - 1,
+                    64 - Long.numberOfLeadingZeros(micros))].increment();
+            if (error instanceof RpcTimeoutException) {
+                stats.timeouts.increment();
+            } else if (error != null) {
+                stats.failures.increment();
+            }
+        }
+    }
+
+    /**
+     * The counters of one module:fun at some moment. Times are in microseconds.
+     */
+    public static final class Entry {
+        public final String module;
+        public final String fun;
+        public final long calls;
+        public final long failures;
+        public final long timeouts;
+        public final long bytesOut;
+        public final long bytesIn;
+        public final long totalMicros;
+        public final long maxMicros;
+        private final long[] histogram;
+
+        Entry(final Stats s) {
+            module = s.module;
+            fun = s.fun;
+            calls = s.calls.sum();
+            failures = s.failures.sum();
+            timeouts = s.timeouts.sum();
+            bytesOut = s.bytesOut.sum();
+            bytesIn = s.bytesIn.sum();
+            totalMicros = s.totalMicros.sum();
+            maxMicros = s.maxMicros.get();
+            histogram = new long[RpcMetrics.BUCKETS];
+            for (int i = 0; i < RpcMetrics.BUCKETS; i++) {
+                histogram[i] = s.histogram[i].sum();
+            }
+        }
+
+        public long meanMicros() {
+            return calls == 0 ? 0 : totalMicros / calls;
+        }
+
+        /**
+         * An upper bound for the given percentile of the latency, from the histogram.
+         */
+        public long percentile(final int percent) {
+            long total = 0;
+            for (final long n : histogram) {
+                total += n;
+            }
+            final long wanted = (total * percent + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= wanted && seen > 0) {
+                    return Math.min(maxMicros, (1L << i) - 1);
+                }
+            }
+            return maxMicros;
+        }
+    }
+
+    private static final class Stats {
+        final String module;
+        final String fun;
+        final LongAdder calls = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+        final LongAdder bytesOut = new LongAdder();
+        final LongAdder bytesIn = new LongAdder();
+        final LongAdder totalMicros = new LongAdder();
+        final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+        final LongAdder[] histogram = new LongAdder[RpcMetrics.BUCKETS];
+
+        Stats(final String module, final String fun) {
+            this.module = module;
+            this.fun = fun;
+            for (int i = 0; i < RpcMetrics.BUCKETS; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+
+        Entry snapshot() {
+            return new Entry(this);
+        }
+    }
+}
@@ -11,9 +11,9 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.erlide.util.ErlLogger;
-import org.erlide.util.erlang.OtpErlang;
 
 import com.ericsson.otp.erlang.OtpErlangAtom;
 import com.ericsson.otp.erlang.OtpErlangObject;
@@ -36,17 +36,15 @@ public class RpcMonitor {
         public final String module;
         public final String fun;
         public final SoftReference<Collection<OtpErlangObject>> args;
-        public final long size;
 
         public RpcData(final long startTime, final String node, final String module,
-                final String fun, final OtpErlangObject[] args, final long size) {
+                final String fun, final OtpErlangObject[] args) {
             this.startTime = startTime;
             this.node = node;
             this.module = module;
             this.fun = fun;
             this.args = new SoftReference<>(
                     Collections.unmodifiableCollection(Lists.newArrayList(args)));
-            this.size = size;
         }
     }
 
@@ -63,7 +61,7 @@ public class RpcMonitor {
         private final int argsSize;
 
         public RpcInfo(final RpcData data, final OtpErlangObject result,
-                final long answerTime) {
+                final long answerTime, final long callSize, final long answerSize) {
             node = data.node;
             module = data.module;
             fun = data.fun;
@@ -73,8 +71,8 @@ public class RpcMonitor {
             this.result = new SoftReference<>(result);
             callTime = data.startTime;
             this.answerTime = answerTime;
-            callSize = data.size;
-            answerSize = OtpErlang.sizeOf(result);
+            this.callSize = callSize;
+            this.answerSize = answerSize;
         }
 
         public void dump(final PrintStream out, final boolean full) {
@@ -96,7 +94,7 @@ public class RpcMonitor {
         }
     }
 
-    private static int callCount;
+    private static final AtomicInteger callCount = new AtomicInteger();
     private static final Map<OtpErlangRef, RpcData> ongoing = Maps.newHashMap();
     private static Comparator<RpcInfo> timeComparator = (o1,
             o2) -> (int) (o2.answerTime - o2.callTime - (o1.answerTime - o1.callTime));
@@ -105,14 +103,21 @@ public class RpcMonitor {
     private static final List<RpcInfo> slowest = Lists.newLinkedList();
     private static final List<RpcInfo> largest = Lists.newLinkedList();
 
+    /**
+     * Record the result of a call; the sizes are those of the encoded messages, as
+     * measured by {@link RpcMetrics}.
+     */
     public static synchronized void recordResponse(final OtpErlangRef ref,
-            final OtpErlangObject result) {
+            final OtpErlangObject result, final long callSize, final long answerSize) {
         if (RpcMonitor.DISABLED) {
             return;
         }
         final RpcData data = RpcMonitor.ongoing.remove(ref);
+        if (data == null) {
+            return;
+        }
         final long now = System.currentTimeMillis();
-        final RpcInfo info = new RpcInfo(data, result, now);
+        final RpcInfo info = new RpcInfo(data, result, now, callSize, answerSize);
         RpcMonitor.add(RpcMonitor.largest, RpcMonitor.sizeComparator, info);
         RpcMonitor.add(RpcMonitor.slowest, RpcMonitor.timeComparator, info);
     }
@@ -132,16 +137,17 @@ public class RpcMonitor {
     }
 
     public static OtpErlangRef recordRequest(final OtpNode node, final String peer,
-            final String module, final String fun, final OtpErlangObject[] args,
-            final long callSize) {
-        RpcMonitor.callCount++;
+            final String module, final String fun, final OtpErlangObject[] args) {
+        RpcMonitor.callCount.incrementAndGet();
         if (RpcMonitor.DISABLED) {
             return null;
         }
         final RpcData data = new RpcData(System.currentTimeMillis(), peer, module, fun,
-                args, callSize);
+                args);
         final OtpErlangRef ref = node.createRef();
-        RpcMonitor.ongoing.put(ref, data);
+        synchronized (RpcMonitor.class) {
+            RpcMonitor.ongoing.put(ref, data);
+        }
         return ref;
     }
 
@@ -178,7 +184,8 @@ public class RpcMonitor {
         final String delim = "--------------------------------------------------------------";
 
         out.println("\n" + delim);
-        out.format("*** RpcMonitor statistics%n - %d calls%n", RpcMonitor.callCount);
+        out.format("*** RpcMonitor statistics%n - %d calls%n",
+                RpcMonitor.callCount.get());
         out.println(delim);
         out.println();
         out.format("Slowest %d calls%n", RpcMonitor.slowest.size());
@@ -0,0 +1,178 @@
+package org.erlide.runtime.rpc;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.erlide.util.Util;
+import org.erlide.util.erlang.RpcSignature;
+import org.erlide.util.erlang.SignatureException;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Remembers the results of backend functions that always give the same answer for the
+ * same arguments, as long as the code on the backend and the project configuration
+ * don't change, like the OTP documentation queries.
+ *
+ * Functions are declared cacheable once, with {@link #declare(String, String...)};
+ * calls go through {@link #call(IOtpRpc, String, String, String, Object...)}, which
+ * is a plain call for functions that aren't declared. Results are kept per rpc
+ * connection, i.e. per running runtime, and held through soft references so that they
+ * give way when memory is short.
+ *
+ * The backend manager drops the results that may depend on a module when the module
+ * is reloaded, and those of a runtime when it goes away; the model drops everything
+ * when a project's configuration changes.
+ */
+public final class RpcResultCache {
+
+    private static final Set<String> cacheable = ConcurrentHashMap.newKeySet();
+    private static final Set<String> dependOnAllModules = ConcurrentHashMap.newKeySet();
+    private static final Cache<Key, OtpErlangObject> cache = CacheBuilder.newBuilder()
+            .maximumSize(Integer.getInteger("erlide.rpccache.size", 5000)).softValues()
+            .build();
+
+    private RpcResultCache() {
+    }
+
+    /**
+     * Declare that the results of the given functions only depend on their arguments,
+     * and on the code of the modules named in them.
+     */
+    public static void declare(final String module, final String... funs) {
+        for (final String fun : funs) {
+            RpcResultCache.cacheable.add(module + ":" + fun);
+        }
+    }
+
+    /**
+     * Declare that the results of the given functions depend on their arguments and on
+     * any module that is loaded, like lists of modules do.
+     */
+    public static void declareDependingOnAllModules(final String module,
+            final String... funs) {
+        RpcResultCache.declare(module, funs);
+        for (final String fun : funs) {
+            RpcResultCache.dependOnAllModules.add(module + ":" + fun);
+        }
+    }
+
+    public static boolean isCacheable(final String module, final String fun) {
+        return RpcResultCache.cacheable.contains(module + ":" + fun);
+    }
+
+    /**
+     * Like {@link IOtpRpc#call(String, String, String, Object...)}, but return the
+     * remembered result if the function is cacheable and was already called with the
+     * same arguments. Failed calls and error results are not remembered.
+     */
+    public static OtpErlangObject call(final IOtpRpc rpc, final String module,
+            final String fun, final String signature, final Object... args)
+            throws RpcException {
+        if (!RpcResultCache.isCacheable(module, fun)) {
+            return rpc.call(module, fun, signature, args);
+        }
+        final RpcSignature compiled;
+        final Key key;
+        try {
+            compiled = signature == null ? null : RpcSignature.parse(signature);
+            key = new Key(rpc, module, fun, RpcSignature.convert(compiled, args),
+                    RpcResultCache.dependOnAllModules.contains(module + ":" + fun));
+        } catch (final SignatureException e) {
+            throw new RpcException(e);
+        }
+        OtpErlangObject result = RpcResultCache.cache.getIfPresent(key);
+        if (result == null) {
+            result = rpc.call(module, fun, compiled, args);
+            if (result != null && !Util.isError(result)) {
+                RpcResultCache.cache.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Forget the results that may depend on the module: those of calls that have the
+     * module's name anywhere in their arguments and those of functions that depend on
+     * all modules.
+     */
+    public static void invalidateModule(final String moduleName) {
+        final OtpErlangAtom atom = new OtpErlangAtom(moduleName);
+        final OtpErlangString string = new OtpErlangString(moduleName);
+        RpcResultCache.cache.asMap().keySet()
+                .removeIf(key -> key.dependsOnAllModules
+                        || RpcResultCache.mentions(key.args, atom, string));
+    }
+
+    private static boolean mentions(final Iterable<OtpErlangObject> terms,
+            final OtpErlangAtom atom, final OtpErlangString string) {
+        for (final OtpErlangObject term : terms) {
+            if (term.equals(atom) || term.equals(string)) {
+                return true;
+            }
+            if (term instanceof OtpErlangTuple && RpcResultCache.mentions(
+                    Arrays.asList(((OtpErlangTuple) term).elements()), atom, string)) {
+                return true;
+            }
+            if (term instanceof OtpErlangList
+                    && RpcResultCache.mentions((OtpErlangList) term, atom, string)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Forget the results of calls made through the given connection.
+     */
+    public static void invalidate(final IOtpRpc rpc) {
+        RpcResultCache.cache.asMap().keySet().removeIf(key -> key.rpc == rpc);
+    }
+
+    public static void invalidateAll() {
+        RpcResultCache.cache.invalidateAll();
+    }
+
+    private static final class Key {
+        final IOtpRpc rpc;
+        final String module;
+        final String fun;
+        final List<OtpErlangObject> args;
+        final boolean dependsOnAllModules;
+        private final int hash;
+
+        Key(final IOtpRpc rpc, final String module, final String fun,
+                final OtpErlangObject[] args, final boolean dependsOnAllModules) {
+            this.rpc = rpc;
+            this.module = module;
+            this.fun = fun;
+            this.args = Arrays.asList(args);
+            this.dependsOnAllModules = dependsOnAllModules;
+            hash = Objects.hash(System.identityHashCode(rpc), module, fun, this.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return rpc == other.rpc && hash == other.hash && module.equals(other.module)
+                    && fun.equals(other.fun) && args.equals(other.args);
+        }
+    }
+}
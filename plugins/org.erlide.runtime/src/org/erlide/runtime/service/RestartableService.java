@@ -23,7 +23,8 @@ public class RestartableService implements Service {
             final ServiceRestartPolicy policy) {
         this.factory = factory;
         this.policy = policy;
-        listeners = Maps.newHashMap();
+        // listeners are notified in registration order
+        listeners = Maps.newLinkedHashMap();
     }
 
     private final class RestartListener extends Listener {
@@ -12,8 +12,7 @@ import java.nio.charset.Charset;
 import java.util.regex.Pattern;
 
 import org.erlide.util.ErlLogger;
-import org.erlide.util.erlang.OtpBindings;
-import org.erlide.util.erlang.OtpErlang;
+import org.erlide.util.erlang.CompiledPattern;
 
 import com.ericsson.otp.erlang.OtpErlangList;
 import com.ericsson.otp.erlang.OtpErlangObject;
@@ -29,6 +28,11 @@ public class IoRequest {
     public static final Pattern RE_HEADER = Pattern
             .compile("Eshell V[0-9]+\\.[0-9]+\\.[0-9]+");
 
+    private static final CompiledPattern REQUEST = CompiledPattern
+            .of("{Payload, Leader, From, Tstamp}");
+    private static final CompiledPattern REQUEST_ENC = CompiledPattern
+            .of("{Payload, Encoding, Leader, From, Tstamp}");
+
     public enum IoRequestKind {
         HEADER, PROMPT, INPUT, OUTPUT, STDOUT, STDERR
     }
@@ -42,9 +46,9 @@ public class IoRequest {
 
     public IoRequest(final OtpErlangTuple obj) {
         try {
-            OtpBindings b = OtpErlang.match("{Payload, Leader, From, Tstamp}", obj);
-            if (b == null) {
-                b = OtpErlang.match("{Payload, Encoding, Leader, From, Tstamp}", obj);
+            final CompiledPattern.Bindings b = new CompiledPattern.Bindings();
+            if (!IoRequest.REQUEST.match(obj, b)) {
+                IoRequest.REQUEST_ENC.match(obj, b);
                 encoding = getEncoding(b.getAtom("Encoding"));
             } else {
                 encoding = Charsets.ISO_8859_1;
@@ -3,8 +3,6 @@ package org.erlide.test_support.ui.suites;
 import org.erlide.runtime.events.ErlEvent;
 import org.erlide.runtime.events.ErlangEventHandler;
 
-import com.google.common.eventbus.Subscribe;
-
 public class TestEventHandler extends ErlangEventHandler {
 
     private final TestResultsView view;
@@ -14,11 +12,8 @@ public class TestEventHandler extends ErlangEventHandler {
         this.view = view;
     }
 
-    @Subscribe
+    @Override
     public void handleEvent(final ErlEvent event) {
-        if (!event.getTopic().equals(getTopic())) {
-            return;
-        }
         if (view != null) {
             view.notifyEvent(event.getEvent());
         }
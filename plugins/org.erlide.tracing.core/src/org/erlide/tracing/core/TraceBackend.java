@@ -33,7 +33,6 @@ import com.ericsson.otp.erlang.OtpErlangLong;
 import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangString;
 import com.ericsson.otp.erlang.OtpErlangTuple;
-import com.google.common.eventbus.Subscribe;
 
 /**
  * Singleton class used for communication with trace node.
@@ -91,11 +90,8 @@ public class TraceBackend {
         private final TraceDataHandler dataHandler = new TraceDataHandler();
         private boolean firstTrace = true;
 
-        @Subscribe
+        @Override
         public void handleEvent(final ErlEvent event) {
-            if (!event.getTopic().equals(getTopic())) {
-                return;
-            }
             final OtpErlangObject message = event.getEvent();
             if (message != null) {
                 OtpErlangObject errorReason = null;
@@ -152,7 +148,7 @@ public class TraceBackend {
                         tracing = true;
                         getBackend(true);
                         loadingFileInfo = true;
-                        handler = new TraceEventHandler();
+                        newEventHandler();
                         tracerBackend.getRuntime().registerEventListener(handler);
 
                         // list of nodes being traced
@@ -313,7 +309,7 @@ public class TraceBackend {
                     try {
                         loading = true;
                         loadingFileInfo = true;
-                        handler = new TraceEventHandler();
+                        newEventHandler();
                         getBackend(true);
                         tracerBackend.getRuntime().registerEventListener(handler);
                         tracerBackend.getOtpRpc().call(Constants.ERLANG_HELPER_MODULE,
@@ -347,7 +343,7 @@ public class TraceBackend {
                         loading = true;
                         loadingFileInfo = false;
                         startIndex = theStartIndex;
-                        handler = new TraceEventHandler();
+                        newEventHandler();
                         getBackend(true);
                         TraceCollections.getTracesList().clear();
                         tracerBackend.getRuntime().registerEventListener(handler);
@@ -402,6 +398,16 @@ public class TraceBackend {
         }
     }
 
+    /**
+     * Replaces the event handler with a fresh one, unregistering the old one.
+     */
+    private void newEventHandler() {
+        if (handler != null) {
+            tracerBackend.getRuntime().unregisterEventListener(handler);
+        }
+        handler = new TraceEventHandler();
+    }
+
     /**
      * Returns backend used for tracing. If this backend does not exist it can be created.
      *
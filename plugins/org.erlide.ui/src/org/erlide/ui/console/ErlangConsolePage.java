@@ -65,6 +65,7 @@ import org.eclipse.ui.texteditor.IUpdate;
 import org.erlide.backend.api.IBackend;
 import org.erlide.engine.services.parsing.ParserException;
 import org.erlide.engine.services.parsing.RuntimeHelper;
+import org.erlide.runtime.rpc.IOtpRpc;
 import org.erlide.runtime.shell.IBackendShell;
 import org.erlide.ui.internal.ErlideUIPlugin;
 import org.erlide.ui.util.ColorManager;
@@ -139,12 +140,14 @@ public class ErlangConsolePage extends Page
     }
 
     boolean isInputComplete() {
-        if (!backend.getRuntime().isRunning()) {
+        // called for each key typed, don't wait for a runtime that is starting
+        final IOtpRpc rpc = backend.getRuntime().tryGetOtpRpc();
+        if (rpc == null) {
             return false;
         }
         try {
             final String str = consoleInputText.getText() + " ";
-            final RuntimeHelper helper = new RuntimeHelper(backend.getOtpRpc());
+            final RuntimeHelper helper = new RuntimeHelper(rpc);
             final OtpErlangObject o = helper.parseConsoleInput(str);
             if (o instanceof OtpErlangList && ((OtpErlangList) o).arity() == 0) {
                 return false;
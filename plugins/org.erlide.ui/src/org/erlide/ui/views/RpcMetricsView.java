@@ -0,0 +1,141 @@
+package org.erlide.ui.views;
+
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.action.IToolBarManager;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.dnd.Clipboard;
+import org.eclipse.swt.dnd.TextTransfer;
+import org.eclipse.swt.dnd.Transfer;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.ui.ISharedImages;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.part.ViewPart;
+import org.erlide.runtime.rpc.RpcMetrics;
+
+/**
+ * Shows the rpc call statistics collected by {@link RpcMetrics}.
+ */
+public class RpcMetricsView extends ViewPart {
+
+    private static final String[] COLUMNS = { "Call", "Count", "Failed", "Timeouts",
+            "Mean (us)", "p99 (us)", "Max (us)", "Bytes out", "Bytes in" };
+    private static final int[] WIDTHS = { 250, 70, 60, 70, 80, 80, 80, 90, 90 };
+
+    TableViewer viewer;
+
+    static class ViewLabelProvider extends LabelProvider implements ITableLabelProvider {
+
+        @Override
+        public String getColumnText(final Object obj, final int index) {
+            final RpcMetrics.Entry e = (RpcMetrics.Entry) obj;
+            switch (index) {
+            case 0:
+                return e.module + ":" + e.fun;
+            case 1:
+                return Long.toString(e.calls);
+            case 2:
+                return Long.toString(e.failures);
+            case 3:
+                return Long.toString(e.timeouts);
+            case 4:
+                return Long.toString(e.meanMicros());
+            case 5:
+                return Long.toString(e.percentile(99));
+            case 6:
+                return Long.toString(e.maxMicros);
+            case 7:
+                return Long.toString(e.bytesOut);
+            default:
+                return Long.toString(e.bytesIn);
+            }
+        }
+
+        @Override
+        public Image getColumnImage(final Object obj, final int index) {
+            return null;
+        }
+    }
+
+    @Override
+    public void createPartControl(final Composite parent) {
+        viewer = new TableViewer(parent, SWT.SINGLE | SWT.V_SCROLL | SWT.FULL_SELECTION);
+        final Table t = viewer.getTable();
+        for (int i = 0; i < RpcMetricsView.COLUMNS.length; i++) {
+            final TableColumn col = new TableColumn(t, i == 0 ? SWT.LEAD : SWT.TRAIL);
+            col.setText(RpcMetricsView.COLUMNS[i]);
+            col.setWidth(RpcMetricsView.WIDTHS[i]);
+        }
+        t.setLinesVisible(true);
+        t.setHeaderVisible(true);
+        viewer.setContentProvider(ArrayContentProvider.getInstance());
+        viewer.setLabelProvider(new ViewLabelProvider());
+        viewer.addDoubleClickListener(event -> refresh());
+        refresh();
+        initializeToolBar();
+    }
+
+    void refresh() {
+        viewer.setInput(RpcMetrics.snapshot());
+        setContentDescription("Calls in flight: " + RpcMetrics.inFlight());
+    }
+
+    private void initializeToolBar() {
+        final IToolBarManager toolBarManager = getViewSite().getActionBars()
+                .getToolBarManager();
+        final ISharedImages images = PlatformUI.getWorkbench().getSharedImages();
+
+        final Action refreshAction = new Action() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        };
+        refreshAction.setText("Refresh");
+        refreshAction.setToolTipText("Refresh rpc statistics");
+        refreshAction.setImageDescriptor(
+                images.getImageDescriptor(ISharedImages.IMG_OBJS_INFO_TSK));
+        toolBarManager.add(refreshAction);
+
+        final Action copyAction = new Action() {
+            @Override
+            public void run() {
+                final Clipboard clipboard = new Clipboard(viewer.getControl().getDisplay());
+                try {
+                    clipboard.setContents(new Object[] { RpcMetrics.toCsv() },
+                            new Transfer[] { TextTransfer.getInstance() });
+                } finally {
+                    clipboard.dispose();
+                }
+            }
+        };
+        copyAction.setText("Copy as CSV");
+        copyAction.setToolTipText("Copy rpc statistics as CSV");
+        copyAction.setImageDescriptor(images.getImageDescriptor(ISharedImages.IMG_TOOL_COPY));
+        toolBarManager.add(copyAction);
+
+        final Action resetAction = new Action() {
+            @Override
+            public void run() {
+                RpcMetrics.reset();
+                refresh();
+            }
+        };
+        resetAction.setText("Reset");
+        resetAction.setToolTipText("Reset rpc statistics");
+        resetAction.setImageDescriptor(
+                images.getImageDescriptor(ISharedImages.IMG_ELCL_REMOVE));
+        toolBarManager.add(resetAction);
+    }
+
+    @Override
+    public void setFocus() {
+        viewer.getControl().setFocus();
+    }
+}
@@ -8,6 +8,8 @@
  *******************************************************************************/
 package org.erlide.ui.views.processlist;
 
+import java.util.List;
+
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.action.IMenuManager;
 import org.eclipse.jface.action.IToolBarManager;
@@ -52,7 +54,6 @@ import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangPid;
 import com.ericsson.otp.erlang.OtpErlangString;
 import com.ericsson.otp.erlang.OtpErlangTuple;
-import com.google.common.eventbus.Subscribe;
 
 /**
  *
@@ -93,7 +94,8 @@ public class ProcessListView extends ViewPart {
 
         @Override
         public Object[] getElements(final Object parent) {
-            final IOtpRpc backend = getBackend().getOtpRpc();
+            // runs in the UI thread, don't wait for a runtime that is starting
+            final IOtpRpc backend = getBackend().getRuntime().tryGetOtpRpc();
             if (backend == null) {
                 return new OtpErlangObject[] {};
             }
@@ -119,17 +121,20 @@ public class ProcessListView extends ViewPart {
                 super("processlist");
             }
 
-            @Subscribe
+            @Override
             public void handleEvent(final ErlEvent event) {
-                if (!event.getTopic().equals(getTopic())) {
-                    return;
-                }
                 DisplayUtils.asyncExec(() -> {
                     if (!viewer.getControl().isDisposed()) {
                         viewer.refresh();
                     }
                 });
             }
+
+            @Override
+            public void handleEvents(final List<ErlEvent> events) {
+                // one refresh is enough for a burst of changes
+                handleEvent(events.get(events.size() - 1));
+            }
         }
     }
 
@@ -286,9 +291,13 @@ public class ProcessListView extends ViewPart {
 
                 final OtpErlangPid pid = (OtpErlangPid) ((OtpErlangTuple) obj)
                         .elementAt(0);
+                final IOtpRpc backend = getBackend().getRuntime().tryGetOtpRpc();
+                if (backend == null) {
+                    return;
+                }
 
                 final OtpErlangObject r = ErlangEngine.getInstance().getProclistService()
-                        .getProcessInfo(getBackend().getOtpRpc(), pid);
+                        .getProcessInfo(backend, pid);
                 if (r instanceof OtpErlangList) {
                     final OtpErlangList l = (OtpErlangList) r;
                     final StringBuilder s = new StringBuilder();
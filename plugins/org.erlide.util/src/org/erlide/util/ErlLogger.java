@@ -13,9 +13,12 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.text.MessageFormat;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
 import java.util.logging.Formatter;
+import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
@@ -23,74 +26,140 @@ import java.util.logging.Logger;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IPath;
 
+/**
+ * By default, messages are queued in a ring buffer and formatted and written by a
+ * background thread, so that logging doesn't slow down the threads that talk to the
+ * runtimes. If the writer falls behind and the buffer fills up, messages are dropped and
+ * the number of dropped messages is logged later. Arguments that may change after the
+ * call are formatted right away. Set erlide.logger.async=false to log on the calling
+ * thread instead.
+ */
 public class ErlLogger {
 
     private static final ErlSimpleFormatter SIMPLE_FORMATTER = new ErlSimpleFormatter();
+    private static final boolean ASYNC = !"false"
+            .equals(System.getProperty("erlide.logger.async"));
+    private static final int BUFFER_SIZE = Integer.getInteger("erlide.logger.buffer",
+            8192);
+    private static final long FLUSH_TIMEOUT = 2000;
     private static final ErlLogger INSTANCE = new ErlLogger();
 
-    private Logger logger;
+    private volatile Logger logger;
     private String logFile;
     private ConsoleHandler consoleHandler;
     private FileHandler fileHandler;
+    // messages below this level wouldn't be written by any handler
+    private volatile int threshold = Level.ALL.intValue();
+    private final LogWriter writer;
 
     public static ErlLogger getInstance() {
         return ErlLogger.INSTANCE;
     }
 
     public void dispose() {
+        if (writer != null) {
+            writer.shutdown();
+        }
         logger = null;
     }
 
+    /**
+     * Wait until the messages logged so far are written, for example before reading
+     * the log file.
+     */
+    public void flush() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * The number of messages that were dropped because the log buffer was full.
+     */
+    public long getDroppedMessages() {
+        return writer == null ? 0 : writer.ring.dropped();
+    }
+
     public final void setLogFile(final String file) {
         logger.removeHandler(fileHandler);
         final IPath wroot = ResourcesPlugin.getWorkspace().getRoot().getLocation();
         logFile = file == null ? wroot.append("erlide.log").toPortableString() : file;
         addFileHandler(logFile, ErlLogger.SIMPLE_FORMATTER);
+        updateThreshold();
     }
 
     public String getLogFile() {
         return logFile;
     }
 
+    public boolean isLoggable(final Level kind) {
+        return logger != null && kind.intValue() >= threshold;
+    }
+
     public void log(final Level kind, final String fmt, final Object... o) {
-        final String str = o.length == 0 ? fmt : String.format(fmt, o);
-        final String msg = getCallerMsg(str);
-        if (logger != null) {
-            logger.log(kind, msg);
-            if (logger.getHandlers().length == 0) {
-                System.out.println(msg);
-            }
+        if (!isLoggable(kind)) {
+            return;
+        }
+        // only the stack is captured here, it is searched for the caller when writing
+        final Throwable where = new Throwable();
+        if (writer != null) {
+            writer.publish(kind, fmt, o, null, where, null, 0);
+            return;
         }
+        final String str = o.length == 0 ? fmt : String.format(fmt, o);
+        write(kind, ErlLogger.getCallerMsg(where, str), null, System.currentTimeMillis());
     }
 
     public void log(final Level kind, final Throwable exception) {
-        final String str = exception.getMessage();
-        final String msg = getCallerMsg(str);
-        if (logger != null) {
-            logger.log(kind, msg, exception);
-            if (logger.getHandlers().length == 0) {
-                System.out.println(msg);
-            }
+        if (!isLoggable(kind)) {
+            return;
+        }
+        final Throwable where = new Throwable();
+        if (writer != null) {
+            writer.publish(kind, exception.getMessage(), null, exception, where, null, 0);
+            return;
         }
+        write(kind, ErlLogger.getCallerMsg(where, exception.getMessage()), exception,
+                System.currentTimeMillis());
     }
 
-    private String getCallerMsg(final String str) {
-        final StackTraceElement el = ErlLogger.getCaller();
-        final String msg = "(" + el.getFileName() + ":" + el.getLineNumber() + ") : "
-                + str;
-        return msg;
+    private static String getCallerMsg(final Throwable where, final String str) {
+        final StackTraceElement el = ErlLogger.getCaller(where);
+        return ErlLogger.getMsg(el.getFileName(), el.getLineNumber(), str);
+    }
+
+    private static String getMsg(final String file, final int line, final String str) {
+        return "(" + file + ":" + line + ") : " + str;
     }
 
     public void erlangLog(final String module, final int line, final String skind,
             final String fmt, final Object... o) {
         final Level kind = Level.parse(skind);
+        if (!isLoggable(kind)) {
+            return;
+        }
+        if (writer != null) {
+            writer.publish(kind, fmt, o, null, null, module, line);
+            return;
+        }
         final String str = o.length == 0 ? fmt : String.format(fmt, o);
-        final String msg = "(" + module + ":" + line + ") : " + str;
-        if (logger != null) {
-            logger.log(kind, msg);
-            if (logger.getHandlers().length == 0) {
-                System.out.println(msg);
-            }
+        write(kind, ErlLogger.getMsg(module, line, str), null,
+                System.currentTimeMillis());
+    }
+
+    private void write(final Level kind, final String msg, final Throwable exception,
+            final long millis) {
+        final Logger l = logger;
+        if (l == null) {
+            return;
+        }
+        final LogRecord record = new LogRecord(kind, msg);
+        record.setLoggerName(l.getName());
+        record.setMillis(millis);
+        record.setThrown(exception);
+        l.log(record);
+        if (l.getHandlers().length == 0) {
+            System.out.println(msg);
         }
     }
 
@@ -135,6 +204,25 @@ public class ErlLogger {
         logger.setUseParentHandlers(false);
         logger.setLevel(java.util.logging.Level.FINEST);
         addConsoleHandler(ErlLogger.SIMPLE_FORMATTER);
+        updateThreshold();
+        if (ErlLogger.ASYNC) {
+            writer = new LogWriter(new LogRing(ErlLogger.BUFFER_SIZE));
+            writer.start();
+            // the writer is a daemon, so write what is queued before the VM exits
+            Runtime.getRuntime()
+                    .addShutdownHook(new Thread(writer::shutdown, "erlide-logger-flush"));
+        } else {
+            writer = null;
+        }
+    }
+
+    private void updateThreshold() {
+        final Handler[] handlers = logger.getHandlers();
+        int min = handlers.length == 0 ? Level.ALL.intValue() : Level.OFF.intValue();
+        for (final Handler handler : handlers) {
+            min = Math.min(min, handler.getLevel().intValue());
+        }
+        threshold = min;
     }
 
     private void addConsoleHandler(final ErlSimpleFormatter formatter) {
@@ -161,16 +249,95 @@ public class ErlLogger {
         }
     }
 
-    private static StackTraceElement getCaller() {
-        final StackTraceElement[] st = new Throwable().getStackTrace();
+    private static StackTraceElement getCaller(final Throwable where) {
+        final StackTraceElement[] st = where.getStackTrace();
         StackTraceElement el = null;
-        int i = 2;
+        int i = 0;
         do {
             el = st[i++];
-        } while (el.getClassName().contains("Logger"));
+        } while (el.getClassName().contains("Logger") && i < st.length);
         return el;
     }
 
+    /**
+     * Takes the messages out of the ring and writes them.
+     */
+    private final class LogWriter extends Thread {
+        final LogRing ring;
+        private volatile boolean running = true;
+        private volatile boolean sleeping;
+        private volatile long written;
+
+        LogWriter(final LogRing ring) {
+            super("erlide-logger");
+            setDaemon(true);
+            this.ring = ring;
+        }
+
+        void publish(final Level kind, final String fmt, final Object[] args,
+                final Throwable exception, final Throwable where, final String file,
+                final int line) {
+            if (ring.offer(kind, fmt, args, exception, where, file, line) && sleeping) {
+                LockSupport.unpark(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            long reportedDrops = 0;
+            while (running || ring.peek() != null) {
+                final LogRing.Entry entry = ring.peek();
+                if (entry == null) {
+                    final long drops = ring.dropped();
+                    if (drops > reportedDrops) {
+                        write(Level.WARNING, "(ErlLogger) : " + (drops - reportedDrops)
+                                + " messages were dropped, the log buffer was full", null,
+                                System.currentTimeMillis());
+                        reportedDrops = drops;
+                        continue;
+                    }
+                    sleeping = true;
+                    if (ring.peek() == null && running) {
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                    }
+                    sleeping = false;
+                    continue;
+                }
+                try {
+                    final String str = entry.message();
+                    final String msg;
+                    if (entry.where != null) {
+                        msg = ErlLogger.getCallerMsg(entry.where, str);
+                    } else {
+                        msg = ErlLogger.getMsg(entry.file, entry.line, str);
+                    }
+                    write(entry.level, msg, entry.thrown, entry.millis);
+                } catch (final RuntimeException e) {
+                    e.printStackTrace();
+                } finally {
+                    ring.release();
+                    written++;
+                }
+            }
+        }
+
+        void flush() {
+            final long target = ring.published();
+            final long deadline = System.currentTimeMillis() + ErlLogger.FLUSH_TIMEOUT;
+            while (written < target && System.currentTimeMillis() < deadline
+                    && isAlive()) {
+                LockSupport.unpark(this);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+
+        void shutdown() {
+            flush();
+            running = false;
+            LockSupport.unpark(this);
+        }
+    }
+
     public static class ErlSimpleFormatter extends Formatter {
 
         Date dat = new Date();
@@ -0,0 +1,167 @@
+package org.erlide.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+
+import com.ericsson.otp.erlang.OtpErlangObject;
+
+/**
+ * A bounded ring of log entries, written to by any number of threads and read by a
+ * single one. The entries are allocated up front and reused. Messages whose arguments
+ * can't change (Erlang terms, strings, boxed primitives) are formatted only when the
+ * reader gets to them; the others are formatted right away, as their arguments may be
+ * changed by the caller in the meantime. When the ring is full, new entries are dropped
+ * and counted.
+ */
+final class LogRing {
+
+    static final class Entry {
+        Level level;
+        String fmt;
+        Object[] args;
+        Throwable thrown;
+        // where the entry was logged from: either a stack to search or a file and line
+        Throwable where;
+        String file;
+        int line;
+        long millis;
+
+        String message() {
+            return LogRing.format(fmt, args);
+        }
+
+        void clear() {
+            fmt = null;
+            args = null;
+            thrown = null;
+            where = null;
+            file = null;
+        }
+    }
+
+    private final Entry[] entries;
+    // the position each entry is free at, or published at plus one
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // only used by the reader
+    private long head;
+
+    LogRing(final int size) {
+        int capacity = 2;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        mask = capacity - 1;
+        entries = new Entry[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new Entry();
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return entries.length;
+    }
+
+    static String format(final String fmt, final Object[] args) {
+        if (args == null || args.length == 0) {
+            return fmt;
+        }
+        try {
+            return String.format(fmt, args);
+        } catch (final RuntimeException e) {
+            return fmt + " " + e;
+        }
+    }
+
+    private static boolean areImmutable(final Object[] args) {
+        if (args == null) {
+            return true;
+        }
+        for (final Object arg : args) {
+            if (arg != null && !(arg instanceof OtpErlangObject || arg instanceof String
+                    || arg instanceof Integer || arg instanceof Long
+                    || arg instanceof Short || arg instanceof Byte
+                    || arg instanceof Double || arg instanceof Float
+                    || arg instanceof Boolean || arg instanceof Character
+                    || arg instanceof Enum)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add an entry; either where or file is used to find out where it was logged from.
+     *
+     * @return false if the ring was full and the entry was dropped
+     */
+    boolean offer(final Level level, final String fmt, final Object[] args,
+            final Throwable thrown, final Throwable where, final String file,
+            final int line) {
+        final boolean deferred = LogRing.areImmutable(args);
+        final String text = deferred ? fmt : LogRing.format(fmt, args);
+        long pos = tail.get();
+        for (;;) {
+            final int index = (int) (pos & mask);
+            final long delta = sequences.get(index) - pos;
+            if (delta == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = tail.get();
+            } else if (delta < 0) {
+                dropped.incrementAndGet();
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+        final int index = (int) (pos & mask);
+        final Entry entry = entries[index];
+        entry.level = level;
+        entry.fmt = text;
+        entry.args = deferred ? args : null;
+        entry.thrown = thrown;
+        entry.where = where;
+        entry.file = file;
+        entry.line = line;
+        entry.millis = System.currentTimeMillis();
+        sequences.lazySet(index, pos + 1);
+        return true;
+    }
+
+    /**
+     * The oldest entry, or null if there is none. Only for the reader, which has to
+     * {@link #release()} the entry when it is done with it.
+     */
+    Entry peek() {
+        final int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        return entries[index];
+    }
+
+    void release() {
+        final int index = (int) (head & mask);
+        entries[index].clear();
+        sequences.lazySet(index, head + entries.length);
+        head++;
+    }
+
+    /**
+     * The number of entries that have been offered, dropped ones excluded.
+     */
+    long published() {
+        return tail.get();
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+}
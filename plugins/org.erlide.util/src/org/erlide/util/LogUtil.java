@@ -34,6 +34,7 @@ public final class LogUtil {
 
     public static String fetchErlideLog() {
         final StringBuilder result = new StringBuilder();
+        ErlLogger.getInstance().flush();
         final File log = new File(ErlLogger.getInstance().getLogFile());
         try (final BufferedReader reader = new BufferedReader(
                 new InputStreamReader(new FileInputStream(log), "UTF-8"))) {
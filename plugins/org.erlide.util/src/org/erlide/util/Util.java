@@ -431,9 +431,9 @@ public final class Util {
         } else if (o instanceof OtpErlangBinary) {
             final OtpErlangBinary b = (OtpErlangBinary) o;
             String result;
-            result = Util.decode(b.binaryValue(), Charsets.UTF_8);
+            result = Util.decode(b.asByteBuffer(), Charsets.UTF_8);
             if (result == null) {
-                result = Util.decode(b.binaryValue(), Charsets.ISO_8859_1);
+                result = Util.decode(b.asByteBuffer(), Charsets.ISO_8859_1);
             }
             if (result == null) {
                 ErlLogger.error(
@@ -446,9 +446,12 @@ public final class Util {
     }
 
     public static String decode(final byte[] binaryValue, final Charset charset) {
+        return Util.decode(ByteBuffer.wrap(binaryValue), charset);
+    }
+
+    public static String decode(final ByteBuffer bbuf, final Charset charset) {
         final CharsetDecoder decoder = charset.newDecoder();
         try {
-            final ByteBuffer bbuf = ByteBuffer.wrap(binaryValue);
             final CharBuffer cbuf = decoder.decode(bbuf);
             return cbuf.toString();
         } catch (final CharacterCodingException e) {
@@ -548,9 +551,9 @@ public final class Util {
             }
         } else if (o instanceof OtpErlangBinary) {
             final OtpErlangBinary b = (OtpErlangBinary) o;
-            String s = Util.decode(b.binaryValue(), Charsets.UTF_8);
+            String s = Util.decode(b.asByteBuffer(), Charsets.UTF_8);
             if (s == null) {
-                s = new String(b.binaryValue(), Charsets.ISO_8859_1);
+                s = Charsets.ISO_8859_1.decode(b.asByteBuffer()).toString();
             }
             sb.append(s);
         } else if (o != null) {
@@ -0,0 +1,140 @@
+package org.erlide.util.erlang;
+
+import java.util.concurrent.ExecutionException;
+
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * A template for {@link OtpErlang#format(String, Object...)}, parsed once and compiled
+ * into a tree of builders. Parts of the template without placeholders are shared
+ * between results instead of being rebuilt, and placeholders convert their argument
+ * with a precompiled {@link RpcSignature}.
+ *
+ * Formatting gives the same results as {@link OtpErlang#format(String, Object...)}; in
+ * particular placeholders that get no argument are left in place.
+ */
+public final class CompiledFormat {
+
+    private static final LoadingCache<String, CompiledFormat> CACHE = CacheBuilder
+            .newBuilder().maximumSize(500)
+            .build(new CacheLoader<String, CompiledFormat>() {
+                @Override
+                public CompiledFormat load(final String key)
+                        throws OtpParserException, SignatureException {
+                    return new CompiledFormat(key);
+                }
+            });
+
+    private final String source;
+    private final Builder builder;
+    private int placeholders;
+
+    private CompiledFormat(final String source)
+            throws OtpParserException, SignatureException {
+        this.source = source;
+        builder = compile(OtpParser.doParse(source));
+    }
+
+    /**
+     * Return the compiled form of a template that is known to be valid, typically a
+     * constant.
+     *
+     * @throws IllegalArgumentException
+     *             if the template can't be parsed
+     */
+    public static CompiledFormat of(final String template) {
+        try {
+            return CompiledFormat.compile(template);
+        } catch (final OtpParserException | SignatureException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    public static CompiledFormat compile(final String template)
+            throws OtpParserException, SignatureException {
+        try {
+            return CompiledFormat.CACHE.get(template);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof SignatureException) {
+                throw (SignatureException) e.getCause();
+            }
+            throw (OtpParserException) e.getCause();
+        }
+    }
+
+    /**
+     * The number of placeholders in the template.
+     */
+    public int arity() {
+        return placeholders;
+    }
+
+    public OtpErlangObject format(final Object... args)
+            throws OtpParserException, SignatureException {
+        return builder.build(args == null ? new Object[] {} : args);
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private interface Builder {
+        OtpErlangObject build(Object[] args) throws OtpParserException, SignatureException;
+    }
+
+    private Builder compile(final OtpErlangObject template) throws SignatureException {
+        if (template instanceof OtpFormatPlaceholder) {
+            return compilePlaceholder((OtpFormatPlaceholder) template);
+        }
+        if (template instanceof OtpErlangList || template instanceof OtpErlangTuple) {
+            final int before = placeholders;
+            final OtpErlangObject[] elements = template instanceof OtpErlangList
+                    ? ((OtpErlangList) template).elements()
+                    : ((OtpErlangTuple) template).elements();
+            final Builder[] children = new Builder[elements.length];
+            for (int i = 0; i < elements.length; i++) {
+                children[i] = compile(elements[i]);
+            }
+            if (placeholders > before) {
+                final boolean isList = template instanceof OtpErlangList;
+                final int first = before;
+                return args -> {
+                    if (args.length <= first) {
+                        return template;
+                    }
+                    final OtpErlangObject[] result = new OtpErlangObject[children.length];
+                    for (int i = 0; i < children.length; i++) {
+                        result[i] = children[i].build(args);
+                    }
+                    return isList ? new OtpErlangList(result) : new OtpErlangTuple(result);
+                };
+            }
+        }
+        return args -> template;
+    }
+
+    private Builder compilePlaceholder(final OtpFormatPlaceholder holder)
+            throws SignatureException {
+        final int index = placeholders++;
+        final Signature[] signs = Signature.parse(holder.getName());
+        if (signs.length == 0) {
+            return args -> {
+                if (args.length <= index) {
+                    return holder;
+                }
+                if (!(args[index] instanceof OtpErlangObject)) {
+                    throw new OtpParserException("funny placeholder");
+                }
+                return TypeConverter.java2erlang(args[index], new Signature('x'));
+            };
+        }
+        final RpcSignature signature = RpcSignature.parse(holder.getName());
+        return args -> args.length <= index ? holder : signature.encode(0, args[index]);
+    }
+}
@@ -0,0 +1,310 @@
+package org.erlide.util.erlang;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import com.ericsson.otp.erlang.OtpErlangBinary;
+import com.ericsson.otp.erlang.OtpErlangException;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangPid;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * A pattern for {@link OtpErlang#match(OtpErlangObject, OtpErlangObject)}, parsed once
+ * and compiled into a tree of matchers. Variables get a slot each, in the order they
+ * first appear, and are bound into a {@link Bindings} that can be reused from one match
+ * to the next, so matching doesn't allocate.
+ *
+ * <pre>
+ * static final CompiledPattern PUT_CHARS = CompiledPattern
+ *         .of(&quot;{put_chars, Enc:a, Chars}&quot;);
+ * final CompiledPattern.Bindings b = new CompiledPattern.Bindings();
+ * ...
+ * if (PUT_CHARS.match(request, b)) {
+ *     b.getAtom(&quot;Enc&quot;) ...
+ * </pre>
+ *
+ * Matching gives the same results as {@link OtpErlang#match(OtpErlangObject,
+ * OtpErlangObject)}.
+ */
+public final class CompiledPattern {
+
+    private static final LoadingCache<String, CompiledPattern> CACHE = CacheBuilder
+            .newBuilder().maximumSize(500)
+            .build(new CacheLoader<String, CompiledPattern>() {
+                @Override
+                public CompiledPattern load(final String key) throws OtpParserException {
+                    return new CompiledPattern(key);
+                }
+            });
+
+    private final String source;
+    private final String[] names;
+    private final Matcher matcher;
+
+    private CompiledPattern(final String source) throws OtpParserException {
+        this.source = source;
+        final List<String> vars = new ArrayList<>();
+        matcher = CompiledPattern.compile(OtpParser.doParse(source), vars);
+        names = vars.toArray(new String[vars.size()]);
+    }
+
+    /**
+     * Return the compiled form of a pattern that is known to be valid, typically a
+     * constant.
+     *
+     * @throws IllegalArgumentException
+     *             if the pattern can't be parsed
+     */
+    public static CompiledPattern of(final String pattern) {
+        try {
+            return CompiledPattern.compile(pattern);
+        } catch (final OtpParserException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    public static CompiledPattern compile(final String pattern)
+            throws OtpParserException {
+        try {
+            return CompiledPattern.CACHE.get(pattern);
+        } catch (final ExecutionException e) {
+            throw (OtpParserException) e.getCause();
+        }
+    }
+
+    /**
+     * The names of the pattern's variables, indexed by slot.
+     */
+    public String[] variables() {
+        return names.clone();
+    }
+
+    /**
+     * The slot of a variable, or -1 if the pattern has no such variable.
+     */
+    public int slot(final String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Match the term, binding the variables into b, which is cleared first. The contents
+     * of b are unspecified if the match fails.
+     */
+    public boolean match(final OtpErlangObject term, final Bindings b) {
+        b.reset(this);
+        return matcher.match(term, b.values);
+    }
+
+    /**
+     * Match the term, like {@link OtpErlang#match(OtpErlangObject, OtpErlangObject)}.
+     *
+     * @return the bindings, or null if the term doesn't match
+     */
+    public OtpBindings match(final OtpErlangObject term) {
+        final Bindings b = new Bindings();
+        return match(term, b) ? b.toOtpBindings() : null;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * The values bound by a match, by slot or by name.
+     */
+    public static final class Bindings {
+        private static final OtpErlangObject[] NONE = new OtpErlangObject[0];
+
+        private CompiledPattern pattern;
+        OtpErlangObject[] values = Bindings.NONE;
+
+        void reset(final CompiledPattern p) {
+            pattern = p;
+            final int n = p.names.length;
+            if (values.length < n) {
+                values = new OtpErlangObject[n];
+            } else {
+                Arrays.fill(values, 0, n, null);
+            }
+        }
+
+        public OtpErlangObject get(final int slot) {
+            return values[slot];
+        }
+
+        public OtpErlangObject get(final String name) {
+            if (pattern == null) {
+                return null;
+            }
+            final int slot = pattern.slot(name);
+            return slot < 0 ? null : values[slot];
+        }
+
+        public int getInt(final String name) throws OtpErlangException {
+            return OtpBindings.asInt(get(name));
+        }
+
+        public long getLong(final String name) throws OtpErlangException {
+            return OtpBindings.asLong(get(name));
+        }
+
+        public String getAtom(final String name) throws OtpErlangException {
+            return OtpBindings.asAtom(get(name));
+        }
+
+        public String getString(final String name) throws OtpErlangException {
+            return OtpBindings.asString(get(name));
+        }
+
+        public Collection<OtpErlangObject> getList(final String name)
+                throws OtpErlangException {
+            return OtpBindings.asList(get(name));
+        }
+
+        public OtpErlangObject[] getTuple(final String name) throws OtpErlangException {
+            return OtpBindings.asTuple(get(name));
+        }
+
+        public OtpErlangPid getPid(final String name) throws OtpErlangException {
+            return OtpBindings.asPid(get(name));
+        }
+
+        public OtpErlangBinary getBinary(final String name) throws OtpErlangException {
+            return OtpBindings.asBinary(get(name));
+        }
+
+        public OtpBindings toOtpBindings() {
+            final OtpBindings result = new OtpBindings();
+            if (pattern != null) {
+                for (int i = 0; i < pattern.names.length; i++) {
+                    if (values[i] != null) {
+                        result.put(pattern.names[i], values[i]);
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return toOtpBindings().toString();
+        }
+    }
+
+    private interface Matcher {
+        boolean match(OtpErlangObject term, OtpErlangObject[] values);
+    }
+
+    private static Matcher compile(final OtpErlangObject pattern,
+            final List<String> vars) {
+        if (pattern == null) {
+            return (term, values) -> term == null;
+        }
+        if (pattern instanceof OtpPatternVariable) {
+            final OtpPatternVariable var = (OtpPatternVariable) pattern;
+            final Signature signature = var.getSignature();
+            if ("_".equals(var.getName())) {
+                return (term, values) -> term != null
+                        && TypeConverter.doesMatchSignature(term, signature);
+            }
+            int index = vars.indexOf(var.getName());
+            if (index < 0) {
+                index = vars.size();
+                vars.add(var.getName());
+            }
+            final int slot = index;
+            return (term, values) -> {
+                if (term == null || !TypeConverter.doesMatchSignature(term, signature)) {
+                    return false;
+                }
+                final OtpErlangObject old = values[slot];
+                if (old == null) {
+                    values[slot] = term;
+                    return true;
+                }
+                return old.equals(term);
+            };
+        }
+        // terms can be subclasses, e.g. lazily decoded tuples or binary slices
+        if (pattern instanceof OtpErlangTuple) {
+            final Matcher[] elements = CompiledPattern
+                    .compileAll(((OtpErlangTuple) pattern).elements(), vars);
+            return (term, values) -> {
+                if (!(term instanceof OtpErlangTuple)) {
+                    return false;
+                }
+                final OtpErlangTuple tuple = (OtpErlangTuple) term;
+                if (tuple.arity() != elements.length) {
+                    return false;
+                }
+                for (int i = 0; i < elements.length; i++) {
+                    if (!elements[i].match(tuple.elementAt(i), values)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+        if (pattern instanceof OtpErlangList) {
+            return CompiledPattern.compileList((OtpErlangList) pattern, vars);
+        }
+        return (term, values) -> pattern.equals(term);
+    }
+
+    private static Matcher[] compileAll(final OtpErlangObject[] patterns,
+            final List<String> vars) {
+        final Matcher[] result = new Matcher[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            result[i] = CompiledPattern.compile(patterns[i], vars);
+        }
+        return result;
+    }
+
+    private static Matcher compileList(final OtpErlangList pattern,
+            final List<String> vars) {
+        final Matcher[] elements = CompiledPattern.compileAll(pattern.elements(), vars);
+        final boolean proper = pattern.isProper();
+        final OtpErlangObject tailPattern = pattern.getLastTail();
+        final boolean tailIsVariable = tailPattern instanceof OtpPatternVariable;
+        final Matcher tail = CompiledPattern.compile(tailPattern, vars);
+        return (term, values) -> {
+            if (!(term instanceof OtpErlangList)) {
+                return false;
+            }
+            final OtpErlangList list = (OtpErlangList) term;
+            final int termArity = list.arity();
+            if (elements.length > termArity) {
+                return false;
+            }
+            if (elements.length < termArity && proper) {
+                return false;
+            }
+            if (elements.length == termArity && proper != list.isProper()) {
+                return false;
+            }
+            for (int i = 0; i < elements.length; i++) {
+                if (!elements[i].match(list.elementAt(i), values)) {
+                    return false;
+                }
+            }
+            if (elements.length < termArity && tailIsVariable) {
+                return tail.match(list.getNthTail(elements.length), values);
+            }
+            return tail.match(list.getLastTail(), values);
+        };
+    }
+}
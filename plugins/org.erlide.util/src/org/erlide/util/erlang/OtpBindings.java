@@ -45,68 +45,36 @@ public final class OtpBindings implements Map<String, OtpErlangObject> {
     }
 
     public int getInt(final String name) throws OtpErlangException {
-        final OtpErlangObject r = get(name);
-        if (r instanceof OtpErlangLong) {
-            return ((OtpErlangLong) r).intValue();
-        }
-        throw new OtpErlangException("value is not an integer");
+        return OtpBindings.asInt(get(name));
     }
 
     public long getLong(final String name) throws OtpErlangException {
-        final OtpErlangObject r = get(name);
-        if (r instanceof OtpErlangLong) {
-            return ((OtpErlangLong) r).longValue();
-        }
-        throw new OtpErlangException("value is not an integer");
+        return OtpBindings.asLong(get(name));
     }
 
     public String getAtom(final String name) throws OtpErlangException {
-        final OtpErlangObject r = get(name);
-        if (r instanceof OtpErlangAtom) {
-            return ((OtpErlangAtom) r).atomValue();
-        }
-        throw new OtpErlangException("value is not an atom");
+        return OtpBindings.asAtom(get(name));
     }
 
     public String getQuotedAtom(final String name) throws OtpErlangException {
-        final OtpErlangObject r = get(name);
-        if (r instanceof OtpErlangAtom) {
-            return ((OtpErlangAtom) r).toString();
-        }
-        throw new OtpErlangException("value is not an atom");
+        return OtpBindings.asQuotedAtom(get(name));
     }
 
     public String getString(final String name) throws OtpErlangException {
-        final OtpErlangObject r = get(name);
-        if (r instanceof OtpErlangString) {
-            return ((OtpErlangString) r).stringValue();
-        }
-        throw new OtpErlangException("value is not a string");
+        return OtpBindings.asString(get(name));
     }
 
     public Collection<OtpErlangObject> getList(final String name)
             throws OtpErlangException {
-        final OtpErlangObject r = get(name);
-        if (r instanceof OtpErlangList) {
-            return Lists.newArrayList(((OtpErlangList) r).elements());
-        }
-        throw new OtpErlangException("value is not a list");
+        return OtpBindings.asList(get(name));
     }
 
     public OtpErlangObject[] getTuple(final String name) throws OtpErlangException {
-        final OtpErlangObject r = get(name);
-        if (r instanceof OtpErlangTuple) {
-            return ((OtpErlangTuple) r).elements();
-        }
-        throw new OtpErlangException("value is not a tuple");
+        return OtpBindings.asTuple(get(name));
     }
 
     public OtpErlangPid getPid(final String name) throws OtpErlangException {
-        final OtpErlangObject r = get(name);
-        if (r instanceof OtpErlangPid) {
-            return (OtpErlangPid) r;
-        }
-        throw new OtpErlangException("value is not a pid");
+        return OtpBindings.asPid(get(name));
     }
 
     @SuppressWarnings("unchecked")
@@ -126,11 +94,7 @@ public final class OtpBindings implements Map<String, OtpErlangObject> {
     }
 
     public OtpErlangBinary getBinary(final String name) throws OtpErlangException {
-        final OtpErlangObject r = get(name);
-        if (r instanceof OtpErlangBinary) {
-            return (OtpErlangBinary) r;
-        }
-        throw new OtpErlangException("value is not a binary");
+        return OtpBindings.asBinary(get(name));
     }
 
     public String getAsString(final String name) {
@@ -198,4 +162,69 @@ public final class OtpBindings implements Map<String, OtpErlangObject> {
         return bindings.entrySet();
     }
 
+    // the typed getters, shared with CompiledPattern.Bindings
+
+    static int asInt(final OtpErlangObject r) throws OtpErlangException {
+        if (r instanceof OtpErlangLong) {
+            return ((OtpErlangLong) r).intValue();
+        }
+        throw new OtpErlangException("value is not an integer");
+    }
+
+    static long asLong(final OtpErlangObject r) throws OtpErlangException {
+        if (r instanceof OtpErlangLong) {
+            return ((OtpErlangLong) r).longValue();
+        }
+        throw new OtpErlangException("value is not an integer");
+    }
+
+    static String asAtom(final OtpErlangObject r) throws OtpErlangException {
+        if (r instanceof OtpErlangAtom) {
+            return ((OtpErlangAtom) r).atomValue();
+        }
+        throw new OtpErlangException("value is not an atom");
+    }
+
+    static String asQuotedAtom(final OtpErlangObject r) throws OtpErlangException {
+        if (r instanceof OtpErlangAtom) {
+            return ((OtpErlangAtom) r).toString();
+        }
+        throw new OtpErlangException("value is not an atom");
+    }
+
+    static String asString(final OtpErlangObject r) throws OtpErlangException {
+        if (r instanceof OtpErlangString) {
+            return ((OtpErlangString) r).stringValue();
+        }
+        throw new OtpErlangException("value is not a string");
+    }
+
+    static Collection<OtpErlangObject> asList(final OtpErlangObject r)
+            throws OtpErlangException {
+        if (r instanceof OtpErlangList) {
+            return Lists.newArrayList(((OtpErlangList) r).elements());
+        }
+        throw new OtpErlangException("value is not a list");
+    }
+
+    static OtpErlangObject[] asTuple(final OtpErlangObject r) throws OtpErlangException {
+        if (r instanceof OtpErlangTuple) {
+            return ((OtpErlangTuple) r).elements();
+        }
+        throw new OtpErlangException("value is not a tuple");
+    }
+
+    static OtpErlangPid asPid(final OtpErlangObject r) throws OtpErlangException {
+        if (r instanceof OtpErlangPid) {
+            return (OtpErlangPid) r;
+        }
+        throw new OtpErlangException("value is not a pid");
+    }
+
+    static OtpErlangBinary asBinary(final OtpErlangObject r) throws OtpErlangException {
+        if (r instanceof OtpErlangBinary) {
+            return (OtpErlangBinary) r;
+        }
+        throw new OtpErlangException("value is not a binary");
+    }
 }
@@ -1,8 +1,6 @@
 package org.erlide.util.erlang;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -70,24 +68,28 @@ public class OtpErlang {
      * signature of the argument, so that automatic conversion Java->Erlang can be done.
      * See TypeConverter.java2erlang for details.
      *
+     * <p>
+     * The template is compiled once and cached, see {@link CompiledFormat}.
+     *
      * @see com.ericsson.otp.erlang.TypeConverter
      */
     public static OtpErlangObject format(final String fmt, final Object... args)
             throws OtpParserException, SignatureException {
-        final List<Object> values = new ArrayList<>(Arrays.asList(args));
-        final OtpErlangObject result = OtpErlang.fill(OtpErlang.parse(fmt), values);
-        return result;
+        return CompiledFormat.compile(fmt).format(args);
     }
 
     public static OtpBindings match(final String pattern, final String term)
             throws OtpParserException {
-        return OtpErlang.match(OtpErlang.parse(pattern), OtpErlang.parse(term),
-                new OtpBindings());
+        return CompiledPattern.compile(pattern).match(OtpErlang.parse(term));
     }
 
+    /**
+     * Match a term against a pattern, which is compiled once and cached, see
+     * {@link CompiledPattern}.
+     */
     public static OtpBindings match(final String pattern, final OtpErlangObject term)
             throws OtpParserException {
-        return OtpErlang.match(OtpErlang.parse(pattern), term, new OtpBindings());
+        return CompiledPattern.compile(pattern).match(term);
     }
 
     public static OtpBindings match(final String pattern, final String term,
@@ -139,13 +141,16 @@ public class OtpErlang {
             }
             return old.equals(term) ? result : null;
         }
-        if (!pattern.getClass().equals(term.getClass())) {
-            return null;
-        }
-
+        // terms can be subclasses, e.g. lazily decoded tuples or binary slices
         if (pattern instanceof OtpErlangList) {
+            if (!(term instanceof OtpErlangList)) {
+                return null;
+            }
             return OtpErlang.matchList(pattern, term, bindings);
         } else if (pattern instanceof OtpErlangTuple) {
+            if (!(term instanceof OtpErlangTuple)) {
+                return null;
+            }
             return OtpErlang.matchTuple(((OtpErlangTuple) pattern).elements(),
                     ((OtpErlangTuple) term).elements(), bindings);
         } else if (pattern.equals(term)) {
@@ -187,39 +192,6 @@ public class OtpErlang {
         return OtpErlang.match(lpattern.getLastTail(), lterm.getLastTail(), rez);
     }
 
-    private static OtpErlangObject fill(final OtpErlangObject template,
-            final List<Object> values) throws SignatureException, OtpParserException {
-        if (values.isEmpty()) {
-            return template;
-        }
-        if (template instanceof OtpErlangList) {
-            final OtpErlangObject[] elements = ((OtpErlangList) template).elements();
-            final List<OtpErlangObject> result = new ArrayList<>(elements.length);
-            for (final OtpErlangObject elem : elements) {
-                result.add(OtpErlang.fill(elem, values));
-            }
-            return new OtpErlangList(result.toArray(elements));
-        } else if (template instanceof OtpErlangTuple) {
-            final OtpErlangObject[] elements = ((OtpErlangTuple) template).elements();
-            final List<OtpErlangObject> result = new ArrayList<>(elements.length);
-            for (final OtpErlangObject elem : elements) {
-                result.add(OtpErlang.fill(elem, values));
-            }
-            return new OtpErlangTuple(result.toArray(elements));
-        } else if (template instanceof OtpFormatPlaceholder) {
-            final OtpFormatPlaceholder holder = (OtpFormatPlaceholder) template;
-            final Object ret = values.remove(0);
-            final Signature[] signs = Signature.parse(holder.getName());
-            if (signs.length == 0 && !(ret instanceof OtpErlangObject)) {
-                throw new OtpParserException("funny placeholder");
-            }
-            final Signature sign = signs.length == 0 ? new Signature('x') : signs[0];
-            return TypeConverter.java2erlang(ret, sign);
-        } else {
-            return template;
-        }
-    }
-
     private static OtpBindings matchTuple(final OtpErlangObject[] patterns,
             final OtpErlangObject[] terms, final OtpBindings bindings) {
         if (patterns.length != terms.length) {
@@ -0,0 +1,213 @@
+package org.erlide.util.erlang;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangBinary;
+import com.ericsson.otp.erlang.OtpErlangDouble;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangPid;
+import com.ericsson.otp.erlang.OtpErlangRef;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+
+/**
+ * A call signature compiled into one encoder per argument, so that converting the
+ * arguments of a call neither parses the signature nor walks the whole
+ * {@link TypeConverter} dispatch for the common types.
+ *
+ * Instances are immutable and can be kept in constants:
+ *
+ * <pre>
+ * private static final RpcSignature SIG = RpcSignature.of(&quot;sslsx&quot;);
+ * ...
+ * SIG.encode(args)
+ * </pre>
+ *
+ * The result is always the same as converting each argument with
+ * {@link TypeConverter#java2erlang(Object, Signature)}; values that don't have a fast
+ * path are handed over to it.
+ */
+public final class RpcSignature {
+
+    private static final ConcurrentMap<String, RpcSignature> CACHE = new ConcurrentHashMap<>();
+
+    private final String signature;
+    private final Encoder[] encoders;
+
+    private RpcSignature(final String signature, final Signature[] types) {
+        this.signature = signature;
+        encoders = new Encoder[types.length];
+        for (int i = 0; i < types.length; i++) {
+            encoders[i] = RpcSignature.compile(types[i]);
+        }
+    }
+
+    /**
+     * Return the compiled form of a signature that is known to be valid, typically a
+     * constant.
+     *
+     * @throws IllegalArgumentException
+     *             if the signature can't be parsed
+     */
+    public static RpcSignature of(final String signature) {
+        try {
+            return RpcSignature.parse(signature);
+        } catch (final SignatureException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    public static RpcSignature parse(final String signature) throws SignatureException {
+        RpcSignature result = RpcSignature.CACHE.get(signature);
+        if (result == null) {
+            result = new RpcSignature(signature, Signature.parse(signature));
+            final RpcSignature old = RpcSignature.CACHE.putIfAbsent(signature, result);
+            if (old != null) {
+                result = old;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Convert the arguments of a call. Without a signature, each argument is converted
+     * as if its type were x.
+     */
+    public static OtpErlangObject[] convert(final String signature,
+            final Object... args) throws SignatureException {
+        return RpcSignature.convert(
+                signature == null ? null : RpcSignature.parse(signature), args);
+    }
+
+    /**
+     * Convert the arguments of a call with a compiled signature, or as if their type
+     * were x if it is null.
+     */
+    public static OtpErlangObject[] convert(final RpcSignature signature,
+            final Object... args) throws SignatureException {
+        if (signature != null) {
+            return signature.encode(args);
+        }
+        final Object[] args0 = args == null ? new Object[] {} : args;
+        final Signature x = new Signature('x');
+        final OtpErlangObject[] result = new OtpErlangObject[args0.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = TypeConverter.java2erlang(args0[i], x);
+        }
+        return result;
+    }
+
+    public int arity() {
+        return encoders.length;
+    }
+
+    public OtpErlangObject[] encode(final Object... args) throws SignatureException {
+        final Object[] args0 = args == null ? new Object[] {} : args;
+        if (encoders.length != args0.length) {
+            throw new SignatureException("Signature doesn't match parameter number: "
+                    + encoders.length + "/" + args0.length);
+        }
+        final OtpErlangObject[] result = new OtpErlangObject[args0.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = encoders[i].encode(args0[i]);
+        }
+        return result;
+    }
+
+    public OtpErlangObject encode(final int index, final Object arg)
+            throws SignatureException {
+        return encoders[index].encode(arg);
+    }
+
+    @Override
+    public String toString() {
+        return signature;
+    }
+
+    private interface Encoder {
+        OtpErlangObject encode(Object obj) throws SignatureException;
+    }
+
+    private static Encoder compile(final Signature type) {
+        switch (type.kind) {
+        case 'x':
+            return obj -> {
+                if (obj instanceof String) {
+                    return new OtpErlangString((String) obj);
+                }
+                if (obj instanceof OtpErlangAtom || obj instanceof OtpErlangString
+                        || obj instanceof OtpErlangTuple
+                        || obj instanceof OtpErlangBinary
+                        || obj instanceof OtpErlangPid || obj instanceof OtpErlangRef) {
+                    return (OtpErlangObject) obj;
+                }
+                return TypeConverter.java2erlang(obj, type);
+            };
+        case 's':
+            return obj -> {
+                if (obj instanceof String) {
+                    return new OtpErlangString((String) obj);
+                }
+                return TypeConverter.java2erlang(obj, type);
+            };
+        case 'a':
+            return obj -> {
+                if (obj instanceof String) {
+                    return new OtpErlangAtom((String) obj);
+                }
+                return TypeConverter.java2erlang(obj, type);
+            };
+        case 'b':
+            return obj -> {
+                if (obj instanceof OtpErlangBinary) {
+                    return (OtpErlangBinary) obj;
+                }
+                if (obj instanceof byte[]) {
+                    return new OtpErlangBinary(obj);
+                }
+                return TypeConverter.java2erlang(obj, type);
+            };
+        case 'i':
+            return obj -> {
+                if (obj instanceof Integer || obj instanceof Long) {
+                    return new OtpErlangLong(((Number) obj).longValue());
+                }
+                return TypeConverter.java2erlang(obj, type);
+            };
+        case 'd':
+            return obj -> {
+                if (obj instanceof Double) {
+                    return new OtpErlangDouble((Double) obj);
+                }
+                return TypeConverter.java2erlang(obj, type);
+            };
+        case 'o':
+            return obj -> {
+                if (obj instanceof Boolean) {
+                    return new OtpErlangAtom((Boolean) obj ? "true" : "false");
+                }
+                return TypeConverter.java2erlang(obj, type);
+            };
+        case 'l':
+            final Encoder element = RpcSignature.compile(type.content[0]);
+            return obj -> {
+                if (obj instanceof Collection<?>) {
+                    final Object[] v = ((Collection<?>) obj).toArray();
+                    final OtpErlangObject[] vv = new OtpErlangObject[v.length];
+                    for (int i = 0; i < v.length; i++) {
+                        vv[i] = element.encode(v[i]);
+                    }
+                    return new OtpErlangList(vv);
+                }
+                return TypeConverter.java2erlang(obj, type);
+            };
+        default:
+            return obj -> TypeConverter.java2erlang(obj, type);
+        }
+    }
+}
@@ -9,13 +9,13 @@
 package org.erlide.util.erlang;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Signature {
-    private static final Map<String, Signature[]> CACHE = new HashMap<>();
-    private static boolean useCache = true;
+    private static final Map<String, Signature[]> CACHE = new ConcurrentHashMap<>();
+    private static volatile boolean useCache = true;
 
     public char kind = 'x';
     public Signature[] content;
@@ -48,7 +48,7 @@ public class Signature {
         return kind + res.toString();
     }
 
-    public static synchronized Signature[] parse(final String signature)
+    public static Signature[] parse(final String signature)
             throws SignatureException {
         if (signature == null) {
             return null;
@@ -12,7 +12,7 @@ public class SignatureException extends Exception {
 
     private static final long serialVersionUID = -5143914414424005061L;
 
-    public SignatureException(final Exception e) {
+    public SignatureException(final Throwable e) {
         super(e);
     }
 
@@ -8,8 +8,12 @@
  *******************************************************************************/
 package org.erlide.util.erlang;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Collection;
@@ -152,6 +156,47 @@ public final class TypeConverter {
 
     }
 
+    /**
+     * The static <code>fromErlangObject(OtpErlangObject)</code> method of each class
+     * that has one, looked up once per class.
+     */
+    private static final ClassValue<MethodHandle> FROM_ERLANG =
+            new ClassValue<MethodHandle>() {
+                @Override
+                protected MethodHandle computeValue(final Class<?> cls) {
+                    return TypeConverter.findFromErlangObject(cls);
+                }
+            };
+
+    private static MethodHandle findFromErlangObject(final Class<?> cls) {
+        try {
+            final Method method = cls.getMethod("fromErlangObject",
+                    OtpErlangObject.class);
+            if (!Modifier.isStatic(method.getModifiers())) {
+                // can't be called, say so when it is
+                return MethodHandles.insertArguments(MethodHandles.lookup().findStatic(
+                        TypeConverter.class, "notStatic", MethodType.methodType(
+                                Object.class, Class.class, OtpErlangObject.class)),
+                        0, cls);
+            }
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method).asType(
+                    MethodType.methodType(Object.class, OtpErlangObject.class));
+        } catch (final NoSuchMethodException e) {
+            return null;
+        } catch (final IllegalAccessException e) {
+            ErlLogger.warn(e);
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static Object notStatic(final Class<?> cls, final OtpErlangObject obj)
+            throws SignatureException {
+        throw new SignatureException(
+                "fromErlangObject is not static in " + cls.getCanonicalName());
+    }
+
     @SuppressWarnings("boxing")
     public static Object erlang2java(final OtpErlangObject obj, final Class<?> cls)
             throws SignatureException {
@@ -160,14 +205,15 @@ public final class TypeConverter {
                 return obj;
             }
             // if the conversion method exists, use it
-            try {
-                final Method method = cls.getMethod("fromErlangObject",
-                        OtpErlangObject.class);
-                method.setAccessible(true);
-                final Object o = method.invoke(null, obj);
-                return o;
-            } catch (final NoSuchMethodException e) {
-                // ignore, continue
+            final MethodHandle fromErlang = TypeConverter.FROM_ERLANG.get(cls);
+            if (fromErlang != null) {
+                try {
+                    return fromErlang.invokeExact(obj);
+                } catch (final SignatureException | Error e) {
+                    throw e;
+                } catch (final Throwable e) {
+                    throw new SignatureException(e);
+                }
             }
 
             if (cls.isArray()) {
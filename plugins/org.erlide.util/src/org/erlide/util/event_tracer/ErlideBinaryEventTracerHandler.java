@@ -0,0 +1,288 @@
+package org.erlide.util.event_tracer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.erlide.util.ErlLogger;
+
+/**
+ * Traces events to a binary file, cheap enough to trace every operation.
+ *
+ * The file is a sequence of {@link #RECORD_SIZE} byte records:
+ *
+ * <pre>
+ * kind:8, 0:24, name:32, id:32, thread:32, millis:64, nanos:64
+ * </pre>
+ *
+ * Names (operations, backends, statuses) are interned: the first time a name is used,
+ * a {@link #STRING} record with the name's index and its length in bytes is written,
+ * followed by as many records as needed to hold the name in UTF-8; later records refer
+ * to it by index. The file is appended to through a memory mapping that grows in
+ * chunks, the unused end of the last chunk is zero and a record of kind 0 ends the
+ * file. See {@link ErlideEventLogReader}.
+ */
+public class ErlideBinaryEventTracerHandler extends ErlideEventTracerHandler {
+
+    public static final int RECORD_SIZE = 32;
+
+    public static final byte SESSION = 1;
+    public static final byte RESET = 2;
+    public static final byte CRASH = 3;
+    public static final byte STATUS = 4;
+    public static final byte OPERATION_START = 5;
+    public static final byte OPERATION_END = 6;
+    public static final byte STRING = 7;
+
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    /*
+     * Writers reserve their records by advancing next and fill them in through the
+     * chunk that holds them, so operations on different threads don't wait for each
+     * other. Only mapping a chunk and interning a new name take the trace's lock.
+     */
+    private static final class Trace {
+        final FileChannel channel;
+        final AtomicLong next = new AtomicLong();
+        final Map<String, Integer> names = new ConcurrentHashMap<>();
+        final Map<Long, Chunk> chunks = new ConcurrentHashMap<>();
+        boolean closed;
+
+        Trace(final FileChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private static final class Chunk {
+        final MappedByteBuffer buffer;
+        // records not written yet; the chunk is dropped when all are
+        final AtomicInteger unwritten = new AtomicInteger(
+                ErlideBinaryEventTracerHandler.CHUNK_SIZE
+                        / ErlideBinaryEventTracerHandler.RECORD_SIZE);
+
+        Chunk(final MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private volatile Trace trace;
+
+    public ErlideBinaryEventTracerHandler(final String path) {
+        super(path);
+    }
+
+    @Override
+    public synchronized void handle(final ErlideEvent event) {
+        if (event instanceof ErlideSessionEvent) {
+            final ErlideSessionEvent session = (ErlideSessionEvent) event;
+            final String name = getSessionFileName(session, ".bin");
+            if (name == null) {
+                return;
+            }
+            try {
+                startSession(new File(name), session);
+            } catch (final IOException e) {
+                ErlLogger.warn("Could not create event trace log file: %s", name);
+            }
+            return;
+        }
+        final Trace t = trace;
+        if (t == null) {
+            return;
+        } else if (event instanceof ErlideResetEvent) {
+            write(t, ErlideBinaryEventTracerHandler.RESET, 0, 0, event.getTimestamp());
+        } else if (event instanceof ErlideCrashEvent) {
+            write(t, ErlideBinaryEventTracerHandler.CRASH,
+                    intern(t, ((ErlideCrashEvent) event).getBackend()), 0,
+                    event.getTimestamp());
+        } else if (event instanceof ErlideStatusEvent) {
+            write(t, ErlideBinaryEventTracerHandler.STATUS,
+                    intern(t, String.valueOf(((ErlideStatusEvent) event).getStatus())),
+                    0, event.getTimestamp());
+        } else if (event instanceof ErlideOperationEvent) {
+            final ErlideOperationEvent op = (ErlideOperationEvent) event;
+            write(t, op instanceof ErlideOperationStartEvent
+                    ? ErlideBinaryEventTracerHandler.OPERATION_START
+                    : ErlideBinaryEventTracerHandler.OPERATION_END,
+                    intern(t, op.operation), Integer.parseUnsignedInt(op.id, 16),
+                    event.getTimestamp());
+        }
+    }
+
+    @Override
+    public void operationStart(final String operation, final Object id) {
+        final Trace t = trace;
+        if (t != null) {
+            write(t, ErlideBinaryEventTracerHandler.OPERATION_START,
+                    intern(t, operation), System.identityHashCode(id),
+                    System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public void operationEnd(final String operation, final Object id) {
+        final Trace t = trace;
+        if (t != null) {
+            write(t, ErlideBinaryEventTracerHandler.OPERATION_END, intern(t, operation),
+                    System.identityHashCode(id), System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public synchronized void dispose() {
+        close();
+    }
+
+    synchronized void open(final File file) throws IOException {
+        close();
+        file.getParentFile().mkdirs();
+        trace = new Trace(FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Trace to a new file, starting with a {@link #SESSION} record that has the
+     * session's workspace as its id.
+     */
+    synchronized void startSession(final File file, final ErlideSessionEvent session)
+            throws IOException {
+        open(file);
+        write(trace, ErlideBinaryEventTracerHandler.SESSION, 0, session.workspace,
+                session.getTimestamp());
+    }
+
+    private void close() {
+        final Trace t = trace;
+        if (t == null) {
+            return;
+        }
+        trace = null;
+        synchronized (t) {
+            t.closed = true;
+        }
+        try {
+            for (final Chunk chunk : t.chunks.values()) {
+                chunk.buffer.force();
+            }
+            t.chunks.clear();
+            // may fail while a mapping is alive; the reader stops at the zeroed tail.
+            // A writer still busy with its record now leaves a zeroed one behind.
+            try {
+                t.channel.truncate(t.next.get());
+            } catch (final IOException e) {
+            }
+            t.channel.close();
+        } catch (final IOException e) {
+            ErlLogger.warn(e);
+        }
+    }
+
+    private static int intern(final Trace t, final String name) {
+        final Integer index = t.names.get(name);
+        if (index != null) {
+            return index;
+        }
+        synchronized (t) {
+            final Integer again = t.names.get(name);
+            if (again != null) {
+                return again;
+            }
+            final int result = t.names.size();
+            final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            final int size = ErlideBinaryEventTracerHandler.RECORD_SIZE;
+            final int records = (bytes.length + size - 1) / size;
+            // all the name's records in one go, before anyone can refer to it
+            long pos = t.next.getAndAdd((1 + records) * (long) size);
+            write(t, pos, ErlideBinaryEventTracerHandler.STRING, result, bytes.length,
+                    0);
+            for (int i = 0; i < bytes.length; i += size) {
+                pos += size;
+                final Chunk chunk = ErlideBinaryEventTracerHandler.chunk(t, pos);
+                if (chunk != null) {
+                    final ByteBuffer record = chunk.buffer.duplicate();
+                    record.position(
+                            (int) (pos % ErlideBinaryEventTracerHandler.CHUNK_SIZE));
+                    record.put(bytes, i, Math.min(size, bytes.length - i));
+                    ErlideBinaryEventTracerHandler.written(t, pos, chunk);
+                }
+            }
+            t.names.put(name, result);
+            return result;
+        }
+    }
+
+    private static void write(final Trace t, final byte kind, final int name,
+            final int id, final long millis) {
+        write(t, t.next.getAndAdd(ErlideBinaryEventTracerHandler.RECORD_SIZE), kind,
+                name, id, millis);
+    }
+
+    private static void write(final Trace t, final long pos, final byte kind,
+            final int name, final int id, final long millis) {
+        final Chunk chunk = ErlideBinaryEventTracerHandler.chunk(t, pos);
+        if (chunk == null) {
+            return;
+        }
+        final ByteBuffer buffer = chunk.buffer;
+        final int at = (int) (pos % ErlideBinaryEventTracerHandler.CHUNK_SIZE);
+        buffer.putInt(at + 4, name);
+        buffer.putInt(at + 8, id);
+        buffer.putInt(at + 12, (int) Thread.currentThread().getId());
+        buffer.putLong(at + 16, millis);
+        buffer.putLong(at + 24, System.nanoTime());
+        buffer.put(at, kind);
+        ErlideBinaryEventTracerHandler.written(t, pos, chunk);
+    }
+
+    /**
+     * The mapped chunk holding the record at pos, mapping it if it isn't yet. Null if
+     * the trace is closed.
+     */
+    private static Chunk chunk(final Trace t, final long pos) {
+        final long index = pos / ErlideBinaryEventTracerHandler.CHUNK_SIZE;
+        final Chunk chunk = t.chunks.get(index);
+        if (chunk != null) {
+            return chunk;
+        }
+        synchronized (t) {
+            if (t.closed) {
+                return null;
+            }
+            try {
+                return t.chunks.computeIfAbsent(index, i -> {
+                    try {
+                        return new Chunk(t.channel.map(FileChannel.MapMode.READ_WRITE,
+                                i * ErlideBinaryEventTracerHandler.CHUNK_SIZE,
+                                ErlideBinaryEventTracerHandler.CHUNK_SIZE));
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (final UncheckedIOException e) {
+                ErlLogger.warn(e.getCause());
+                t.closed = true;
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Drop the chunk once all its records are written, so that only the few chunks
+     * being written to stay mapped.
+     */
+    private static void written(final Trace t, final long pos, final Chunk chunk) {
+        if (chunk.unwritten.decrementAndGet() == 0) {
+            t.chunks.remove(pos / ErlideBinaryEventTracerHandler.CHUNK_SIZE);
+        }
+    }
+}
@@ -21,4 +21,8 @@ public class ErlideCrashEvent extends ErlideEvent {
         _builder.newLineIfNotEmpty();
         return _builder.toString();
     }
+
+    public String getBackend() {
+        return backend;
+    }
 }
@@ -0,0 +1,110 @@
+package org.erlide.util.event_tracer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads the files written by {@link ErlideBinaryEventTracerHandler}.
+ */
+public final class ErlideEventLogReader {
+
+    public static final class Record {
+        public final byte kind;
+        /** the interned name, or null for sessions and resets */
+        public final String name;
+        /** the workspace hash for sessions, the operation id for operations */
+        public final int id;
+        public final int thread;
+        public final long millis;
+        public final long nanos;
+
+        Record(final byte kind, final String name, final int id, final int thread,
+                final long millis, final long nanos) {
+            this.kind = kind;
+            this.name = name;
+            this.id = id;
+            this.thread = thread;
+            this.millis = millis;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public String toString() {
+            return millis + " " + kind + " " + name + " " + Integer.toHexString(id);
+        }
+    }
+
+    private ErlideEventLogReader() {
+    }
+
+    /**
+     * Pass the records of the file to the consumer, in order. String records are
+     * resolved and not passed on.
+     */
+    public static void read(final File file, final Consumer<Record> consumer)
+            throws IOException {
+        final List<String> names = new ArrayList<>();
+        final byte[] record = new byte[ErlideBinaryEventTracerHandler.RECORD_SIZE];
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            for (;;) {
+                try {
+                    in.readFully(record);
+                } catch (final EOFException e) {
+                    return;
+                }
+                final byte kind = record[0];
+                if (kind == 0) {
+                    return;
+                }
+                final int name = ErlideEventLogReader.getInt(record, 4);
+                final int id = ErlideEventLogReader.getInt(record, 8);
+                if (kind == ErlideBinaryEventTracerHandler.STRING) {
+                    final int size = ErlideBinaryEventTracerHandler.RECORD_SIZE;
+                    final byte[] bytes = new byte[(id + size - 1) / size * size];
+                    try {
+                        in.readFully(bytes);
+                    } catch (final EOFException e) {
+                        return;
+                    }
+                    while (names.size() <= name) {
+                        names.add(null);
+                    }
+                    names.set(name, new String(bytes, 0, id, StandardCharsets.UTF_8));
+                    continue;
+                }
+                final boolean named = kind != ErlideBinaryEventTracerHandler.SESSION
+                        && kind != ErlideBinaryEventTracerHandler.RESET;
+                consumer.accept(new Record(kind,
+                        named && name < names.size() ? names.get(name) : null, id,
+                        ErlideEventLogReader.getInt(record, 12),
+                        ErlideEventLogReader.getLong(record, 16),
+                        ErlideEventLogReader.getLong(record, 24)));
+            }
+        }
+    }
+
+    public static List<Record> read(final File file) throws IOException {
+        final List<Record> result = new ArrayList<>();
+        ErlideEventLogReader.read(file, result::add);
+        return result;
+    }
+
+    private static int getInt(final byte[] b, final int i) {
+        return (b[i] & 0xff) << 24 | (b[i + 1] & 0xff) << 16 | (b[i + 2] & 0xff) << 8
+                | b[i + 3] & 0xff;
+    }
+
+    private static long getLong(final byte[] b, final int i) {
+        return (long) ErlideEventLogReader.getInt(b, i) << 32
+                | ErlideEventLogReader.getInt(b, i + 4) & 0xffffffffL;
+    }
+}
@@ -0,0 +1,142 @@
+package org.erlide.util.event_tracer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latency distributions of the operations in a binary event trace, see
+ * {@link ErlideBinaryEventTracerHandler}. An operation's end is paired with the last
+ * unfinished start with the same name and id.
+ *
+ * <pre>
+ * java -cp ... org.erlide.util.event_tracer.ErlideEventLogSummary trace.bin
+ * </pre>
+ */
+public final class ErlideEventLogSummary {
+
+    public static final class Operation {
+        public final String name;
+        private long[] durations = new long[16];
+        private int count;
+        private boolean sorted;
+        private int unmatched;
+
+        Operation(final String name) {
+            this.name = name;
+        }
+
+        void add(final long nanos) {
+            if (count == durations.length) {
+                durations = Arrays.copyOf(durations, count * 2);
+            }
+            durations[count++] = nanos;
+            sorted = false;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * The number of starts without an end and of ends without a start.
+         */
+        public int getUnmatched() {
+            return unmatched;
+        }
+
+        /**
+         * The duration in nanoseconds below which the given fraction of the operations
+         * finished, e.g. 0.5 for the median.
+         */
+        public long getPercentile(final double fraction) {
+            if (count == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(durations, 0, count);
+                sorted = true;
+            }
+            final int i = (int) Math.ceil(fraction * count) - 1;
+            return durations[Math.max(0, Math.min(count - 1, i))];
+        }
+
+        public long getMean() {
+            long sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += durations[i];
+            }
+            return count == 0 ? 0 : sum / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-40s %8d %10.3f %10.3f %10.3f %10.3f %10.3f %6d", name,
+                    count, getPercentile(0) / 1e6, getPercentile(0.5) / 1e6,
+                    getPercentile(0.9) / 1e6, getPercentile(0.99) / 1e6,
+                    getPercentile(1) / 1e6, unmatched);
+        }
+    }
+
+    private final Map<String, Operation> operations = new TreeMap<>();
+
+    private ErlideEventLogSummary() {
+    }
+
+    public static ErlideEventLogSummary summarize(final File file) throws IOException {
+        final ErlideEventLogSummary result = new ErlideEventLogSummary();
+        final Map<String, Map<Integer, Deque<Long>>> started = new HashMap<>();
+        ErlideEventLogReader.read(file, record -> {
+            if (record.kind != ErlideBinaryEventTracerHandler.OPERATION_START
+                    && record.kind != ErlideBinaryEventTracerHandler.OPERATION_END) {
+                return;
+            }
+            final Operation op = result.operations.computeIfAbsent(record.name,
+                    Operation::new);
+            final Deque<Long> starts = started
+                    .computeIfAbsent(record.name, n -> new HashMap<>())
+                    .computeIfAbsent(record.id, n -> new ArrayDeque<>());
+            if (record.kind == ErlideBinaryEventTracerHandler.OPERATION_START) {
+                starts.push(record.nanos);
+            } else if (starts.isEmpty()) {
+                op.unmatched++;
+            } else {
+                op.add(record.nanos - starts.pop());
+            }
+        });
+        for (final Map.Entry<String, Map<Integer, Deque<Long>>> e : started.entrySet()) {
+            for (final Deque<Long> starts : e.getValue().values()) {
+                result.operations.get(e.getKey()).unmatched += starts.size();
+            }
+        }
+        return result;
+    }
+
+    public Map<String, Operation> getOperations() {
+        return operations;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder();
+        result.append(String.format("%-40s %8s %10s %10s %10s %10s %10s %6s%n",
+                "operation", "count", "min ms", "p50 ms", "p90 ms", "p99 ms", "max ms",
+                "open"));
+        for (final Operation op : operations.values()) {
+            result.append(op).append(System.lineSeparator());
+        }
+        return result.toString();
+    }
+
+    public static void main(final String[] args) throws IOException {
+        for (final String arg : args) {
+            System.out.println(arg);
+            System.out.println(ErlideEventLogSummary.summarize(new File(arg)));
+        }
+    }
+}
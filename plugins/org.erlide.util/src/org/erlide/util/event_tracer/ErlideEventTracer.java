@@ -13,6 +13,8 @@ public class ErlideEventTracer implements IDisposable {
         if (tracerPath == null) {
             final NullEventHandler _nullEventHandler = new NullEventHandler();
             handler = _nullEventHandler;
+        } else if ("binary".equals(System.getProperty("erlide.event_tracer.format"))) {
+            handler = new ErlideBinaryEventTracerHandler(tracerPath);
         } else {
             final ErlideEventTracerHandler _erlideEventTracerHandler = new ErlideEventTracerHandler(
                     tracerPath);
@@ -41,17 +43,11 @@ public class ErlideEventTracer implements IDisposable {
     }
 
     public void traceOperationStart(final String operation, final Object id) {
-        final String _hexString = Integer.toHexString(System.identityHashCode(id));
-        final ErlideOperationStartEvent _erlideOperationStartEvent = new ErlideOperationStartEvent(
-                operation, _hexString);
-        trace(_erlideOperationStartEvent);
+        handler.operationStart(operation, id);
     }
 
     public void traceOperationEnd(final String operation, final Object id) {
-        final String _hexString = Integer.toHexString(System.identityHashCode(id));
-        final ErlideOperationEndEvent _erlideOperationEndEvent = new ErlideOperationEndEvent(
-                operation, _hexString);
-        trace(_erlideOperationEndEvent);
+        handler.operationEnd(operation, id);
     }
 
     public void traceOperationStart(final Object id) {
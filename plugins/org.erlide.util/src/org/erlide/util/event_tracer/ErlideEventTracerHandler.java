@@ -39,19 +39,34 @@ public class ErlideEventTracerHandler implements IDisposable {
         new File(_portableString).mkdirs();
     }
 
-    protected void _handle(final ErlideSessionEvent event) {
+    /**
+     * The file to trace a session to, or null if tracing is disabled.
+     */
+    protected String getSessionFileName(final ErlideSessionEvent event,
+            final String extension) {
         try {
             if (machine == null) {
                 machine = InetAddress.getLocalHost().getCanonicalHostName();
             }
             if (storagePath == null) {
-                return;
+                return null;
             }
             final long _timestamp = event.getTimestamp();
             final Date date = new Date(_timestamp);
             final String sdate = formatter.format(date);
-            final String name = storagePath.append(Integer.toHexString(event.workspace))
-                    .append(sdate + ".log").toPortableString();
+            return storagePath.append(Integer.toHexString(event.workspace))
+                    .append(sdate + extension).toPortableString();
+        } catch (final Throwable _e) {
+            throw Exceptions.sneakyThrow(_e);
+        }
+    }
+
+    protected void _handle(final ErlideSessionEvent event) {
+        try {
+            final String name = getSessionFileName(event, ".log");
+            if (name == null) {
+                return;
+            }
             try {
                 final FileWriter _fileWriter = new FileWriter(name, false);
                 final BufferedWriter _bufferedWriter = new BufferedWriter(_fileWriter);
@@ -92,6 +107,16 @@ public class ErlideEventTracerHandler implements IDisposable {
         }
     }
 
+    public void operationStart(final String operation, final Object id) {
+        handle(new ErlideOperationStartEvent(operation,
+                Integer.toHexString(System.identityHashCode(id))));
+    }
+
+    public void operationEnd(final String operation, final Object id) {
+        handle(new ErlideOperationEndEvent(operation,
+                Integer.toHexString(System.identityHashCode(id))));
+    }
+
     public void handle(final ErlideEvent event) {
         if (event instanceof ErlideSessionEvent) {
             _handle((ErlideSessionEvent) event);
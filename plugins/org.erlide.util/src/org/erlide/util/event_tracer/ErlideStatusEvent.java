@@ -22,4 +22,8 @@ public class ErlideStatusEvent extends ErlideEvent {
         _builder.newLineIfNotEmpty();
         return _builder.toString();
     }
+
+    public Object getStatus() {
+        return status;
+    }
 }
@@ -10,6 +10,14 @@ public class NullEventHandler extends ErlideEventTracerHandler {
     public void handle(final ErlideEvent event) {
     }
 
+    @Override
+    public void operationStart(final String operation, final Object id) {
+    }
+
+    @Override
+    public void operationEnd(final String operation, final Object id) {
+    }
+
     @Override
     public void dispose() {
     }
@@ -2,6 +2,7 @@ package org.erlide.engine.model.erlang;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import java.io.File;
 
@@ -136,4 +137,39 @@ public class ErlModelCacheTest {
         }
     }
 
+    @Test
+    public void checkThatModuleLookupsFollowModuleChanges() throws Exception {
+        IErlProject project = null;
+        try {
+            // given
+            // a project where a module has been searched for, so that its modules
+            // are indexed
+            final String projectName = "testprojectc";
+            project = ErlideTestUtils.createErlProject(projectName);
+            final IErlModule module = ErlideTestUtils.createModule(project, "c1.erl",
+                    "-module(c1).\n");
+            final IErlElementLocator model = ErlangEngine.getInstance().getModel();
+            assertEquals(module, model.findModuleFromProject(project, "c1", null,
+                    IErlElementLocator.Scope.PROJECT_ONLY));
+            // when
+            // adding a module and deleting the first one
+            final IErlModule module2 = ErlideTestUtils.createModule(project, "c2.erl",
+                    "-module(c2).\n");
+            ErlideTestUtils.deleteModule(module);
+            // then
+            // the new module should be found, by name and by path, and the
+            // deleted one should not
+            assertEquals(module2, model.findModuleFromProject(project, "c2", null,
+                    IErlElementLocator.Scope.PROJECT_ONLY));
+            assertEquals(module2, model.findModuleFromProject(project, null,
+                    module2.getFilePath(), IErlElementLocator.Scope.PROJECT_ONLY));
+            assertNull(model.findModuleFromProject(project, "c1", null,
+                    IErlElementLocator.Scope.PROJECT_ONLY));
+        } finally {
+            if (project != null && project.exists()) {
+                ErlideTestUtils.deleteProject(project);
+            }
+        }
+    }
+
 }
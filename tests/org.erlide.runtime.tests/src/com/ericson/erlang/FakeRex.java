@@ -0,0 +1,84 @@
+package com.ericson.erlang;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangPid;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpNode;
+
+/**
+ * A mailbox registered as rex on a node, answering gen_server calls like rex does, so
+ * that rpcs can be tested without an Erlang installation. Batches made with
+ * lists:zipwith/3 get one answer per call. It stops when the node is closed.
+ */
+public class FakeRex {
+
+    public interface Answer {
+        /**
+         * The result of calling module:function(args), or null for no reply. Calls in
+         * a batch must all be answered.
+         */
+        OtpErlangObject apply(String module, String function, OtpErlangList args);
+    }
+
+    private final OtpMbox mbox;
+    private final Answer answer;
+    // the number of calls in each batch, in order
+    private final List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+
+    public FakeRex(final OtpNode node, final Answer answer) {
+        this.answer = answer;
+        mbox = node.createMbox("rex");
+        final Thread thread = new Thread(this::serve, "rex@" + node.node());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public List<Integer> getBatchSizes() {
+        return batches;
+    }
+
+    private void serve() {
+        try {
+            while (true) {
+                final OtpErlangTuple msg = (OtpErlangTuple) mbox.receive();
+                final OtpErlangTuple from = (OtpErlangTuple) msg.elementAt(1);
+                final OtpErlangTuple call = (OtpErlangTuple) msg.elementAt(2);
+                final String module = ((OtpErlangAtom) call.elementAt(1)).atomValue();
+                final String function = ((OtpErlangAtom) call.elementAt(2)).atomValue();
+                final OtpErlangList args = (OtpErlangList) call.elementAt(3);
+                final OtpErlangObject result = "lists".equals(module)
+                        && "zipwith".equals(function) ? zipWith(args)
+                                : answer.apply(module, function, args);
+                if (result != null) {
+                    mbox.send((OtpErlangPid) from.elementAt(0), new OtpErlangTuple(
+                            new OtpErlangObject[] { from.elementAt(1), result }));
+                }
+            }
+        } catch (final Exception e) {
+            // node closed
+        }
+    }
+
+    /*
+     * Each call in a batch is [Node, M, F, Args].
+     */
+    private OtpErlangObject zipWith(final OtpErlangList args) {
+        final OtpErlangList calls = (OtpErlangList) args.elementAt(2);
+        batches.add(calls.arity());
+        final OtpErlangObject[] results = new OtpErlangObject[calls.arity()];
+        for (int i = 0; i < results.length; i++) {
+            final OtpErlangList call = (OtpErlangList) calls.elementAt(i);
+            results[i] = answer.apply(((OtpErlangAtom) call.elementAt(1)).atomValue(),
+                    ((OtpErlangAtom) call.elementAt(2)).atomValue(),
+                    (OtpErlangList) call.elementAt(3));
+        }
+        return new OtpErlangList(results);
+    }
+}
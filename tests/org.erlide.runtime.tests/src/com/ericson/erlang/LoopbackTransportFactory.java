@@ -0,0 +1,94 @@
+package com.ericson.erlang;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ericsson.otp.erlang.OtpGenericTransportFactory;
+import com.ericsson.otp.erlang.OtpLocalNode;
+import com.ericsson.otp.erlang.OtpNioTransportFactory;
+import com.ericsson.otp.erlang.OtpNode;
+import com.ericsson.otp.erlang.OtpPeer;
+import com.ericsson.otp.erlang.OtpServerTransport;
+import com.ericsson.otp.erlang.OtpSocketTransportFactory;
+import com.ericsson.otp.erlang.OtpTransport;
+import com.ericsson.otp.erlang.OtpTransportFactory;
+
+/**
+ * Connects nodes in the same JVM over TCP loopback, without Epmd: each node listens
+ * on an ephemeral port that is looked up here by node name. The sockets are made by
+ * the given factory, so that any TCP transport can be tested without an Erlang
+ * installation.
+ */
+public class LoopbackTransportFactory extends OtpGenericTransportFactory {
+
+    private final OtpTransportFactory transports;
+    private final Map<String, Integer> ports;
+
+    public LoopbackTransportFactory() {
+        this(new OtpSocketTransportFactory());
+    }
+
+    public LoopbackTransportFactory(final OtpTransportFactory transports) {
+        this(transports, new ConcurrentHashMap<String, Integer>());
+    }
+
+    private LoopbackTransportFactory(final OtpTransportFactory transports,
+            final Map<String, Integer> ports) {
+        this.transports = transports;
+        this.ports = ports;
+    }
+
+    /**
+     * A factory whose nodes can talk with the nodes of this one, but make their
+     * sockets with the given factory.
+     */
+    public LoopbackTransportFactory using(final OtpTransportFactory other) {
+        return new LoopbackTransportFactory(other, ports);
+    }
+
+    public OtpNode createNode(final String name) throws IOException {
+        return new OtpNode(name + "@localhost", "cookie", this);
+    }
+
+    @Override
+    public OtpTransport createTransport(final OtpPeer peer) throws IOException {
+        final Integer port = ports.get(peer.node());
+        if (port == null) {
+            throw new IOException("No node " + peer.node());
+        }
+        return transports.createTransport(InetAddress.getLoopbackAddress(), port);
+    }
+
+    @Override
+    public OtpServerTransport createServerTransport(final OtpLocalNode node)
+            throws IOException {
+        final OtpServerTransport transport = transports.createServerTransport(0);
+        final String name = node.node();
+        ports.put(name, transport.getLocalPort());
+        return new OtpServerTransport() {
+            @Override
+            public int getLocalPort() {
+                return transport.getLocalPort();
+            }
+
+            @Override
+            public OtpTransport accept() throws IOException {
+                return transport.accept();
+            }
+
+            @Override
+            public void close() throws IOException {
+                ports.remove(name);
+                transport.close();
+            }
+        };
+    }
+
+    public void close() {
+        if (transports instanceof OtpNioTransportFactory) {
+            ((OtpNioTransportFactory) transports).close();
+        }
+    }
+}
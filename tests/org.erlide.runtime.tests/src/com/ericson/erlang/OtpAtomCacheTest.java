@@ -0,0 +1,110 @@
+package com.ericson.erlang;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpNode;
+
+/*
+ * Jinterface nodes use the distribution header atom cache between them, so
+ * everything sent here goes through a header and atom cache references.
+ */
+public class OtpAtomCacheTest {
+
+    private LoopbackTransportFactory factory;
+    private OtpNode a;
+    private OtpNode b;
+    private OtpMbox sender;
+    private OtpMbox receiver;
+
+    @Before
+    public void startNodes() throws Exception {
+        factory = new LoopbackTransportFactory();
+        a = factory.createNode("cache_a");
+        b = factory.createNode("cache_b");
+        sender = a.createMbox();
+        receiver = b.createMbox("receiver");
+    }
+
+    @After
+    public void stopNodes() {
+        a.close();
+        b.close();
+        factory.close();
+    }
+
+    private void assertRoundTrip(final OtpErlangObject msg) throws Exception {
+        sender.send("receiver", "cache_b@localhost", msg);
+        final OtpErlangObject received = receiver.receive(5000);
+        assertThat(received).isEqualTo(msg);
+        receiver.send(sender.self(), received);
+        assertThat(sender.receive(5000)).isEqualTo(msg);
+    }
+
+    private static OtpErlangObject atoms(final String prefix, final int from,
+            final int to) {
+        final OtpErlangObject[] atoms = new OtpErlangObject[to - from];
+        for (int i = from; i < to; i++) {
+            atoms[i - from] = new OtpErlangAtom(prefix + i);
+        }
+        return new OtpErlangList(atoms);
+    }
+
+    private static String repeat(final String s, final int n) {
+        final char[] c = new char[n];
+        Arrays.fill(c, s.charAt(0));
+        return new String(c);
+    }
+
+    @Test
+    public void repeatedAtomsAreReadBack() throws Exception {
+        final OtpErlangObject msg = new OtpErlangTuple(new OtpErlangObject[] {
+                new OtpErlangAtom("ok"), new OtpErlangAtom("ok"),
+                new OtpErlangAtom("true"), atoms("a", 0, 10) });
+        // the second time, the atoms are references to filled cache slots
+        assertRoundTrip(msg);
+        assertRoundTrip(msg);
+        assertRoundTrip(new OtpErlangTuple(new OtpErlangObject[] {
+                new OtpErlangAtom("ok"), new OtpErlangAtom("other") }));
+    }
+
+    @Test
+    public void longAndUtf8AtomsAreReadBack() throws Exception {
+        // 255 bytes is the longest atom text that is cached
+        final OtpErlangAtom longest = new OtpErlangAtom(repeat("x", 255));
+        // 255 characters, but too many bytes for the cache
+        final OtpErlangAtom longUtf8 = new OtpErlangAtom(repeat("å", 255));
+        final OtpErlangAtom utf8 = new OtpErlangAtom("héllo_世界");
+        final OtpErlangAtom empty = new OtpErlangAtom("");
+        final OtpErlangObject msg = new OtpErlangTuple(
+                new OtpErlangObject[] { longest, longUtf8, utf8, empty });
+        assertRoundTrip(msg);
+        assertRoundTrip(msg);
+    }
+
+    @Test
+    public void manyAtomsInOneMessageAreReadBack() throws Exception {
+        // more than the 255 references a header can hold
+        assertRoundTrip(atoms("many_", 0, 600));
+        assertRoundTrip(atoms("many_", 300, 900));
+    }
+
+    @Test
+    public void slotsAreReusedAcrossMessages() throws Exception {
+        // more atoms than slots, so most slots get refilled, some more than once
+        for (int i = 0; i < 5000; i += 200) {
+            assertRoundTrip(atoms("slot_", i, i + 200));
+        }
+        assertRoundTrip(atoms("slot_", 0, 200));
+    }
+}
@@ -0,0 +1,80 @@
+package com.ericson.erlang;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangBinary;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpInputStream;
+import com.ericsson.otp.erlang.OtpOutputStream;
+
+public class OtpBinarySliceTest {
+
+    private static final byte[] BYTES = { 1, 2, 3, 4, 5 };
+
+    private static OtpErlangBinary decodeSlice(final OtpErlangObject term)
+            throws Exception {
+        final byte[] encoded = new OtpOutputStream(term).toByteArray();
+        final OtpInputStream in = new OtpInputStream(encoded,
+                OtpInputStream.DECODE_BINARIES_AS_SLICES);
+        final OtpErlangTuple t = (OtpErlangTuple) in.read_any();
+        return (OtpErlangBinary) t.elementAt(1);
+    }
+
+    private static OtpErlangTuple wrap(final OtpErlangBinary bin) {
+        return new OtpErlangTuple(new OtpErlangObject[] {
+                new OtpErlangBinary(new byte[] { 9, 9 }), bin });
+    }
+
+    @Test
+    public void sliceBehavesLikeBinary() throws Exception {
+        final OtpErlangBinary expected = new OtpErlangBinary(BYTES);
+        final OtpErlangBinary slice = decodeSlice(wrap(expected));
+
+        assertThat(slice.size()).isEqualTo(BYTES.length);
+        assertThat(slice).isEqualTo(expected);
+        assertThat(expected).isEqualTo(slice);
+        assertThat(slice.hashCode()).isEqualTo(expected.hashCode());
+        assertThat(slice.binaryValue()).isEqualTo(BYTES);
+    }
+
+    @Test
+    public void sliceIsReencodedUnchanged() throws Exception {
+        final OtpErlangTuple term = wrap(new OtpErlangBinary(BYTES));
+        final OtpErlangBinary slice = decodeSlice(term);
+
+        assertThat(new OtpOutputStream(wrap(slice)).toByteArray())
+                .isEqualTo(new OtpOutputStream(term).toByteArray());
+    }
+
+    @Test
+    public void byteBufferIsReadOnlyView() throws Exception {
+        final OtpErlangBinary slice = decodeSlice(wrap(new OtpErlangBinary(
+                BYTES)));
+        final ByteBuffer buffer = slice.asByteBuffer();
+
+        assertThat(buffer.isReadOnly()).isTrue();
+        assertThat(buffer.remaining()).isEqualTo(BYTES.length);
+        assertThat(buffer.get(0)).isEqualTo((byte) 1);
+    }
+
+    @Test
+    public void binaryValueDoesNotShareReceiveBuffer() throws Exception {
+        final byte[] encoded = new OtpOutputStream(wrap(new OtpErlangBinary(
+                BYTES))).toByteArray();
+        final OtpInputStream in = new OtpInputStream(encoded,
+                OtpInputStream.DECODE_BINARIES_AS_SLICES);
+        final OtpErlangTuple t = (OtpErlangTuple) in.read_any();
+        final OtpErlangBinary slice = (OtpErlangBinary) t.elementAt(1);
+
+        slice.binaryValue()[0] = 42;
+
+        assertThat(encoded).isEqualTo(
+                new OtpOutputStream(wrap(new OtpErlangBinary(BYTES)))
+                        .toByteArray());
+    }
+}
@@ -0,0 +1,314 @@
+package com.ericson.erlang;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangBinary;
+import com.ericsson.otp.erlang.OtpErlangExit;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpNioTransportFactory;
+import com.ericsson.otp.erlang.OtpNode;
+import com.ericsson.otp.erlang.OtpNodeStatus;
+import com.ericsson.otp.erlang.OtpServerTransport;
+import com.ericsson.otp.erlang.OtpSocketTransportFactory;
+import com.ericsson.otp.erlang.OtpTransport;
+import com.ericsson.otp.erlang.OtpTransportFactory;
+
+/*
+ * Jinterface nodes send messages larger than 64 kB in fragments. Fragments of
+ * different messages may be interleaved, but within a message they must arrive
+ * in order, from the one with the distribution header down to id 1.
+ */
+public class OtpFragmentTest {
+
+    private static final int FRAGMENT = 64 * 1024;
+
+    // around one and two fragments, the header takes a few bytes of the first
+    private static final int[] SIZES = { FRAGMENT - 100, FRAGMENT - 10, FRAGMENT,
+            FRAGMENT + 10, 2 * FRAGMENT - 10, 2 * FRAGMENT, 2 * FRAGMENT + 10,
+            1 << 20, 10 };
+
+    private static OtpErlangObject message(final int id, final int size) {
+        final byte[] data = new byte[size];
+        Arrays.fill(data, (byte) id);
+        return new OtpErlangTuple(new OtpErlangObject[] { new OtpErlangLong(id),
+                new OtpErlangBinary(data) });
+    }
+
+    private static void sendSplit(final LoopbackTransportFactory factory)
+            throws Exception {
+        final OtpNode a = factory.createNode("split_a");
+        final OtpNode b = factory.createNode("split_b");
+        try {
+            final OtpMbox sender = a.createMbox();
+            final OtpMbox receiver = b.createMbox("receiver");
+            for (int i = 0; i < SIZES.length; i++) {
+                final OtpErlangObject msg = message(i, SIZES[i]);
+                sender.send("receiver", "split_b@localhost", msg);
+                assertThat(receiver.receive(5000)).isEqualTo(msg);
+                receiver.send(sender.self(), msg);
+                assertThat(sender.receive(5000)).isEqualTo(msg);
+            }
+            // atoms in the last fragments refer to the header in the first one
+            final OtpErlangObject[] atoms = new OtpErlangObject[20000];
+            for (int i = 0; i < atoms.length; i++) {
+                atoms[i] = new OtpErlangAtom("fragment_atom_" + i % 500);
+            }
+            final OtpErlangObject msg = new OtpErlangList(atoms);
+            sender.send("receiver", "split_b@localhost", msg);
+            assertThat(receiver.receive(5000)).isEqualTo(msg);
+        } finally {
+            a.close();
+            b.close();
+            factory.close();
+        }
+    }
+
+    @Test
+    public void splitMessagesAreReassembledOnStreams() throws Exception {
+        sendSplit(new LoopbackTransportFactory());
+    }
+
+    @Test
+    public void splitMessagesAreReassembledOnChannels() throws Exception {
+        sendSplit(new LoopbackTransportFactory(new OtpNioTransportFactory()));
+    }
+
+    /*
+     * a receives from b, whose frames are held back and then written by the test
+     * in whatever order it likes.
+     */
+    private static final class Fixture implements AutoCloseable {
+        final LoopbackTransportFactory factory = new LoopbackTransportFactory();
+        final HeldTransportFactory held = new HeldTransportFactory();
+        final OtpNode a;
+        final OtpNode b;
+        final OtpMbox receiver;
+        final OtpMbox sender;
+        final CountDownLatch down = new CountDownLatch(1);
+        volatile Object downInfo;
+
+        Fixture(final String name) throws Exception {
+            a = factory.createNode(name + "_a");
+            b = factory.using(held).createNode(name + "_b");
+            a.registerStatusHandler(new OtpNodeStatus() {
+                @Override
+                public void remoteStatus(final String node, final boolean up,
+                        final Object info) {
+                    if (!up) {
+                        downInfo = info;
+                        down.countDown();
+                    }
+                }
+            });
+            receiver = a.createMbox("receiver");
+            sender = b.createMbox();
+            // connected before anything is held
+            send(new OtpErlangAtom("hello"));
+            assertThat(receiver.receive(5000)).isEqualTo(new OtpErlangAtom("hello"));
+            held.transport.hold();
+        }
+
+        void send(final OtpErlangObject msg) {
+            sender.send("receiver", a.node(), msg);
+        }
+
+        void assertConnectionFailed() throws InterruptedException {
+            assertThat(down.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(downInfo).isInstanceOf(OtpErlangExit.class);
+            assertThat(((OtpErlangExit) downInfo).reason())
+                    .isEqualTo(new OtpErlangAtom("Remote is sending garbage"));
+        }
+
+        @Override
+        public void close() {
+            a.close();
+            b.close();
+            factory.close();
+        }
+    }
+
+    @Test
+    public void interleavedMessagesAreReassembled() throws Exception {
+        try (Fixture f = new Fixture("interleaved")) {
+            final OtpErlangObject first = message(1, 3 * FRAGMENT);
+            final OtpErlangObject second = message(2, 3 * FRAGMENT);
+            f.send(first);
+            f.send(second);
+            final List<byte[]> frames = f.held.transport.frames();
+            assertThat(frames).hasSize(8);
+            // as if sent by two threads taking turns for each fragment
+            for (int i = 0; i < 4; i++) {
+                f.held.transport.write(frames.get(i), frames.get(i + 4));
+            }
+            assertThat(f.receiver.receive(5000)).isEqualTo(first);
+            assertThat(f.receiver.receive(5000)).isEqualTo(second);
+        }
+    }
+
+    @Test
+    public void fragmentOutOfOrderFailsConnection() throws Exception {
+        try (Fixture f = new Fixture("order")) {
+            f.send(message(1, 3 * FRAGMENT));
+            final List<byte[]> frames = f.held.transport.frames();
+            assertThat(frames).hasSize(4);
+            f.held.transport.write(frames.get(0), frames.get(2));
+            f.assertConnectionFailed();
+            assertThat(f.receiver.receive(500)).isNull();
+        }
+    }
+
+    @Test
+    public void fragmentWithoutHeaderFailsConnection() throws Exception {
+        try (Fixture f = new Fixture("headless")) {
+            f.send(message(1, 3 * FRAGMENT));
+            final List<byte[]> frames = f.held.transport.frames();
+            assertThat(frames).hasSize(4);
+            // a continuation of a message whose first fragment never came
+            f.held.transport.write(frames.get(1));
+            f.assertConnectionFailed();
+            assertThat(f.receiver.receive(500)).isNull();
+        }
+    }
+
+    @Test
+    public void abortedMessageIsNotDeliveredAndOthersAre() throws Exception {
+        try (Fixture f = new Fixture("aborted")) {
+            f.send(message(1, 3 * FRAGMENT));
+            f.send(message(2, 10));
+            f.send(message(3, 3 * FRAGMENT));
+            final List<byte[]> frames = f.held.transport.frames();
+            assertThat(frames).hasSize(9);
+            // the first message never gets its last fragments
+            f.held.transport.write(frames.get(0), frames.get(1), frames.get(4),
+                    frames.get(5), frames.get(6), frames.get(7), frames.get(8));
+            assertThat(f.receiver.receive(5000)).isEqualTo(message(2, 10));
+            assertThat(f.receiver.receive(5000)).isEqualTo(message(3, 3 * FRAGMENT));
+            assertThat(f.receiver.receive(500)).isNull();
+            assertThat(f.down.getCount()).isEqualTo(1);
+        }
+    }
+
+    /*
+     * Plain sockets, where the last one made can hold back what is written to it.
+     */
+    private static final class HeldTransportFactory implements OtpTransportFactory {
+        private final OtpTransportFactory sockets = new OtpSocketTransportFactory();
+        volatile HeldTransport transport;
+
+        @Override
+        public OtpTransport createTransport(final String addr, final int port)
+                throws IOException {
+            transport = new HeldTransport(sockets.createTransport(addr, port));
+            return transport;
+        }
+
+        @Override
+        public OtpTransport createTransport(final InetAddress addr, final int port)
+                throws IOException {
+            transport = new HeldTransport(sockets.createTransport(addr, port));
+            return transport;
+        }
+
+        @Override
+        public OtpServerTransport createServerTransport(final int port)
+                throws IOException {
+            return sockets.createServerTransport(port);
+        }
+    }
+
+    private static final class HeldTransport implements OtpTransport {
+        private final OtpTransport transport;
+        private final ByteArrayOutputStream held = new ByteArrayOutputStream();
+        private final OutputStream out;
+        private boolean holding;
+
+        HeldTransport(final OtpTransport transport) throws IOException {
+            this.transport = transport;
+            final OutputStream real = transport.getOutputStream();
+            out = new OutputStream() {
+                @Override
+                public void write(final int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(final byte[] b, final int off, final int len)
+                        throws IOException {
+                    synchronized (HeldTransport.this) {
+                        if (holding) {
+                            held.write(b, off, len);
+                            return;
+                        }
+                    }
+                    real.write(b, off, len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    real.flush();
+                }
+            };
+        }
+
+        synchronized void hold() {
+            holding = true;
+        }
+
+        /*
+         * The frames written since hold(), each with its length.
+         */
+        synchronized List<byte[]> frames() {
+            final ByteBuffer bytes = ByteBuffer.wrap(held.toByteArray());
+            held.reset();
+            final List<byte[]> frames = new ArrayList<>();
+            while (bytes.hasRemaining()) {
+                final byte[] frame = new byte[4 + bytes.getInt(bytes.position())];
+                bytes.get(frame);
+                frames.add(frame);
+            }
+            return frames;
+        }
+
+        void write(final byte[]... frames) throws IOException {
+            final OutputStream real = transport.getOutputStream();
+            for (final byte[] frame : frames) {
+                real.write(frame);
+            }
+            real.flush();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return transport.getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return out;
+        }
+
+        @Override
+        public void close() throws IOException {
+            transport.close();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.ericson.erlang;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangBinary;
+import com.ericsson.otp.erlang.OtpErlangBitstr;
+import com.ericsson.otp.erlang.OtpErlangDouble;
+import com.ericsson.otp.erlang.OtpErlangExternalFun;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangMap;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangPid;
+import com.ericsson.otp.erlang.OtpErlangPort;
+import com.ericsson.otp.erlang.OtpErlangRef;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpInputStream;
+import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpMsg;
+import com.ericsson.otp.erlang.OtpNode;
+import com.ericsson.otp.erlang.OtpOutputStream;
+
+public class OtpLazyDecodeTest {
+
+    private static OtpErlangObject[] terms(final OtpErlangObject... terms) {
+        return terms;
+    }
+
+    private static OtpErlangTuple sample() throws Exception {
+        final OtpErlangList improper = new OtpErlangList(terms(
+                new OtpErlangAtom("a"), new OtpErlangLong(1)), new OtpErlangAtom(
+                "tail"));
+        return new OtpErlangTuple(terms(
+                new OtpErlangAtom("event"),
+                new OtpErlangLong(42),
+                new OtpErlangLong(BigInteger.ONE.shiftLeft(100)),
+                new OtpErlangDouble(1.5),
+                new OtpErlangString("text"),
+                new OtpErlangBinary(new byte[] { 1, 2, 3 }),
+                new OtpErlangBitstr(new byte[] { 1, 2 }, 3),
+                new OtpErlangPid("n@host", 1, 2, 3),
+                new OtpErlangRef("n@host", new int[] { 1, 2, 3 }, 4),
+                new OtpErlangPort("n@host", 5, 6),
+                new OtpErlangExternalFun("m", "f", 2),
+                new OtpErlangMap(terms(new OtpErlangAtom("k")),
+                        terms(new OtpErlangList(terms(new OtpErlangLong(7))))),
+                improper,
+                new OtpErlangList(),
+                new OtpErlangAtom("last")));
+    }
+
+    private static OtpErlangObject decodeLazily(final byte[] encoded)
+            throws Exception {
+        final OtpInputStream in = new OtpInputStream(encoded,
+                OtpInputStream.DECODE_LAZILY);
+        final OtpErlangObject term = in.read_any();
+        assertThat(in.available()).isEqualTo(0);
+        return term;
+    }
+
+    @Test
+    public void lazyTermEqualsEagerTerm() throws Exception {
+        final OtpErlangTuple expected = sample();
+        final OtpErlangObject lazy = decodeLazily(new OtpOutputStream(expected)
+                .toByteArray());
+
+        assertThat(lazy).isEqualTo(expected);
+        assertThat(expected).isEqualTo(lazy);
+        assertThat(lazy.hashCode()).isEqualTo(expected.hashCode());
+        assertThat(lazy.toString()).isEqualTo(expected.toString());
+    }
+
+    @Test
+    public void elementsAreDecodedOnAccess() throws Exception {
+        final OtpErlangTuple lazy = (OtpErlangTuple) decodeLazily(new OtpOutputStream(
+                sample()).toByteArray());
+
+        assertThat(lazy.arity()).isEqualTo(15);
+        assertThat(lazy.elementAt(0)).isEqualTo(new OtpErlangAtom("event"));
+        assertThat(lazy.elementAt(14)).isEqualTo(new OtpErlangAtom("last"));
+        assertThat(lazy.elementAt(15)).isNull();
+    }
+
+    @Test
+    public void improperListKeepsItsTail() throws Exception {
+        final OtpErlangTuple lazy = (OtpErlangTuple) decodeLazily(new OtpOutputStream(
+                sample()).toByteArray());
+        final OtpErlangList list = (OtpErlangList) lazy.elementAt(12);
+
+        assertThat(list.isProper()).isFalse();
+        assertThat(list.getLastTail()).isEqualTo(new OtpErlangAtom("tail"));
+        assertThat(list.getNthTail(1).toString()).isEqualTo("[1|tail]");
+    }
+
+    @Test
+    public void lazyTermIsReencodedUnchanged() throws Exception {
+        final byte[] encoded = new OtpOutputStream(sample()).toByteArray();
+        final OtpErlangTuple lazy = (OtpErlangTuple) decodeLazily(encoded);
+
+        assertThat(new OtpOutputStream(lazy).toByteArray()).isEqualTo(encoded);
+
+        final OtpErlangList list = (OtpErlangList) lazy.elementAt(12);
+        final OtpErlangList expected = (OtpErlangList) sample().elementAt(12);
+        assertThat(new OtpOutputStream(list.getTail()).toByteArray())
+                .isEqualTo(new OtpOutputStream(expected.getTail())
+                        .toByteArray());
+    }
+
+    @Test
+    public void compressedElementsAreSkipped() throws Exception {
+        final OtpErlangList big = new OtpErlangList(new OtpErlangString(
+                new String(new char[1000]).replace('\0', 'x')).stringValue());
+        final OtpOutputStream out = new OtpOutputStream();
+        out.write1(131);
+        out.write_tuple_head(2);
+        out.write_compressed(big);
+        out.write_atom("after");
+        final OtpErlangTuple lazy = (OtpErlangTuple) decodeLazily(out
+                .toByteArray());
+
+        assertThat(lazy.elementAt(1)).isEqualTo(new OtpErlangAtom("after"));
+        assertThat(lazy.elementAt(0)).isEqualTo(big);
+    }
+
+    @Test
+    public void messagesAreDecodedLazilyOnlyOnRequest() throws Exception {
+        final LoopbackTransportFactory factory = new LoopbackTransportFactory();
+        final OtpNode a = factory.createNode("lazy_a");
+        final OtpNode b = factory.createNode("lazy_b");
+        try {
+            final OtpMbox sender = a.createMbox();
+            final OtpMbox receiver = b.createMbox("receiver");
+            sender.send("receiver", "lazy_b@localhost", sample());
+            sender.send("receiver", "lazy_b@localhost", sample());
+
+            final OtpMsg eager = receiver.receiveMsg(5000);
+            assertThat(eager.getMsg().getClass()).isEqualTo(OtpErlangTuple.class);
+            assertThat(eager.getMsg()).isEqualTo(sample());
+
+            final OtpMsg lazy = receiver.receiveMsg(5000);
+            final OtpErlangObject term = lazy.getMsg(OtpInputStream.DECODE_LAZILY);
+            assertThat(term.getClass()).isNotEqualTo(OtpErlangTuple.class);
+            assertThat(term).isEqualTo(sample());
+            assertThat(lazy.getMsg()).isSameInstanceAs(term);
+        } finally {
+            a.close();
+            b.close();
+            factory.close();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.ericson.erlang;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.GenericQueue;
+import com.ericsson.otp.erlang.OtpMpscQueue;
+
+public class OtpMpscQueueTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int ITEMS = 20000;
+
+    @Test
+    public void itemsOfEachProducerArriveInOrder() throws Exception {
+        final GenericQueue queue = new OtpMpscQueue();
+        final List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int producer = p;
+            final Thread t = new Thread(() -> {
+                for (int i = 0; i < ITEMS; i++) {
+                    queue.put(new int[] { producer, i });
+                }
+            });
+            producers.add(t);
+            t.start();
+        }
+        final int[] next = new int[PRODUCERS];
+        for (int n = 0; n < PRODUCERS * ITEMS; n++) {
+            final int[] item = (int[]) queue.get(5000);
+            assertThat(item[1]).isEqualTo(next[item[0]]);
+            next[item[0]]++;
+        }
+        for (final Thread t : producers) {
+            t.join();
+        }
+        assertThat(queue.getCount()).isEqualTo(0);
+        assertThat(queue.tryGet()).isNull();
+    }
+
+    @Test
+    public void waitingConsumerIsWoken() throws Exception {
+        final GenericQueue queue = new OtpMpscQueue();
+        final Object[] received = new Object[1];
+        final Thread consumer = new Thread(() -> received[0] = queue.get());
+        consumer.start();
+        Thread.sleep(50);
+        queue.put("hello");
+        consumer.join(5000);
+        assertThat(received[0]).isEqualTo("hello");
+    }
+
+    @Test(expected = InterruptedException.class)
+    public void getTimesOutOnEmptyQueue() throws Exception {
+        final GenericQueue queue = new OtpMpscQueue();
+        queue.get(10);
+    }
+
+    @Test
+    public void flushEmptiesQueue() throws Exception {
+        final GenericQueue queue = new OtpMpscQueue();
+        queue.put("a");
+        queue.put("b");
+        assertThat(queue.getCount()).isEqualTo(2);
+        queue.flush();
+        assertThat(queue.getCount()).isEqualTo(0);
+        assertThat(queue.tryGet()).isNull();
+    }
+
+    @Test
+    public void closedQueueIsDrainedThenReturnsNull() throws Exception {
+        final GenericQueue queue = new OtpMpscQueue();
+        queue.put("a");
+        queue.close();
+        assertThat(queue.get(1000)).isEqualTo("a");
+        final long start = System.nanoTime();
+        assertThat(queue.get(5000)).isNull();
+        assertThat(System.nanoTime() - start).isLessThan(4000000000L);
+    }
+
+    @Test
+    public void closeWakesWaitingConsumer() throws Exception {
+        final GenericQueue queue = new OtpMpscQueue();
+        final Object[] received = { "not woken" };
+        final Thread consumer = new Thread(() -> {
+            try {
+                received[0] = queue.get(20000);
+            } catch (final InterruptedException e) {
+                received[0] = e;
+            }
+        });
+        consumer.start();
+        Thread.sleep(50);
+        queue.close();
+        consumer.join(5000);
+        assertThat(consumer.isAlive()).isFalse();
+        assertThat(received[0]).isNull();
+    }
+
+    @Test
+    public void consumerTakesNoLock() throws Exception {
+        final GenericQueue queue = new OtpMpscQueue();
+        queue.put("a");
+        queue.put("b");
+        final Object[] seen = new Object[2];
+        // another thread holding the queue's monitor doesn't block the consumer
+        synchronized (queue) {
+            final Thread consumer = new Thread(() -> {
+                seen[0] = queue.peek();
+                seen[1] = queue.tryGet();
+            });
+            consumer.start();
+            consumer.join(5000);
+            assertThat(consumer.isAlive()).isFalse();
+        }
+        assertThat(seen[0]).isEqualTo("a");
+        assertThat(seen[1]).isEqualTo("a");
+        assertThat(queue.getCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,208 @@
+package com.ericson.erlang;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangBinary;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpNioTransportFactory;
+import com.ericsson.otp.erlang.OtpNode;
+import com.ericsson.otp.erlang.OtpServerTransport;
+import com.ericsson.otp.erlang.OtpSocketTransportFactory;
+import com.ericsson.otp.erlang.OtpTransport;
+import com.ericsson.otp.erlang.OtpTransportFactory;
+
+public class OtpNioTransportTest {
+
+    @Test
+    public void connectionsShareOneSelector() throws Exception {
+        final LoopbackTransportFactory factory = new LoopbackTransportFactory(
+                new OtpNioTransportFactory(1));
+        final OtpNode a = factory.createNode("nio_a");
+        final OtpNode b = factory.createNode("nio_b");
+        final OtpNode c = factory.createNode("nio_c");
+        try {
+            final OtpMbox echo = a.createMbox("echo");
+            final OtpMbox fromB = b.createMbox();
+            final OtpMbox fromC = c.createMbox();
+            final OtpErlangObject msg = new OtpErlangTuple(
+                    new OtpErlangObject[] { new OtpErlangAtom("hello"),
+                            new OtpErlangBinary(new byte[300000]) });
+
+            for (int i = 0; i < 10; i++) {
+                fromB.send("echo", "nio_a@localhost", new OtpErlangLong(i));
+                fromC.send("echo", "nio_a@localhost", msg);
+            }
+            for (int i = 0; i < 20; i++) {
+                final OtpErlangObject received = echo.receive(5000);
+                assertThat(received).isNotNull();
+                echo.send(received instanceof OtpErlangLong ? fromB.self()
+                        : fromC.self(), received);
+            }
+            for (int i = 0; i < 10; i++) {
+                assertThat(fromB.receive(5000)).isEqualTo(new OtpErlangLong(i));
+                assertThat(fromC.receive(5000)).isEqualTo(msg);
+            }
+        } finally {
+            a.close();
+            b.close();
+            c.close();
+            factory.close();
+        }
+    }
+
+    @Test
+    public void tickFromStalledPeerDoesNotBlockSelector() throws Exception {
+        final LoopbackTransportFactory factory = new LoopbackTransportFactory(
+                new OtpNioTransportFactory(1));
+        final GatedTransportFactory gated = new GatedTransportFactory();
+        final OtpNode a = factory.createNode("tick_a");
+        final OtpNode b = factory.using(gated).createNode("tick_b");
+        final OtpNode c = factory.createNode("tick_c");
+        final CountDownLatch written = new CountDownLatch(1);
+        Thread writer = null;
+        try {
+            // b and c are connected to a, both read by the same selector thread
+            final OtpMbox inbox = a.createMbox("inbox");
+            final OtpMbox fromB = b.createMbox("b");
+            final OtpMbox fromC = c.createMbox();
+            fromB.send("inbox", "tick_a@localhost", new OtpErlangAtom("b"));
+            fromC.send("inbox", "tick_a@localhost", new OtpErlangAtom("c"));
+            assertThat(inbox.receive(5000)).isNotNull();
+            assertThat(inbox.receive(5000)).isNotNull();
+
+            // b stops reading, so a's writes to b block holding the send lock
+            gated.transport.closeGate();
+            writer = new Thread(() -> {
+                final OtpErlangBinary big = new OtpErlangBinary(new byte[1 << 20]);
+                for (int i = 0; i < 64; i++) {
+                    inbox.send("b", "tick_b@localhost", big);
+                }
+                written.countDown();
+            });
+            writer.setDaemon(true);
+            writer.start();
+            Thread.sleep(500);
+            assertThat(written.getCount()).isEqualTo(1);
+
+            // b ticks; a must answer it without stalling its selector thread
+            gated.transport.tick();
+            fromC.send("inbox", "tick_a@localhost", new OtpErlangAtom("after"));
+            assertThat(inbox.receive(5000)).isEqualTo(new OtpErlangAtom("after"));
+        } finally {
+            gated.transport.openGate();
+            if (writer != null) {
+                writer.join(30000);
+            }
+            a.close();
+            b.close();
+            c.close();
+            factory.close();
+        }
+    }
+
+    /*
+     * Plain sockets, where the last one made can stop reading and send raw ticks.
+     */
+    private static final class GatedTransportFactory implements OtpTransportFactory {
+        private final OtpTransportFactory sockets = new OtpSocketTransportFactory();
+        volatile GatedTransport transport;
+
+        @Override
+        public OtpTransport createTransport(final String addr, final int port)
+                throws IOException {
+            transport = new GatedTransport(sockets.createTransport(addr, port));
+            return transport;
+        }
+
+        @Override
+        public OtpTransport createTransport(final InetAddress addr, final int port)
+                throws IOException {
+            transport = new GatedTransport(sockets.createTransport(addr, port));
+            return transport;
+        }
+
+        @Override
+        public OtpServerTransport createServerTransport(final int port)
+                throws IOException {
+            return sockets.createServerTransport(port);
+        }
+    }
+
+    private static final class GatedTransport implements OtpTransport {
+        private final OtpTransport transport;
+        private final InputStream in;
+        private boolean open = true;
+
+        GatedTransport(final OtpTransport transport) throws IOException {
+            this.transport = transport;
+            in = new FilterInputStream(transport.getInputStream()) {
+                @Override
+                public int read(final byte[] b, final int off, final int len)
+                        throws IOException {
+                    awaitOpen();
+                    return super.read(b, off, len);
+                }
+
+                @Override
+                public int read() throws IOException {
+                    awaitOpen();
+                    return super.read();
+                }
+            };
+        }
+
+        synchronized void closeGate() {
+            open = false;
+        }
+
+        synchronized void openGate() {
+            open = true;
+            notifyAll();
+        }
+
+        private synchronized void awaitOpen() throws IOException {
+            try {
+                while (!open) {
+                    wait();
+                }
+            } catch (final InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+
+        void tick() throws IOException {
+            final OutputStream out = transport.getOutputStream();
+            out.write(new byte[4]);
+            out.flush();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return transport.getOutputStream();
+        }
+
+        @Override
+        public void close() throws IOException {
+            openGate();
+            transport.close();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.ericson.erlang;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangExit;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpMsg;
+import com.ericsson.otp.erlang.OtpNode;
+
+public class OtpReceiveMsgsTest {
+
+    @Test
+    public void waitingMessagesAreTakenTogether() throws Exception {
+        final LoopbackTransportFactory factory = new LoopbackTransportFactory();
+        final OtpNode node = factory.createNode("drain");
+        try {
+            final OtpMbox receiver = node.createMbox();
+            final OtpMbox sender = node.createMbox();
+            final List<OtpMsg> msgs = new ArrayList<OtpMsg>();
+
+            assertThat(receiver.receiveMsgs(msgs, 10, 100)).isEqualTo(0);
+
+            for (int i = 0; i < 10; i++) {
+                sender.send(receiver.self(), new OtpErlangLong(i));
+            }
+            assertThat(receiver.receiveMsgs(msgs, 1000, 4)).isEqualTo(4);
+            assertThat(receiver.receiveMsgs(msgs, 1000, 100)).isEqualTo(6);
+            assertThat(msgs).hasSize(10);
+            for (int i = 0; i < 10; i++) {
+                assertThat(msgs.get(i).getMsg()).isEqualTo(new OtpErlangLong(i));
+            }
+
+            // an exit signal ends the batch and is raised by the next call
+            msgs.clear();
+            receiver.link(sender.self());
+            sender.send(receiver.self(), new OtpErlangLong(1));
+            sender.exit("bye");
+            sender.send(receiver.self(), new OtpErlangLong(2));
+            assertThat(receiver.receiveMsgs(msgs, 1000, 100)).isEqualTo(1);
+            try {
+                receiver.receiveMsgs(msgs, 1000, 100);
+                fail("expected OtpErlangExit");
+            } catch (final OtpErlangExit e) {
+                assertThat(e.reason().toString()).isEqualTo("bye");
+            }
+        } finally {
+            node.close();
+            factory.close();
+        }
+    }
+}
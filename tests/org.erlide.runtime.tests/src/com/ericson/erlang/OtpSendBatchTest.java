@@ -0,0 +1,179 @@
+package com.ericson.erlang;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpConnection;
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangBinary;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangPid;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpNioTransportFactory;
+import com.ericsson.otp.erlang.OtpNode;
+import com.ericsson.otp.erlang.OtpPeer;
+import com.ericsson.otp.erlang.OtpSelf;
+
+public class OtpSendBatchTest {
+
+    private static OtpErlangObject[] messages(final int count) {
+        final OtpErlangObject[] msgs = new OtpErlangObject[count];
+        for (int i = 0; i < msgs.length; i++) {
+            // a few large ones, so that the batch is written in parts and
+            // some messages are sent in fragments
+            final int size = i % 50 == 49 ? 70000 : 10;
+            msgs[i] = new OtpErlangTuple(new OtpErlangObject[] {
+                    new OtpErlangAtom("msg_" + i % 7), new OtpErlangLong(i),
+                    new OtpErlangBinary(new byte[size]) });
+        }
+        return msgs;
+    }
+
+    private static void sendBatches(final LoopbackTransportFactory factory)
+            throws Exception {
+        final OtpNode a = factory.createNode("batch_a");
+        final OtpNode b = factory.createNode("batch_b");
+        try {
+            final OtpMbox receiver = b.createMbox("receiver");
+            final OtpMbox sender = a.createMbox();
+            final OtpErlangObject[] msgs = messages(200);
+
+            sender.sendBatch("receiver", "batch_b@localhost", msgs);
+            for (final OtpErlangObject msg : msgs) {
+                assertThat(receiver.receive(5000)).isEqualTo(msg);
+            }
+
+            receiver.sendBatch(sender.self(), msgs);
+            for (final OtpErlangObject msg : msgs) {
+                assertThat(sender.receive(5000)).isEqualTo(msg);
+            }
+
+            // the connection is usable for plain sends afterwards
+            sender.send("receiver", "batch_b@localhost", msgs[0]);
+            assertThat(receiver.receive(5000)).isEqualTo(msgs[0]);
+        } finally {
+            a.close();
+            b.close();
+            factory.close();
+        }
+    }
+
+    @Test
+    public void batchIsDeliveredInOrderOnStreams() throws Exception {
+        sendBatches(new LoopbackTransportFactory());
+    }
+
+    @Test
+    public void batchIsDeliveredInOrderOnChannels() throws Exception {
+        sendBatches(new LoopbackTransportFactory(new OtpNioTransportFactory()));
+    }
+
+    @Test
+    public void batchToSeveralRecipientsIsDeliveredInOrder() throws Exception {
+        final LoopbackTransportFactory factory = new LoopbackTransportFactory();
+        final OtpNode a = factory.createNode("multi_a");
+        final OtpNode b = factory.createNode("multi_b");
+        final OtpNode c = factory.createNode("multi_c");
+        try {
+            final OtpMbox sender = a.createMbox();
+            final OtpMbox[] receivers = { a.createMbox(), b.createMbox(),
+                    b.createMbox(), c.createMbox() };
+            final OtpErlangObject[] msgs = messages(100);
+            final OtpErlangPid[] to = new OtpErlangPid[msgs.length];
+            for (int i = 0; i < msgs.length; i++) {
+                to[i] = receivers[i % receivers.length].self();
+            }
+
+            sender.sendBatch(to, msgs);
+            for (int i = 0; i < msgs.length; i++) {
+                assertThat(receivers[i % receivers.length].receive(5000))
+                        .isEqualTo(msgs[i]);
+            }
+        } finally {
+            a.close();
+            b.close();
+            c.close();
+            factory.close();
+        }
+    }
+
+    @Test
+    public void batchToUnreachableNodeFails() throws Exception {
+        final LoopbackTransportFactory factory = new LoopbackTransportFactory();
+        final OtpNode a = factory.createNode("fail_a");
+        final OtpNode b = factory.createNode("fail_b");
+        // not known to a's factory
+        final OtpNode elsewhere = new LoopbackTransportFactory()
+                .createNode("elsewhere");
+        try {
+            final OtpMbox sender = a.createMbox();
+            final OtpMbox receiver = b.createMbox();
+            final OtpErlangObject[] msgs = messages(2);
+            try {
+                sender.sendBatch("receiver", "nowhere@localhost", msgs);
+                fail("expected IOException");
+            } catch (final IOException e) {
+                // expected
+            }
+
+            try {
+                sender.sendBatch(new OtpErlangPid[] {
+                        elsewhere.createMbox().self(),
+                        receiver.self() }, msgs);
+                fail("expected IOException");
+            } catch (final IOException e) {
+                // expected
+            }
+            // the messages to reachable nodes are sent anyway
+            assertThat(receiver.receive(5000)).isEqualTo(msgs[1]);
+        } finally {
+            a.close();
+            b.close();
+            elsewhere.close();
+            factory.close();
+        }
+    }
+
+    @Test
+    public void corkHoldsBackOnlyItsOwnThreadAndIsFlushedByTimer()
+            throws Exception {
+        final LoopbackTransportFactory factory = new LoopbackTransportFactory();
+        final OtpNode b = factory.createNode("cork_b");
+        final OtpSelf self = new OtpSelf("cork_a@localhost", "cookie", factory);
+        final OtpConnection conn = self
+                .connect(new OtpPeer("cork_b@localhost", factory));
+        try {
+            final OtpMbox receiver = b.createMbox("receiver");
+            conn.cork();
+            conn.send("receiver", new OtpErlangAtom("corked"));
+
+            final Thread other = new Thread(() -> {
+                try {
+                    conn.send("receiver", new OtpErlangAtom("other"));
+                } catch (final IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            other.start();
+            other.join(5000);
+
+            // both arrive while still corked, the first one through the timer
+            assertThat(receiver.receive(5000)).isNotNull();
+            assertThat(receiver.receive(5000)).isNotNull();
+
+            conn.send("receiver", new OtpErlangAtom("last"));
+            conn.uncork();
+            assertThat(receiver.receive(5000)).isEqualTo(new OtpErlangAtom("last"));
+        } finally {
+            conn.close();
+            b.close();
+            factory.close();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.ericson.erlang;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpInputStream;
+import com.ericsson.otp.erlang.OtpOutputStream;
+import com.ericsson.otp.erlang.OtpTermReader;
+
+public class OtpTermReaderTest {
+
+    private static OtpErlangList numbers(final int n) {
+        final OtpErlangObject[] elems = new OtpErlangObject[n];
+        for (int i = 0; i < n; i++) {
+            elems[i] = new OtpErlangTuple(new OtpErlangObject[] {
+                    new OtpErlangAtom("n"), new OtpErlangLong(i) });
+        }
+        return new OtpErlangList(elems);
+    }
+
+    private static OtpErlangObject decode(final OtpErlangObject term,
+            final int flags) throws Exception {
+        return new OtpInputStream(new OtpOutputStream(term).toByteArray(),
+                flags).read_any();
+    }
+
+    private static void assertReadsNumbers(final OtpTermReader reader,
+            final int n) throws Exception {
+        assertThat(reader.isList()).isTrue();
+        assertThat(reader.arity()).isEqualTo(n);
+        for (int i = 0; i < n; i++) {
+            assertThat(reader.hasNext()).isTrue();
+            final OtpErlangTuple t = (OtpErlangTuple) reader.nextElement();
+            assertThat(((OtpErlangLong) t.elementAt(1)).intValue())
+                    .isEqualTo(i);
+        }
+        assertThat(reader.hasNext()).isFalse();
+        assertThat(reader.getLastTail()).isNull();
+    }
+
+    @Test
+    public void readsStream() throws Exception {
+        final OtpInputStream in = new OtpInputStream(new OtpOutputStream(
+                numbers(1000)).toByteArray());
+        assertReadsNumbers(new OtpTermReader(in), 1000);
+        assertThat(in.available()).isEqualTo(0);
+    }
+
+    @Test
+    public void readsLazyTerm() throws Exception {
+        assertReadsNumbers(OtpTermReader.of(decode(numbers(1000),
+                OtpInputStream.DECODE_LAZILY)), 1000);
+    }
+
+    @Test
+    public void readsDecodedTerm() throws Exception {
+        assertReadsNumbers(OtpTermReader.of(numbers(10)), 10);
+        assertReadsNumbers(OtpTermReader.of(decode(numbers(10), 0)), 10);
+    }
+
+    @Test
+    public void readsNestedTermsAndTail() throws Exception {
+        final OtpErlangList term = new OtpErlangList(new OtpErlangObject[] {
+                numbers(3), new OtpErlangAtom("skipped") }, new OtpErlangAtom(
+                "tail"));
+        for (final OtpErlangObject t : new OtpErlangObject[] { term,
+                decode(term, OtpInputStream.DECODE_LAZILY) }) {
+            final OtpTermReader reader = OtpTermReader.of(t);
+            assertReadsNumbers(reader.nextReader(), 3);
+            reader.skipElement();
+            assertThat(reader.getLastTail()).isEqualTo(
+                    new OtpErlangAtom("tail"));
+        }
+    }
+
+    @Test
+    public void readsStringsAsIntegers() throws Exception {
+        final OtpTermReader reader = OtpTermReader.of(new OtpErlangString(
+                "ab"));
+        assertThat(reader.nextElement()).isEqualTo(new OtpErlangLong('a'));
+        assertThat(reader.nextElement()).isEqualTo(new OtpErlangLong('b'));
+        assertThat(reader.hasNext()).isFalse();
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void failsAfterLastElement() throws Exception {
+        final OtpTermReader reader = OtpTermReader.of(new OtpErlangList());
+        reader.nextElement();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOtherTerms() throws Exception {
+        OtpTermReader.of(new OtpErlangAtom("a"));
+    }
+}
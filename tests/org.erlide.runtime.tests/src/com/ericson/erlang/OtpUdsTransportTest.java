@@ -0,0 +1,51 @@
+package com.ericson.erlang;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangBinary;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpNode;
+import com.ericsson.otp.erlang.OtpUdsTransportFactory;
+
+public class OtpUdsTransportTest {
+
+    @Test
+    public void nodesTalkOverUnixDomainSockets() throws Exception {
+        assumeTrue(OtpUdsTransportFactory.isSupported());
+
+        final File dir = Files.createTempDirectory("otp-uds").toFile();
+        final OtpUdsTransportFactory factory = new OtpUdsTransportFactory(
+                dir.getPath());
+        final OtpNode a = new OtpNode("uds_a@localhost", "cookie", factory);
+        final OtpNode b = new OtpNode("uds_b@localhost", "cookie", factory);
+        try {
+            assertThat(factory.socketFile(b).exists()).isTrue();
+
+            final OtpMbox echo = b.createMbox("echo");
+            final OtpMbox client = a.createMbox();
+            final OtpErlangObject msg = new OtpErlangTuple(
+                    new OtpErlangObject[] { new OtpErlangAtom("hello"),
+                            new OtpErlangBinary(new byte[100000]) });
+
+            client.send("echo", "uds_b@localhost", msg);
+            assertThat(echo.receive(5000)).isEqualTo(msg);
+            echo.send(client.self(), msg);
+            assertThat(client.receive(5000)).isEqualTo(msg);
+        } finally {
+            a.close();
+            b.close();
+            factory.close();
+        }
+        assertThat(factory.socketFile(b).exists()).isFalse();
+        dir.delete();
+    }
+}
@@ -0,0 +1,114 @@
+package org.erlide.runtime;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.erlide.runtime.api.RuntimeData;
+import org.erlide.runtime.internal.LocalNodeCreator;
+import org.erlide.runtime.internal.OtpNodeProxy;
+import org.erlide.runtime.rpc.IOtpRpc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpNode;
+import com.ericson.erlang.FakeRex;
+import com.ericson.erlang.LoopbackTransportFactory;
+
+/*
+ * The runtime is a Java node with a fake rex, connected over loopback, so that the
+ * lifecycle of the proxy can be tested without an Erlang installation.
+ */
+public class OtpNodeProxyLookupTest {
+
+    private LoopbackTransportFactory factory;
+    private OtpNode peer;
+    private OtpNodeProxy runtime;
+    private final CountDownLatch asked = new CountDownLatch(1);
+    private final CountDownLatch codeServer = new CountDownLatch(1);
+
+    @Before
+    public void startPeer() throws Exception {
+        factory = new LoopbackTransportFactory();
+        LocalNodeCreator.setTransportFactory(factory);
+        peer = factory.createNode("lookup_peer");
+        // the proxy is starting until erlang:whereis(code_server) is a pid
+        final OtpNode node = peer;
+        new FakeRex(peer, (module, function, args) -> {
+            asked.countDown();
+            try {
+                codeServer.await();
+            } catch (final InterruptedException e) {
+                return null;
+            }
+            return node.createPid();
+        });
+
+        final RuntimeData data = new RuntimeData();
+        data.setNodeName("lookup_peer@localhost");
+        data.setLongName(false);
+        data.setCookie("cookie");
+        data.setManaged(false);
+        data.setRestartable(false);
+        runtime = new OtpNodeProxy(data);
+    }
+
+    @After
+    public void stopPeer() {
+        codeServer.countDown();
+        if (runtime.tryGetOtpRpc() != null) {
+            runtime.dispose();
+        }
+        LocalNodeCreator.setTransportFactory(null);
+        peer.close();
+        factory.close();
+    }
+
+    @Test
+    public void rpcLookupDoesNotBlock() {
+        assertThat(runtime.tryGetOtpRpc()).isNull();
+        codeServer.countDown();
+        runtime.ensureRunning();
+        final IOtpRpc site = runtime.getOtpRpc();
+        assertThat(site).isNotNull();
+        assertThat(runtime.tryGetOtpRpc()).isSameInstanceAs(site);
+        final long start = System.nanoTime();
+        for (int i = 0; i < 100000; i++) {
+            assertThat(runtime.getOtpRpc()).isSameInstanceAs(site);
+            assertThat(runtime.tryGetOtpRpc()).isSameInstanceAs(site);
+        }
+        // used to wait 20 ms per lookup
+        assertThat(System.nanoTime() - start).isLessThan(1000000000L);
+
+        runtime.dispose();
+        // listeners are notified right after the state changes
+        for (int i = 0; i < 10 && runtime.tryGetOtpRpc() != null; i++) {
+            try {
+                Thread.sleep(OtpNodeProxy.POLL_INTERVAL);
+            } catch (final InterruptedException e) {
+            }
+        }
+        assertThat(runtime.tryGetOtpRpc()).isNull();
+        assertThat(runtime.getOtpRpc()).isNull();
+    }
+
+    @Test
+    public void onlyGetOtpRpcWaitsWhileStarting() throws Exception {
+        final CompletableFuture<Void> started = CompletableFuture
+                .runAsync(runtime::ensureRunning);
+        assertThat(asked.await(10, TimeUnit.SECONDS)).isTrue();
+        final CompletableFuture<IOtpRpc> site = CompletableFuture
+                .supplyAsync(runtime::getOtpRpc);
+        Thread.sleep(OtpNodeProxy.POLL_INTERVAL);
+        assertThat(site.isDone()).isFalse();
+        assertThat(runtime.tryGetOtpRpc()).isNull();
+
+        codeServer.countDown();
+        assertThat(site.get(10, TimeUnit.SECONDS)).isNotNull();
+        started.get(10, TimeUnit.SECONDS);
+        assertThat(runtime.tryGetOtpRpc()).isSameInstanceAs(site.get());
+    }
+}
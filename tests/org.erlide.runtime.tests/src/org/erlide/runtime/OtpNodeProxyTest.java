@@ -119,6 +119,32 @@ public class OtpNodeProxyTest {
         expect(runtime, process, 136, State.FAILED);
     }
 
+    @Test
+    public void rpcLookupDoesNotBlock() {
+        final IOtpRpc site = runtime.getOtpRpc();
+        assertThat(runtime.tryGetOtpRpc()).isSameInstanceAs(site);
+        final long start = System.nanoTime();
+        for (int i = 0; i < 100000; i++) {
+            assertThat(runtime.getOtpRpc()).isSameInstanceAs(site);
+        }
+        // used to wait 20 ms per lookup
+        assertThat(System.nanoTime() - start).isLessThan(1000000000L);
+        try {
+            site.cast("erlang", "halt", "i", 0);
+        } catch (final RpcException e1) {
+        }
+        expect(runtime, process, 0, State.TERMINATED);
+        // listeners are notified right after the state changes
+        for (int i = 0; i < 10 && runtime.tryGetOtpRpc() != null; i++) {
+            try {
+                Thread.sleep(OtpNodeProxy.POLL_INTERVAL);
+            } catch (final InterruptedException e) {
+            }
+        }
+        assertThat(runtime.tryGetOtpRpc()).isNull();
+        assertThat(runtime.getOtpRpc()).isNull();
+    }
+
     private void expect(final OtpNodeProxy aRuntime, final Process aProcess,
             final int code, final State state) {
         while (aRuntime.isRunning()) {
@@ -0,0 +1,102 @@
+package org.erlide.runtime.api;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.erlide.runtime.internal.rpc.OtpRpc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangBinary;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpNode;
+import com.ericson.erlang.FakeRex;
+import com.ericson.erlang.LoopbackTransportFactory;
+
+public class BeamLoaderTest {
+
+    private LoopbackTransportFactory factory;
+    private OtpNode local;
+    private OtpNode remote;
+    private OtpRpc rpc;
+    private FakeRex rex;
+
+    @Before
+    public void startNodes() throws Exception {
+        factory = new LoopbackTransportFactory();
+        local = factory.createNode("beam_local");
+        remote = factory.createNode("beam_remote");
+        rex = new FakeRex(remote, BeamLoaderTest::answer);
+        rpc = new OtpRpc(local, "beam_remote@localhost");
+        rpc.setConnected(true);
+    }
+
+    @After
+    public void stopNodes() {
+        local.close();
+        remote.close();
+        factory.close();
+    }
+
+    /*
+     * Answer like code would: module sticky is sticky, module bad has a bad beam and
+     * module broken crashes the call.
+     */
+    private static OtpErlangObject answer(final String module, final String function,
+            final OtpErlangList args) {
+        final OtpErlangObject loaded = args.elementAt(0);
+        final String name = ((OtpErlangAtom) loaded).atomValue();
+        if ("broken".equals(name)) {
+            return new OtpErlangTuple(new OtpErlangObject[] {
+                    new OtpErlangAtom("badrpc"), new OtpErlangAtom("oops") });
+        }
+        if ("is_sticky".equals(function)) {
+            return new OtpErlangAtom("sticky".equals(name));
+        }
+        if ("bad".equals(name)) {
+            return new OtpErlangTuple(new OtpErlangObject[] {
+                    new OtpErlangAtom("error"), new OtpErlangAtom("badfile") });
+        }
+        return new OtpErlangTuple(
+                new OtpErlangObject[] { new OtpErlangAtom("module"), loaded });
+    }
+
+    private static Map<String, OtpErlangBinary> beams(final int count, final int size) {
+        final Map<String, OtpErlangBinary> beams = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            beams.put("m" + i, new OtpErlangBinary(new byte[size]));
+        }
+        return beams;
+    }
+
+    @Test
+    public void failedModulesAreReported() throws Exception {
+        final Map<String, OtpErlangBinary> beams = beams(3, 10);
+        beams.put("sticky", new OtpErlangBinary(new byte[10]));
+        beams.put("bad", new OtpErlangBinary(new byte[10]));
+        beams.put("broken", new OtpErlangBinary(new byte[10]));
+
+        assertThat(BeamLoader.loadBeams(rpc, beams)).containsExactly("sticky", "bad",
+                "broken");
+        // the sticky one and the crashed one are not loaded
+        assertThat(rex.getBatchSizes()).containsExactly(6, 4).inOrder();
+    }
+
+    @Test
+    public void manyModulesAreLoadedInSeveralBatches() throws Exception {
+        assertThat(BeamLoader.loadBeams(rpc, beams(250, 10))).isEmpty();
+        assertThat(rex.getBatchSizes()).containsExactly(100, 100, 50, 100, 100, 50).inOrder();
+    }
+
+    @Test
+    public void largeModulesAreLoadedInSeveralBatches() throws Exception {
+        assertThat(BeamLoader.loadBeams(rpc, beams(5, 1500 * 1024))).isEmpty();
+        assertThat(rex.getBatchSizes()).containsExactly(5, 2, 2, 1).inOrder();
+    }
+}
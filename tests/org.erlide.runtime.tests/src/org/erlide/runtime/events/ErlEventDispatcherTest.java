@@ -0,0 +1,156 @@
+package org.erlide.runtime.events;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangLong;
+
+public class ErlEventDispatcherTest {
+
+    private final ErlEventDispatcher dispatcher = new ErlEventDispatcher("test");
+
+    private static class Recorder extends ErlangEventHandler {
+        final List<Long> seen = new CopyOnWriteArrayList<>();
+        final List<Integer> batches = new CopyOnWriteArrayList<>();
+        final CountDownLatch done;
+        final CountDownLatch gate;
+        final CountDownLatch entered = new CountDownLatch(1);
+
+        Recorder(final String topic, final int expected, final CountDownLatch gate) {
+            super(topic);
+            done = new CountDownLatch(expected);
+            this.gate = gate;
+        }
+
+        @Override
+        public void handleEvent(final ErlEvent event) {
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (final InterruptedException e) {
+            }
+            seen.add(((OtpErlangLong) event.getEvent()).longValue());
+            done.countDown();
+        }
+
+        @Override
+        public void handleEvents(final List<ErlEvent> events) {
+            batches.add(events.size());
+            super.handleEvents(events);
+        }
+    }
+
+    private static ErlEvent event(final String topic, final long n) {
+        return new ErlEvent(topic, null, new OtpErlangLong(n), null);
+    }
+
+    @Test
+    public void eventsGoOnlyToTheirTopicInOrder() throws InterruptedException {
+        final Recorder a = new Recorder("a", 100, new CountDownLatch(0));
+        final Recorder b = new Recorder("b", 1, new CountDownLatch(0));
+        dispatcher.register(a);
+        dispatcher.register(b);
+        for (int i = 0; i < 100; i++) {
+            assertThat(dispatcher.post(event("a", i))).isTrue();
+        }
+        assertThat(dispatcher.post(event("b", 7))).isTrue();
+        assertThat(dispatcher.post(event("c", 1))).isFalse();
+
+        assertThat(a.done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(b.done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(a.seen).hasSize(100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(a.seen.get(i)).isEqualTo((long) i);
+        }
+        assertThat(b.seen).containsExactly(7L);
+    }
+
+    @Test
+    public void slowHandlerDoesNotStallOthers() throws InterruptedException {
+        final CountDownLatch gate = new CountDownLatch(1);
+        final Recorder slow = new Recorder("trace", 10, gate);
+        final Recorder console = new Recorder("io", 1, new CountDownLatch(0));
+        dispatcher.register(slow);
+        dispatcher.register(console);
+        dispatcher.post(event("trace", 0));
+        assertThat(slow.entered.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i < 10; i++) {
+            dispatcher.post(event("trace", i));
+        }
+        dispatcher.post(event("io", 1));
+
+        assertThat(console.done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(slow.seen).isEmpty();
+        assertThat(dispatcher.queueDepths().get("trace/" + Recorder.class.getName()))
+                .isEqualTo(9);
+
+        gate.countDown();
+        assertThat(slow.done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(dispatcher.queueDepths().get("trace/" + Recorder.class.getName()))
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void fullQueueHoldsPostingBackAndLosesNothing() throws Exception {
+        final CountDownLatch gate = new CountDownLatch(1);
+        final int count = 1024 + 10;
+        final Recorder slow = new Recorder("trace", count + 1, gate);
+        dispatcher.register(slow);
+        dispatcher.post(event("trace", 0));
+        assertThat(slow.entered.await(5, TimeUnit.SECONDS)).isTrue();
+        final List<ErlEvent> events = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            events.add(event("trace", i));
+        }
+        final Thread reader = new Thread(() -> dispatcher.post(events));
+        reader.start();
+        // the reading thread waits for room in the slow handler's queue
+        reader.join(500);
+        assertThat(reader.isAlive()).isTrue();
+
+        gate.countDown();
+        reader.join(5000);
+        assertThat(reader.isAlive()).isFalse();
+        assertThat(slow.done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(slow.seen).hasSize(count + 1);
+        for (int i = 0; i <= count; i++) {
+            assertThat(slow.seen.get(i)).isEqualTo((long) i);
+        }
+    }
+
+    @Test
+    public void eventsThatAccumulateAreHandledTogether() throws InterruptedException {
+        final CountDownLatch gate = new CountDownLatch(1);
+        final Recorder a = new Recorder("a", 6, gate);
+        dispatcher.register(a);
+        dispatcher.post(event("a", 0));
+        assertThat(a.entered.await(5, TimeUnit.SECONDS)).isTrue();
+        final List<ErlEvent> events = new ArrayList<>();
+        for (int i = 1; i < 6; i++) {
+            events.add(event("a", i));
+        }
+        events.add(event("nobody", 9));
+        dispatcher.post(events);
+        gate.countDown();
+
+        assertThat(a.done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(a.seen).containsExactly(0L, 1L, 2L, 3L, 4L, 5L).inOrder();
+        assertThat(a.batches).containsExactly(1, 5).inOrder();
+    }
+
+    @Test
+    public void unregisteredHandlerGetsNoEvents() {
+        final Recorder a = new Recorder("a", 1, new CountDownLatch(0));
+        dispatcher.register(a);
+        dispatcher.unregister(a);
+        assertThat(dispatcher.post(event("a", 1))).isFalse();
+        assertThat(dispatcher.queueDepths()).isEmpty();
+    }
+}
@@ -0,0 +1,313 @@
+package org.erlide.runtime.rpc;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.erlide.runtime.internal.rpc.OtpRpc;
+import org.erlide.util.erlang.IConvertible;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpNode;
+import com.ericson.erlang.FakeRex;
+import com.ericson.erlang.LoopbackTransportFactory;
+
+public class OtpRpcTest {
+
+    private LoopbackTransportFactory factory;
+    private OtpNode local;
+    private OtpNode remote;
+
+    @Before
+    public void startNodes() throws Exception {
+        factory = new LoopbackTransportFactory();
+        local = factory.createNode("rpc_local");
+        remote = factory.createNode("rpc_remote");
+        new FakeRex(remote, OtpRpcTest::answer);
+    }
+
+    @After
+    public void stopNodes() {
+        local.close();
+        remote.close();
+        factory.close();
+    }
+
+    /*
+     * Answer with the arguments of the call. Calls to functions named ignore get no
+     * answer, calls to fail get a badrpc.
+     */
+    private static OtpErlangObject answer(final String module, final String function,
+            final OtpErlangList args) {
+        if ("ignore".equals(function)) {
+            return null;
+        }
+        if ("fail".equals(function)) {
+            return new OtpErlangTuple(new OtpErlangObject[] { new OtpErlangAtom("badrpc"),
+                    new OtpErlangAtom("oops") });
+        }
+        return args;
+    }
+
+    @Test
+    public void concurrentCallsGetTheirOwnReplies() throws Exception {
+        final OtpRpc rpc = new OtpRpc(local, "rpc_remote@localhost");
+        rpc.setConnected(true);
+        final List<Throwable> errors = new ArrayList<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int base = t * 1000;
+            final Thread thread = new Thread(() -> {
+                try {
+                    for (int i = base; i < base + 100; i++) {
+                        final OtpErlangObject r = rpc.call("m", "f", "i", i);
+                        assertThat(r.toString()).isEqualTo("[" + i + "]");
+                    }
+                } catch (final Throwable e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(errors).isEmpty();
+    }
+
+    @Test
+    public void slowArgumentConversionDoesNotHoldUpOtherCalls() throws Exception {
+        final OtpRpc rpc = new OtpRpc(local, "rpc_remote@localhost");
+        rpc.setConnected(true);
+        final CountDownLatch converting = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final IConvertible slow = () -> {
+            converting.countDown();
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new OtpErlangAtom("slow");
+        };
+        final CompletableFuture<OtpErlangObject> blocked = callInThread(rpc, "a",
+                slow);
+        try {
+            assertThat(converting.await(5, TimeUnit.SECONDS)).isTrue();
+            // made while the other call is still building its message
+            assertThat(callInThread(rpc, "i", 1).get(5, TimeUnit.SECONDS).toString())
+                    .isEqualTo("[1]");
+            assertThat(blocked.isDone()).isFalse();
+        } finally {
+            release.countDown();
+        }
+        assertThat(blocked.get(5, TimeUnit.SECONDS).toString()).isEqualTo("[slow]");
+    }
+
+    private static CompletableFuture<OtpErlangObject> callInThread(final OtpRpc rpc,
+            final String signature, final Object arg) {
+        final CompletableFuture<OtpErlangObject> result = new CompletableFuture<>();
+        final Thread thread = new Thread(() -> {
+            try {
+                result.complete(rpc.call("m", "f", signature, arg));
+            } catch (final RpcException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    @Test
+    public void pendingCallsFailWhenDisconnected() throws Exception {
+        remote.close();
+        final OtpRpc rpc = new OtpRpc(local, "rpc_remote@localhost");
+        rpc.setConnected(true);
+        final RpcFuture future = rpc.async_call("m", "f", "a", "x");
+        rpc.setConnected(false);
+        try {
+            future.checkedGet(5000, TimeUnit.MILLISECONDS);
+            throw new AssertionError("expected RpcException");
+        } catch (final RpcException e) {
+            assertThat(e.getMessage()).contains("closed");
+        }
+    }
+
+    @Test
+    public void asyncCallResultCanBeFetchedLater() throws Exception {
+        final OtpRpc rpc = new OtpRpc(local, "rpc_remote@localhost");
+        rpc.setConnected(true);
+        final RpcFuture future = rpc.async_call("m", "f", "xx",
+                new OtpErlangAtom("a"), new OtpErlangLong(1));
+        assertThat(future.checkedGet().toString()).isEqualTo("[a,1]");
+        assertThat(future.isDone()).isTrue();
+    }
+
+    @Test
+    public void callAsyncCompletesWithResult() throws Exception {
+        final OtpRpc rpc = new OtpRpc(local, "rpc_remote@localhost");
+        rpc.setConnected(true);
+        final CompletableFuture<OtpErlangObject> future = rpc.callAsync("m", "f", "i",
+                42);
+        assertThat(future.get(5, TimeUnit.SECONDS).toString()).isEqualTo("[42]");
+    }
+
+    @Test
+    public void blockingStageDoesNotHoldUpOtherReplies() throws Exception {
+        final OtpRpc rpc = new OtpRpc(local, "rpc_remote@localhost");
+        rpc.setConnected(true);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CompletableFuture<String> blocked = rpc.callAsync("m", "f", "i", 1)
+                .thenApply(r -> {
+                    try {
+                        release.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return Thread.currentThread().getName();
+                });
+        try {
+            // would wait forever if the first stage ran on the reply thread
+            assertThat(rpc.callAsync("m", "f", "i", 2).get(5, TimeUnit.SECONDS)
+                    .toString()).isEqualTo("[2]");
+            assertThat(rpc.call("m", "f", "i", 3).toString()).isEqualTo("[3]");
+        } finally {
+            release.countDown();
+        }
+        assertThat(blocked.get(5, TimeUnit.SECONDS)).doesNotContain("rpc-replies");
+    }
+
+    @Test
+    public void callAsyncTimesOut() throws Exception {
+        final OtpRpc rpc = new OtpRpc(local, "rpc_remote@localhost");
+        rpc.setConnected(true);
+        final CompletableFuture<OtpErlangObject> future = rpc.callAsync(100, "m",
+                "ignore", "");
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            throw new AssertionError("expected a timeout");
+        } catch (final ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(RpcTimeoutException.class);
+        }
+    }
+
+    @Test
+    public void callbackIsCalledWithResult() throws Exception {
+        final OtpRpc rpc = new OtpRpc(local, "rpc_remote@localhost");
+        rpc.setConnected(true);
+        final CompletableFuture<OtpErlangObject> received = new CompletableFuture<>();
+        rpc.async_call_cb(new IRpcCallback() {
+            @Override
+            public void onSuccess(final OtpErlangObject result) {
+                received.complete(result);
+            }
+
+            @Override
+            public void onFailure(final Throwable t) {
+                received.completeExceptionally(t);
+            }
+        }, 5000, "m", "f", "a", "x");
+        assertThat(received.get(5, TimeUnit.SECONDS).toString()).isEqualTo("[x]");
+    }
+
+    @Test
+    public void batchReturnsResultsInOrder() throws Exception {
+        final OtpRpc rpc = new OtpRpc(local, "rpc_remote@localhost");
+        rpc.setConnected(true);
+        final List<RpcResult> results = rpc.batch().add("m", "f", "i", 1)
+                .add("m", "fail", "").add("m", "f", "si", "x", 3).execute();
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).isOk()).isTrue();
+        assertThat(results.get(0).getValue().toString()).isEqualTo("[1]");
+        assertThat(results.get(1).isOk()).isFalse();
+        assertThat(results.get(2).getValue().toString()).isEqualTo("[\"x\",3]");
+    }
+
+    @Test
+    public void emptyBatchMakesNoCall() throws Exception {
+        final OtpRpc rpc = new OtpRpc(local, "rpc_remote@localhost");
+        assertThat(rpc.batch().execute()).isEmpty();
+    }
+
+    @SuppressWarnings("boxing")
+    @Test
+    public void callsAreCountedInMetrics() throws Exception {
+        final OtpRpc rpc = new OtpRpc(local, "rpc_remote@localhost");
+        rpc.setConnected(true);
+        for (int i = 0; i < 3; i++) {
+            rpc.call("metrics_m", "f", "i", i);
+        }
+        try {
+            rpc.call(100, "metrics_m", "ignore", "");
+            throw new AssertionError("expected a timeout");
+        } catch (final RpcTimeoutException e) {
+            // expected
+        }
+        final RpcMetrics.Entry f = metricsFor("metrics_m", "f");
+        assertThat(f.calls).isEqualTo(3);
+        assertThat(f.failures).isEqualTo(0);
+        assertThat(f.bytesOut).isGreaterThan(0L);
+        assertThat(f.bytesIn).isGreaterThan(0L);
+        assertThat(f.percentile(99)).isAtMost(f.maxMicros);
+        final RpcMetrics.Entry ignore = metricsFor("metrics_m", "ignore");
+        assertThat(ignore.calls).isEqualTo(1);
+        assertThat(ignore.timeouts).isEqualTo(1);
+        assertThat(RpcMetrics.toCsv()).contains("metrics_m,f,3,0,0,");
+        assertThat(RpcMetrics.toJson())
+                .contains("{\"module\":\"metrics_m\",\"fun\":\"f\",\"calls\":3,");
+    }
+
+    @Test
+    public void badRpcRepliesAreFailuresInMetrics() {
+        RpcMetrics.start("metrics_b", "f").replied(new OtpErlangAtom("ok"));
+        RpcMetrics.start("metrics_b", "f").replied(new OtpErlangTuple(
+                new OtpErlangObject[] { new OtpErlangAtom("badrpc"),
+                        new OtpErlangAtom("oops") }));
+        final RpcMetrics.Entry f = metricsFor("metrics_b", "f");
+        assertThat(f.calls).isEqualTo(2);
+        assertThat(f.failures).isEqualTo(1);
+    }
+
+    @Test
+    public void abandonedCallsAreNoLongerInFlight() throws Exception {
+        final long before = RpcMetrics.inFlight();
+        final RpcMetrics.Call ended = RpcMetrics.start("metrics_a", "f");
+        RpcMetrics.endWhenCollected(new Object(), ended);
+        ended.end(null);
+        RpcMetrics.endWhenCollected(new Object(), RpcMetrics.start("metrics_a", "f"));
+        assertThat(RpcMetrics.inFlight()).isEqualTo(before + 1);
+        for (int i = 0; i < 100 && RpcMetrics.inFlight() > before; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        // the ended call is not ended again
+        assertThat(RpcMetrics.inFlight()).isEqualTo(before);
+        assertThat(metricsFor("metrics_a", "f").calls).isEqualTo(1);
+    }
+
+    private static RpcMetrics.Entry metricsFor(final String module, final String fun) {
+        for (final RpcMetrics.Entry e : RpcMetrics.snapshot()) {
+            if (e.module.equals(module) && e.fun.equals(fun)) {
+                return e;
+            }
+        }
+        throw new AssertionError("no metrics for " + module + ":" + fun);
+    }
+
+}
@@ -0,0 +1,127 @@
+package org.erlide.runtime.rpc;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+
+public class RpcResultCacheTest {
+
+    static {
+        RpcResultCache.declare("cache_m", "f", "error");
+        RpcResultCache.declareDependingOnAllModules("cache_m", "all");
+    }
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    /*
+     * An rpc whose calls return the number of calls made so far.
+     */
+    private IOtpRpc countingRpc() {
+        return (IOtpRpc) Proxy.newProxyInstance(IOtpRpc.class.getClassLoader(),
+                new Class<?>[] { IOtpRpc.class }, (proxy, method, args) -> {
+                    if ("call".equals(method.getName())) {
+                        final OtpErlangLong n = new OtpErlangLong(calls.incrementAndGet());
+                        if ("error".equals(args[1])) {
+                            return new OtpErlangTuple(new OtpErlangObject[] {
+                                    new OtpErlangAtom("error"), n });
+                        }
+                        return n;
+                    }
+                    return null;
+                });
+    }
+
+    private static OtpErlangObject call(final IOtpRpc rpc, final String fun,
+            final String arg) throws RpcException {
+        return RpcResultCache.call(rpc, "cache_m", fun, "as", "mod", arg);
+    }
+
+    @After
+    public void clear() {
+        RpcResultCache.invalidateAll();
+    }
+
+    @Test
+    public void cacheableCallsAreMadeOnce() throws RpcException {
+        final IOtpRpc rpc = countingRpc();
+        assertThat(call(rpc, "f", "a")).isEqualTo(new OtpErlangLong(1));
+        assertThat(call(rpc, "f", "a")).isEqualTo(new OtpErlangLong(1));
+        assertThat(call(rpc, "f", "b")).isEqualTo(new OtpErlangLong(2));
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void otherCallsAreNotCached() throws RpcException {
+        final IOtpRpc rpc = countingRpc();
+        call(rpc, "g", "a");
+        call(rpc, "g", "a");
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void resultsArePerRpc() throws RpcException {
+        call(countingRpc(), "f", "a");
+        call(countingRpc(), "f", "a");
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void loadingAModuleForgetsResultsThatMentionIt() throws RpcException {
+        final IOtpRpc rpc = countingRpc();
+        call(rpc, "f", "a");
+        RpcResultCache.invalidateModule("other");
+        call(rpc, "f", "a");
+        assertThat(calls.get()).isEqualTo(1);
+        RpcResultCache.invalidateModule("mod");
+        call(rpc, "f", "a");
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void loadingAModuleForgetsResultsThatMentionItInside() throws RpcException {
+        final IOtpRpc rpc = countingRpc();
+        final OtpErlangObject input = new OtpErlangTuple(new OtpErlangObject[] {
+                new OtpErlangAtom("external"), new OtpErlangAtom("inner") });
+        RpcResultCache.call(rpc, "cache_m", "f", "x", input);
+        RpcResultCache.invalidateModule("inner");
+        RpcResultCache.call(rpc, "cache_m", "f", "x", input);
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void loadingAnyModuleForgetsResultsThatDependOnAll() throws RpcException {
+        final IOtpRpc rpc = countingRpc();
+        call(rpc, "all", "a");
+        call(rpc, "f", "a");
+        RpcResultCache.invalidateModule("other");
+        call(rpc, "all", "a");
+        call(rpc, "f", "a");
+        assertThat(calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void errorResultsAreNotCached() throws RpcException {
+        final IOtpRpc rpc = countingRpc();
+        call(rpc, "error", "a");
+        call(rpc, "error", "a");
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void removingARuntimeForgetsItsResults() throws RpcException {
+        final IOtpRpc rpc = countingRpc();
+        call(rpc, "f", "a");
+        RpcResultCache.invalidate(rpc);
+        call(rpc, "f", "a");
+        assertThat(calls.get()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,131 @@
+package org.erlide.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import org.erlide.util.erlang.CompiledFormat;
+import org.erlide.util.erlang.CompiledPattern;
+import org.erlide.util.erlang.OtpBindings;
+import org.erlide.util.erlang.OtpErlang;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangBinary;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpInputStream;
+import com.ericsson.otp.erlang.OtpOutputStream;
+
+public class CompiledPatternTest {
+
+    private static final String[][] CASES = { //
+            { "[a, {b}]", "[a, {b}]" }, //
+            { "[a, {b}]", "[a, {c}]" }, //
+            { "[W, V]", "[a, b]" }, //
+            { "[W, W]", "[a, a]" }, //
+            { "[W, W]", "[a, b]" }, //
+            { "[W, _, W]", "[a, x, a]" }, //
+            { "[_, _]", "[a, b]" }, //
+            { "[W:a, V:i]", "[a, 1]" }, //
+            { "[W:a, V:i]", "[a, b]" }, //
+            { "[W:i, V:a]", "[a, b]" }, //
+            { "{W, V:s}", "{a, \"b\"}" }, //
+            { "{W, V}", "{a}" }, //
+            { "[W | T]", "[a, b, c]" }, //
+            { "[W | T]", "[a]" }, //
+            { "[W | T]", "[]" }, //
+            { "[W, V | T]", "[a, b | c]" }, //
+            { "[W, V]", "[a, b | c]" }, //
+            { "{put_chars, Enc:a, Chars}", "{put_chars, unicode, \"x\"}" }, //
+            { "{put_chars, Enc:a, Chars}", "{put_chars, \"u\", \"x\"}" }, //
+            { "{requests, Reqs:lx}", "{requests, [{a}, {b}]}" }, //
+            { "[W:lx]", "[a]" }, //
+            { "1", "1" }, //
+            { "1", "1.0" }, //
+            { "\"a\"", "\"a\"" }, //
+            { "{put_chars, E, [C]}", "{put_chars, unicode, [x]}" }, //
+            { "[put_chars | _]", "{put_chars, unicode, [x]}" }, //
+    };
+
+    /*
+     * The term as received, where tuples, lists and binaries can be subclasses of the
+     * parsed ones.
+     */
+    private static OtpErlangObject decoded(final OtpErlangObject term)
+            throws Exception {
+        final OtpInputStream in = new OtpInputStream(
+                new OtpOutputStream(term).toByteArray(),
+                OtpInputStream.DECODE_LAZILY | OtpInputStream.DECODE_BINARIES_AS_SLICES);
+        return in.read_any();
+    }
+
+    @Test
+    public void matchesLikeOtpErlangMatch() throws Exception {
+        final CompiledPattern.Bindings b = new CompiledPattern.Bindings();
+        for (final String[] c : CompiledPatternTest.CASES) {
+            final OtpErlangObject parsed = OtpErlang.parse(c[1]);
+            for (final OtpErlangObject term : new OtpErlangObject[] { parsed,
+                    CompiledPatternTest.decoded(parsed) }) {
+                final OtpBindings expected = OtpErlang.match(OtpErlang.parse(c[0]),
+                        term);
+                final CompiledPattern pattern = CompiledPattern.compile(c[0]);
+                final String what = c[0] + " ~ " + c[1] + " as "
+                        + term.getClass().getSimpleName();
+
+                assertWithMessage(what).that(pattern.match(term, b))
+                        .isEqualTo(expected != null);
+                if (expected != null) {
+                    assertWithMessage(what).that(b.toOtpBindings())
+                            .isEqualTo(expected);
+                }
+                assertWithMessage(what).that(pattern.match(term)).isEqualTo(expected);
+            }
+        }
+        // neither the decoded tuple nor the binary are of the parsed classes
+        final OtpErlangBinary binary = new OtpErlangBinary(new byte[] { 1 });
+        final OtpErlangTuple decoded = (OtpErlangTuple) CompiledPatternTest
+                .decoded(new OtpErlangTuple(new OtpErlangObject[] {
+                        OtpErlang.parse("put_chars"), binary }));
+        assertThat(decoded.getClass()).isNotEqualTo(OtpErlangTuple.class);
+        assertThat(decoded.elementAt(1).getClass()).isNotEqualTo(OtpErlangBinary.class);
+        assertThat(CompiledPattern.compile("{put_chars, B}").match(decoded, b)).isTrue();
+        assertThat(b.get("B")).isEqualTo(binary);
+    }
+
+    @Test
+    public void bindingsAreReusedAcrossPatterns() throws Exception {
+        final CompiledPattern big = CompiledPattern.of("{A, B, C, D}");
+        final CompiledPattern small = CompiledPattern.of("{X:a, Y:i}");
+        final CompiledPattern.Bindings b = new CompiledPattern.Bindings();
+
+        assertThat(big.match(OtpErlang.parse("{1, 2, 3, 4}"), b)).isTrue();
+        assertThat(small.match(OtpErlang.parse("{x, 3}"), b)).isTrue();
+        assertThat(b.getAtom("X")).isEqualTo("x");
+        assertThat(b.getInt("Y")).isEqualTo(3);
+        assertThat(b.get("A")).isNull();
+        assertThat(b.get(small.slot("Y"))).isEqualTo(OtpErlang.parse("3"));
+        assertThat(small.variables()).asList().containsExactly("X", "Y").inOrder();
+        assertThat(small.slot("A")).isEqualTo(-1);
+    }
+
+    @Test
+    public void patternsAreCompiledOnce() throws Exception {
+        assertThat(CompiledPattern.compile("{a, B}"))
+                .isSameInstanceAs(CompiledPattern.compile("{a, B}"));
+        assertThat(CompiledFormat.compile("{a, ~a}"))
+                .isSameInstanceAs(CompiledFormat.compile("{a, ~a}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badConstantPatternIsReported() {
+        CompiledPattern.of("{a b}");
+    }
+
+    @Test
+    public void formatsLikeBefore() throws Exception {
+        final CompiledFormat format = CompiledFormat.of("[~a,{2,~s},5,~i]");
+        assertThat(format.arity()).isEqualTo(3);
+        assertThat(format.format("hej", "brr", 7))
+                .isEqualTo(OtpErlang.parse("[hej,{2,\"brr\"},5,7]"));
+        assertThat(format.format("hej")).isEqualTo(OtpErlang.parse("[hej,{2,~s},5,~i]"));
+    }
+}
@@ -0,0 +1,116 @@
+package org.erlide.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+
+public class LogRingTest {
+
+    private static boolean offer(final LogRing ring, final String fmt,
+            final Object... args) {
+        return ring.offer(Level.INFO, fmt, args, null, null, "test.erl", 1);
+    }
+
+    private static List<String> drain(final LogRing ring) {
+        final List<String> result = new ArrayList<>();
+        LogRing.Entry entry;
+        while ((entry = ring.peek()) != null) {
+            result.add(entry.message());
+            ring.release();
+        }
+        return result;
+    }
+
+    @Test
+    public void entriesAreFormattedWhenRead() {
+        final LogRing ring = new LogRing(4);
+        final AtomicInteger formatted = new AtomicInteger();
+        final OtpErlangAtom term = new OtpErlangAtom("t") {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public String toString() {
+                formatted.incrementAndGet();
+                return super.toString();
+            }
+        };
+        assertThat(LogRingTest.offer(ring, "x %s %s %d", term, "s", 1)).isTrue();
+        assertThat(LogRingTest.offer(ring, "no args")).isTrue();
+        assertThat(LogRingTest.offer(ring, "bad %d", "a")).isTrue();
+        assertThat(formatted.get()).isEqualTo(0);
+
+        final List<String> msgs = LogRingTest.drain(ring);
+        assertThat(formatted.get()).isEqualTo(1);
+        assertThat(msgs).hasSize(3);
+        assertThat(msgs.get(0)).isEqualTo("x t s 1");
+        assertThat(msgs.get(1)).isEqualTo("no args");
+        assertThat(msgs.get(2)).startsWith("bad %d ");
+        assertThat(ring.peek()).isNull();
+    }
+
+    @Test
+    public void mutableArgumentsAreFormattedRightAway() {
+        final LogRing ring = new LogRing(4);
+        final StringBuilder arg = new StringBuilder("a");
+        final List<String> list = new ArrayList<>();
+        list.add("x");
+        assertThat(LogRingTest.offer(ring, "%s %s", arg, list)).isTrue();
+        arg.append("b");
+        list.add("y");
+
+        assertThat(LogRingTest.drain(ring)).containsExactly("a [x]");
+    }
+
+    @Test
+    public void fullRingDropsAndCounts() {
+        final LogRing ring = new LogRing(3);
+        assertThat(ring.capacity()).isEqualTo(4);
+        for (int i = 0; i < 6; i++) {
+            LogRingTest.offer(ring, "%d", i);
+        }
+        assertThat(ring.dropped()).isEqualTo(2);
+        assertThat(ring.published()).isEqualTo(4);
+        assertThat(LogRingTest.drain(ring)).containsExactly("0", "1", "2", "3").inOrder();
+
+        // the entries are reused once read
+        assertThat(LogRingTest.offer(ring, "again")).isTrue();
+        assertThat(LogRingTest.drain(ring)).containsExactly("again");
+    }
+
+    @Test
+    public void concurrentWritersLoseNothingWhileThereIsRoom() throws Exception {
+        final LogRing ring = new LogRing(1 << 14);
+        final Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            final int id = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    LogRingTest.offer(ring, "%d %d", id, i);
+                }
+            });
+            writers[t].start();
+        }
+        final List<String> msgs = new ArrayList<>();
+        while (msgs.size() < 4000) {
+            msgs.addAll(LogRingTest.drain(ring));
+        }
+        for (final Thread w : writers) {
+            w.join();
+        }
+        assertThat(ring.dropped()).isEqualTo(0);
+        // each writer's messages come in the order they were logged
+        final int[] next = new int[writers.length];
+        for (final String msg : msgs) {
+            final String[] parts = msg.split(" ");
+            final int id = Integer.parseInt(parts[0]);
+            assertThat(Integer.parseInt(parts[1])).isEqualTo(next[id]++);
+        }
+    }
+}
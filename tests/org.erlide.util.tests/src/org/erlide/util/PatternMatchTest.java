@@ -16,9 +16,13 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangBinary;
 import com.ericsson.otp.erlang.OtpErlangLong;
 import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangString;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpInputStream;
+import com.ericsson.otp.erlang.OtpOutputStream;
 
 /**
  *
@@ -170,4 +174,24 @@ public class PatternMatchTest {
         Assert.assertEquals(r.getAs("V", Integer.class), Integer.valueOf(1));
     }
 
+    @Test
+    public void testMatch_decoded() throws Exception {
+        // received terms can be subclasses of the parsed ones
+        final OtpErlangObject term = new OtpErlangTuple(new OtpErlangObject[] {
+                OtpErlang.parse("put_chars"), OtpErlang.parse("unicode"),
+                OtpErlang.parse("[x]"), new OtpErlangBinary(new byte[] { 1 }) });
+        final OtpInputStream in = new OtpInputStream(
+                new OtpOutputStream(term).toByteArray(),
+                OtpInputStream.DECODE_LAZILY | OtpInputStream.DECODE_BINARIES_AS_SLICES);
+        final OtpErlangTuple decoded = (OtpErlangTuple) in.read_any();
+        Assert.assertFalse(OtpErlangTuple.class.equals(decoded.getClass()));
+        final OtpBindings r = OtpErlang.match(OtpErlang.parse("{put_chars, E, [C], B}"),
+                decoded);
+        Assert.assertNotNull(r);
+        Assert.assertEquals(new OtpErlangAtom("unicode"), r.get("E"));
+        Assert.assertEquals(new OtpErlangAtom("x"), r.get("C"));
+        Assert.assertNotNull(OtpErlang.match(new OtpErlangBinary(new byte[] { 1 }),
+                decoded.elementAt(3)));
+        Assert.assertNull(OtpErlang.match(OtpErlang.parse("[put_chars | _]"), decoded));
+    }
 }
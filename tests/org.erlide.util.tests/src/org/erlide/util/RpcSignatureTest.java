@@ -0,0 +1,84 @@
+package org.erlide.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.erlide.util.erlang.RpcSignature;
+import org.erlide.util.erlang.Signature;
+import org.erlide.util.erlang.SignatureException;
+import org.erlide.util.erlang.TypeConverter;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangBinary;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+
+public class RpcSignatureTest {
+
+    private void same(final String sig, final Object... args) throws SignatureException {
+        final Signature[] types = Signature.parse(sig);
+        final OtpErlangObject[] expected = new OtpErlangObject[args.length];
+        for (int i = 0; i < args.length; i++) {
+            expected[i] = TypeConverter.java2erlang(args[i], types[i]);
+        }
+        assertThat(RpcSignature.of(sig).encode(args)).isEqualTo(expected);
+    }
+
+    @SuppressWarnings("boxing")
+    @Test
+    public void encodesLikeTypeConverter() throws SignatureException {
+        same("sslsx", "a", "b", Arrays.asList("c", "d"), 5);
+        same("aibdo", "atom", 3L, "bin", 2.5, true);
+        same("iidb", 'c', new BigInteger("39799999999999999999999"), 1.5f,
+                new byte[] { 1, 2 });
+        same("xxxx", new OtpErlangAtom("a"), 7, Arrays.asList(1, "x"),
+                new OtpErlangBinary(new byte[] { 3 }));
+        same("llii", Arrays.asList(Arrays.asList(1, 2), Arrays.asList()), 1);
+        same("2sax", new Object[] { "s", "a" }, null);
+    }
+
+    @SuppressWarnings("boxing")
+    @Test
+    public void nestedListsAreEncodedElementwise() throws SignatureException {
+        final OtpErlangObject[] r = RpcSignature.of("li").encode(Arrays.asList(1, 2));
+        assertThat(r[0].toString()).isEqualTo("[1,2]");
+        assertThat(RpcSignature.of("i").encode(0, 4)).isEqualTo(new OtpErlangLong(4));
+    }
+
+    @Test
+    public void compiledOnce() {
+        assertThat(RpcSignature.of("sslsx")).isSameInstanceAs(RpcSignature.of("sslsx"));
+        assertThat(RpcSignature.of("sslsx").arity()).isEqualTo(4);
+    }
+
+    @SuppressWarnings("boxing")
+    @Test
+    public void convertWithoutSignatureUsesX() throws SignatureException {
+        final Object[] args = { "s", new OtpErlangAtom("a"), 3 };
+        assertThat(RpcSignature.convert((String) null, args))
+                .isEqualTo(RpcSignature.of("xxx").encode(args));
+        assertThat(RpcSignature.convert("sai", args))
+                .isEqualTo(RpcSignature.of("sai").encode(args));
+        assertThat(RpcSignature.convert("")).isEmpty();
+    }
+
+    @SuppressWarnings("boxing")
+    @Test(expected = SignatureException.class)
+    public void wrongArity() throws SignatureException {
+        RpcSignature.of("si").encode("a");
+    }
+
+    @SuppressWarnings("boxing")
+    @Test(expected = SignatureException.class)
+    public void badConversion() throws SignatureException {
+        RpcSignature.of("s").encode(3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badSignature() {
+        RpcSignature.of("sq");
+    }
+}
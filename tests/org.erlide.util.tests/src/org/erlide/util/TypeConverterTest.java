@@ -242,4 +242,42 @@ public class TypeConverterTest {
         assertTrue(x.equals(y));
     }
 
+    static class FailingCvt {
+        public static FailingCvt fromErlangObject(final OtpErlangObject obj) {
+            throw new IllegalArgumentException(obj.toString());
+        }
+    }
+
+    @Test
+    public void cvtConvertibleFail_1() {
+        try {
+            TypeConverter.erlang2java(new OtpErlangAtom("x"), FailingCvt.class);
+            Assert.fail("expected SignatureException");
+        } catch (final SignatureException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    static class ErrorCvt {
+        public static ErrorCvt fromErlangObject(final OtpErlangObject obj) {
+            throw new AssertionError(obj.toString());
+        }
+    }
+
+    @Test(expected = AssertionError.class)
+    public void cvtConvertibleFail_2() throws SignatureException {
+        TypeConverter.erlang2java(new OtpErlangAtom("x"), ErrorCvt.class);
+    }
+
+    static class NonStaticCvt {
+        public NonStaticCvt fromErlangObject(final OtpErlangObject obj) {
+            return this;
+        }
+    }
+
+    @Test(expected = SignatureException.class)
+    public void cvtConvertibleFail_3() throws SignatureException {
+        TypeConverter.erlang2java(new OtpErlangAtom("x"), NonStaticCvt.class);
+    }
+
 }
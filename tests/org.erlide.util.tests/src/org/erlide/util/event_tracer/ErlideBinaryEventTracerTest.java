@@ -0,0 +1,129 @@
+package org.erlide.util.event_tracer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ErlideBinaryEventTracerTest {
+
+    @Test
+    public void recordsAreReadBack() throws Exception {
+        final File file = File.createTempFile("trace", ".bin");
+        final ErlideBinaryEventTracerHandler handler = new ErlideBinaryEventTracerHandler(
+                null);
+        final ErlideSessionEvent session = new ErlideSessionEvent("workspace");
+        handler.startSession(file, session);
+        final Object a = new Object();
+        final Object b = new Object();
+        final String longName = "a rather long operation name, to span more records ";
+        handler.operationStart("build", a);
+        handler.operationStart(longName, b);
+        handler.operationEnd(longName, b);
+        handler.handle(new ErlideCrashEvent("node@host"));
+        handler.operationEnd("build", a);
+        handler.handle(new ErlideOperationStartEvent("completion", "ff"));
+        handler.dispose();
+
+        final List<ErlideEventLogReader.Record> records = ErlideEventLogReader.read(file);
+        assertThat(records).hasSize(7);
+        assertThat(records.get(0).kind).isEqualTo(ErlideBinaryEventTracerHandler.SESSION);
+        assertThat(records.get(0).name).isNull();
+        assertThat(records.get(0).id).isEqualTo(session.workspace);
+        assertThat(records.get(0).millis).isEqualTo(session.getTimestamp());
+        assertThat(records.get(1).kind)
+                .isEqualTo(ErlideBinaryEventTracerHandler.OPERATION_START);
+        assertThat(records.get(1).name).isEqualTo("build");
+        assertThat(records.get(1).id).isEqualTo(System.identityHashCode(a));
+        assertThat(records.get(2).name).isEqualTo(longName);
+        assertThat(records.get(4).kind).isEqualTo(ErlideBinaryEventTracerHandler.CRASH);
+        assertThat(records.get(4).name).isEqualTo("node@host");
+        assertThat(records.get(5).name).isEqualTo("build");
+        assertThat(records.get(6).id).isEqualTo(0xff);
+        assertThat(records.get(5).nanos).isAtLeast(records.get(1).nanos);
+        file.delete();
+    }
+
+    @Test
+    public void latenciesAreSummarized() throws Exception {
+        final File file = File.createTempFile("trace", ".bin");
+        final ErlideBinaryEventTracerHandler handler = new ErlideBinaryEventTracerHandler(
+                null);
+        handler.open(file);
+        // more than one mapped chunk
+        final Object id = new Object();
+        for (int i = 0; i < 40000; i++) {
+            handler.operationStart("op", id);
+            handler.operationEnd("op", id);
+        }
+        handler.operationStart("other", id);
+        handler.operationEnd("unstarted", id);
+        handler.dispose();
+        // 80002 events, whether or not the zeroed tail could be cut off
+        assertThat(ErlideEventLogReader.read(file)).hasSize(80002);
+
+        final ErlideEventLogSummary summary = ErlideEventLogSummary.summarize(file);
+        final ErlideEventLogSummary.Operation op = summary.getOperations().get("op");
+        assertThat(op.getCount()).isEqualTo(40000);
+        assertThat(op.getUnmatched()).isEqualTo(0);
+        assertThat(op.getPercentile(0)).isAtMost(op.getPercentile(0.5));
+        assertThat(op.getPercentile(0.5)).isAtMost(op.getPercentile(1));
+        assertThat(summary.getOperations().get("other").getUnmatched()).isEqualTo(1);
+        assertThat(summary.getOperations().get("unstarted").getUnmatched()).isEqualTo(1);
+        assertThat(summary.toString()).contains("op");
+        file.delete();
+    }
+
+    @Test
+    public void concurrentOperationsAreAllRecorded() throws Exception {
+        final File file = File.createTempFile("trace", ".bin");
+        final ErlideBinaryEventTracerHandler handler = new ErlideBinaryEventTracerHandler(
+                null);
+        handler.open(file);
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final String name = "op" + t;
+            threads.add(new Thread(() -> {
+                final Object id = new Object();
+                for (int i = 0; i < 20000; i++) {
+                    handler.operationStart(name, id);
+                    handler.operationEnd(name, id);
+                }
+            }));
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        handler.dispose();
+
+        final ErlideEventLogSummary summary = ErlideEventLogSummary.summarize(file);
+        for (int t = 0; t < 4; t++) {
+            final ErlideEventLogSummary.Operation op = summary.getOperations()
+                    .get("op" + t);
+            assertThat(op.getCount()).isEqualTo(20000);
+            assertThat(op.getUnmatched()).isEqualTo(0);
+        }
+        file.delete();
+    }
+
+    @Test
+    public void truncatedNameEndsTheFile() throws Exception {
+        final File file = File.createTempFile("trace", ".bin");
+        final ByteBuffer record = ByteBuffer
+                .allocate(ErlideBinaryEventTracerHandler.RECORD_SIZE);
+        record.put(0, ErlideBinaryEventTracerHandler.STRING);
+        // a 40 byte name, of which nothing made it to the file
+        record.putInt(8, 40);
+        Files.write(file.toPath(), record.array());
+        assertThat(ErlideEventLogReader.read(file)).isEmpty();
+        file.delete();
+    }
+}